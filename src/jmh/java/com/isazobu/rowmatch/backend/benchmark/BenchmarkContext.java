@@ -0,0 +1,65 @@
+package com.isazobu.rowmatch.backend.benchmark;
+
+import com.isazobu.rowmatch.backend.RowMatchBackendApiApplication;
+import com.isazobu.rowmatch.backend.team.index.JoinableTeamIndex;
+import com.isazobu.rowmatch.backend.team.model.Team;
+import com.isazobu.rowmatch.backend.team.repository.TeamRepository;
+import com.isazobu.rowmatch.backend.user.dto.CreateUserRequest;
+import com.isazobu.rowmatch.backend.user.model.User;
+import com.isazobu.rowmatch.backend.user.service.UserService;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Starts the application without the web tier on the in-memory H2 database of the {@code h2} profile
+ * and seeds it.
+ */
+final class BenchmarkContext {
+
+    private static final int SEED_BATCH_SIZE = 10_000;
+
+    private BenchmarkContext() {
+    }
+
+    static ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(RowMatchBackendApiApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("h2")
+                .run("--logging.level.root=WARN");
+    }
+
+    /**
+     * Inserts {@code count} teams with member counts spread over 0..capacity and rebuilds the joinable team index.
+     * Only the counters are seeded, the teams have no user rows.
+     */
+    static void seedTeams(ConfigurableApplicationContext context, int count) {
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        List<Object[]> batch = new ArrayList<>(SEED_BATCH_SIZE);
+        for (int i = 0; i < count; i++) {
+            batch.add(new Object[]{"bench-team-" + i, i % (Team.CAPACITY + 1)});
+            if (batch.size() == SEED_BATCH_SIZE || i == count - 1) {
+                jdbcTemplate.batchUpdate("INSERT INTO teams (name, member_count, version) VALUES (?, ?, 0)", batch);
+                batch.clear();
+            }
+        }
+
+        TeamRepository teamRepository = context.getBean(TeamRepository.class);
+        context.getBean(JoinableTeamIndex.class).rebuild(teamRepository.findJoinableTeams(Team.CAPACITY));
+    }
+
+    /**
+     * Creates a user through the service and gives it enough coins to join teams for the whole run.
+     */
+    static User createUser(ConfigurableApplicationContext context, String name) {
+        CreateUserRequest request = new CreateUserRequest();
+        request.setName(name);
+        User user = context.getBean(UserService.class).createUser(request);
+        context.getBean(JdbcTemplate.class).update("UPDATE users SET coins = ? WHERE id = ?", 1_000_000_000, user.getId());
+        return user;
+    }
+}
@@ -0,0 +1,88 @@
+package com.isazobu.rowmatch.backend.benchmark;
+
+import com.isazobu.rowmatch.backend.team.dto.CreateTeamRequest;
+import com.isazobu.rowmatch.backend.team.dto.GetTeams;
+import com.isazobu.rowmatch.backend.team.index.JoinableTeamSnapshot;
+import com.isazobu.rowmatch.backend.team.service.TeamService;
+import com.isazobu.rowmatch.backend.user.dto.UpdateLevelRequest;
+import com.isazobu.rowmatch.backend.user.service.UserService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Service layer hot paths against an embedded database seeded with 1k, 100k and 1M teams.
+ * <p>
+ * Every benchmark thread gets its own player and its own team (created by another user), so join and
+ * leave can be repeated without the team filling up or being deleted.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ServiceBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int teams;
+
+    private final AtomicInteger players = new AtomicInteger();
+
+    ConfigurableApplicationContext context;
+    UserService userService;
+    TeamService teamService;
+    JoinableTeamSnapshot joinableTeamSnapshot;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        BenchmarkContext.seedTeams(context, teams);
+        userService = context.getBean(UserService.class);
+        teamService = context.getBean(TeamService.class);
+        joinableTeamSnapshot = context.getBean(JoinableTeamSnapshot.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Player {
+        String token;
+        Long teamId;
+
+        @Setup(Level.Trial)
+        public void setUp(ServiceBenchmark benchmark) throws Throwable {
+            int id = benchmark.players.incrementAndGet();
+            String ownerToken = BenchmarkContext.createUser(benchmark.context, "bench-owner-" + id).getToken();
+
+            CreateTeamRequest request = new CreateTeamRequest();
+            request.setName("bench-player-team-" + id);
+            teamId = benchmark.teamService.createTeam(request, ownerToken).getId();
+
+            token = BenchmarkContext.createUser(benchmark.context, "bench-player-" + id).getToken();
+        }
+    }
+
+    @Benchmark
+    public List<GetTeams> sampleJoinableTeams() {
+        // the sample behind GET /api/v1/teams/random, without the freshness window that would serve it from memory
+        return joinableTeamSnapshot.sample(10);
+    }
+
+    @Benchmark
+    public UpdateLevelRequest updateLevel(Player player) {
+        return userService.updateLevel(player.token);
+    }
+
+    @Benchmark
+    public void joinAndLeaveTeam(Player player) throws Throwable {
+        teamService.joinTeam(player.teamId, player.token);
+        teamService.leaveTeam(player.token);
+    }
+}
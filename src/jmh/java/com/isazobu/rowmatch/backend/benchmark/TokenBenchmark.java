@@ -0,0 +1,38 @@
+package com.isazobu.rowmatch.backend.benchmark;
+
+import com.isazobu.rowmatch.backend.user.auth.TokenSigner;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Signing and verifying the tokens of every authenticated request, without any database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenBenchmark {
+
+    private final TokenSigner tokenSigner = new TokenSigner("benchmark-secret-of-at-least-thirty-two-bytes");
+
+    private String signedToken;
+
+    @Setup
+    public void setUp() {
+        signedToken = tokenSigner.sign(42L);
+    }
+
+    @Benchmark
+    public String signToken() {
+        return tokenSigner.sign(42L);
+    }
+
+    @Benchmark
+    public OptionalLong verifyToken() {
+        return tokenSigner.verify(signedToken);
+    }
+}
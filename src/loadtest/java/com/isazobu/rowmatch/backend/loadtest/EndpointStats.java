@@ -0,0 +1,88 @@
+package com.isazobu.rowmatch.backend.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram and outcome counters of one endpoint. Latency runs from when a request was due on its virtual
+ * user's schedule to its response, so it includes the time the request was held back by an earlier slow one.
+ */
+final class EndpointStats {
+
+    // one hour in microseconds, 3 significant digits
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.HOURS.toMicros(1);
+
+    private final String name;
+    private final Histogram latencies = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+    private final LongAdder clientErrors = new LongAdder();
+    private final LongAdder serverErrors = new LongAdder();
+    private final LongAdder transportErrors = new LongAdder();
+
+    EndpointStats(String name) {
+        this.name = name;
+    }
+
+    void record(long dueNanos, int status) {
+        latencies.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - dueNanos),
+                HIGHEST_TRACKABLE_MICROS));
+        if (status >= 500) {
+            serverErrors.increment();
+        } else if (status >= 400) {
+            clientErrors.increment();
+        }
+    }
+
+    void recordTransportError() {
+        transportErrors.increment();
+    }
+
+    static void printReport(Map<String, EndpointStats> stats, Duration elapsed, PrintStream out) {
+        double seconds = elapsed.toMillis() / 1000.0;
+        out.printf("%-28s %9s %10s %9s %9s %9s %9s %8s %8s %8s%n", "endpoint", "requests", "req/s",
+                "p50 ms", "p99 ms", "p99.9 ms", "max ms", "4xx %", "5xx %", "io err");
+
+        long total = 0;
+        long errors = 0;
+        for (EndpointStats endpoint : stats.values()) {
+            long count = endpoint.latencies.getTotalCount();
+            total += count + endpoint.transportErrors.sum();
+            errors += endpoint.serverErrors.sum() + endpoint.transportErrors.sum();
+            out.printf("%-28s %9d %10.1f %9.2f %9.2f %9.2f %9.2f %8.2f %8.2f %8d%n", endpoint.name, count,
+                    count / seconds,
+                    millis(endpoint.latencies.getValueAtPercentile(50)),
+                    millis(endpoint.latencies.getValueAtPercentile(99)),
+                    millis(endpoint.latencies.getValueAtPercentile(99.9)),
+                    millis(endpoint.latencies.getMaxValue()),
+                    percent(endpoint.clientErrors.sum(), count),
+                    percent(endpoint.serverErrors.sum(), count),
+                    endpoint.transportErrors.sum());
+        }
+        out.printf("%ntotal %d requests in %.1f s, %.1f req/s, %.2f %% server or transport errors%n",
+                total, seconds, total / seconds, percent(errors, total));
+    }
+
+    static Map<String, EndpointStats> forEndpoints(String... names) {
+        // filled once up front and only read afterwards, so the virtual users can share it
+        Map<String, EndpointStats> stats = new LinkedHashMap<>();
+        for (String endpoint : names) {
+            stats.put(endpoint, new EndpointStats(endpoint));
+        }
+        return Collections.unmodifiableMap(stats);
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    private static double percent(long part, long total) {
+        return total == 0 ? 0 : part * 100.0 / total;
+    }
+}
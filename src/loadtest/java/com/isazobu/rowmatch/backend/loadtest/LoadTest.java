@@ -0,0 +1,134 @@
+package com.isazobu.rowmatch.backend.loadtest;
+
+import com.isazobu.rowmatch.backend.RowMatchBackendApiApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end load generator for the REST API.
+ * <p>
+ * Starts the application on the embedded H2 database ({@code h2} profile) and a random port, unless
+ * {@code --base-url} points at a running instance, then drives it with {@link VirtualUser}s sending on a
+ * fixed-rate schedule and prints throughput, latency percentiles and error rates per endpoint. Run it with
+ * {@code ./mvnw -Ploadtest test-compile exec:exec -Dloadtest.args="--users=2000 --duration=2m"}.
+ * <p>
+ * Options: {@code --users} (default 1000), {@code --duration} (60s), {@code --ramp-up} (10s),
+ * {@code --think-time} (100ms), {@code --base-url} and {@code --db-latency} (0ms), a delay added to every SQL
+ * statement of the embedded application. Any other {@code --key=value} is passed to the
+ * embedded application, e.g. {@code --rowmatch.level-updates.write-behind.enabled=true}.
+ */
+public final class LoadTest {
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>(Map.of(
+                "users", "1000",
+                "duration", "60s",
+                "ramp-up", "10s",
+                "think-time", "100ms",
+                "db-latency", "0ms"));
+        List<String> applicationArgs = new ArrayList<>(List.of("--server.port=0", "--logging.level.root=WARN"));
+        for (String arg : args) {
+            String[] option = arg.replaceFirst("^--", "").split("=", 2);
+            if (option.length != 2) {
+                throw new IllegalArgumentException("Expected --key=value but got " + arg);
+            }
+            if (options.containsKey(option[0]) || option[0].equals("base-url")) {
+                options.put(option[0], option[1]);
+            } else {
+                applicationArgs.add(arg);
+            }
+        }
+
+        int users = Integer.parseInt(options.get("users"));
+        Duration duration = DurationStyle.detectAndParse(options.get("duration"));
+        Duration rampUp = DurationStyle.detectAndParse(options.get("ramp-up"));
+        Duration thinkTime = DurationStyle.detectAndParse(options.get("think-time"));
+        Duration dbLatency = DurationStyle.detectAndParse(options.get("db-latency"));
+
+        ConfigurableApplicationContext context = null;
+        URI baseUri;
+        if (options.containsKey("base-url")) {
+            baseUri = URI.create(options.get("base-url"));
+        } else {
+            // a devtools restart would run this main method a second time
+            System.setProperty("spring.devtools.restart.enabled", "false");
+            context = new SpringApplicationBuilder(RowMatchBackendApiApplication.class)
+                    .web(WebApplicationType.SERVLET)
+                    .profiles("h2")
+                    .initializers(applicationContext -> {
+                        if (!dbLatency.isZero()) {
+                            applicationContext.getBeanFactory().addBeanPostProcessor(
+                                    new SimulatedDatabaseLatency(dbLatency));
+                        }
+                    })
+                    .run(applicationArgs.toArray(String[]::new));
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            baseUri = URI.create("http://localhost:" + port);
+        }
+
+        try {
+            System.out.printf("%d virtual users against %s for %s (ramp-up %s, think time %s, db latency %s, Java %s)%n",
+                    users, baseUri, duration, rampUp, thinkTime, dbLatency, Runtime.version().feature());
+            run(baseUri, users, duration, rampUp, thinkTime);
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+        }
+    }
+
+    private static void run(URI baseUri, int users, Duration duration, Duration rampUp, Duration thinkTime)
+            throws InterruptedException {
+        Map<String, EndpointStats> stats = EndpointStats.forEndpoints(VirtualUser.ENDPOINTS);
+        ExecutorService clientExecutor = Executors.newCachedThreadPool();
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(clientExecutor)
+                .build();
+        ExecutorService virtualUsers = Executors.newFixedThreadPool(users, runnable -> {
+            Thread thread = new Thread(runnable, "virtual-user");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        long start = System.nanoTime();
+        long deadline = start + duration.toNanos();
+        long rampUpStepNanos = users > 1 ? rampUp.toNanos() / (users - 1) : 0;
+        try {
+            for (int i = 0; i < users; i++) {
+                virtualUsers.execute(new VirtualUser(i, client, baseUri, stats, thinkTime, deadline));
+                if (rampUpStepNanos > 0) {
+                    TimeUnit.NANOSECONDS.sleep(rampUpStepNanos);
+                }
+            }
+            virtualUsers.shutdown();
+            if (!virtualUsers.awaitTermination(duration.toSeconds() + 60, TimeUnit.SECONDS)) {
+                System.out.println("Virtual users did not finish in time, the report is partial");
+            }
+        } finally {
+            virtualUsers.shutdownNow();
+            clientExecutor.shutdownNow();
+        }
+
+        System.out.println();
+        EndpointStats.printReport(stats, Duration.ofNanos(System.nanoTime() - start), System.out);
+    }
+}
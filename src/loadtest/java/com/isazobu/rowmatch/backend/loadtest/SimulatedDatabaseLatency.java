@@ -0,0 +1,70 @@
+package com.isazobu.rowmatch.backend.loadtest;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+
+/**
+ * Adds a fixed delay to every statement execution, to see how the embedded application behaves when the
+ * database is a network hop away instead of in memory. The connection stays checked out while it waits,
+ * like it would during a real round trip.
+ */
+final class SimulatedDatabaseLatency implements BeanPostProcessor {
+
+    private final Duration latency;
+
+    SimulatedDatabaseLatency(Duration latency) {
+        this.latency = latency;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource) {
+            return new DelegatingDataSource(dataSource) {
+                @Override
+                public Connection getConnection() throws SQLException {
+                    return proxy(Connection.class, super.getConnection());
+                }
+
+                @Override
+                public Connection getConnection(String username, String password) throws SQLException {
+                    return proxy(Connection.class, super.getConnection(username, password));
+                }
+            };
+        }
+        return bean;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T proxy(Class<T> type, T target) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            if (target instanceof Statement && method.getName().startsWith("execute")) {
+                Thread.sleep(latency.toMillis());
+            }
+            Object result = invoke(method, target, args);
+            // statements created by the connection get the delay as well
+            if (result instanceof Statement && method.getReturnType().isInterface()) {
+                return proxy((Class<Statement>) method.getReturnType(), (Statement) result);
+            }
+            return result;
+        };
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private static Object invoke(Method method, Object target, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.isazobu.rowmatch.backend.loadtest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One simulated player. It registers, then keeps completing levels, browsing joinable teams and moving
+ * between teams until the deadline, with a think time between requests.
+ * <p>
+ * Requests follow a fixed-rate schedule: each one is due a think time after the previous one was due, not after its
+ * response arrived. A slow response makes the following requests late, and their latency is measured from when they
+ * were due, so a stalled server shows up in the percentiles instead of merely slowing down the load (coordinated
+ * omission). Without a think time the user sends back to back and latency is measured from the actual send.
+ * <p>
+ * The player tracks its own coins and team so that it mostly sends requests the API accepts; rejected
+ * requests (a team filled up in the meantime, a team that was deleted) are counted as errors of the endpoint.
+ */
+final class VirtualUser implements Runnable {
+
+    static final String CREATE_USER = "POST /api/v1/users";
+    static final String UPDATE_LEVEL = "PUT /api/v1/users";
+    static final String RANDOM_TEAMS = "GET /api/v1/teams/random";
+    static final String CREATE_TEAM = "POST /api/v1/teams";
+    static final String JOIN_TEAM = "POST /api/v1/teams/{id}/join";
+    static final String LEAVE_TEAM = "POST /api/v1/teams/leave";
+
+    static final String[] ENDPOINTS = {CREATE_USER, UPDATE_LEVEL, RANDOM_TEAMS, CREATE_TEAM, JOIN_TEAM, LEAVE_TEAM};
+
+    private static final int TEAM_COST = 1000;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final int id;
+    private final HttpClient client;
+    private final URI baseUri;
+    private final Map<String, EndpointStats> stats;
+    private final Duration thinkTime;
+    private final long deadlineNanos;
+
+    private String token;
+    private int coins;
+    private boolean inTeam;
+    private List<Long> joinableTeams = new ArrayList<>();
+    private int createdTeams;
+    // when the next request is due on the schedule
+    private long dueNanos;
+
+    VirtualUser(int id, HttpClient client, URI baseUri, Map<String, EndpointStats> stats, Duration thinkTime,
+                long deadlineNanos) {
+        this.id = id;
+        this.client = client;
+        this.baseUri = baseUri;
+        this.stats = stats;
+        this.thinkTime = thinkTime;
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    @Override
+    public void run() {
+        dueNanos = System.nanoTime();
+        try {
+            while (token == null && System.nanoTime() < deadlineNanos) {
+                register();
+                pause();
+            }
+            while (System.nanoTime() < deadlineNanos) {
+                nextAction();
+                pause();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void nextAction() throws InterruptedException {
+        double roll = ThreadLocalRandom.current().nextDouble();
+        if (roll < 0.60) {
+            updateLevel();
+        } else if (roll < 0.80) {
+            randomTeams();
+        } else if (roll < 0.82) {
+            // a returning player on another device, keeps the user table growing
+            register();
+        } else if (inTeam) {
+            if (roll < 0.85) {
+                leaveTeam();
+            } else {
+                updateLevel();
+            }
+        } else if (coins >= TEAM_COST) {
+            if (roll < 0.85 || joinableTeams.isEmpty()) {
+                createTeam();
+            } else {
+                joinTeam();
+            }
+        } else {
+            updateLevel();
+        }
+    }
+
+    private void register() throws InterruptedException {
+        String name = "vu-" + id + "-" + ThreadLocalRandom.current().nextInt(Integer.MAX_VALUE);
+        JsonNode user = send(CREATE_USER, "/api/v1/users", "POST", "{\"name\":\"" + name + "\"}", null);
+        if (user != null) {
+            token = user.path("token").asText(null);
+            coins = user.path("coins").asInt();
+            inTeam = false;
+        }
+    }
+
+    private void updateLevel() throws InterruptedException {
+        JsonNode progress = send(UPDATE_LEVEL, "/api/v1/users", "PUT", null, token);
+        if (progress != null) {
+            coins = progress.path("coins").asInt(coins);
+        }
+    }
+
+    private void randomTeams() throws InterruptedException {
+        JsonNode teams = send(RANDOM_TEAMS, "/api/v1/teams/random", "GET", null, null);
+        if (teams != null && teams.isArray()) {
+            List<Long> ids = new ArrayList<>(teams.size());
+            teams.forEach(team -> ids.add(team.path("id").asLong()));
+            joinableTeams = ids;
+        }
+    }
+
+    private void createTeam() throws InterruptedException {
+        String name = "team-" + id + "-" + createdTeams++;
+        if (send(CREATE_TEAM, "/api/v1/teams", "POST", "{\"name\":\"" + name + "\"}", token) != null) {
+            coins -= TEAM_COST;
+            inTeam = true;
+        }
+    }
+
+    private void joinTeam() throws InterruptedException {
+        Long teamId = joinableTeams.remove(ThreadLocalRandom.current().nextInt(joinableTeams.size()));
+        if (send(JOIN_TEAM, "/api/v1/teams/" + teamId + "/join", "POST", null, token) != null) {
+            coins -= TEAM_COST;
+            inTeam = true;
+        }
+    }
+
+    private void leaveTeam() throws InterruptedException {
+        if (send(LEAVE_TEAM, "/api/v1/teams/leave", "POST", null, token) != null) {
+            inTeam = false;
+        }
+    }
+
+    /**
+     * Sends the request and records it under the endpoint.
+     *
+     * @return the parsed body of a successful response, {@link com.fasterxml.jackson.databind.node.MissingNode}
+     * for an empty one, or {@code null} when the request failed
+     */
+    private JsonNode send(String endpoint, String path, String method, String json, String authorization)
+            throws InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(baseUri.resolve(path))
+                .timeout(Duration.ofSeconds(30))
+                .method(method, json == null
+                        ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofString(json));
+        if (json != null) {
+            request.header("Content-Type", "application/json");
+        }
+        if (authorization != null) {
+            request.header("Authorization", authorization);
+        }
+
+        EndpointStats endpointStats = stats.get(endpoint);
+        HttpResponse<String> response;
+        try {
+            response = client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+        } catch (IOException e) {
+            endpointStats.recordTransportError();
+            return null;
+        }
+        endpointStats.record(dueNanos, response.statusCode());
+        if (response.statusCode() >= 300) {
+            return null;
+        }
+        try {
+            return response.body().isEmpty() ? MAPPER.missingNode() : MAPPER.readTree(response.body());
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+    }
+
+    private void pause() throws InterruptedException {
+        if (thinkTime.isZero()) {
+            dueNanos = System.nanoTime();
+            return;
+        }
+        // +-50 % jitter so that the virtual users do not march in lockstep
+        long millis = thinkTime.toMillis();
+        dueNanos += TimeUnit.MILLISECONDS.toNanos(millis / 2 + ThreadLocalRandom.current().nextLong(millis + 1));
+        long wait = dueNanos - System.nanoTime();
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+}
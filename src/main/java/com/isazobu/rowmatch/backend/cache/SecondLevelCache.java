@@ -0,0 +1,68 @@
+package com.isazobu.rowmatch.backend.cache;
+
+import com.isazobu.rowmatch.backend.team.model.Team;
+import com.isazobu.rowmatch.backend.user.model.User;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Evicts second-level cache entries that Hibernate cannot keep up to date on its own: rows written with JDBC, e.g. the
+ * member counts of teams, and the member collections of teams, which are mapped by the users and not updated when a
+ * user changes teams.
+ * <p>
+ * Called inside a transaction, an entry is evicted right away and again once the transaction has completed, so a
+ * reader that loaded the row before the commit cannot leave its copy behind. Does nothing when the second-level cache
+ * is disabled.
+ */
+@Component
+public class SecondLevelCache {
+
+    private static final String TEAM_MEMBERS_ROLE = Team.class.getName() + ".users";
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    public SecondLevelCache(EntityManagerFactory entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    public void evictUsers(Collection<Long> userIds) {
+        List<Long> ids = List.copyOf(userIds);
+        evict(cache -> ids.forEach(userId -> cache.evictEntityData(User.class, userId)));
+    }
+
+    public void evictTeam(Long teamId) {
+        evict(cache -> cache.evictEntityData(Team.class, teamId));
+    }
+
+    public void evictTeamMembers(Long teamId) {
+        evict(cache -> cache.evictCollectionData(TEAM_MEMBERS_ROLE, teamId));
+    }
+
+    /**
+     * Drops the cached query results, e.g. name lookups, after rows were inserted with JDBC.
+     */
+    public void evictQueryResults() {
+        evict(Cache::evictDefaultQueryRegion);
+    }
+
+    private void evict(Consumer<Cache> eviction) {
+        Cache cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+        eviction.accept(cache);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    eviction.accept(cache);
+                }
+            });
+        }
+    }
+}
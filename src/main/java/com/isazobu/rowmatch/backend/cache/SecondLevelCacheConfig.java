@@ -0,0 +1,110 @@
+package com.isazobu.rowmatch.backend.cache;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.jcache.MissingCacheStrategy;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.time.Duration;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * Hibernate second-level cache for users, teams and team members, plus the query cache, held in size-bounded
+ * Caffeine caches through JCache.
+ * <p>
+ * Every region is created here with {@code rowmatch.cache.second-level.<region>.maximum-size} entries, a region
+ * missing from this list fails the startup instead of growing without bound. Entries expire after
+ * {@code expire-after-write}, which bounds how long writes made by other instances stay unseen. The update timestamps
+ * that tell stale query results apart are never evicted, there is one per table.
+ * <p>
+ * Hits, misses and evictions of every region are published as {@code cache.*} metrics with the region as the
+ * {@code cache} tag, and the hit ratio as {@code rowmatch.cache.hit.ratio}.
+ */
+@Configuration
+public class SecondLevelCacheConfig {
+
+    // regions of the @Cache annotations
+    public static final String USERS = "users";
+    public static final String TEAMS = "teams";
+    public static final String TEAM_MEMBERS = "team-members";
+
+    private static final String QUERY_RESULTS = RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME;
+    private static final String UPDATE_TIMESTAMPS = RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME;
+
+    private final boolean enabled;
+
+    public SecondLevelCacheConfig(@Value("${rowmatch.cache.second-level.enabled:true}") boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Bean(destroyMethod = "close")
+    public CacheManager secondLevelCacheManager(
+            @Value("${rowmatch.cache.second-level.users.maximum-size:100000}") long users,
+            @Value("${rowmatch.cache.second-level.teams.maximum-size:20000}") long teams,
+            @Value("${rowmatch.cache.second-level.team-members.maximum-size:20000}") long teamMembers,
+            @Value("${rowmatch.cache.second-level.queries.maximum-size:10000}") long queries,
+            @Value("${rowmatch.cache.second-level.expire-after-write:1m}") Duration expireAfterWrite) {
+        // a cache manager of its own, the provider would otherwise share it with every other application context
+        // of the JVM, e.g. those of the tests
+        CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager(URI.create("rowmatch:second-level-cache:" + UUID.randomUUID()), null);
+        OptionalLong expiry = OptionalLong.of(expireAfterWrite.toNanos());
+        cacheManager.createCache(USERS, region(OptionalLong.of(users), expiry));
+        cacheManager.createCache(TEAMS, region(OptionalLong.of(teams), expiry));
+        cacheManager.createCache(TEAM_MEMBERS, region(OptionalLong.of(teamMembers), expiry));
+        cacheManager.createCache(QUERY_RESULTS, region(OptionalLong.of(queries), expiry));
+        cacheManager.createCache(UPDATE_TIMESTAMPS, region(OptionalLong.empty(), OptionalLong.empty()));
+        return cacheManager;
+    }
+
+    private static CaffeineConfiguration<Object, Object> region(OptionalLong maximumSize, OptionalLong expiry) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setMaximumSize(maximumSize);
+        configuration.setExpireAfterWrite(expiry);
+        configuration.setNativeStatisticsEnabled(true);
+        return configuration;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheSettings(CacheManager secondLevelCacheManager) {
+        return properties -> {
+            properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, enabled);
+            properties.put(AvailableSettings.USE_QUERY_CACHE, enabled);
+            if (enabled) {
+                properties.put(AvailableSettings.CACHE_REGION_FACTORY, ConfigSettings.SIMPLE_FACTORY_NAME);
+                properties.put(ConfigSettings.CACHE_MANAGER, secondLevelCacheManager);
+                properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, MissingCacheStrategy.FAIL.getExternalRepresentation());
+            }
+        };
+    }
+
+    @Bean
+    public MeterBinder secondLevelCacheMetrics(CacheManager secondLevelCacheManager) {
+        return registry -> {
+            for (String region : secondLevelCacheManager.getCacheNames()) {
+                Cache<?, ?> cache = secondLevelCacheManager.getCache(region);
+                com.github.benmanes.caffeine.cache.Cache<?, ?> caffeine =
+                        cache.unwrap(com.github.benmanes.caffeine.cache.Cache.class);
+                CaffeineCacheMetrics.monitor(registry, caffeine, region);
+                Gauge.builder("rowmatch.cache.hit.ratio", caffeine, regionCache -> regionCache.stats().hitRate())
+                        .description("Share of second-level cache lookups served from the cache")
+                        .tag("cache", region)
+                        .register(registry);
+            }
+        };
+    }
+}
@@ -0,0 +1,75 @@
+package com.isazobu.rowmatch.backend.datasource;
+
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.AnyNestedCondition;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Wraps the application data source in a {@link PermitLimitedDataSource}. By default the number of permits
+ * equals the Hikari pool size, so no more callers reach the pool than it has connections.
+ * <p>
+ * On platform threads the Tomcat thread pool already bounds the callers, and the permits are only used with
+ * {@code rowmatch.datasource.permits.enabled=true}. When the {@code java21} build serves requests on virtual threads,
+ * they are used unless {@code rowmatch.datasource.permits.enabled=false}.
+ */
+@Configuration
+@Conditional(DatabasePermitConfig.PermitsEnabled.class)
+public class DatabasePermitConfig {
+
+    static class PermitsEnabled extends AnyNestedCondition {
+
+        PermitsEnabled() {
+            super(ConfigurationPhase.PARSE_CONFIGURATION);
+        }
+
+        @ConditionalOnProperty(name = "rowmatch.datasource.permits.enabled", havingValue = "true")
+        static class Enabled {
+        }
+
+        @ConditionalOnClass(name = "com.isazobu.rowmatch.backend.threads.VirtualThreadConfig")
+        @ConditionalOnProperty(name = {"rowmatch.virtual-threads.enabled", "rowmatch.datasource.permits.enabled"},
+                havingValue = "true", matchIfMissing = true)
+        static class VirtualThreads {
+        }
+    }
+
+    @Bean
+    public static BeanPostProcessor databasePermitPostProcessor(Environment environment) {
+        Binder binder = Binder.get(environment);
+        int maxPermits = binder.bind("rowmatch.datasource.permits.max-permits", Integer.class)
+                .orElseGet(() -> binder.bind("spring.datasource.hikari.maximum-pool-size", Integer.class).orElse(10));
+        Duration acquireTimeout = binder.bind("rowmatch.datasource.permits.acquire-timeout", Duration.class)
+                .orElse(Duration.ofSeconds(30));
+
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                // a lazy proxy holds no connection of its own, the permits are taken by the data source behind it
+                if (bean instanceof DataSource dataSource && !(bean instanceof PermitLimitedDataSource)
+                        && !(bean instanceof LazyConnectionDataSourceProxy)) {
+                    return new PermitLimitedDataSource(dataSource, maxPermits, acquireTimeout);
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    public MeterBinder databasePermitMetrics(ObjectProvider<DataSource> dataSources) {
+        return registry -> dataSources.orderedStream()
+                .filter(PermitLimitedDataSource.class::isInstance)
+                .forEach(dataSource -> ((PermitLimitedDataSource) dataSource).bindTo(registry));
+    }
+}
@@ -0,0 +1,193 @@
+package com.isazobu.rowmatch.backend.datasource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Data source that hands out at most {@code maxPermits} connections at a time.
+ * <p>
+ * A permit is taken from a fair semaphore before a connection is requested from the pool and given back
+ * when the connection is closed. Callers beyond the limit wait in arrival order and get a
+ * {@link SQLTransientConnectionException} after {@code acquireTimeout}, instead of piling up inside the
+ * connection pool. This matters once requests run on virtual threads, where the number of concurrent
+ * requests is no longer capped by the size of the Tomcat thread pool.
+ * <p>
+ * A thread that already holds a permit gets further connections without waiting for another one, e.g. for a
+ * {@code REQUIRES_NEW} transaction or the id generator inside a running transaction. Otherwise every permit could be
+ * held by a caller waiting for a second one, and none would ever be released. Such nested connections come straight
+ * from the pool, which may briefly hand out more connections than there are permits.
+ * <p>
+ * Once bound to a registry, the time spent waiting for a permit is recorded as {@code rowmatch.db.permits.wait},
+ * together with gauges of available permits and waiting callers and a count of timeouts.
+ */
+public class PermitLimitedDataSource extends DelegatingDataSource implements MeterBinder {
+
+    private final Semaphore permits;
+    private final int maxPermits;
+    private final Duration acquireTimeout;
+    // permits held by the connections of the current thread
+    private final ThreadLocal<AtomicInteger> held = ThreadLocal.withInitial(AtomicInteger::new);
+    private volatile Timer waitTimer;
+    private volatile Counter timeouts;
+
+    public PermitLimitedDataSource(DataSource target, int maxPermits, Duration acquireTimeout) {
+        super(target);
+        this.permits = new Semaphore(maxPermits, true);
+        this.maxPermits = maxPermits;
+        this.acquireTimeout = acquireTimeout;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        AtomicInteger holding = held.get();
+        if (holding.get() > 0) {
+            return super.getConnection();
+        }
+        acquirePermit();
+        try {
+            return withPermit(super.getConnection(), holding);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        AtomicInteger holding = held.get();
+        if (holding.get() > 0) {
+            return super.getConnection(username, password);
+        }
+        acquirePermit();
+        try {
+            return withPermit(super.getConnection(username, password), holding);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    public int getMaxPermits() {
+        return maxPermits;
+    }
+
+    public int getAvailablePermits() {
+        return permits.availablePermits();
+    }
+
+    /**
+     * @return an estimate of the number of callers waiting for a permit
+     */
+    public int getWaitingCallers() {
+        return permits.getQueueLength();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("rowmatch.db.permits.available", permits, Semaphore::availablePermits)
+                .description("Database permits not in use")
+                .register(registry);
+        Gauge.builder("rowmatch.db.permits.waiting", permits, Semaphore::getQueueLength)
+                .description("Callers waiting for a database permit")
+                .register(registry);
+        timeouts = Counter.builder("rowmatch.db.permits.timeouts")
+                .description("Callers that gave up waiting for a database permit")
+                .register(registry);
+        waitTimer = Timer.builder("rowmatch.db.permits.wait")
+                .description("Time spent waiting for a database permit")
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private void acquirePermit() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            boolean acquired = permits.tryAcquire(acquireTimeout.toNanos(), TimeUnit.NANOSECONDS);
+            recordWait(start, acquired);
+            if (!acquired) {
+                throw new SQLTransientConnectionException(
+                        "No database permit available within " + acquireTimeout + ", " + maxPermits + " in use");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a database permit", e);
+        }
+    }
+
+    private void recordWait(long start, boolean acquired) {
+        if (waitTimer != null) {
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (!acquired) {
+                timeouts.increment();
+            }
+        }
+    }
+
+    private Connection withPermit(Connection connection, AtomicInteger holding) {
+        holding.incrementAndGet();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new PermitReleasingHandler(connection, holding));
+    }
+
+    private final class PermitReleasingHandler implements InvocationHandler {
+
+        private final Connection target;
+        // counter of the thread that took the permit, the connection may be closed by another one
+        private final AtomicInteger holding;
+        private boolean released;
+
+        private PermitReleasingHandler(Connection target, AtomicInteger holding) {
+            this.target = target;
+            this.holding = holding;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "close":
+                    try {
+                        target.close();
+                    } finally {
+                        releaseOnce();
+                    }
+                    return null;
+                default:
+                    try {
+                        return method.invoke(target, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    }
+            }
+        }
+
+        private synchronized void releaseOnce() {
+            // close() may be called more than once, the permit must come back exactly once
+            if (!released) {
+                released = true;
+                holding.decrementAndGet();
+                permits.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.isazobu.rowmatch.backend.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.PhysicalConnectionHandlingMode;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replaces the single application data source with a primary and {@code rowmatch.datasource.replicas.urls}
+ * replicas behind a {@link ReplicaRoutingDataSource}.
+ * <p>
+ * The primary is configured by {@code spring.datasource.*}. The replicas share its credentials and pool settings,
+ * which {@code rowmatch.datasource.replicas.username}, {@code password} and {@code hikari.*} override. A replica
+ * pool does not fail the startup when its database is down, it is simply not routed to.
+ */
+@Configuration
+@ConditionalOnProperty(name = "rowmatch.datasource.replicas.enabled", havingValue = "true")
+public class ReplicaDataSourceConfig {
+
+    @Bean
+    public DataSource replicaRoutingDataSource(DataSourceProperties properties, Environment environment,
+                                               ObjectProvider<MeterRegistry> meterRegistry) {
+        Binder binder = Binder.get(environment);
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        if (primary.getPoolName() == null) {
+            primary.setPoolName("primary");
+        }
+
+        List<String> urls = binder.bind("rowmatch.datasource.replicas.urls", Bindable.listOf(String.class))
+                .orElse(List.of());
+        List<HikariDataSource> replicas = new ArrayList<>(urls.size());
+        for (int i = 0; i < urls.size(); i++) {
+            HikariDataSource replica = new HikariDataSource();
+            primary.copyStateTo(replica);
+            replica.setJdbcUrl(urls.get(i));
+            replica.setPoolName("replica-" + (i + 1));
+            binder.bind("rowmatch.datasource.replicas.username", String.class).ifBound(replica::setUsername);
+            binder.bind("rowmatch.datasource.replicas.password", String.class).ifBound(replica::setPassword);
+            binder.bind("rowmatch.datasource.replicas.hikari", Bindable.ofInstance(replica));
+            replica.setInitializationFailTimeout(-1);
+            replicas.add(replica);
+        }
+
+        // the pools are not beans, so the pool metrics of Spring Boot do not see them
+        if (registry != null) {
+            primary.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry));
+            replicas.forEach(replica -> replica.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry)));
+        }
+
+        Duration healthCheckInterval = binder.bind("rowmatch.datasource.replicas.health-check-interval", Duration.class)
+                .orElse(Duration.ofSeconds(5));
+        return new ReplicaRoutingDataSource(primary, replicas, healthCheckInterval);
+    }
+
+    /**
+     * The data source of the application. Its connections only reach the routing data source with the first
+     * statement, when the transaction has been marked read-only or not.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("replicaRoutingDataSource") DataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+
+    /**
+     * Open session in view keeps the entity manager of a request, by default together with its connection. A
+     * connection taken by a read-only transaction would then serve the writes that follow, so it is given back
+     * after every transaction instead.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer replicaConnectionHandling() {
+        return properties -> properties.put(AvailableSettings.CONNECTION_HANDLING,
+                PhysicalConnectionHandlingMode.DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION);
+    }
+
+    @Bean
+    public MeterBinder replicaMetrics(@Qualifier("replicaRoutingDataSource") DataSource replicaRoutingDataSource) {
+        return registry -> {
+            try {
+                replicaRoutingDataSource.unwrap(ReplicaRoutingDataSource.class).bindTo(registry);
+            } catch (SQLException e) {
+                throw new IllegalStateException("replicaRoutingDataSource is not a ReplicaRoutingDataSource", e);
+            }
+        };
+    }
+}
@@ -0,0 +1,197 @@
+package com.isazobu.rowmatch.backend.datasource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Data source that sends the connections of read-only transactions to the replicas, round robin, and every other
+ * connection to the primary.
+ * <p>
+ * A transaction counts as read-only when it was started with {@code @Transactional(readOnly = true)} and does not
+ * run inside a writing transaction. The flag is only set once the transaction has begun, so this data source must
+ * sit behind a {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}, which asks for the
+ * connection on the first statement.
+ * <p>
+ * Every {@code healthCheckInterval} each replica has to hand out a valid connection, a replica that fails is skipped
+ * until it passes again. A replica that fails to hand out a connection for a read is skipped right away. Without a
+ * healthy replica reads go to the primary. The number of healthy replicas and of reads sent to the primary because
+ * none was healthy are recorded as {@code rowmatch.db.replicas.healthy} and {@code rowmatch.db.replicas.fallbacks}.
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final DataSource primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final Duration healthCheckInterval;
+    private final AtomicInteger next = new AtomicInteger();
+    private volatile Counter fallbacks;
+    private ScheduledExecutorService scheduler;
+
+    public ReplicaRoutingDataSource(DataSource primary, List<? extends DataSource> replicas,
+                                    Duration healthCheckInterval) {
+        this.primary = primary;
+        for (int i = 0; i < replicas.size(); i++) {
+            this.replicas.add(new Replica("replica-" + (i + 1), replicas.get(i)));
+        }
+        this.healthCheckInterval = healthCheckInterval;
+    }
+
+    @PostConstruct
+    public void start() {
+        // replicas only receive reads once they passed a check, a replica that is down does not block the startup
+        checkHealth();
+        if (replicas.isEmpty()) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-health-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = healthCheckInterval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::checkHealth, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return connect(DataSource::getConnection);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return connect(dataSource -> dataSource.getConnection(username, password));
+    }
+
+    private Connection connect(ConnectionFactory factory) throws SQLException {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return factory.connect(primary);
+        }
+        Replica replica = nextHealthyReplica();
+        if (replica != null) {
+            try {
+                return factory.connect(replica.dataSource);
+            } catch (SQLException e) {
+                replica.healthy = false;
+                log.warn("Replica {} failed to hand out a connection, reading from the primary until it recovers",
+                        replica.name, e);
+            }
+        }
+        if (fallbacks != null) {
+            fallbacks.increment();
+        }
+        return factory.connect(primary);
+    }
+
+    private Replica nextHealthyReplica() {
+        int size = replicas.size();
+        if (size == 0) {
+            return null;
+        }
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.healthy) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks every replica now, this also runs every health check interval.
+     */
+    public void checkHealth() {
+        for (Replica replica : replicas) {
+            boolean healthy;
+            try (Connection connection = replica.dataSource.getConnection()) {
+                healthy = connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+            } catch (SQLException | RuntimeException e) {
+                healthy = false;
+            }
+            if (healthy != replica.healthy) {
+                if (healthy) {
+                    log.info("Replica {} is healthy, routing reads to it", replica.name);
+                } else {
+                    log.warn("Replica {} failed its health check, reading from the primary until it recovers",
+                            replica.name);
+                }
+            }
+            replica.healthy = healthy;
+        }
+    }
+
+    public int getHealthyReplicas() {
+        return (int) replicas.stream().filter(replica -> replica.healthy).count();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("rowmatch.db.replicas.healthy", this, ReplicaRoutingDataSource::getHealthyReplicas)
+                .description("Replicas that read-only transactions are routed to")
+                .register(registry);
+        fallbacks = Counter.builder("rowmatch.db.replicas.fallbacks")
+                .description("Read-only connections taken from the primary because no replica was healthy")
+                .register(registry);
+    }
+
+    @PreDestroy
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        // the pools are not beans of their own, so nobody else closes them
+        closeQuietly(primary);
+        replicas.forEach(replica -> closeQuietly(replica.dataSource));
+    }
+
+    private static void closeQuietly(DataSource dataSource) {
+        if (dataSource instanceof Closeable closeable) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                log.warn("Failed to close a data source", e);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface ConnectionFactory {
+        Connection connect(DataSource dataSource) throws SQLException;
+    }
+
+    private static final class Replica {
+
+        private final String name;
+        private final DataSource dataSource;
+        private volatile boolean healthy;
+
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.isazobu.rowmatch.backend.events;
+
+/**
+ * One slot of the {@link DomainEventBus} ring buffer. Slots are allocated once and overwritten by later events, so a
+ * consumer must copy the fields it keeps beyond {@link DomainEventConsumer#onEvent}. Fields an event type does not
+ * set are 0.
+ */
+public final class DomainEvent {
+
+    private DomainEventType type;
+    private long userId;
+    private long teamId;
+    private int level;
+    private long timestamp;
+
+    DomainEvent() {
+    }
+
+    void set(DomainEventType type, long userId, long teamId, int level, long timestamp) {
+        this.type = type;
+        this.userId = userId;
+        this.teamId = teamId;
+        this.level = level;
+        this.timestamp = timestamp;
+    }
+
+    public DomainEventType getType() {
+        return type;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public long getTeamId() {
+        return teamId;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    // System.currentTimeMillis() when the event was published
+    public long getTimestamp() {
+        return timestamp;
+    }
+}
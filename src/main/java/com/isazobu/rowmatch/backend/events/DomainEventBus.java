@@ -0,0 +1,239 @@
+package com.isazobu.rowmatch.backend.events;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * In-process bus for game events, a ring buffer of preallocated {@link DomainEvent} slots in the style of a
+ * disruptor.
+ * <p>
+ * Publishing claims the next sequence with one atomic increment, writes the fields into the slot of that sequence
+ * and marks the slot published, without locking or allocating. Every {@link DomainEventConsumer} bean reads the
+ * events in order on a thread of its own, in batches of everything published since its last batch, up to
+ * {@code rowmatch.events.batch-size}. A publisher that would overwrite an event some consumer has not read yet waits
+ * for it, so events are never lost while the application runs. Events still being published when the application
+ * stops are dropped.
+ * <p>
+ * Without consumers, or unless {@code rowmatch.events.enabled=true}, publishing does nothing. The published events,
+ * the events each consumer is behind, the exceptions thrown by consumers and the publishes that had to wait for a
+ * consumer are recorded as {@code rowmatch.events.*} metrics.
+ */
+@Component
+public class DomainEventBus implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(DomainEventBus.class);
+
+    // how long an idle consumer and a publisher waiting for a free slot sleep between checks
+    private static final long IDLE_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final long FULL_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(1);
+
+    private final boolean enabled;
+    private final DomainEvent[] slots;
+    // sequence last published in each slot, -1 before the first one
+    private final AtomicLongArray published;
+    private final int mask;
+    private final int batchSize;
+    private final List<Worker> workers = new ArrayList<>();
+    // next sequence to claim
+    private final AtomicLong next = new AtomicLong();
+    // lowest sequence every consumer has read, as last seen by a publisher
+    private volatile long cachedConsumed = -1;
+    private volatile boolean running;
+    private volatile Counter backpressure;
+
+    public DomainEventBus(List<DomainEventConsumer> consumers,
+                          @Value("${rowmatch.events.enabled:false}") boolean enabled,
+                          @Value("${rowmatch.events.buffer-size:65536}") int bufferSize,
+                          @Value("${rowmatch.events.batch-size:256}") int batchSize) {
+        if (bufferSize < 1 || Integer.bitCount(bufferSize) != 1) {
+            throw new IllegalArgumentException("rowmatch.events.buffer-size must be a power of two");
+        }
+        this.enabled = enabled && !consumers.isEmpty();
+        this.slots = new DomainEvent[bufferSize];
+        this.published = new AtomicLongArray(bufferSize);
+        for (int i = 0; i < bufferSize; i++) {
+            slots[i] = new DomainEvent();
+            published.set(i, -1);
+        }
+        this.mask = bufferSize - 1;
+        this.batchSize = Math.max(1, batchSize);
+        for (DomainEventConsumer consumer : consumers) {
+            workers.add(new Worker(consumer));
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        for (Worker worker : workers) {
+            worker.thread.start();
+        }
+    }
+
+    /**
+     * Stops the consumers once they have read every published event, or after ten seconds.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        for (Worker worker : workers) {
+            worker.thread.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    public void levelCompleted(long userId, int level) {
+        publish(DomainEventType.LEVEL_COMPLETED, userId, 0, level);
+    }
+
+    public void teamJoined(Long userId, Long teamId) {
+        publish(DomainEventType.TEAM_JOINED, userId, teamId, 0);
+    }
+
+    public void teamLeft(Long userId, Long teamId) {
+        publish(DomainEventType.TEAM_LEFT, userId, teamId, 0);
+    }
+
+    public void teamDisbanded(Long userId, Long teamId) {
+        publish(DomainEventType.TEAM_DISBANDED, userId, teamId, 0);
+    }
+
+    private void publish(DomainEventType type, long userId, long teamId, int level) {
+        if (!running) {
+            return;
+        }
+        long sequence = next.getAndIncrement();
+        // the slot still holds the event of one lap earlier until every consumer has read it
+        long wrapPoint = sequence - slots.length;
+        if (wrapPoint > cachedConsumed) {
+            long consumed = consumedByAll();
+            if (wrapPoint > consumed && backpressure != null) {
+                backpressure.increment();
+            }
+            while (wrapPoint > consumed) {
+                if (!running) {
+                    return;
+                }
+                LockSupport.parkNanos(FULL_WAIT_NANOS);
+                consumed = consumedByAll();
+            }
+            cachedConsumed = consumed;
+        }
+        int index = (int) sequence & mask;
+        slots[index].set(type, userId, teamId, level, System.currentTimeMillis());
+        published.lazySet(index, sequence);
+    }
+
+    private long consumedByAll() {
+        long minimum = Long.MAX_VALUE;
+        for (Worker worker : workers) {
+            minimum = Math.min(minimum, worker.consumed.get());
+        }
+        return minimum;
+    }
+
+    /**
+     * Number of published events the consumer has not read yet.
+     */
+    public long lag(String consumer) {
+        for (Worker worker : workers) {
+            if (worker.consumer.name().equals(consumer)) {
+                return worker.lag();
+            }
+        }
+        throw new IllegalArgumentException("Unknown event consumer " + consumer);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (!enabled) {
+            return;
+        }
+        FunctionCounter.builder("rowmatch.events.published", next, AtomicLong::get)
+                .description("Game events published to the in-process event bus")
+                .register(registry);
+        backpressure = Counter.builder("rowmatch.events.backpressure")
+                .description("Events whose publisher waited for the slowest consumer to free a slot")
+                .register(registry);
+        for (Worker worker : workers) {
+            Gauge.builder("rowmatch.events.lag", worker, Worker::lag)
+                    .description("Published events the consumer has not read yet")
+                    .tag("consumer", worker.consumer.name())
+                    .register(registry);
+            worker.errors = Counter.builder("rowmatch.events.consumer.errors")
+                    .description("Events a consumer failed to handle")
+                    .tag("consumer", worker.consumer.name())
+                    .register(registry);
+        }
+    }
+
+    private final class Worker implements Runnable {
+
+        private final DomainEventConsumer consumer;
+        private final Thread thread;
+        // last sequence the consumer has read
+        private final AtomicLong consumed = new AtomicLong(-1);
+        private volatile Counter errors;
+
+        private Worker(DomainEventConsumer consumer) {
+            this.consumer = consumer;
+            this.thread = new Thread(this, "events-" + consumer.name());
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            long nextSequence = 0;
+            while (true) {
+                // everything published in order since the last batch, publishers may finish out of order
+                long available = nextSequence - 1;
+                long limit = nextSequence + batchSize;
+                while (available + 1 < limit && published.get((int) (available + 1) & mask) == available + 1) {
+                    available++;
+                }
+                if (available < nextSequence) {
+                    if (!running) {
+                        return;
+                    }
+                    LockSupport.parkNanos(IDLE_WAIT_NANOS);
+                    continue;
+                }
+                for (long sequence = nextSequence; sequence <= available; sequence++) {
+                    try {
+                        consumer.onEvent(slots[(int) sequence & mask], sequence == available);
+                    } catch (RuntimeException e) {
+                        if (errors != null) {
+                            errors.increment();
+                        }
+                        log.error("Event consumer {} failed to handle event {}", consumer.name(), sequence, e);
+                    }
+                }
+                consumed.lazySet(available);
+                nextSequence = available + 1;
+            }
+        }
+
+        private long lag() {
+            // claimed but unpublished events count as well
+            return Math.max(0, next.get() - 1 - consumed.get());
+        }
+    }
+}
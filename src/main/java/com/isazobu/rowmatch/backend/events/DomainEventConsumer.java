@@ -0,0 +1,22 @@
+package com.isazobu.rowmatch.backend.events;
+
+/**
+ * Side effect of game events that runs off the request path, on a thread of its own. Every bean implementing this
+ * interface receives every event published to the {@link DomainEventBus}, in publishing order.
+ */
+public interface DomainEventConsumer {
+
+    /**
+     * Handles one event. The event is only valid during the call, its slot is reused afterwards.
+     *
+     * @param endOfBatch true for the last event that was available, e.g. to flush work collected for the batch
+     */
+    void onEvent(DomainEvent event, boolean endOfBatch);
+
+    /**
+     * The name of the consumer thread and of the {@code consumer} tag of its metrics.
+     */
+    default String name() {
+        return getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,16 @@
+package com.isazobu.rowmatch.backend.events;
+
+/**
+ * Kinds of {@link DomainEvent}, the fields each one sets are listed with the constant.
+ */
+public enum DomainEventType {
+
+    // userId, level: the level the user reached
+    LEVEL_COMPLETED,
+    // userId, teamId: also published for the user who created the team
+    TEAM_JOINED,
+    // userId, teamId: the team still has members
+    TEAM_LEFT,
+    // userId, teamId: the last member left and the team was deleted
+    TEAM_DISBANDED
+}
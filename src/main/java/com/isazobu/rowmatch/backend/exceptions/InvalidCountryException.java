@@ -0,0 +1,7 @@
+package com.isazobu.rowmatch.backend.exceptions;
+
+public class InvalidCountryException extends RuntimeException {
+    public InvalidCountryException(String message) {
+        super(message);
+    }
+}
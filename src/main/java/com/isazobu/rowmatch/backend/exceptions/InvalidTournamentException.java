@@ -0,0 +1,7 @@
+package com.isazobu.rowmatch.backend.exceptions;
+
+public class InvalidTournamentException extends RuntimeException {
+    public InvalidTournamentException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.isazobu.rowmatch.backend.exceptions;
+
+public class InvalidUserBatchException extends RuntimeException {
+    public InvalidUserBatchException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.isazobu.rowmatch.backend.exceptions;
+
+public class NotTournamentNodeException extends RuntimeException {
+    public NotTournamentNodeException(String message) {
+        super(message);
+    }
+}
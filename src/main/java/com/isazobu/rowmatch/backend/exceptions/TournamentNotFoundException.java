@@ -0,0 +1,7 @@
+package com.isazobu.rowmatch.backend.exceptions;
+
+public class TournamentNotFoundException extends RuntimeException {
+    public TournamentNotFoundException(String message) {
+        super(message);
+    }
+}
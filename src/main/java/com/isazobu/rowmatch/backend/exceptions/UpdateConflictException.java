@@ -0,0 +1,7 @@
+package com.isazobu.rowmatch.backend.exceptions;
+
+public class UpdateConflictException extends RuntimeException {
+    public UpdateConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,110 @@
+package com.isazobu.rowmatch.backend.filter;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Counting Bloom filter over strings, sized for an expected number of keys and false positive rate.
+ * <p>
+ * Every key increments {@code k} 4-bit counters, eight of which are packed into an int and updated with
+ * compare-and-set, so the filter is thread-safe without locks and needs half a byte per counter. Removing a key
+ * decrements its counters again. A counter that reached 15 stays there, so an overflow can only cause false
+ * positives, never false negatives. The {@code k} positions come from two 64-bit hashes
+ * (Kirsch and Mitzenmacher, "Less Hashing, Same Performance").
+ */
+public class CountingBloomFilter {
+
+    private static final int MAX_COUNT = 15;
+
+    private final AtomicIntegerArray words;
+    private final long counters;
+    private final int hashes;
+
+    public CountingBloomFilter(long expectedKeys, double falsePositiveRate) {
+        if (expectedKeys <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("expected keys must be positive and the false positive rate in (0, 1)");
+        }
+        long size = (long) Math.ceil(-expectedKeys * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        // at most as many counters as fit into an int array
+        this.counters = Math.max(64, Math.min(size, (long) Integer.MAX_VALUE * 8));
+        this.hashes = Math.max(1, (int) Math.round((double) counters / expectedKeys * Math.log(2)));
+        this.words = new AtomicIntegerArray((int) ((counters + 7) / 8));
+    }
+
+    public void add(String key) {
+        long hash1 = hash(key);
+        long hash2 = mix(hash1 ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashes; i++) {
+            update(Math.floorMod(hash1 + i * hash2, counters), 1);
+        }
+    }
+
+    public void remove(String key) {
+        long hash1 = hash(key);
+        long hash2 = mix(hash1 ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashes; i++) {
+            update(Math.floorMod(hash1 + i * hash2, counters), -1);
+        }
+    }
+
+    /**
+     * @return false if the key was certainly never added, true if it may have been
+     */
+    public boolean mightContain(String key) {
+        long hash1 = hash(key);
+        long hash2 = mix(hash1 ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashes; i++) {
+            if (count(Math.floorMod(hash1 + i * hash2, counters)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    long counters() {
+        return counters;
+    }
+
+    int hashes() {
+        return hashes;
+    }
+
+    int count(long counter) {
+        int shift = (int) (counter & 7) * 4;
+        return (words.get((int) (counter >>> 3)) >>> shift) & MAX_COUNT;
+    }
+
+    private void update(long counter, int delta) {
+        int index = (int) (counter >>> 3);
+        int shift = (int) (counter & 7) * 4;
+        while (true) {
+            int word = words.get(index);
+            int count = (word >>> shift) & MAX_COUNT;
+            // saturated counters are sticky, empty ones cannot go below zero
+            if (count == MAX_COUNT || (delta < 0 && count == 0)) {
+                return;
+            }
+            int updated = (word & ~(MAX_COUNT << shift)) | ((count + delta) << shift);
+            if (words.compareAndSet(index, word, updated)) {
+                return;
+            }
+        }
+    }
+
+    // FNV-1a over the UTF-16 chars, finished with the MurmurHash3 mixer
+    private static long hash(String key) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash = (hash ^ key.charAt(i)) * 0x100000001B3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,85 @@
+package com.isazobu.rowmatch.backend.filter;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Locale;
+
+/**
+ * Counting Bloom filters of the existing user and team names, so that the name checks of user and team creation
+ * only reach the database when the name may already be taken.
+ * <p>
+ * The filters must never miss a name stored in the database, so until {@link #load} has run every name may exist,
+ * and removals are ignored until then. Names are lowercased because the unique indexes compare them
+ * case-insensitively in MySQL. Names inserted by other instances or differing only in accents are still missed, so
+ * the unique constraints remain the final check and a duplicate key is reported like an existing name.
+ */
+@Component
+public class NameFilters {
+
+    private final boolean enabled;
+    private final CountingBloomFilter userNames;
+    private final CountingBloomFilter teamNames;
+
+    private volatile boolean loaded;
+
+    public NameFilters(@Value("${rowmatch.name-filters.enabled:true}") boolean enabled,
+                       @Value("${rowmatch.name-filters.expected-users:1000000}") long expectedUsers,
+                       @Value("${rowmatch.name-filters.expected-teams:100000}") long expectedTeams,
+                       @Value("${rowmatch.name-filters.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.enabled = enabled;
+        this.userNames = new CountingBloomFilter(expectedUsers, falsePositiveRate);
+        this.teamNames = new CountingBloomFilter(expectedTeams, falsePositiveRate);
+    }
+
+    /**
+     * Adds the names stored in the database. Names added or removed concurrently are kept.
+     */
+    public void load(Collection<String> users, Collection<String> teams) {
+        users.forEach(this::userNameAdded);
+        teams.forEach(this::teamNameAdded);
+        loaded = true;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * @return false if no user has the name, true if the database must be asked
+     */
+    public boolean userNameMightExist(String name) {
+        return !enabled || !loaded || name == null || userNames.mightContain(key(name));
+    }
+
+    public void userNameAdded(String name) {
+        if (name != null) {
+            userNames.add(key(name));
+        }
+    }
+
+    /**
+     * @return false if no team has the name, true if the database must be asked
+     */
+    public boolean teamNameMightExist(String name) {
+        return !enabled || !loaded || name == null || teamNames.mightContain(key(name));
+    }
+
+    public void teamNameAdded(String name) {
+        if (name != null) {
+            teamNames.add(key(name));
+        }
+    }
+
+    public void teamNameRemoved(String name) {
+        // before loading, the counters may not include the name yet
+        if (loaded && name != null) {
+            teamNames.remove(key(name));
+        }
+    }
+
+    private static String key(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
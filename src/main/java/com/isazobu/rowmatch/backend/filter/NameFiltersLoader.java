@@ -0,0 +1,34 @@
+package com.isazobu.rowmatch.backend.filter;
+
+import com.isazobu.rowmatch.backend.team.dto.GetTeams;
+import com.isazobu.rowmatch.backend.team.repository.TeamRepository;
+import com.isazobu.rowmatch.backend.user.repository.UserRepository;
+import jakarta.transaction.Transactional;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Loads the existing user and team names into the {@link NameFilters} once the application is ready,
+ * i.e. after the sample data loader has run.
+ */
+@Component
+public class NameFiltersLoader {
+
+    private final UserRepository userRepository;
+    private final TeamRepository teamRepository;
+    private final NameFilters nameFilters;
+
+    public NameFiltersLoader(UserRepository userRepository, TeamRepository teamRepository, NameFilters nameFilters) {
+        this.userRepository = userRepository;
+        this.teamRepository = teamRepository;
+        this.nameFilters = nameFilters;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void load() {
+        nameFilters.load(userRepository.findAllNames(),
+                teamRepository.findAllTeams().stream().map(GetTeams::getName).toList());
+    }
+}
@@ -0,0 +1,43 @@
+package com.isazobu.rowmatch.backend.leaderboard.controller;
+
+import com.isazobu.rowmatch.backend.leaderboard.dto.LeaderboardEntry;
+import com.isazobu.rowmatch.backend.leaderboard.dto.PlayerRanking;
+import com.isazobu.rowmatch.backend.leaderboard.dto.TeamLeaderboardEntry;
+import com.isazobu.rowmatch.backend.leaderboard.service.LeaderboardService;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/v1/leaderboard")
+public class LeaderboardController {
+
+    private final LeaderboardService leaderboardService;
+
+    public LeaderboardController(LeaderboardService leaderboardService) {
+        this.leaderboardService = leaderboardService;
+    }
+
+    @GetMapping
+    public List<LeaderboardEntry> getTop(@RequestParam(required = false) String country,
+                                         @RequestParam(defaultValue = "100") int limit) {
+        return leaderboardService.getTop(country, limit);
+    }
+
+    @GetMapping("/me")
+    public PlayerRanking getRanking(@RequestHeader("Authorization") String token,
+                                    @RequestParam(defaultValue = "false") boolean country,
+                                    @RequestParam(defaultValue = "5") int neighbours) {
+        return leaderboardService.getRanking(token, country, neighbours);
+    }
+
+    @GetMapping("/teams")
+    public List<TeamLeaderboardEntry> getTopTeams(@RequestParam(defaultValue = "100") int limit) {
+        return leaderboardService.getTopTeams(limit);
+    }
+
+    @GetMapping("/teams/{teamId}")
+    public TeamLeaderboardEntry getTeamRanking(@PathVariable Long teamId) {
+        return leaderboardService.getTeamRanking(teamId);
+    }
+}
@@ -0,0 +1,24 @@
+package com.isazobu.rowmatch.backend.leaderboard.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class LeaderboardEntry {
+
+    private int rank;
+    private Long userId;
+    private String name;
+    private String country;
+    private int level;
+
+    // used by the repository to load the standings, the rank is assigned by the leaderboard
+    public LeaderboardEntry(Long userId, String name, String country, Integer level) {
+        this(0, userId, name, country, level);
+    }
+}
@@ -0,0 +1,22 @@
+package com.isazobu.rowmatch.backend.leaderboard.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class PlayerRanking {
+
+    // rank of the player on the board, 1 is the highest level
+    private int rank;
+    // number of players on the board
+    private int players;
+    // the player and the players ranked right above and below
+    private List<LeaderboardEntry> neighbours;
+}
@@ -0,0 +1,20 @@
+package com.isazobu.rowmatch.backend.leaderboard.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class TeamLeaderboardEntry {
+
+    private int rank;
+    private Long teamId;
+    private String name;
+    // sum of the levels of the members
+    private long score;
+    private int memberCount;
+}
@@ -0,0 +1,21 @@
+package com.isazobu.rowmatch.backend.leaderboard.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Team membership and level of one user, as stored in the database.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class TeamMemberLevel {
+
+    private Long teamId;
+    private String teamName;
+    private Long userId;
+    private Integer level;
+}
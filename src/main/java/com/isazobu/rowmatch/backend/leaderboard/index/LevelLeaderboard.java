@@ -0,0 +1,138 @@
+package com.isazobu.rowmatch.backend.leaderboard.index;
+
+import com.isazobu.rowmatch.backend.leaderboard.dto.LeaderboardEntry;
+import com.isazobu.rowmatch.backend.leaderboard.dto.PlayerRanking;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * In-memory level leaderboard, global and per country.
+ * <p>
+ * Each board is an {@link OrderStatisticSkipList} ordered by level, highest first. Players on the same level
+ * are ordered by user id, i.e. by registration. Rank lookups, top N and neighbour queries are O(log n + N),
+ * and a level change is a removal and an insertion. The leaderboard is kept up to date by the user service and rebuilt from the
+ * database at startup.
+ */
+@Component
+public class LevelLeaderboard {
+
+    private static final Comparator<Standing> ORDER = Comparator.comparingInt(Standing::level).reversed()
+            .thenComparingLong(Standing::userId);
+
+    private final OrderStatisticSkipList<Standing> global = new OrderStatisticSkipList<>(ORDER);
+    private final Map<String, OrderStatisticSkipList<Standing>> countries = new HashMap<>();
+    private final Map<Long, Standing> standings = new HashMap<>();
+
+    /**
+     * Replaces the content of the leaderboard with the given players.
+     */
+    public synchronized void rebuild(Collection<LeaderboardEntry> players) {
+        global.clear();
+        countries.clear();
+        standings.clear();
+        for (LeaderboardEntry player : players) {
+            put(new Standing(player.getUserId(), player.getName(), player.getCountry(), player.getLevel()));
+        }
+    }
+
+    /**
+     * Adds the player, or moves them to their new level.
+     */
+    public synchronized void update(Long userId, String name, String country, int level) {
+        if (userId == null) {
+            return;
+        }
+        put(new Standing(userId, name, country, level));
+    }
+
+    /**
+     * Moves a known player to their new level.
+     *
+     * @return false if the player is not on the leaderboard
+     */
+    public synchronized boolean updateLevel(long userId, int level) {
+        Standing current = standings.get(userId);
+        if (current == null) {
+            return false;
+        }
+        put(new Standing(userId, current.name(), current.country(), level));
+        return true;
+    }
+
+    /**
+     * @param country ISO country code of the board, or null for the global board
+     * @return the {@code limit} best players of the board
+     */
+    public synchronized List<LeaderboardEntry> top(String country, int limit) {
+        OrderStatisticSkipList<Standing> board = board(country);
+        return board == null ? List.of() : entries(board, 0, limit);
+    }
+
+    /**
+     * @param countryBoard whether to rank the player in their country instead of globally
+     * @return the rank of the player with up to {@code neighbours} players above and below,
+     * or empty if the player is not on the board
+     */
+    public synchronized Optional<PlayerRanking> ranking(long userId, boolean countryBoard, int neighbours) {
+        Standing standing = standings.get(userId);
+        if (standing == null) {
+            return Optional.empty();
+        }
+        OrderStatisticSkipList<Standing> board = countryBoard ? countryBoard(standing.country()) : global;
+        if (board == null) {
+            return Optional.empty();
+        }
+        int index = board.indexOf(standing);
+        int from = Math.max(0, index - neighbours);
+        return Optional.of(new PlayerRanking(index + 1, board.size(),
+                entries(board, from, index - from + neighbours + 1)));
+    }
+
+    public synchronized int size() {
+        return global.size();
+    }
+
+    private void put(Standing standing) {
+        Standing previous = standings.put(standing.userId(), standing);
+        if (previous != null) {
+            global.remove(previous);
+            OrderStatisticSkipList<Standing> previousBoard = countryBoard(previous.country());
+            if (previousBoard != null) {
+                previousBoard.remove(previous);
+            }
+        }
+        global.add(standing);
+        if (standing.country() != null) {
+            countries.computeIfAbsent(standing.country(), country -> new OrderStatisticSkipList<>(ORDER)).add(standing);
+        }
+    }
+
+    private OrderStatisticSkipList<Standing> board(String country) {
+        return country == null ? global : countries.get(country);
+    }
+
+    private OrderStatisticSkipList<Standing> countryBoard(String country) {
+        return country == null ? null : countries.get(country);
+    }
+
+    private static List<LeaderboardEntry> entries(OrderStatisticSkipList<Standing> board, int from, int count) {
+        List<Standing> range = board.range(from, count);
+        List<LeaderboardEntry> entries = new ArrayList<>(range.size());
+        for (int i = 0; i < range.size(); i++) {
+            Standing standing = range.get(i);
+            entries.add(new LeaderboardEntry(from + i + 1, standing.userId(), standing.name(), standing.country(),
+                    standing.level()));
+        }
+        return entries;
+    }
+
+    private record Standing(long userId, String name, String country, int level) {
+    }
+}
@@ -0,0 +1,26 @@
+package com.isazobu.rowmatch.backend.leaderboard.index;
+
+import com.isazobu.rowmatch.backend.user.repository.UserRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rebuilds the {@link LevelLeaderboard} from the users table once the application is ready.
+ */
+@Component
+public class LevelLeaderboardLoader {
+
+    private final UserRepository userRepository;
+    private final LevelLeaderboard levelLeaderboard;
+
+    public LevelLeaderboardLoader(UserRepository userRepository, LevelLeaderboard levelLeaderboard) {
+        this.userRepository = userRepository;
+        this.levelLeaderboard = levelLeaderboard;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        levelLeaderboard.rebuild(userRepository.findLeaderboardEntries());
+    }
+}
@@ -0,0 +1,179 @@
+package com.isazobu.rowmatch.backend.leaderboard.index;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Sorted skip list whose links also store how many elements they skip, so that the position of an element
+ * and the element at a position are found in O(log n) expected time, next to O(log n) insertion and removal.
+ * <p>
+ * Elements are ordered by the comparator and must be distinct under it. Not thread-safe.
+ */
+final class OrderStatisticSkipList<T> {
+
+    private static final int MAX_LEVEL = 32;
+    private static final double LEVEL_PROBABILITY = 0.25;
+
+    private final Comparator<? super T> comparator;
+    private final Node<T> head = new Node<>(null, MAX_LEVEL);
+    private int level = 1;
+    private int size;
+
+    OrderStatisticSkipList(Comparator<? super T> comparator) {
+        this.comparator = comparator;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        for (int i = 0; i < MAX_LEVEL; i++) {
+            head.next[i] = null;
+            head.span[i] = 0;
+        }
+        level = 1;
+        size = 0;
+    }
+
+    void add(T value) {
+        @SuppressWarnings("unchecked")
+        Node<T>[] update = new Node[MAX_LEVEL];
+        int[] rank = new int[MAX_LEVEL];
+
+        Node<T> node = head;
+        for (int i = level - 1; i >= 0; i--) {
+            rank[i] = i == level - 1 ? 0 : rank[i + 1];
+            while (node.next[i] != null && comparator.compare(node.next[i].value, value) < 0) {
+                rank[i] += node.span[i];
+                node = node.next[i];
+            }
+            update[i] = node;
+        }
+
+        int nodeLevel = randomLevel();
+        if (nodeLevel > level) {
+            for (int i = level; i < nodeLevel; i++) {
+                rank[i] = 0;
+                update[i] = head;
+                head.span[i] = size;
+            }
+            level = nodeLevel;
+        }
+
+        Node<T> added = new Node<>(value, nodeLevel);
+        for (int i = 0; i < nodeLevel; i++) {
+            added.next[i] = update[i].next[i];
+            update[i].next[i] = added;
+            // the predecessor at level i is rank[0] - rank[i] elements before the new node
+            added.span[i] = update[i].span[i] - (rank[0] - rank[i]);
+            update[i].span[i] = rank[0] - rank[i] + 1;
+        }
+        for (int i = nodeLevel; i < level; i++) {
+            update[i].span[i]++;
+        }
+        size++;
+    }
+
+    /**
+     * @return true if the element was found and removed
+     */
+    boolean remove(T value) {
+        @SuppressWarnings("unchecked")
+        Node<T>[] update = new Node[MAX_LEVEL];
+
+        Node<T> node = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (node.next[i] != null && comparator.compare(node.next[i].value, value) < 0) {
+                node = node.next[i];
+            }
+            update[i] = node;
+        }
+
+        Node<T> removed = node.next[0];
+        if (removed == null || comparator.compare(removed.value, value) != 0) {
+            return false;
+        }
+        for (int i = 0; i < level; i++) {
+            if (update[i].next[i] == removed) {
+                update[i].span[i] += removed.span[i] - 1;
+                update[i].next[i] = removed.next[i];
+            } else {
+                update[i].span[i]--;
+            }
+        }
+        while (level > 1 && head.next[level - 1] == null) {
+            level--;
+        }
+        size--;
+        return true;
+    }
+
+    /**
+     * @return the zero-based position of the element, or -1 if it is not in the list
+     */
+    int indexOf(T value) {
+        int traversed = 0;
+        Node<T> node = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (node.next[i] != null && comparator.compare(node.next[i].value, value) <= 0) {
+                traversed += node.span[i];
+                node = node.next[i];
+            }
+            if (node != head && comparator.compare(node.value, value) == 0) {
+                return traversed - 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return up to {@code count} elements starting at the zero-based position {@code from}
+     */
+    List<T> range(int from, int count) {
+        List<T> values = new ArrayList<>(Math.max(0, Math.min(count, size - from)));
+        if (from < 0 || from >= size || count <= 0) {
+            return values;
+        }
+
+        int traversed = 0;
+        Node<T> node = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (node.next[i] != null && traversed + node.span[i] <= from + 1) {
+                traversed += node.span[i];
+                node = node.next[i];
+            }
+        }
+        while (node != null && values.size() < count) {
+            values.add(node.value);
+            node = node.next[0];
+        }
+        return values;
+    }
+
+    private static int randomLevel() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int nodeLevel = 1;
+        while (nodeLevel < MAX_LEVEL && random.nextDouble() < LEVEL_PROBABILITY) {
+            nodeLevel++;
+        }
+        return nodeLevel;
+    }
+
+    private static final class Node<T> {
+
+        private final T value;
+        private final Node<T>[] next;
+        // number of level 0 steps the link at each level skips over
+        private final int[] span;
+
+        @SuppressWarnings("unchecked")
+        private Node(T value, int level) {
+            this.value = value;
+            this.next = new Node[level];
+            this.span = new int[level];
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.isazobu.rowmatch.backend.leaderboard.index;
+
+import com.isazobu.rowmatch.backend.leaderboard.dto.TeamLeaderboardEntry;
+import com.isazobu.rowmatch.backend.leaderboard.dto.TeamMemberLevel;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * In-memory team leaderboard, ranking teams by the sum of their members' levels.
+ * <p>
+ * The score of every team is maintained incrementally: a level-up adds the difference to the member's team,
+ * a join or leave adds or subtracts the member's level, so no team ever has to load its members. Teams are
+ * kept in an {@link OrderStatisticSkipList} ordered by score, highest first, then by team id.
+ * <p>
+ * Updates are applied by the services after their transaction commits, so rolled back changes never reach it,
+ * but a crash between the commit and the update, or a change committed by another instance, makes the
+ * leaderboard drift from the database. {@link #reconcile} compares it with a database
+ * snapshot and corrects every member that differs; every change records a version, and members changed
+ * after the snapshot was started are left alone.
+ */
+@Component
+public class TeamLeaderboard {
+
+    private static final Comparator<TeamScore> ORDER = Comparator.comparingLong(TeamScore::score).reversed()
+            .thenComparingLong(TeamScore::teamId);
+
+    private final OrderStatisticSkipList<TeamScore> board = new OrderStatisticSkipList<>(ORDER);
+    private final Map<Long, TeamScore> teams = new HashMap<>();
+    private final Map<Long, Member> members = new HashMap<>();
+    // version of the change that removed a user from their team, kept until the next reconciliation
+    private final Map<Long, Long> departures = new HashMap<>();
+    private long version;
+
+    /**
+     * Replaces the content of the leaderboard with the given memberships.
+     */
+    public synchronized void rebuild(Collection<TeamMemberLevel> memberships) {
+        board.clear();
+        teams.clear();
+        members.clear();
+        departures.clear();
+        for (TeamMemberLevel membership : memberships) {
+            join(membership.getTeamId(), membership.getTeamName(), membership.getUserId(), membership.getLevel());
+        }
+    }
+
+    /**
+     * Adds the user to the team with their current level, moving them out of their previous team if any.
+     */
+    public synchronized void memberJoined(Long teamId, String teamName, Long userId, int level) {
+        if (teamId == null || userId == null) {
+            return;
+        }
+        join(teamId, teamName, userId, level);
+    }
+
+    /**
+     * Removes the user from their team. A team is dropped from the leaderboard with its last member.
+     */
+    public synchronized void memberLeft(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        leave(userId);
+    }
+
+    /**
+     * Adds the level difference of the user to the score of their team.
+     *
+     * @return false if the user is not in a team
+     */
+    public synchronized boolean levelChanged(Long userId, int level) {
+        Member member = userId == null ? null : members.get(userId);
+        if (member == null) {
+            return false;
+        }
+        members.put(userId, new Member(member.teamId(), level, ++version));
+        TeamScore team = teams.get(member.teamId());
+        put(team, new TeamScore(team.teamId(), team.name(), team.score() + level - member.level(), team.members()));
+        return true;
+    }
+
+    /**
+     * @return the {@code limit} teams with the highest scores
+     */
+    public synchronized List<TeamLeaderboardEntry> top(int limit) {
+        List<TeamScore> range = board.range(0, limit);
+        List<TeamLeaderboardEntry> entries = new ArrayList<>(range.size());
+        for (int i = 0; i < range.size(); i++) {
+            entries.add(entry(i + 1, range.get(i)));
+        }
+        return entries;
+    }
+
+    /**
+     * @return the rank and score of the team, or empty if the team is not on the leaderboard
+     */
+    public synchronized Optional<TeamLeaderboardEntry> ranking(long teamId) {
+        TeamScore team = teams.get(teamId);
+        return team == null ? Optional.empty() : Optional.of(entry(board.indexOf(team) + 1, team));
+    }
+
+    public synchronized int size() {
+        return board.size();
+    }
+
+    /**
+     * Version of the latest change, to be read before the snapshot passed to {@link #reconcile} is loaded.
+     */
+    public synchronized long version() {
+        return version;
+    }
+
+    /**
+     * Corrects every member whose team or level differs from the database snapshot, unless the member
+     * changed after {@code snapshotVersion}, in which case the snapshot may already be outdated.
+     *
+     * @param memberships the team and level of every user in a team, loaded after {@code snapshotVersion} was read
+     * @return the number of corrected members
+     */
+    public synchronized int reconcile(Collection<TeamMemberLevel> memberships, long snapshotVersion) {
+        int corrections = 0;
+        Map<Long, TeamMemberLevel> expected = new HashMap<>();
+        for (TeamMemberLevel membership : memberships) {
+            expected.put(membership.getUserId(), membership);
+        }
+
+        for (TeamMemberLevel membership : expected.values()) {
+            Member member = members.get(membership.getUserId());
+            long changed = member != null ? member.version() : departures.getOrDefault(membership.getUserId(), 0L);
+            if (changed > snapshotVersion) {
+                continue;
+            }
+            if (member == null || member.teamId() != membership.getTeamId()) {
+                join(membership.getTeamId(), membership.getTeamName(), membership.getUserId(), membership.getLevel());
+                corrections++;
+            } else if (member.level() != membership.getLevel()) {
+                levelChanged(membership.getUserId(), membership.getLevel());
+                corrections++;
+            }
+        }
+
+        for (Map.Entry<Long, Member> member : new ArrayList<>(members.entrySet())) {
+            if (!expected.containsKey(member.getKey()) && member.getValue().version() <= snapshotVersion) {
+                leave(member.getKey());
+                corrections++;
+            }
+        }
+
+        departures.values().removeIf(changed -> changed <= snapshotVersion);
+        return corrections;
+    }
+
+    private void join(long teamId, String teamName, long userId, int level) {
+        leave(userId);
+        members.put(userId, new Member(teamId, level, ++version));
+        departures.remove(userId);
+        TeamScore team = teams.get(teamId);
+        put(team, team == null
+                ? new TeamScore(teamId, teamName, level, 1)
+                : new TeamScore(teamId, team.name(), team.score() + level, team.members() + 1));
+    }
+
+    private void leave(long userId) {
+        Member member = members.remove(userId);
+        if (member == null) {
+            return;
+        }
+        departures.put(userId, ++version);
+        TeamScore team = teams.get(member.teamId());
+        if (team.members() == 1) {
+            teams.remove(team.teamId());
+            board.remove(team);
+            return;
+        }
+        put(team, new TeamScore(team.teamId(), team.name(), team.score() - member.level(), team.members() - 1));
+    }
+
+    private void put(TeamScore previous, TeamScore team) {
+        if (previous != null) {
+            board.remove(previous);
+        }
+        teams.put(team.teamId(), team);
+        board.add(team);
+    }
+
+    private static TeamLeaderboardEntry entry(int rank, TeamScore team) {
+        return new TeamLeaderboardEntry(rank, team.teamId(), team.name(), team.score(), team.members());
+    }
+
+    private record TeamScore(long teamId, String name, long score, int members) {
+    }
+
+    private record Member(long teamId, int level, long version) {
+    }
+}
@@ -0,0 +1,89 @@
+package com.isazobu.rowmatch.backend.leaderboard.index;
+
+import com.isazobu.rowmatch.backend.metrics.GameMetrics;
+import com.isazobu.rowmatch.backend.user.repository.UserRepository;
+import com.isazobu.rowmatch.backend.user.service.LevelProgressBuffer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the {@link TeamLeaderboard} from the users table once the application is ready, then compares it
+ * with the database every {@code reconcile-interval} and corrects the drift.
+ */
+@Component
+public class TeamLeaderboardReconciler {
+
+    private static final Logger log = LoggerFactory.getLogger(TeamLeaderboardReconciler.class);
+
+    private final UserRepository userRepository;
+    private final TeamLeaderboard teamLeaderboard;
+    private final LevelProgressBuffer levelProgressBuffer;
+    private final GameMetrics gameMetrics;
+    private final Duration reconcileInterval;
+    private ScheduledExecutorService scheduler;
+
+    public TeamLeaderboardReconciler(UserRepository userRepository, TeamLeaderboard teamLeaderboard,
+                                     LevelProgressBuffer levelProgressBuffer, GameMetrics gameMetrics,
+                                     @Value("${rowmatch.leaderboard.teams.reconcile-interval:5m}") Duration reconcileInterval) {
+        this.userRepository = userRepository;
+        this.teamLeaderboard = teamLeaderboard;
+        this.levelProgressBuffer = levelProgressBuffer;
+        this.gameMetrics = gameMetrics;
+        this.reconcileInterval = reconcileInterval;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        teamLeaderboard.rebuild(userRepository.findTeamMemberLevels());
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "team-leaderboard-reconcile");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = reconcileInterval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::reconcileQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Corrects the team leaderboard from the database.
+     *
+     * @return the number of corrected members
+     */
+    public int reconcile() {
+        long snapshotVersion = teamLeaderboard.version();
+        // buffered levels are already on the leaderboard, write them so the snapshot agrees
+        levelProgressBuffer.flush();
+        int corrections = teamLeaderboard.reconcile(userRepository.findTeamMemberLevels(), snapshotVersion);
+        if (corrections > 0) {
+            log.warn("Corrected {} members of the team leaderboard from the database", corrections);
+            gameMetrics.teamLeaderboardCorrected(corrections);
+        }
+        return corrections;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private void reconcileQuietly() {
+        try {
+            reconcile();
+        } catch (RuntimeException e) {
+            log.error("Could not reconcile the team leaderboard, will retry", e);
+        }
+    }
+}
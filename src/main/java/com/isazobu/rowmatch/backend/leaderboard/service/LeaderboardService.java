@@ -0,0 +1,48 @@
+package com.isazobu.rowmatch.backend.leaderboard.service;
+
+import com.isazobu.rowmatch.backend.exceptions.InvalidCountryException;
+import com.isazobu.rowmatch.backend.exceptions.TeamNotFoundException;
+import com.isazobu.rowmatch.backend.exceptions.UserNotFoundException;
+import com.isazobu.rowmatch.backend.leaderboard.dto.LeaderboardEntry;
+import com.isazobu.rowmatch.backend.leaderboard.dto.PlayerRanking;
+import com.isazobu.rowmatch.backend.leaderboard.dto.TeamLeaderboardEntry;
+
+import java.util.List;
+
+public interface LeaderboardService {
+
+    /**
+     * Retrieves the players with the highest levels.
+     *
+     * @param country ISO 3166 alpha-2 code of the country board, or null for the global board
+     * @param limit   the number of players to return, capped at 1000
+     * @return the best players, highest level first
+     * @throws InvalidCountryException if the country code is not an ISO country
+     */
+    List<LeaderboardEntry> getTop(String country, int limit) throws InvalidCountryException;
+
+    /**
+     * Retrieves the rank of the user and the players ranked right above and below.
+     *
+     * @param countryBoard whether to rank the user in their country instead of globally
+     * @param neighbours   the number of players to return above and below, capped at 50
+     * @throws UserNotFoundException if the token is invalid or the user is not on the board
+     * @header token the token of the user
+     */
+    PlayerRanking getRanking(String token, boolean countryBoard, int neighbours) throws UserNotFoundException;
+
+    /**
+     * Retrieves the teams with the highest sum of member levels.
+     *
+     * @param limit the number of teams to return, capped at 1000
+     * @return the best teams, highest score first
+     */
+    List<TeamLeaderboardEntry> getTopTeams(int limit);
+
+    /**
+     * Retrieves the rank and score of a team.
+     *
+     * @throws TeamNotFoundException if the team does not exist
+     */
+    TeamLeaderboardEntry getTeamRanking(Long teamId) throws TeamNotFoundException;
+}
@@ -0,0 +1,64 @@
+package com.isazobu.rowmatch.backend.leaderboard.service;
+
+import com.isazobu.rowmatch.backend.exceptions.TeamNotFoundException;
+import com.isazobu.rowmatch.backend.exceptions.UserNotFoundException;
+import com.isazobu.rowmatch.backend.leaderboard.dto.LeaderboardEntry;
+import com.isazobu.rowmatch.backend.leaderboard.dto.PlayerRanking;
+import com.isazobu.rowmatch.backend.leaderboard.dto.TeamLeaderboardEntry;
+import com.isazobu.rowmatch.backend.leaderboard.index.LevelLeaderboard;
+import com.isazobu.rowmatch.backend.leaderboard.index.TeamLeaderboard;
+import com.isazobu.rowmatch.backend.user.auth.UserTokenResolver;
+import com.isazobu.rowmatch.backend.user.model.Countries;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+// the boards are in memory, only the lookup of legacy tokens reads the database, from a replica if there is one
+@Service
+@Transactional(readOnly = true)
+public class LeaderboardServiceImpl implements LeaderboardService {
+
+    static final int MAX_LIMIT = 1000;
+    static final int MAX_NEIGHBOURS = 50;
+
+    private final LevelLeaderboard levelLeaderboard;
+    private final TeamLeaderboard teamLeaderboard;
+    private final UserTokenResolver userTokenResolver;
+
+    public LeaderboardServiceImpl(LevelLeaderboard levelLeaderboard, TeamLeaderboard teamLeaderboard,
+                                  UserTokenResolver userTokenResolver) {
+        this.levelLeaderboard = levelLeaderboard;
+        this.teamLeaderboard = teamLeaderboard;
+        this.userTokenResolver = userTokenResolver;
+    }
+
+    @Override
+    public List<LeaderboardEntry> getTop(String country, int limit) {
+        return levelLeaderboard.top(Countries.normalize(country), clamp(limit, MAX_LIMIT));
+    }
+
+    @Override
+    public PlayerRanking getRanking(String token, boolean countryBoard, int neighbours) {
+        // signed and cached tokens resolve without a database lookup
+        Long userId = userTokenResolver.resolveUserId(token)
+                .orElseThrow(() -> new UserNotFoundException("User not found"));
+        return levelLeaderboard.ranking(userId, countryBoard, clamp(neighbours, MAX_NEIGHBOURS))
+                .orElseThrow(() -> new UserNotFoundException("User is not on the leaderboard"));
+    }
+
+    @Override
+    public List<TeamLeaderboardEntry> getTopTeams(int limit) {
+        return teamLeaderboard.top(clamp(limit, MAX_LIMIT));
+    }
+
+    @Override
+    public TeamLeaderboardEntry getTeamRanking(Long teamId) {
+        return teamLeaderboard.ranking(teamId)
+                .orElseThrow(() -> new TeamNotFoundException("Team not found"));
+    }
+
+    private static int clamp(int value, int max) {
+        return Math.max(0, Math.min(value, max));
+    }
+}
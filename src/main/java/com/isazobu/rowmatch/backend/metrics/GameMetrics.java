@@ -0,0 +1,76 @@
+package com.isazobu.rowmatch.backend.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+/**
+ * Business counters of the game, next to the request, repository and connection pool timers
+ * that Spring Boot records on its own.
+ */
+@Component
+public class GameMetrics {
+
+    private final Counter levelsCompleted;
+    private final Counter coinsSpentOnTeamCreation;
+    private final Counter coinsSpentOnTeamJoin;
+    private final Counter teamFullRejections;
+    private final Counter teamLeaderboardCorrections;
+    private final Counter transactionsRetried;
+    private final Counter transactionsFailed;
+
+    public GameMetrics(MeterRegistry registry) {
+        this.levelsCompleted = Counter.builder("rowmatch.levels.completed")
+                .description("Levels completed by all users")
+                .register(registry);
+        this.coinsSpentOnTeamCreation = Counter.builder("rowmatch.coins.spent")
+                .description("Coins spent by users")
+                .baseUnit("coins")
+                .tag("on", "team_creation")
+                .register(registry);
+        this.coinsSpentOnTeamJoin = Counter.builder("rowmatch.coins.spent")
+                .description("Coins spent by users")
+                .baseUnit("coins")
+                .tag("on", "team_join")
+                .register(registry);
+        this.teamFullRejections = Counter.builder("rowmatch.team.join.rejected")
+                .description("Join requests rejected because the team was full")
+                .tag("reason", "team_full")
+                .register(registry);
+        this.teamLeaderboardCorrections = Counter.builder("rowmatch.leaderboard.team.corrections")
+                .description("Team leaderboard members corrected from the database by the reconciliation")
+                .register(registry);
+        this.transactionsRetried = Counter.builder("rowmatch.transactions.conflicts")
+                .description("Transactions that lost a race with a concurrent update")
+                .tag("outcome", "retried")
+                .register(registry);
+        this.transactionsFailed = Counter.builder("rowmatch.transactions.conflicts")
+                .description("Transactions that lost a race with a concurrent update")
+                .tag("outcome", "failed")
+                .register(registry);
+    }
+
+    public void levelCompleted() {
+        levelsCompleted.increment();
+    }
+
+    public void teamCreated(int coinsSpent) {
+        coinsSpentOnTeamCreation.increment(coinsSpent);
+    }
+
+    public void teamJoined(int coinsSpent) {
+        coinsSpentOnTeamJoin.increment(coinsSpent);
+    }
+
+    public void teamFull() {
+        teamFullRejections.increment();
+    }
+
+    public void teamLeaderboardCorrected(int members) {
+        teamLeaderboardCorrections.increment(members);
+    }
+
+    public void transactionConflicted(boolean retried) {
+        (retried ? transactionsRetried : transactionsFailed).increment();
+    }
+}
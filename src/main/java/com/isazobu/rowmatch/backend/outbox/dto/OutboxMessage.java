@@ -0,0 +1,28 @@
+package com.isazobu.rowmatch.backend.outbox.dto;
+
+import com.isazobu.rowmatch.backend.events.DomainEventType;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.Instant;
+
+/**
+ * An outbox event as handed to the {@code OutboxSink}. The id is unique, a sink can use it to recognize an event
+ * delivered again after a failure. Ids are assigned on insert rather than on commit, so a sink has to remember the
+ * ids it handled and cannot skip everything below the highest one.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class OutboxMessage {
+
+    private final long id;
+    private final int partition;
+    private final DomainEventType type;
+    private final long userId;
+    // null for level completions
+    private final Long teamId;
+    private final int level;
+    private final Instant createdAt;
+}
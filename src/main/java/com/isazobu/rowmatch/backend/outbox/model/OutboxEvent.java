@@ -0,0 +1,45 @@
+package com.isazobu.rowmatch.backend.outbox.model;
+
+import com.isazobu.rowmatch.backend.events.DomainEventType;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * A game event waiting to be delivered, written in the transaction of the change it describes. Mapped so that the
+ * table is created with the others, it is only written and read with JDBC by the outbox.
+ */
+@Entity
+@Table(name = "outbox_events", indexes = @Index(name = "idx_outbox_events_partition", columnList = "partition_no, id"))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // derived from the user id, so that the events of a user are delivered by one poller at a time
+    @Column(name = "partition_no", nullable = false)
+    private int partitionNo;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 32)
+    private DomainEventType type;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "team_id")
+    private Long teamId;
+
+    @Column(nullable = false)
+    private int level;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+}
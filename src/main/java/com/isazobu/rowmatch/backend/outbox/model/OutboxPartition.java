@@ -0,0 +1,22 @@
+package com.isazobu.rowmatch.backend.outbox.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * One row per outbox partition, locked by the poller delivering the partition's events so that no other poller,
+ * on this or another instance, delivers them at the same time.
+ */
+@Entity
+@Table(name = "outbox_partitions")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class OutboxPartition {
+
+    @Id
+    @Column(name = "partition_no")
+    private Integer partitionNo;
+}
@@ -0,0 +1,102 @@
+package com.isazobu.rowmatch.backend.outbox.service;
+
+import com.isazobu.rowmatch.backend.events.DomainEventType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes game events to the {@code outbox_events} table in the transaction of the change they describe, so that
+ * an event exists exactly when its change has committed and survives a crash before delivery. The
+ * {@link OutboxPoller} delivers the events afterwards.
+ * <p>
+ * An event belongs to one of {@code rowmatch.outbox.partitions} partitions, derived from the user id. Every
+ * instance has to use the same number of partitions. With {@code rowmatch.outbox.enabled=false} nothing is written.
+ */
+@Component
+public class Outbox {
+
+    static final String INSERT_SQL = "INSERT INTO outbox_events (partition_no, type, user_id, team_id, level, created_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final int partitions;
+
+    public Outbox(JdbcTemplate jdbcTemplate,
+                  @Value("${rowmatch.outbox.enabled:false}") boolean enabled,
+                  @Value("${rowmatch.outbox.partitions:16}") int partitions) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("rowmatch.outbox.partitions must be positive");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.partitions = partitions;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int partitions() {
+        return partitions;
+    }
+
+    public int partition(long userId) {
+        return Math.floorMod(Long.hashCode(userId), partitions);
+    }
+
+    public void levelCompleted(long userId, int level) {
+        insert(DomainEventType.LEVEL_COMPLETED, userId, null, level);
+    }
+
+    /**
+     * Writes one level completion per user with the user's new level, for progress written in a batch.
+     */
+    public void levelsCompleted(Map<Long, Integer> levelByUser) {
+        if (!enabled || levelByUser.isEmpty()) {
+            return;
+        }
+        requireTransaction();
+        Timestamp now = Timestamp.from(Instant.now());
+        List<Object[]> rows = new ArrayList<>(levelByUser.size());
+        levelByUser.forEach((userId, level) -> rows.add(new Object[]{
+                partition(userId), DomainEventType.LEVEL_COMPLETED.name(), userId, null, level, now}));
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+    }
+
+    public void teamJoined(Long userId, Long teamId) {
+        insert(DomainEventType.TEAM_JOINED, userId, teamId, 0);
+    }
+
+    public void teamLeft(Long userId, Long teamId) {
+        insert(DomainEventType.TEAM_LEFT, userId, teamId, 0);
+    }
+
+    public void teamDisbanded(Long userId, Long teamId) {
+        insert(DomainEventType.TEAM_DISBANDED, userId, teamId, 0);
+    }
+
+    private void insert(DomainEventType type, long userId, Long teamId, int level) {
+        if (!enabled) {
+            return;
+        }
+        requireTransaction();
+        jdbcTemplate.update(INSERT_SQL, partition(userId), type.name(), userId, teamId, level,
+                Timestamp.from(Instant.now()));
+    }
+
+    private static void requireTransaction() {
+        // written on its own, an event could be delivered for a change that is rolled back
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Outbox events have to be written in the transaction of their change");
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.isazobu.rowmatch.backend.outbox.service;
+
+import com.isazobu.rowmatch.backend.events.DomainEventType;
+import com.isazobu.rowmatch.backend.outbox.dto.OutboxMessage;
+import com.isazobu.rowmatch.backend.outbox.sink.OutboxSink;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delivers the events written by the {@link Outbox} to the {@link OutboxSink}.
+ * <p>
+ * Every {@code poll-interval} each of the {@code threads} pollers walks the partitions that have events, starting
+ * at a random one. A partition is claimed by locking its {@code outbox_partitions} row with
+ * {@code FOR UPDATE SKIP LOCKED}, so pollers of all instances share the partitions without waiting for each other
+ * and one poller at a time delivers the events of a user. The claiming transaction reads up to {@code batch-size}
+ * events in id order, delivers them and deletes them; a failed delivery rolls back and the events are delivered
+ * again on a later poll, so a sink sees every event at least once. A partition is drained while full batches come
+ * back.
+ * <p>
+ * The order per user is best-effort. Ids are assigned when an event is inserted, not when it commits, so an event
+ * whose transaction commits late can arrive after a newer one with a higher id. Consumers that need a strict order
+ * have to tolerate this, e.g. by comparing the level or team of the user instead of relying on arrival order.
+ * <p>
+ * Databases without {@code SKIP LOCKED}, like the embedded H2, set {@code skip-locked=false}. A poller then waits
+ * for a partition claimed elsewhere instead of skipping it, the events are still delivered once per claim, but
+ * pollers may queue up behind each other.
+ * <p>
+ * With {@code threads=0} the instance writes events but leaves the delivery to other instances. Delivered events,
+ * failed deliveries and the time from writing an event to its delivery are recorded as {@code rowmatch.outbox.*}
+ * metrics.
+ */
+@Component
+public class OutboxPoller implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxPoller.class);
+
+    static final String INSERT_PARTITION_SQL = "INSERT INTO outbox_partitions (partition_no) VALUES (?)";
+    static final String PARTITIONS_SQL = "SELECT partition_no FROM outbox_partitions";
+    static final String PENDING_PARTITIONS_SQL = "SELECT DISTINCT partition_no FROM outbox_events";
+    static final String CLAIM_SQL = "SELECT partition_no FROM outbox_partitions WHERE partition_no = ? FOR UPDATE";
+    static final String CLAIM_SKIP_LOCKED_SQL = CLAIM_SQL + " SKIP LOCKED";
+    static final String BATCH_SQL = "SELECT id, partition_no, type, user_id, team_id, level, created_at "
+            + "FROM outbox_events WHERE partition_no = ? ORDER BY id LIMIT ?";
+    static final String DELETE_SQL = "DELETE FROM outbox_events WHERE id IN (%s)";
+
+    private static final RowMapper<OutboxMessage> MESSAGE_MAPPER = (rs, rowNum) -> new OutboxMessage(
+            rs.getLong("id"),
+            rs.getInt("partition_no"),
+            DomainEventType.valueOf(rs.getString("type")),
+            rs.getLong("user_id"),
+            rs.getObject("team_id", Long.class),
+            rs.getInt("level"),
+            rs.getTimestamp("created_at").toInstant());
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Outbox outbox;
+    private final OutboxSink sink;
+    private final String claimSql;
+    private final int threads;
+    private final int batchSize;
+    private final Duration pollInterval;
+    private ScheduledExecutorService scheduler;
+    private volatile Counter delivered;
+    private volatile Counter failures;
+    private volatile Timer delay;
+
+    public OutboxPoller(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager, Outbox outbox,
+                        List<OutboxSink> sinks,
+                        @Value("${rowmatch.outbox.poller.skip-locked:true}") boolean skipLocked,
+                        @Value("${rowmatch.outbox.poller.threads:1}") int threads,
+                        @Value("${rowmatch.outbox.poller.batch-size:500}") int batchSize,
+                        @Value("${rowmatch.outbox.poller.poll-interval:200ms}") Duration pollInterval) {
+        if (outbox.isEnabled() && threads > 0 && sinks.size() != 1) {
+            throw new IllegalStateException("The outbox needs exactly one OutboxSink, found " + sinks.size());
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.outbox = outbox;
+        this.sink = sinks.isEmpty() ? null : sinks.get(0);
+        this.claimSql = skipLocked ? CLAIM_SKIP_LOCKED_SQL : CLAIM_SQL;
+        this.threads = threads;
+        this.batchSize = Math.max(1, batchSize);
+        this.pollInterval = pollInterval;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!outbox.isEnabled()) {
+            return;
+        }
+        createPartitions();
+        if (threads < 1) {
+            return;
+        }
+        scheduler = Executors.newScheduledThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "outbox-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = pollInterval.toMillis();
+        for (int i = 0; i < threads; i++) {
+            scheduler.scheduleWithFixedDelay(this::pollQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Inserts the lock rows of partitions that do not exist yet, other instances may be inserting them as well.
+     */
+    public void createPartitions() {
+        Set<Integer> existing = new HashSet<>(jdbcTemplate.queryForList(PARTITIONS_SQL, Integer.class));
+        for (int partition = 0; partition < outbox.partitions(); partition++) {
+            if (existing.contains(partition)) {
+                continue;
+            }
+            try {
+                jdbcTemplate.update(INSERT_PARTITION_SQL, partition);
+            } catch (DataIntegrityViolationException e) {
+                log.debug("Outbox partition {} was created by another instance", partition);
+            }
+        }
+    }
+
+    /**
+     * Delivers the events of every partition no other poller has claimed.
+     *
+     * @return number of delivered events
+     */
+    public int poll() {
+        List<Integer> partitions = jdbcTemplate.queryForList(PENDING_PARTITIONS_SQL, Integer.class);
+        if (partitions.isEmpty()) {
+            return 0;
+        }
+        // pollers starting at different partitions claim different ones instead of skipping over each other
+        Collections.rotate(partitions, ThreadLocalRandom.current().nextInt(partitions.size()));
+        int total = 0;
+        for (int partition : partitions) {
+            int count;
+            do {
+                count = deliverBatch(partition);
+                total += count;
+            } while (count == batchSize);
+        }
+        return total;
+    }
+
+    private void pollQuietly() {
+        try {
+            poll();
+        } catch (RuntimeException e) {
+            log.error("Could not deliver outbox events, will retry", e);
+        }
+    }
+
+    /**
+     * @return number of delivered events, 0 when the partition is claimed by another poller, empty or failed
+     */
+    private int deliverBatch(int partition) {
+        List<OutboxMessage> messages;
+        try {
+            messages = transactionTemplate.execute(status -> {
+                if (jdbcTemplate.queryForList(claimSql, Integer.class, partition).isEmpty()) {
+                    return List.of();
+                }
+                List<OutboxMessage> batch = jdbcTemplate.query(BATCH_SQL, MESSAGE_MAPPER, partition, batchSize);
+                if (batch.isEmpty()) {
+                    return batch;
+                }
+                sink.deliver(batch);
+                jdbcTemplate.update(String.format(DELETE_SQL, String.join(",", Collections.nCopies(batch.size(), "?"))),
+                        batch.stream().map(OutboxMessage::getId).toArray());
+                return batch;
+            });
+        } catch (RuntimeException e) {
+            // the batch stays in the outbox, the other partitions are still delivered
+            if (failures != null) {
+                failures.increment();
+            }
+            log.warn("Could not deliver the events of outbox partition {}, will retry", partition, e);
+            return 0;
+        }
+        record(messages);
+        return messages.size();
+    }
+
+    private void record(List<OutboxMessage> messages) {
+        if (delivered == null || messages.isEmpty()) {
+            return;
+        }
+        delivered.increment(messages.size());
+        Instant now = Instant.now();
+        for (OutboxMessage message : messages) {
+            delay.record(Duration.between(message.getCreatedAt(), now));
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (!outbox.isEnabled()) {
+            return;
+        }
+        delivered = Counter.builder("rowmatch.outbox.delivered")
+                .description("Outbox events delivered to the sink")
+                .register(registry);
+        failures = Counter.builder("rowmatch.outbox.delivery.failures")
+                .description("Outbox batches whose delivery failed and will be retried")
+                .register(registry);
+        delay = Timer.builder("rowmatch.outbox.delay")
+                .description("Time from writing an outbox event to its delivery")
+                .register(registry);
+    }
+}
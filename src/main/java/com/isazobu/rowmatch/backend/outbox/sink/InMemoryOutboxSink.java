@@ -0,0 +1,31 @@
+package com.isazobu.rowmatch.backend.outbox.sink;
+
+import com.isazobu.rowmatch.backend.outbox.dto.OutboxMessage;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the delivered events in memory, for tests and local runs.
+ */
+@Component
+@ConditionalOnProperty(name = "rowmatch.outbox.sink", havingValue = "memory")
+public class InMemoryOutboxSink implements OutboxSink {
+
+    private final List<OutboxMessage> messages = new ArrayList<>();
+
+    @Override
+    public synchronized void deliver(List<OutboxMessage> batch) {
+        messages.addAll(batch);
+    }
+
+    public synchronized List<OutboxMessage> messages() {
+        return List.copyOf(messages);
+    }
+
+    public synchronized void clear() {
+        messages.clear();
+    }
+}
@@ -0,0 +1,19 @@
+package com.isazobu.rowmatch.backend.outbox.sink;
+
+import com.isazobu.rowmatch.backend.outbox.dto.OutboxMessage;
+
+import java.util.List;
+
+/**
+ * Destination of the outbox events, e.g. a message broker. Exactly one sink bean has to exist when the outbox is
+ * enabled, {@code rowmatch.outbox.sink} selects one of the built-in sinks.
+ */
+@FunctionalInterface
+public interface OutboxSink {
+
+    /**
+     * Delivers a batch of events of one partition, in id order. The events are removed from the outbox once this
+     * returns, an exception leaves them for the next poll, so an event may be delivered more than once.
+     */
+    void deliver(List<OutboxMessage> messages);
+}
@@ -2,14 +2,18 @@ package com.isazobu.rowmatch.backend.team.controller;
 
 import com.isazobu.rowmatch.backend.team.dto.CreateTeamRequest;
 import com.isazobu.rowmatch.backend.team.dto.GetTeams;
+import com.isazobu.rowmatch.backend.team.dto.RandomTeams;
+import com.isazobu.rowmatch.backend.team.dto.TeamResponse;
+import com.isazobu.rowmatch.backend.team.dto.TeamSearchResponse;
 import com.isazobu.rowmatch.backend.team.model.Team;
 import com.isazobu.rowmatch.backend.exceptions.NotEnoughCoinsException;
 import com.isazobu.rowmatch.backend.team.service.TeamService;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.Collections;
 import java.util.List;
 
 @RestController
@@ -29,10 +33,26 @@ public class TeamController {
         return new ResponseEntity<Team>(team, HttpStatus.CREATED);
     }
 
+    @GetMapping("/search")
+    public TeamSearchResponse searchTeams(@RequestParam("q") String query,
+                                          @RequestParam(defaultValue = "20") int limit,
+                                          @RequestParam(required = false) String cursor) {
+        return teamService.searchTeams(query, limit, cursor);
+    }
+
     @GetMapping("/{name}")
-    public ResponseEntity<Team> getTeamByName(@PathVariable String name) {
-        Team team = teamService.getTeamByName(name);
-        return new ResponseEntity<>(team, HttpStatus.OK);
+    public ResponseEntity<TeamResponse> getTeamByName(@PathVariable String name,
+                                                      @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        // clients keep polling the team, one holding the current version is answered without reading the members
+        if (ifNoneMatch != null) {
+            String eTag = teamService.getTeamETag(name);
+            if (matches(ifNoneMatch, eTag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).cacheControl(CacheControl.noCache())
+                        .build();
+            }
+        }
+        TeamResponse team = teamService.getTeamByName(name);
+        return ResponseEntity.ok().eTag(team.getETag()).cacheControl(CacheControl.noCache()).body(team);
     }
 
     @PostMapping("/{teamId}/join")
@@ -48,12 +68,32 @@ public class TeamController {
     }
 
     @GetMapping("/random")
-    public List<GetTeams> getRandomTeams() {
-        List<GetTeams> teams = teamService.getRandomJoinableTeams();
-        if (teams.isEmpty()) {
-            return Collections.emptyList();
+    public ResponseEntity<List<GetTeams>> getRandomTeams(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        // the same sample is served for a short while, clients may keep it that long and revalidate it afterwards
+        RandomTeams teams = teamService.getRecentRandomJoinableTeams();
+        CacheControl cacheControl = CacheControl.maxAge(teams.getFreshFor());
+        if (ifNoneMatch != null && matches(ifNoneMatch, teams.getETag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(teams.getETag()).cacheControl(cacheControl)
+                    .build();
         }
+        return ResponseEntity.ok().eTag(teams.getETag()).cacheControl(cacheControl).body(teams.getTeams());
+    }
 
-        return teams;
+    // If-None-Match holds *, or a list of entity tags compared weakly, i.e. ignoring a W/ prefix
+    static boolean matches(String ifNoneMatch, String eTag) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
     }
 }
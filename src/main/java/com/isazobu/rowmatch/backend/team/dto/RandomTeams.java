@@ -0,0 +1,19 @@
+package com.isazobu.rowmatch.backend.team.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * A random sample of joinable teams, served unchanged for {@code freshFor}, with an ETag derived from its content.
+ */
+@Getter
+@AllArgsConstructor
+public class RandomTeams {
+
+    private final List<GetTeams> teams;
+    private final String eTag;
+    private final Duration freshFor;
+}
@@ -0,0 +1,18 @@
+package com.isazobu.rowmatch.backend.team.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Public fields of a team member, the token is never part of it.
+ */
+@Getter
+@AllArgsConstructor
+public class TeamMemberResponse {
+
+    private final Long id;
+    private final String name;
+    private final Integer level;
+    private final Integer coins;
+    private final String country;
+}
@@ -0,0 +1,23 @@
+package com.isazobu.rowmatch.backend.team.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * One row of a team joined with one of its members, the member fields are null for a team without members.
+ */
+@Getter
+@AllArgsConstructor
+public class TeamMemberRow {
+
+    private final Long teamId;
+    private final String teamName;
+    private final int memberCount;
+    private final long teamVersion;
+    private final Long userId;
+    private final String userName;
+    private final Integer level;
+    private final Integer coins;
+    private final String country;
+    private final Long userVersion;
+}
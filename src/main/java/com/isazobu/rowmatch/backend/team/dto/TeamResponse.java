@@ -0,0 +1,45 @@
+package com.isazobu.rowmatch.backend.team.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@AllArgsConstructor
+public class TeamResponse {
+
+    private final Long id;
+    private final String name;
+    private final int memberCount;
+    private final List<TeamMemberResponse> users;
+    // sent as the ETag header, not in the body
+    @Getter(AccessLevel.NONE)
+    private final String eTag;
+
+    @JsonIgnore
+    public String getETag() {
+        return eTag;
+    }
+
+    /**
+     * Builds the team and its ETag from the rows of {@code TeamRepository#findTeamWithMembers}, all of the same team.
+     */
+    public static TeamResponse of(List<TeamMemberRow> rows) {
+        TeamMemberRow first = rows.get(0);
+        List<TeamMemberResponse> users = new ArrayList<>(rows.size());
+        long membersVersion = 0;
+        for (TeamMemberRow row : rows) {
+            if (row.getUserId() != null) {
+                users.add(new TeamMemberResponse(row.getUserId(), row.getUserName(), row.getLevel(), row.getCoins(),
+                        row.getCountry()));
+                membersVersion += row.getUserVersion();
+            }
+        }
+        return new TeamResponse(first.getTeamId(), first.getTeamName(), first.getMemberCount(), List.copyOf(users),
+                TeamVersion.eTag(first.getTeamId(), first.getTeamVersion(), membersVersion));
+    }
+}
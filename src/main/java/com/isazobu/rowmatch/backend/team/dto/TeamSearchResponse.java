@@ -0,0 +1,19 @@
+package com.isazobu.rowmatch.backend.team.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class TeamSearchResponse {
+
+    private List<TeamSearchResult> teams;
+    // pass as cursor to get the next page, null on the last page
+    private String nextCursor;
+}
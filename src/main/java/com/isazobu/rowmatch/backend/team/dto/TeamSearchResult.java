@@ -0,0 +1,18 @@
+package com.isazobu.rowmatch.backend.team.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class TeamSearchResult {
+
+    private Long id;
+    private String name;
+    // 1 for names starting with the query, otherwise the share of trigrams the name has in common with it
+    private double similarity;
+}
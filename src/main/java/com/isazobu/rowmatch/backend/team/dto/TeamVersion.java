@@ -0,0 +1,26 @@
+package com.isazobu.rowmatch.backend.team.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * The versions a team response depends on: the team version, incremented when a member joins or leaves, and the sum
+ * of the member versions, incremented by every change of a member, e.g. a completed level or a reward.
+ */
+@Getter
+@AllArgsConstructor
+public class TeamVersion {
+
+    private final Long teamId;
+    private final long teamVersion;
+    private final long membersVersion;
+
+    public String getETag() {
+        return eTag(teamId, teamVersion, membersVersion);
+    }
+
+    // the members only change together with the team version, so for one team version the sum only grows
+    static String eTag(Long teamId, long teamVersion, long membersVersion) {
+        return "\"" + teamId + "-" + teamVersion + "-" + membersVersion + "\"";
+    }
+}
@@ -0,0 +1,129 @@
+package com.isazobu.rowmatch.backend.team.index;
+
+import com.isazobu.rowmatch.backend.team.dto.GetTeams;
+import com.isazobu.rowmatch.backend.team.model.Team;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * In-memory index of the teams that still have at least one free seat.
+ * <p>
+ * Entries live in a dense array so that a random sample of k teams can be drawn in O(k),
+ * and a position map allows O(1) updates and removals (swap with the last entry).
+ * The index is kept up to date by the team service and rebuilt from the database at startup.
+ */
+@Component
+public class JoinableTeamIndex {
+
+    private final List<Entry> entries = new ArrayList<>();
+    private final Map<Long, Integer> positions = new HashMap<>();
+
+    /**
+     * Replaces the content of the index with the given teams. Full teams are skipped.
+     */
+    public synchronized void rebuild(Collection<GetTeams> teams) {
+        entries.clear();
+        positions.clear();
+        for (GetTeams team : teams) {
+            put(team.getId(), team.getName(), team.getNum_members());
+        }
+    }
+
+    /**
+     * Records the current member count of a team, adding it to the index while it has free seats
+     * and removing it once it is full.
+     */
+    public synchronized void update(Long teamId, String name, int members) {
+        if (teamId == null) {
+            return;
+        }
+        put(teamId, name, members);
+    }
+
+    /**
+     * Removes a team from the index, e.g. after it has been deleted.
+     */
+    public synchronized void remove(Long teamId) {
+        Integer position = positions.remove(teamId);
+        if (position == null) {
+            return;
+        }
+        Entry last = entries.remove(entries.size() - 1);
+        if (position < entries.size()) {
+            entries.set(position, last);
+            positions.put(last.id(), position);
+        }
+    }
+
+    /**
+     * Picks up to {@code count} distinct joinable teams uniformly at random.
+     */
+    public synchronized List<GetTeams> sample(int count) {
+        int size = entries.size();
+        if (count >= size) {
+            List<GetTeams> all = new ArrayList<>(size);
+            entries.forEach(entry -> all.add(entry.toDto()));
+            return all;
+        }
+
+        // Floyd's algorithm: count distinct indexes in O(count) without touching the rest of the index
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Set<Integer> picked = new HashSet<>();
+        List<GetTeams> sample = new ArrayList<>(count);
+        for (int upper = size - count; upper < size; upper++) {
+            int candidate = random.nextInt(upper + 1);
+            int index = picked.add(candidate) ? candidate : upper;
+            picked.add(index);
+            sample.add(entries.get(index).toDto());
+        }
+        Collections.shuffle(sample, random);
+        return sample;
+    }
+
+    /**
+     * Copies every joinable team, in index order.
+     */
+    public synchronized List<GetTeams> all() {
+        List<GetTeams> all = new ArrayList<>(entries.size());
+        entries.forEach(entry -> all.add(entry.toDto()));
+        return all;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized boolean contains(Long teamId) {
+        return positions.containsKey(teamId);
+    }
+
+    private void put(Long teamId, String name, int members) {
+        if (members >= Team.CAPACITY) {
+            remove(teamId);
+            return;
+        }
+        Entry entry = new Entry(teamId, name, members);
+        Integer position = positions.get(teamId);
+        if (position != null) {
+            entries.set(position, entry);
+        } else {
+            positions.put(teamId, entries.size());
+            entries.add(entry);
+        }
+    }
+
+    private record Entry(Long id, String name, int members) {
+        GetTeams toDto() {
+            return new GetTeams(id, name, members);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.isazobu.rowmatch.backend.team.index;
+
+import com.isazobu.rowmatch.backend.team.model.Team;
+import com.isazobu.rowmatch.backend.team.repository.TeamRepository;
+import jakarta.transaction.Transactional;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rebuilds the {@link JoinableTeamIndex}, its {@link JoinableTeamSnapshot} and the {@link TeamNameIndex} from the
+ * database once the application is ready,
+ * i.e. after every {@code CommandLineRunner} (such as the sample data loader) has run.
+ * Member counts are recomputed first so rows written before the counter existed are correct.
+ */
+@Component
+public class JoinableTeamIndexLoader {
+
+    private final TeamRepository teamRepository;
+    private final JoinableTeamIndex joinableTeamIndex;
+    private final TeamNameIndex teamNameIndex;
+    private final JoinableTeamSnapshot joinableTeamSnapshot;
+
+    public JoinableTeamIndexLoader(TeamRepository teamRepository, JoinableTeamIndex joinableTeamIndex,
+                                   TeamNameIndex teamNameIndex, JoinableTeamSnapshot joinableTeamSnapshot) {
+        this.teamRepository = teamRepository;
+        this.joinableTeamIndex = joinableTeamIndex;
+        this.teamNameIndex = teamNameIndex;
+        this.joinableTeamSnapshot = joinableTeamSnapshot;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void rebuild() {
+        teamRepository.recountMembers();
+        joinableTeamIndex.rebuild(teamRepository.findJoinableTeams(Team.CAPACITY));
+        teamNameIndex.rebuild(teamRepository.findAllTeams());
+        // requests should not wait for the next refresh to see the loaded teams
+        joinableTeamSnapshot.refresh();
+    }
+}
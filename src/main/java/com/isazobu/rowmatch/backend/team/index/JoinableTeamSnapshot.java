@@ -0,0 +1,269 @@
+package com.isazobu.rowmatch.backend.team.index;
+
+import com.isazobu.rowmatch.backend.team.dto.GetTeams;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Optional immutable copy of the {@link JoinableTeamIndex} that random teams are sampled from without taking a lock.
+ * <p>
+ * When enabled, a background task copies the index every {@code refresh-interval} into arrays that are never changed
+ * afterwards, and requests pick their teams with a thread-local random. A join that fills a team sets the team's bit
+ * in a concurrent bitset of the snapshot, so the team is skipped until the next copy drops it. Member counts and teams
+ * created or freed since the copy show up with the next refresh. A snapshot older than {@code max-staleness}, e.g.
+ * because refreshing failed, is not used and teams are sampled from the index instead, as they are when disabled.
+ * <p>
+ * The age and size of the snapshot, the teams marked full in it and the samples taken from the index because it was
+ * stale are recorded as {@code rowmatch.teams.random.snapshot.*} metrics.
+ */
+@Component
+public class JoinableTeamSnapshot implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(JoinableTeamSnapshot.class);
+
+    // random picks per requested team before giving up on a snapshot where most teams are marked full
+    private static final int ATTEMPTS_PER_TEAM = 8;
+
+    private final JoinableTeamIndex joinableTeamIndex;
+    private final boolean enabled;
+    private final Duration refreshInterval;
+    private final long maxStalenessNanos;
+    private volatile Snapshot snapshot;
+    private volatile Counter fallbacks;
+    private ScheduledExecutorService scheduler;
+
+    public JoinableTeamSnapshot(JoinableTeamIndex joinableTeamIndex,
+                                @Value("${rowmatch.teams.random.snapshot.enabled:false}") boolean enabled,
+                                @Value("${rowmatch.teams.random.snapshot.refresh-interval:1s}") Duration refreshInterval,
+                                @Value("${rowmatch.teams.random.snapshot.max-staleness:10s}") Duration maxStaleness) {
+        this.joinableTeamIndex = joinableTeamIndex;
+        this.enabled = enabled;
+        this.refreshInterval = refreshInterval;
+        this.maxStalenessNanos = maxStaleness.toNanos();
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "joinable-team-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = refreshInterval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::refreshQuietly, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Replaces the snapshot with a copy of the index, also called once the index has been rebuilt.
+     */
+    public void refresh() {
+        if (enabled) {
+            snapshot = new Snapshot(joinableTeamIndex.all(), System.nanoTime());
+        }
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            log.error("Could not refresh the joinable team snapshot, will retry", e);
+        }
+    }
+
+    /**
+     * Picks up to {@code count} distinct joinable teams at random, from the snapshot while it is fresh.
+     */
+    public List<GetTeams> sample(int count) {
+        Snapshot current = snapshot;
+        if (current == null || System.nanoTime() - current.createdAt > maxStalenessNanos) {
+            if (current != null && fallbacks != null) {
+                fallbacks.increment();
+            }
+            return joinableTeamIndex.sample(count);
+        }
+        return current.sample(count);
+    }
+
+    /**
+     * Stops offering the team until the next refresh, called when a join found the team full or filled it.
+     */
+    public void markFull(Long teamId) {
+        Snapshot current = snapshot;
+        if (current != null) {
+            current.markFull(teamId);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long ageNanos() {
+        Snapshot current = snapshot;
+        return current == null ? 0 : System.nanoTime() - current.createdAt;
+    }
+
+    public int size() {
+        Snapshot current = snapshot;
+        return current == null ? 0 : current.ids.length;
+    }
+
+    public int markedFull() {
+        Snapshot current = snapshot;
+        return current == null ? 0 : current.markedFull();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (!enabled) {
+            return;
+        }
+        TimeGauge.builder("rowmatch.teams.random.snapshot.age", this, TimeUnit.NANOSECONDS, JoinableTeamSnapshot::ageNanos)
+                .description("Time since the joinable team snapshot was copied from the index")
+                .register(registry);
+        Gauge.builder("rowmatch.teams.random.snapshot.teams", this, JoinableTeamSnapshot::size)
+                .description("Joinable teams in the snapshot")
+                .register(registry);
+        Gauge.builder("rowmatch.teams.random.snapshot.full", this, JoinableTeamSnapshot::markedFull)
+                .description("Teams of the snapshot that joins have filled since it was copied")
+                .register(registry);
+        fallbacks = Counter.builder("rowmatch.teams.random.snapshot.fallbacks")
+                .description("Random team samples taken from the index because the snapshot was stale")
+                .register(registry);
+    }
+
+    private static final class Snapshot {
+
+        private final long[] ids;
+        private final String[] names;
+        private final int[] members;
+        private final Map<Long, Integer> positions;
+        private final AtomicLongArray full;
+        private final long createdAt;
+
+        private Snapshot(List<GetTeams> teams, long createdAt) {
+            int size = teams.size();
+            this.ids = new long[size];
+            this.names = new String[size];
+            this.members = new int[size];
+            this.positions = new HashMap<>(size * 2);
+            for (int i = 0; i < size; i++) {
+                GetTeams team = teams.get(i);
+                ids[i] = team.getId();
+                names[i] = team.getName();
+                members[i] = team.getNum_members();
+                positions.put(team.getId(), i);
+            }
+            this.full = new AtomicLongArray((size + 63) >>> 6);
+            this.createdAt = createdAt;
+        }
+
+        List<GetTeams> sample(int count) {
+            int size = ids.length;
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            if (size <= 2 * count) {
+                return scan(count, new int[0], 0, random);
+            }
+            // the snapshot is at least twice the sample, so a repeated pick is rare and is simply drawn again
+            int[] picked = new int[count];
+            int found = 0;
+            for (int attempt = 0; found < count && attempt < count * ATTEMPTS_PER_TEAM; attempt++) {
+                int candidate = random.nextInt(size);
+                if (!isFull(candidate) && !contains(picked, found, candidate)) {
+                    picked[found++] = candidate;
+                }
+            }
+            if (found < count) {
+                // most teams were filled since the copy, pick the rest from the teams that are still open
+                return scan(count, picked, found, random);
+            }
+            List<GetTeams> sample = new ArrayList<>(count);
+            for (int position : picked) {
+                sample.add(team(position));
+            }
+            return sample;
+        }
+
+        // the picked teams followed by randomly chosen open teams, up to count teams in total
+        private List<GetTeams> scan(int count, int[] picked, int found, ThreadLocalRandom random) {
+            List<GetTeams> open = new ArrayList<>();
+            for (int i = 0; i < ids.length; i++) {
+                if (!isFull(i) && !contains(picked, found, i)) {
+                    open.add(team(i));
+                }
+            }
+            Collections.shuffle(open, random);
+            List<GetTeams> sample = new ArrayList<>(Math.min(count, found + open.size()));
+            for (int i = 0; i < found; i++) {
+                sample.add(team(picked[i]));
+            }
+            for (int i = 0; sample.size() < count && i < open.size(); i++) {
+                sample.add(open.get(i));
+            }
+            return sample;
+        }
+
+        void markFull(Long teamId) {
+            Integer position = positions.get(teamId);
+            if (position != null) {
+                full.accumulateAndGet(position >>> 6, 1L << position, (word, bit) -> word | bit);
+            }
+        }
+
+        int markedFull() {
+            int count = 0;
+            for (int i = 0; i < full.length(); i++) {
+                count += Long.bitCount(full.get(i));
+            }
+            return count;
+        }
+
+        private boolean isFull(int position) {
+            return (full.get(position >>> 6) & (1L << position)) != 0;
+        }
+
+        private GetTeams team(int position) {
+            return new GetTeams(ids[position], names[position], members[position]);
+        }
+
+        private static boolean contains(int[] picked, int found, int candidate) {
+            for (int i = 0; i < found; i++) {
+                if (picked[i] == candidate) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.isazobu.rowmatch.backend.team.index;
+
+import com.isazobu.rowmatch.backend.team.dto.GetTeams;
+import com.isazobu.rowmatch.backend.team.dto.RandomTeams;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Random sample of joinable teams that is drawn from the {@link JoinableTeamSnapshot} at most once every
+ * {@code fresh-for}, so that clients polling the random teams can be answered with 304 Not Modified until a new
+ * sample is drawn. The ETag is computed from the teams and their member counts, a new sample with the same content,
+ * e.g. when there are fewer joinable teams than the sample size, keeps the ETag.
+ */
+@Component
+public class RandomTeamSample {
+
+    private final JoinableTeamSnapshot joinableTeamSnapshot;
+    private final Duration freshFor;
+    private volatile Sample current;
+
+    public RandomTeamSample(JoinableTeamSnapshot joinableTeamSnapshot,
+                            @Value("${rowmatch.teams.random.fresh-for:2s}") Duration freshFor) {
+        this.joinableTeamSnapshot = joinableTeamSnapshot;
+        this.freshFor = freshFor;
+    }
+
+    /**
+     * Returns the current sample of up to {@code count} teams, drawing a new one once it is older than fresh-for.
+     */
+    public RandomTeams current(int count) {
+        long now = System.nanoTime();
+        Sample sample = current;
+        // concurrent requests at expiry may each draw a sample, the last one stays
+        if (sample == null || sample.count() != count || now - sample.drawnAt() >= freshFor.toNanos()) {
+            List<GetTeams> teams = List.copyOf(joinableTeamSnapshot.sample(count));
+            sample = new Sample(new RandomTeams(teams, eTag(teams), freshFor), count, now);
+            current = sample;
+        }
+        return sample.teams();
+    }
+
+    static String eTag(List<GetTeams> teams) {
+        long hash = 1;
+        for (GetTeams team : teams) {
+            hash = 31 * hash + team.getId();
+            hash = 31 * hash + team.getNum_members();
+        }
+        return "\"random-" + Long.toHexString(hash) + "\"";
+    }
+
+    private record Sample(RandomTeams teams, int count, long drawnAt) {
+    }
+}
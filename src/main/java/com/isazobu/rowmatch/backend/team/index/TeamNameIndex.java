@@ -0,0 +1,295 @@
+package com.isazobu.rowmatch.backend.team.index;
+
+import com.isazobu.rowmatch.backend.exceptions.InvalidSearchCursorException;
+import com.isazobu.rowmatch.backend.team.dto.GetTeams;
+import com.isazobu.rowmatch.backend.team.dto.TeamSearchResponse;
+import com.isazobu.rowmatch.backend.team.dto.TeamSearchResult;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory search index over the team names, for prefix and typo-tolerant lookups.
+ * <p>
+ * Names are matched case-insensitively. A sorted set of the names answers prefix queries with a range scan, and
+ * posting lists from every trigram of a name to its teams find names that share enough trigrams with the query,
+ * scored like pg_trgm: shared trigrams divided by the trigrams of both. Names are padded with two spaces in front
+ * and one behind, so the first letters weigh more and a single typo still leaves most trigrams intact.
+ * <p>
+ * Results list the prefix matches by name, then the other matches with a similarity of at least
+ * {@code rowmatch.teams.search.similarity} by descending similarity and name. A page ends with a cursor holding the
+ * sort key of its last team, so pages stay consistent while teams are created or deleted.
+ * The index is kept up to date by the team service and rebuilt from the database at startup.
+ * <p>
+ * Searches share a read lock and only creations and deletions wait for each other. A similarity search visits the
+ * posting lists of the rarest query trigrams first and stops after {@code rowmatch.teams.search.max-postings}
+ * entries, so a query made of common trigrams cannot scan the whole index; the skipped names share only the common
+ * trigrams with the query and rarely reach the similarity anyway.
+ */
+@Component
+public class TeamNameIndex {
+
+    // queries are cut to this length, trigram lookups cost one posting list per trigram
+    static final int MAX_QUERY_LENGTH = 64;
+    static final int MIN_SIMILAR_LENGTH = 3;
+
+    private static final Comparator<Name> NAME_ORDER = Comparator.comparing(Name::key).thenComparing(Name::id);
+
+    private final double similarity;
+    private final int maxPostings;
+
+    private final Map<Long, Name> names = new HashMap<>();
+    private final NavigableSet<Name> sorted = new TreeSet<>(NAME_ORDER);
+    private final Map<String, Set<Long>> postings = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public TeamNameIndex(@Value("${rowmatch.teams.search.similarity:0.3}") double similarity,
+                         @Value("${rowmatch.teams.search.max-postings:20000}") int maxPostings) {
+        this.similarity = similarity;
+        this.maxPostings = maxPostings;
+    }
+
+    /**
+     * Replaces the content of the index with the given teams.
+     */
+    public void rebuild(Collection<GetTeams> teams) {
+        lock.writeLock().lock();
+        try {
+            names.clear();
+            sorted.clear();
+            postings.clear();
+            for (GetTeams team : teams) {
+                put(team.getId(), team.getName());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void add(Long teamId, String name) {
+        if (teamId == null || name == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            delete(teamId);
+            put(teamId, name);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the name of the removed team, or null if the team was not in the index
+     */
+    public String remove(Long teamId) {
+        lock.writeLock().lock();
+        try {
+            return delete(teamId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return names.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} teams matching the query, after the team the cursor points at.
+     *
+     * @param cursor the cursor of the previous page, or null for the first page
+     * @throws InvalidSearchCursorException if the cursor is malformed
+     */
+    public TeamSearchResponse search(String query, int limit, String cursor) {
+        String key = normalize(query);
+        if (key.length() > MAX_QUERY_LENGTH) {
+            key = key.substring(0, MAX_QUERY_LENGTH);
+        }
+        if (key.isEmpty() || limit <= 0) {
+            return new TeamSearchResponse(List.of(), null);
+        }
+
+        Position after = cursor == null ? null : Position.decode(cursor);
+        List<Hit> page = new ArrayList<>(limit + 1);
+        lock.readLock().lock();
+        try {
+            if (after == null || after.prefix()) {
+                prefixMatches(key, after, limit + 1, page);
+            }
+            // shorter queries have no trigram of their own and are matched by prefix only
+            if (page.size() <= limit && key.length() >= MIN_SIMILAR_LENGTH) {
+                similarMatches(key, after == null || after.prefix() ? null : after, limit + 1 - page.size(), page);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<TeamSearchResult> teams = new ArrayList<>(Math.min(limit, page.size()));
+        for (int i = 0; i < page.size() && i < limit; i++) {
+            Name name = page.get(i).name();
+            teams.add(new TeamSearchResult(name.id(), name.display(), page.get(i).score()));
+        }
+        String next = page.size() > limit ? page.get(limit - 1).position().encode() : null;
+        return new TeamSearchResponse(teams, next);
+    }
+
+    private void prefixMatches(String key, Position after, int count, List<Hit> page) {
+        NavigableSet<Name> tail = after == null
+                ? sorted.tailSet(new Name(Long.MIN_VALUE, key, key, 0), true)
+                : sorted.tailSet(new Name(after.id(), after.key(), after.key(), 0), false);
+        for (Name name : tail) {
+            if (page.size() == count || !name.key().startsWith(key)) {
+                return;
+            }
+            page.add(new Hit(name, 1.0, new Position(true, 1000, name.key(), name.id())));
+        }
+    }
+
+    private void similarMatches(String key, Position after, int count, List<Hit> page) {
+        List<String> queryTrigrams = trigrams(key);
+        List<Set<Long>> lists = new ArrayList<>(queryTrigrams.size());
+        for (String trigram : queryTrigrams) {
+            Set<Long> teams = postings.get(trigram);
+            if (teams != null) {
+                lists.add(teams);
+            }
+        }
+        lists.sort(Comparator.comparingInt(Set::size));
+        Map<Long, Integer> shared = new HashMap<>();
+        int visited = 0;
+        for (Set<Long> teams : lists) {
+            if (visited + teams.size() > maxPostings) {
+                break;
+            }
+            visited += teams.size();
+            teams.forEach(teamId -> shared.merge(teamId, 1, Integer::sum));
+        }
+
+        List<Hit> hits = new ArrayList<>();
+        shared.forEach((teamId, common) -> {
+            Name name = names.get(teamId);
+            if (name.key().startsWith(key)) {
+                return;
+            }
+            double score = (double) common / (queryTrigrams.size() + name.trigrams() - common);
+            if (score < similarity) {
+                return;
+            }
+            Position position = new Position(false, (int) Math.round(score * 1000), name.key(), teamId);
+            if (after == null || position.compareTo(after) > 0) {
+                hits.add(new Hit(name, position.permille() / 1000.0, position));
+            }
+        });
+        hits.sort(Comparator.comparing(Hit::position));
+        for (int i = 0; i < hits.size() && i < count; i++) {
+            page.add(hits.get(i));
+        }
+    }
+
+    private void put(Long teamId, String display) {
+        String key = normalize(display);
+        List<String> trigrams = trigrams(key);
+        Name name = new Name(teamId, key, display, trigrams.size());
+        names.put(teamId, name);
+        sorted.add(name);
+        for (String trigram : trigrams) {
+            postings.computeIfAbsent(trigram, k -> new HashSet<>(4)).add(teamId);
+        }
+    }
+
+    private String delete(Long teamId) {
+        Name name = names.remove(teamId);
+        if (name == null) {
+            return null;
+        }
+        sorted.remove(name);
+        for (String trigram : trigrams(name.key())) {
+            Set<Long> teams = postings.get(trigram);
+            teams.remove(teamId);
+            if (teams.isEmpty()) {
+                postings.remove(trigram);
+            }
+        }
+        return name.display();
+    }
+
+    static String normalize(String name) {
+        return name == null ? "" : name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // distinct trigrams of the padded name
+    static List<String> trigrams(String key) {
+        String padded = "  " + key + " ";
+        Set<String> trigrams = new HashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            trigrams.add(padded.substring(i, i + 3));
+        }
+        return new ArrayList<>(trigrams);
+    }
+
+    private record Name(Long id, String key, String display, int trigrams) {
+    }
+
+    private record Hit(Name name, double score, Position position) {
+    }
+
+    /**
+     * Sort key of a result: prefix matches first, then by descending similarity, name and id.
+     */
+    private record Position(boolean prefix, int permille, String key, long id) implements Comparable<Position> {
+
+        private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+        private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+        @Override
+        public int compareTo(Position other) {
+            if (prefix != other.prefix) {
+                return prefix ? -1 : 1;
+            }
+            int result = Integer.compare(other.permille, permille);
+            if (result == 0) {
+                result = key.compareTo(other.key);
+            }
+            return result != 0 ? result : Long.compare(id, other.id);
+        }
+
+        String encode() {
+            String value = (prefix ? "p" : "s") + ":" + permille + ":" + id + ":" + key;
+            return ENCODER.encodeToString(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Position decode(String cursor) {
+            try {
+                String[] parts = new String(DECODER.decode(cursor), StandardCharsets.UTF_8).split(":", 4);
+                if (parts.length != 4 || !(parts[0].equals("p") || parts[0].equals("s"))) {
+                    throw new InvalidSearchCursorException("Invalid search cursor");
+                }
+                return new Position(parts[0].equals("p"), Integer.parseInt(parts[1]), parts[3],
+                        Long.parseLong(parts[2]));
+            } catch (IllegalArgumentException e) {
+                throw new InvalidSearchCursorException("Invalid search cursor");
+            }
+        }
+    }
+}
@@ -1,9 +1,13 @@
 package com.isazobu.rowmatch.backend.team.model;
 
 import com.fasterxml.jackson.annotation.JsonManagedReference;
+import com.isazobu.rowmatch.backend.cache.SecondLevelCacheConfig;
 import com.isazobu.rowmatch.backend.user.model.User;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.OptimisticLock;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -11,12 +15,18 @@ import java.util.List;
 
 @Entity
 @Table(name = "teams")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCacheConfig.TEAMS)
 @Getter
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
 @ToString
 public class Team {
+
+    // maximum number of members a team can have
+    public static final int CAPACITY = 20;
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -24,12 +34,34 @@ public class Team {
     @Column(unique = true)
     private String name;
 
+    // denormalized size of users, maintained with conditional updates so capacity checks never load the members
+    @Column(name = "member_count", nullable = false)
+    private int memberCount = 0;
+
+    // incremented by the member count updates as well, so a stale team entity cannot overwrite the count.
+    // The members reference the team from their side, joining or leaving does not touch the team entity
+    @Version
+    @Column(nullable = false)
+    private long version;
+
+    // cached per team, the services evict it when a member joins or leaves, see SecondLevelCache
+    @OptimisticLock(excluded = true)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCacheConfig.TEAM_MEMBERS)
     @OneToMany(mappedBy = "team", cascade = CascadeType.ALL, fetch = FetchType.LAZY
     )
     @JsonManagedReference
+    @ToString.Exclude
     private List<User> users = new ArrayList<>();
 
 
+    public Team(Long id, String name, List<User> users) {
+        this.id = id;
+        this.name = name;
+        this.users = users;
+        this.memberCount = users.size();
+    }
+
+
     public Team addUsers(User user) {
         this.users.add(user);
         user.setTeam(this);
@@ -1,14 +1,68 @@
 package com.isazobu.rowmatch.backend.team.repository;
 
+import com.isazobu.rowmatch.backend.team.dto.GetTeams;
+import com.isazobu.rowmatch.backend.team.dto.TeamMemberRow;
+import com.isazobu.rowmatch.backend.team.dto.TeamVersion;
 import com.isazobu.rowmatch.backend.team.model.Team;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface TeamRepository extends JpaRepository<Team, Long> {
+public interface TeamRepository extends JpaRepository<Team, Long>, TeamSeats {
+    // served from the query cache until the teams table changes
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<Team> findByName(String name);
+
+    /**
+     * Returns the team with the given name joined with its members, one row per member or a single row without
+     * member fields for an empty team, in one query and without loading entities or tokens.
+     */
+    @Query("SELECT new com.isazobu.rowmatch.backend.team.dto.TeamMemberRow(t.id, t.name, t.memberCount, t.version, " +
+            "u.id, u.name, u.level, u.coins, u.country, u.version) " +
+            "FROM Team t LEFT JOIN t.users u WHERE t.name = :name ORDER BY u.id")
+    List<TeamMemberRow> findTeamWithMembers(@Param("name") String name);
+
+    /**
+     * Returns the versions of the team with the given name and of its members, aggregated in the database so that
+     * no member row is sent back.
+     */
+    @Query("SELECT new com.isazobu.rowmatch.backend.team.dto.TeamVersion(t.id, t.version, COALESCE(SUM(u.version), 0L)) " +
+            "FROM Team t LEFT JOIN t.users u WHERE t.name = :name GROUP BY t.id, t.version")
+    Optional<TeamVersion> findTeamVersion(@Param("name") String name);
+
+    /**
+     * Returns id, name and member count of every team with less than {@code capacity} members,
+     * without loading the member collections.
+     */
+    @Query("SELECT new com.isazobu.rowmatch.backend.team.dto.GetTeams(t.id, t.name, t.memberCount) " +
+            "FROM Team t WHERE t.memberCount < :capacity")
+    List<GetTeams> findJoinableTeams(@Param("capacity") int capacity);
+
+    /**
+     * Returns id, name and member count of every team, without loading the member collections.
+     */
+    @Query("SELECT new com.isazobu.rowmatch.backend.team.dto.GetTeams(t.id, t.name, t.memberCount) FROM Team t")
+    List<GetTeams> findAllTeams();
+
+    /**
+     * Corrects the member counts that do not match the users table, e.g. for teams created before the
+     * column existed. Teams whose count is right are neither written nor given a new version.
+     */
+    @Modifying
+    @Query(value = "UPDATE teams t SET t.member_count = (SELECT COUNT(*) FROM users u WHERE u.team_id = t.id), " +
+            "t.version = t.version + 1 " +
+            "WHERE t.member_count <> (SELECT COUNT(*) FROM users u WHERE u.team_id = t.id)",
+            nativeQuery = true)
+    int recountMembers();
 //    @Query("SELECT t FROM Team t WHERE (SELECT COUNT(u) FROM User u WHERE u.team = t) < 20 ORDER BY RAND()")
 //    List<Team> findRandomJoinableTeams(Pageable pageable);
 
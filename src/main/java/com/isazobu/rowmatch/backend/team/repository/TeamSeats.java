@@ -0,0 +1,31 @@
+package com.isazobu.rowmatch.backend.team.repository;
+
+/**
+ * Member count updates of {@link TeamRepository}, written with JDBC so that only the changed team is evicted from the
+ * second-level cache. JPQL bulk statements would empty the whole {@code teams} region and the query cache on every
+ * join and leave.
+ */
+public interface TeamSeats {
+
+    /**
+     * Takes a seat in the team in a single statement, only if the team is below {@code capacity}.
+     *
+     * @return 1 if the seat was taken, 0 if the team does not exist or is full
+     */
+    int addMember(Long teamId, int capacity);
+
+    /**
+     * Frees a seat in the team. Pending changes are flushed first and the persistence context is cleared afterwards,
+     * so a following read sees the new count.
+     *
+     * @return 1 if a seat was freed, 0 if the team does not exist or is already empty
+     */
+    int removeMember(Long teamId);
+
+    /**
+     * Deletes the team if nobody is left in it. A concurrent join keeps the team alive.
+     *
+     * @return 1 if the team was deleted, 0 otherwise
+     */
+    int deleteIfEmpty(Long teamId);
+}
@@ -0,0 +1,65 @@
+package com.isazobu.rowmatch.backend.team.repository;
+
+import com.isazobu.rowmatch.backend.cache.SecondLevelCache;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * JDBC implementation of {@link TeamSeats}, picked up by Spring Data as a fragment of {@link TeamRepository}. The
+ * statements run in the surrounding transaction but bypass Hibernate, so each one flushes the pending changes before
+ * and evicts the team it changed after.
+ */
+class TeamSeatsImpl implements TeamSeats {
+
+    static final String ADD_MEMBER_SQL = "UPDATE teams SET member_count = member_count + 1, version = version + 1 "
+            + "WHERE id = ? AND member_count < ?";
+    static final String REMOVE_MEMBER_SQL = "UPDATE teams SET member_count = member_count - 1, version = version + 1 "
+            + "WHERE id = ? AND member_count > 0";
+    static final String DELETE_IF_EMPTY_SQL = "DELETE FROM teams WHERE id = ? AND member_count = 0";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SecondLevelCache secondLevelCache;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    TeamSeatsImpl(JdbcTemplate jdbcTemplate, SecondLevelCache secondLevelCache) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.secondLevelCache = secondLevelCache;
+    }
+
+    @Override
+    public int addMember(Long teamId, int capacity) {
+        entityManager.flush();
+        int updated = jdbcTemplate.update(ADD_MEMBER_SQL, teamId, capacity);
+        if (updated > 0) {
+            secondLevelCache.evictTeam(teamId);
+        }
+        return updated;
+    }
+
+    @Override
+    public int removeMember(Long teamId) {
+        // the member's team reference has to be written before the team can be deleted
+        entityManager.flush();
+        int updated = jdbcTemplate.update(REMOVE_MEMBER_SQL, teamId);
+        if (updated > 0) {
+            secondLevelCache.evictTeam(teamId);
+        }
+        entityManager.clear();
+        return updated;
+    }
+
+    @Override
+    public int deleteIfEmpty(Long teamId) {
+        entityManager.flush();
+        int deleted = jdbcTemplate.update(DELETE_IF_EMPTY_SQL, teamId);
+        if (deleted > 0) {
+            secondLevelCache.evictTeam(teamId);
+            // cached name lookups hold the id of the deleted team
+            secondLevelCache.evictQueryResults();
+        }
+        return deleted;
+    }
+}
@@ -0,0 +1,128 @@
+package com.isazobu.rowmatch.backend.team.service;
+
+import com.isazobu.rowmatch.backend.exceptions.UpdateConflictException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admission of team joins inside this instance, so that a crowd joining the same team does not reach the database
+ * all at once.
+ * <p>
+ * Joins of the same team take turns on one of {@code rowmatch.teams.admission.stripes} fair locks, chosen by the
+ * team id, while joins of teams on other stripes run in parallel. The turn lasts until the join has committed, so
+ * the database only ever sees one join per team from this instance. When a join finds the team full, the team is
+ * marked full and the joins queued behind it are rejected without a query. A mark expires after
+ * {@code rowmatch.teams.admission.full-ttl}, or earlier when a member of this instance leaves, because seats freed
+ * on other instances are not seen here. The conditional member count update stays the actual capacity check.
+ * <p>
+ * Locks instead of {@code synchronized} blocks keep waiting virtual threads off their carrier threads.
+ */
+@Component
+public class TeamAdmission {
+
+    private final boolean enabled;
+    private final ReentrantLock[] stripes;
+    private final long waitTimeoutNanos;
+    private final long fullTtlNanos;
+
+    // team id -> System.nanoTime() when the team was seen full
+    private final Map<Long, Long> fullSince = new ConcurrentHashMap<>();
+
+    public TeamAdmission(@Value("${rowmatch.teams.admission.enabled:true}") boolean enabled,
+                         @Value("${rowmatch.teams.admission.stripes:256}") int stripes,
+                         @Value("${rowmatch.teams.admission.wait-timeout:5s}") Duration waitTimeout,
+                         @Value("${rowmatch.teams.admission.full-ttl:2s}") Duration fullTtl) {
+        if (stripes < 1) {
+            throw new IllegalArgumentException("rowmatch.teams.admission.stripes must be at least 1");
+        }
+        this.enabled = enabled;
+        // rounded up to a power of two, so that a stripe is picked with a mask
+        int size = 1;
+        while (size < stripes) {
+            size <<= 1;
+        }
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < this.stripes.length; i++) {
+            this.stripes[i] = new ReentrantLock(true);
+        }
+        this.waitTimeoutNanos = waitTimeout.toNanos();
+        this.fullTtlNanos = fullTtl.toNanos();
+    }
+
+    /**
+     * Waits for the turn of the team, close the returned turn once the join has committed or failed.
+     *
+     * @throws UpdateConflictException if the joins queued for the team took longer than the wait timeout
+     */
+    public Turn enter(Long teamId) {
+        if (!enabled) {
+            return () -> {
+            };
+        }
+        ReentrantLock lock = stripes[stripe(teamId)];
+        try {
+            if (!lock.tryLock(waitTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                throw new UpdateConflictException("Too many concurrent joins for the team, try again");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UpdateConflictException("Interrupted while waiting to join the team");
+        }
+        return lock::unlock;
+    }
+
+    /**
+     * @return true if a join recently found the team full and no member of this instance left it since
+     */
+    public boolean isKnownFull(Long teamId) {
+        if (!enabled) {
+            return false;
+        }
+        Long since = fullSince.get(teamId);
+        if (since == null) {
+            return false;
+        }
+        if (System.nanoTime() - since >= fullTtlNanos) {
+            fullSince.remove(teamId, since);
+            return false;
+        }
+        return true;
+    }
+
+    public void markFull(Long teamId) {
+        if (enabled) {
+            fullSince.put(teamId, System.nanoTime());
+        }
+    }
+
+    /**
+     * Called when a member left the team or the team was deleted.
+     */
+    public void seatFreed(Long teamId) {
+        fullSince.remove(teamId);
+    }
+
+    int stripe(Long teamId) {
+        // Fibonacci hashing spreads consecutive ids over the stripes
+        return (int) ((teamId * 0x9E3779B97F4A7C15L) >>> 32) & (stripes.length - 1);
+    }
+
+    int stripes() {
+        return stripes.length;
+    }
+
+    /**
+     * The turn of a join, held from before its transaction until after its commit.
+     */
+    @FunctionalInterface
+    public interface Turn extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -2,10 +2,11 @@ package com.isazobu.rowmatch.backend.team.service;
 
 import com.isazobu.rowmatch.backend.exceptions.*;
 import com.isazobu.rowmatch.backend.team.dto.CreateTeamRequest;
-import com.isazobu.rowmatch.backend.team.dto.GetTeams;
+import com.isazobu.rowmatch.backend.team.dto.RandomTeams;
+import com.isazobu.rowmatch.backend.team.dto.TeamResponse;
+import com.isazobu.rowmatch.backend.team.dto.TeamSearchResponse;
 import com.isazobu.rowmatch.backend.team.model.Team;
 
-import java.util.List;
 
 public interface TeamService {
 
@@ -35,7 +36,15 @@ public interface TeamService {
      * @header token the token of the user who wants to join the team
      */
 
-    Team getTeamByName(String teamName);
+    TeamResponse getTeamByName(String teamName);
+
+    /**
+     * Returns the ETag of the team with the given name, which changes whenever a member joins or leaves or a member's
+     * level or coins change, without reading the members.
+     *
+     * @throws EntityNotFoundException if no team has the given name
+     */
+    String getTeamETag(String teamName);
 
 
     Team joinTeam(Long teamId, String token)
@@ -60,11 +69,20 @@ public interface TeamService {
             throws TeamNotFoundException, UserNotFoundException, UserNotInTeamException;
 
     /**
-     * Retrieves up to ten random teams that have at least one empty spot for a new member to join.
+     * Retrieves up to ten random teams that have at least one empty spot for a new member to join. The same sample
+     * is served for a short freshness window so that polling clients can revalidate it with its ETag.
+     */
+    RandomTeams getRecentRandomJoinableTeams();
+
+    /**
+     * Finds the teams whose name starts with the query, followed by teams with a similar name, e.g. with a typo.
      *
-     * @return a list of up to ten random teams with at least one empty spot to join
+     * @param limit  the page size, at most 50
+     * @param cursor the cursor returned with the previous page, or null for the first page
+     * @return a page of matching teams and the cursor of the next page
+     * @throws InvalidSearchCursorException if the cursor is malformed
      */
-    List<GetTeams> getRandomJoinableTeams();
+    TeamSearchResponse searchTeams(String query, int limit, String cursor);
 
 
 }
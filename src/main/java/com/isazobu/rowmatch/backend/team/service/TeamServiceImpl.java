@@ -1,157 +1,278 @@
 package com.isazobu.rowmatch.backend.team.service;
 
+import com.isazobu.rowmatch.backend.cache.SecondLevelCache;
+import com.isazobu.rowmatch.backend.events.DomainEventBus;
 import com.isazobu.rowmatch.backend.exceptions.*;
+import com.isazobu.rowmatch.backend.filter.NameFilters;
+import com.isazobu.rowmatch.backend.leaderboard.index.TeamLeaderboard;
+import com.isazobu.rowmatch.backend.metrics.GameMetrics;
+import com.isazobu.rowmatch.backend.outbox.service.Outbox;
 import com.isazobu.rowmatch.backend.team.dto.CreateTeamRequest;
-import com.isazobu.rowmatch.backend.team.dto.GetTeams;
+import com.isazobu.rowmatch.backend.team.dto.RandomTeams;
+import com.isazobu.rowmatch.backend.team.dto.TeamMemberRow;
+import com.isazobu.rowmatch.backend.team.dto.TeamResponse;
+import com.isazobu.rowmatch.backend.team.dto.TeamSearchResponse;
+import com.isazobu.rowmatch.backend.team.index.JoinableTeamIndex;
+import com.isazobu.rowmatch.backend.team.index.JoinableTeamSnapshot;
+import com.isazobu.rowmatch.backend.team.index.RandomTeamSample;
+import com.isazobu.rowmatch.backend.team.index.TeamNameIndex;
 import com.isazobu.rowmatch.backend.team.model.Team;
 import com.isazobu.rowmatch.backend.team.repository.TeamRepository;
+import com.isazobu.rowmatch.backend.transaction.OptimisticTransactions;
+import com.isazobu.rowmatch.backend.user.auth.UserTokenResolver;
 import com.isazobu.rowmatch.backend.user.model.User;
 import com.isazobu.rowmatch.backend.user.repository.UserRepository;
 import jakarta.persistence.EntityNotFoundException;
-import jakarta.transaction.Transactional;
-import org.hibernate.Hibernate;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @Service
 public class TeamServiceImpl implements TeamService {
 
+    // largest page of team search results
+    static final int MAX_SEARCH_LIMIT = 50;
 
     private final TeamRepository teamRepository;
     private final UserRepository userRepository;
-
-    public TeamServiceImpl(TeamRepository teamRepository, UserRepository userRepository) {
+    private final UserTokenResolver userTokenResolver;
+    private final JoinableTeamIndex joinableTeamIndex;
+    private final GameMetrics gameMetrics;
+    private final TeamLeaderboard teamLeaderboard;
+    private final TeamNameIndex teamNameIndex;
+    private final NameFilters nameFilters;
+    private final OptimisticTransactions optimisticTransactions;
+    private final TeamAdmission teamAdmission;
+    private final SecondLevelCache secondLevelCache;
+    private final RandomTeamSample randomTeamSample;
+    private final JoinableTeamSnapshot joinableTeamSnapshot;
+    private final DomainEventBus domainEventBus;
+    private final Outbox outbox;
+
+    public TeamServiceImpl(TeamRepository teamRepository, UserRepository userRepository,
+                           UserTokenResolver userTokenResolver, JoinableTeamIndex joinableTeamIndex,
+                           GameMetrics gameMetrics, TeamLeaderboard teamLeaderboard, TeamNameIndex teamNameIndex,
+                           NameFilters nameFilters, OptimisticTransactions optimisticTransactions,
+                           TeamAdmission teamAdmission, SecondLevelCache secondLevelCache,
+                           RandomTeamSample randomTeamSample, JoinableTeamSnapshot joinableTeamSnapshot,
+                           DomainEventBus domainEventBus, Outbox outbox) {
         this.teamRepository = teamRepository;
         this.userRepository = userRepository;
+        this.userTokenResolver = userTokenResolver;
+        this.joinableTeamIndex = joinableTeamIndex;
+        this.gameMetrics = gameMetrics;
+        this.teamLeaderboard = teamLeaderboard;
+        this.teamNameIndex = teamNameIndex;
+        this.nameFilters = nameFilters;
+        this.optimisticTransactions = optimisticTransactions;
+        this.teamAdmission = teamAdmission;
+        this.secondLevelCache = secondLevelCache;
+        this.randomTeamSample = randomTeamSample;
+        this.joinableTeamSnapshot = joinableTeamSnapshot;
+        this.domainEventBus = domainEventBus;
+        this.outbox = outbox;
     }
 
+    @Override
     public Team createTeam(CreateTeamRequest request, String token) throws NotEnoughCoinsException {
-        User user = userRepository.findByToken(token)
-                .orElseThrow(() -> new EntityNotFoundException("User not found"));
-
-        if (user.getTeam() != null) {
-            throw new EntityAlreadyExistsException("User already has a team");
-        }
-
-        String teamName = request.getName();
-        Optional<Team> teamOptional = teamRepository.findByName(teamName);
-        if (teamOptional.isPresent()) {
-            throw new EntityAlreadyExistsException("Team name already exists");
-        }
-
-        if(user.getCoins() < 1000){
-            throw new NotEnoughCoinsException("Not enough coins");
-        }
-
-        user.setCoins(user.getCoins() - 1000);
-
-
-        // create team and add the user to it
-        Team team = new Team();
-        team.setName(teamName);
-        team.addUsers(user);
-
-
-        return teamRepository.save(team);
+        // the coins are deducted from the user version that was read, a concurrent change of the user retries
+        Team savedTeam = optimisticTransactions.execute("Team creation", () -> {
+            User user = userTokenResolver.findByToken(token)
+                    .orElseThrow(() -> new EntityNotFoundException("User not found"));
+
+            if (user.getTeam() != null) {
+                throw new EntityAlreadyExistsException("User already has a team");
+            }
+
+            // most names are new, the filter lets those skip the lookup
+            String teamName = request.getName();
+            if (nameFilters.teamNameMightExist(teamName) && teamRepository.findByName(teamName).isPresent()) {
+                throw new EntityAlreadyExistsException("Team name already exists");
+            }
+
+            if(user.getCoins() < 1000){
+                throw new NotEnoughCoinsException("Not enough coins");
+            }
+
+            user.setCoins(user.getCoins() - 1000);
+
+
+            // create team and add the user to it
+            Team team = new Team();
+            team.setName(teamName);
+            team.addUsers(user);
+            team.setMemberCount(1);
+
+            Team saved;
+            try {
+                saved = teamRepository.save(team);
+            } catch (DataIntegrityViolationException e) {
+                // the unique index catches the names the filter cannot know, e.g. those of another instance
+                throw new EntityAlreadyExistsException("Team name already exists");
+            }
+            outbox.teamJoined(user.getId(), saved.getId());
+            return saved;
+        });
+
+        User user = savedTeam.getFirstUser();
+        nameFilters.teamNameAdded(savedTeam.getName());
+        joinableTeamIndex.update(savedTeam.getId(), savedTeam.getName(), savedTeam.getMemberCount());
+        teamNameIndex.add(savedTeam.getId(), savedTeam.getName());
+        teamLeaderboard.memberJoined(savedTeam.getId(), savedTeam.getName(), user.getId(), user.getLevel());
+        domainEventBus.teamJoined(user.getId(), savedTeam.getId());
+        gameMetrics.teamCreated(1000);
+        return savedTeam;
     }
 
 
     @Override
-    public Team getTeamByName(String name) {
-        Optional<Team> teamOptional = teamRepository.findByName(name);
-        if (teamOptional.isEmpty()) {
+    @Transactional(readOnly = true)
+    public TeamResponse getTeamByName(String name) {
+        // team and members in one query straight into the response, no entity is loaded or touched
+        List<TeamMemberRow> rows = teamRepository.findTeamWithMembers(name);
+        if (rows.isEmpty()) {
             throw new EntityNotFoundException("Team not found");
         }
+        return TeamResponse.of(rows);
+    }
 
-        // remove team members' tokens
-        Team team = teamOptional.get();
-        List<User> users = team.getUsers();
-        users.forEach(user -> user.setToken(null));
-        return team;
+    @Override
+    @Transactional(readOnly = true)
+    public String getTeamETag(String name) {
+        // the member versions are summed in the database, revalidating costs one row whatever the team size
+        return teamRepository.findTeamVersion(name)
+                .orElseThrow(() -> new EntityNotFoundException("Team not found"))
+                .getETag();
     }
 
     @Override
     public Team joinTeam(Long teamId, String token) throws NotEnoughCoinsException {
-
-        Team team = teamRepository.findById(teamId)
-                .orElseThrow(() -> new TeamNotFoundException("Team not found"));
-
-        List<User> users = team.getUsers();
-        if (users.size() >= 20) {
+        // a team that was just seen full is rejected without reaching the database
+        if (teamAdmission.isKnownFull(teamId)) {
+            gameMetrics.teamFull();
             throw new TeamCapacityFullException("Team is already full");
         }
 
-        User user = userRepository.findByToken(token)
-                .orElseThrow(() -> new UserNotFoundException("User not found"));
-
-        if (user.getTeam() != null) {
-            throw new UserAlreadyInTeamException("User already has a team");
+        User user;
+        // joins of the same team take turns, those queued behind the join taking the last seat are rejected above
+        try (TeamAdmission.Turn turn = teamAdmission.enter(teamId)) {
+            if (teamAdmission.isKnownFull(teamId)) {
+                gameMetrics.teamFull();
+                throw new TeamCapacityFullException("Team is already full");
+            }
+
+            // a concurrent change of the user rolls back the seat and the deduction and retries, so a user racing
+            // into two teams ends up in one and pays once
+            user = optimisticTransactions.execute("Joining the team", () -> {
+                User member = userTokenResolver.findByToken(token)
+                        .orElseThrow(() -> new UserNotFoundException("User not found"));
+
+                if (member.getTeam() != null) {
+                    throw new UserAlreadyInTeamException("User already has a team");
+                }
+                if(member.getCoins() < 1000){
+                    throw new NotEnoughCoinsException("Not enough coins");
+                }
+
+                // take a seat with a single conditional update, so concurrent joins cannot exceed the capacity
+                if (teamRepository.addMember(teamId, Team.CAPACITY) == 0) {
+                    if (!teamRepository.existsById(teamId)) {
+                        throw new TeamNotFoundException("Team not found");
+                    }
+                    teamAdmission.markFull(teamId);
+                    joinableTeamSnapshot.markFull(teamId);
+                    gameMetrics.teamFull();
+                    throw new TeamCapacityFullException("Team is already full");
+                }
+
+                Team team = teamRepository.findById(teamId)
+                        .orElseThrow(() -> new TeamNotFoundException("Team not found"));
+
+                member.setCoins(member.getCoins() - 1000);
+                member.setTeam(team);
+                userRepository.save(member);
+                outbox.teamJoined(member.getId(), teamId);
+                // the cached members of the team are not updated by the member's side of the mapping
+                secondLevelCache.evictTeamMembers(teamId);
+                return member;
+            });
+
+            if (user.getTeam().getMemberCount() >= Team.CAPACITY) {
+                teamAdmission.markFull(teamId);
+                // random teams stop offering it right away, not only once the snapshot is refreshed
+                joinableTeamSnapshot.markFull(teamId);
+            }
         }
-        if(user.getCoins() < 1000){
-            throw new NotEnoughCoinsException("Not enough coins");
-        }
-
-        user.setCoins(user.getCoins() - 1000);
-        userRepository.save(user);
 
-        team.addUsers(user);
-        return teamRepository.save(team);
+        Team team = user.getTeam();
+        joinableTeamIndex.update(team.getId(), team.getName(), team.getMemberCount());
+        teamLeaderboard.memberJoined(team.getId(), team.getName(), user.getId(), user.getLevel());
+        domainEventBus.teamJoined(user.getId(), team.getId());
+        gameMetrics.teamJoined(1000);
+        return team;
     }
 
     @Override
-    @Transactional
     public void leaveTeam(String token) throws TeamNotFoundException, UserNotFoundException, UserNotInTeamException {
-        User user = userRepository.findByToken(token)
-                .orElseThrow(() -> new UserNotFoundException("User not found"));
-
-        if (user.getTeam() == null) {
-            throw new UserNotInTeamException("User is not in a team");
-        }
-
-        Team userTeam = user.getTeam();
+        Departure departure = optimisticTransactions.execute("Leaving the team", () -> {
+            User user = userTokenResolver.findByToken(token)
+                    .orElseThrow(() -> new UserNotFoundException("User not found"));
 
+            if (user.getTeam() == null) {
+                throw new UserNotInTeamException("User is not in a team");
+            }
 
-        // if user is the leader, delete the team
-        if (userTeam.getUsers().size() == 1) {
-
-//            userTeam.removeUsers(user);
-            userTeam.getUsers().remove(user);
+            // reading the id of the lazy team proxy does not load the team or its members
+            Long teamId = user.getTeam().getId();
             user.setTeam(null);
-            teamRepository.deleteById(userTeam.getId());
+            userRepository.save(user);
+            secondLevelCache.evictTeamMembers(teamId);
+
+            teamRepository.removeMember(teamId);
+
+            // if user was the last member, delete the team
+            if (teamRepository.deleteIfEmpty(teamId) == 1) {
+                outbox.teamDisbanded(user.getId(), teamId);
+                return new Departure(user.getId(), teamId, null);
+            }
+            outbox.teamLeft(user.getId(), teamId);
+
+            Team team = teamRepository.findById(teamId)
+                    .orElseThrow(() -> new TeamNotFoundException("Team not found"));
+            return new Departure(user.getId(), teamId, team);
+        });
+
+        teamLeaderboard.memberLeft(departure.userId());
+        teamAdmission.seatFreed(departure.teamId());
+        if (departure.team() == null) {
+            domainEventBus.teamDisbanded(departure.userId(), departure.teamId());
+            joinableTeamIndex.remove(departure.teamId());
+            nameFilters.teamNameRemoved(teamNameIndex.remove(departure.teamId()));
             return;
         }
-
-        Hibernate.initialize(userTeam);
-        Long teamId = userTeam.getId();
-        Team team = teamRepository.findById(teamId)
-                .orElseThrow(() -> new EntityNotFoundException("Team not found"));
-
-        team.removeUsers(user);
-        teamRepository.save(team);
+        domainEventBus.teamLeft(departure.userId(), departure.teamId());
+        Team team = departure.team();
+        joinableTeamIndex.update(team.getId(), team.getName(), team.getMemberCount());
 
     }
 
 
     @Override
-    public List<GetTeams> getRandomJoinableTeams() {
-        // I want to get 10 random teams that have less t   han 20 users
-        List<Team> teams = teamRepository.findAll();
-        Collections.shuffle(teams); // randomize the order of teams
-
-        // just  return name
-        List<GetTeams> responseTeam = teams.stream()
-                .filter(team -> team.getUsers().size() < 20)
-                .limit(10)
-                .map(team -> new GetTeams(team.getId(), team.getName(), team.getUsers().size()))
-                .collect(Collectors.toList());
-
+    public RandomTeams getRecentRandomJoinableTeams() {
+        return randomTeamSample.current(10);
+    }
 
-        return responseTeam;
+    @Override
+    public TeamSearchResponse searchTeams(String query, int limit, String cursor) {
+        // answered from the in-memory name index, a LIKE '%q%' scan could not use the name index in MySQL
+        return teamNameIndex.search(query, Math.max(1, Math.min(limit, MAX_SEARCH_LIMIT)), cursor);
+    }
 
+    // outcome of leaving a team, the team is null if it was deleted
+    private record Departure(Long userId, Long teamId, Team team) {
     }
 
 
@@ -0,0 +1,44 @@
+package com.isazobu.rowmatch.backend.tournament.controller;
+
+import com.isazobu.rowmatch.backend.tournament.dto.CreateTournamentRequest;
+import com.isazobu.rowmatch.backend.tournament.dto.TournamentGroupResponse;
+import com.isazobu.rowmatch.backend.tournament.model.Tournament;
+import com.isazobu.rowmatch.backend.tournament.service.TournamentService;
+import com.isazobu.rowmatch.backend.user.auth.AdminKey;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/v1/tournaments")
+public class TournamentController {
+
+    private final TournamentService tournamentService;
+    private final AdminKey adminKey;
+
+    public TournamentController(TournamentService tournamentService, AdminKey adminKey) {
+        this.tournamentService = tournamentService;
+        this.adminKey = adminKey;
+    }
+
+    // only one tournament runs at a time, so starting one is an operator endpoint and off without an admin key
+    @PostMapping
+    public ResponseEntity<Tournament> createTournament(@RequestHeader(value = AdminKey.HEADER, required = false) String key,
+                                                       @RequestBody CreateTournamentRequest request) {
+        if (!adminKey.matches(key)) {
+            return new ResponseEntity<>(HttpStatus.FORBIDDEN);
+        }
+        Tournament tournament = tournamentService.createTournament(request);
+        return new ResponseEntity<>(tournament, HttpStatus.CREATED);
+    }
+
+    @PostMapping("/enter")
+    public ResponseEntity<TournamentGroupResponse> enterTournament(@RequestHeader("Authorization") String token) {
+        return new ResponseEntity<>(tournamentService.enterTournament(token), HttpStatus.CREATED);
+    }
+
+    @GetMapping("/group")
+    public TournamentGroupResponse getGroup(@RequestHeader("Authorization") String token) {
+        return tournamentService.getGroup(token);
+    }
+}
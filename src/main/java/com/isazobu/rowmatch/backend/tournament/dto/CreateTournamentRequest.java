@@ -0,0 +1,16 @@
+package com.isazobu.rowmatch.backend.tournament.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class CreateTournamentRequest {
+
+    private int durationMinutes = 60;
+    private int groupSize = 20;
+}
@@ -0,0 +1,21 @@
+package com.isazobu.rowmatch.backend.tournament.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class TournamentGroupResponse {
+
+    private Long tournamentId;
+    private int groupIndex;
+    private Instant endsAt;
+    private List<TournamentStanding> standings;
+}
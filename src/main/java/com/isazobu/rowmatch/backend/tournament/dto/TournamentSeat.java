@@ -0,0 +1,21 @@
+package com.isazobu.rowmatch.backend.tournament.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Entry of a user into a tournament with the name to show on the group leaderboard.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class TournamentSeat {
+
+    private Long userId;
+    private String name;
+    private Integer seat;
+    private Integer score;
+}
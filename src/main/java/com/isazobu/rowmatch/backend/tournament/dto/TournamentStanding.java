@@ -0,0 +1,19 @@
+package com.isazobu.rowmatch.backend.tournament.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class TournamentStanding {
+
+    private int rank;
+    private Long userId;
+    private String name;
+    // levels completed since entering the tournament
+    private int score;
+}
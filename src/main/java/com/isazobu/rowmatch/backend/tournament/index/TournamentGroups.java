@@ -0,0 +1,381 @@
+package com.isazobu.rowmatch.backend.tournament.index;
+
+import com.isazobu.rowmatch.backend.tournament.dto.TournamentGroupResponse;
+import com.isazobu.rowmatch.backend.tournament.dto.TournamentSeat;
+import com.isazobu.rowmatch.backend.tournament.dto.TournamentStanding;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Live groups of the running tournament.
+ * <p>
+ * Every user who enters takes the next seat, and seat / group size is their group, so groups fill up one after
+ * the other without coordination beyond an atomic counter. Each group keeps its members sorted by score, highest
+ * first, then by seat. Groups are spread over a power of two number of shards, each guarded by its own lock,
+ * so entries and level completions of users in different groups proceed in parallel instead of serializing on
+ * one structure. The seat of every user is looked up in a concurrent map without any lock.
+ * <p>
+ * Scores changed since the last checkpoint are tracked per shard, so they can be written periodically and
+ * restored after a restart.
+ * <p>
+ * The groups live in the memory of the tournament node only (see {@code rowmatch.tournaments.node.enabled}), which
+ * hands out every seat. Levels completed on other instances reach the groups through {@link #raiseScore(long, int)}.
+ */
+@Component
+public class TournamentGroups {
+
+    private final Shard[] shards;
+    private final Map<Long, Seat> seats = new ConcurrentHashMap<>();
+    private final AtomicInteger nextSeat = new AtomicInteger();
+    private volatile Running running;
+
+    public TournamentGroups(@Value("${rowmatch.tournaments.lock-stripes:0}") int lockStripes) {
+        int stripes = lockStripes > 0 ? lockStripes : Runtime.getRuntime().availableProcessors() * 4;
+        int size = stripes <= 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        this.shards = new Shard[size];
+        for (int i = 0; i < size; i++) {
+            shards[i] = new Shard();
+        }
+    }
+
+    /**
+     * Starts accepting entries and scores for the tournament, replacing any previous one.
+     *
+     * @param entries seats already taken, e.g. before a restart
+     */
+    public synchronized void open(long tournamentId, int groupSize, Instant endsAt, Collection<TournamentSeat> entries) {
+        running = null;
+        clear();
+        int seatCount = 0;
+        for (TournamentSeat entry : entries) {
+            Seat seat = new Seat(tournamentId, entry.getUserId(), entry.getSeat(), entry.getSeat() / groupSize);
+            seats.put(seat.userId(), seat);
+            Shard shard = shard(seat.groupIndex());
+            shard.lock.lock();
+            try {
+                shard.groups.computeIfAbsent(seat.groupIndex(), index -> new ArrayList<>())
+                        .add(new Member(seat.userId(), entry.getName(), seat.seat(), entry.getScore()));
+            } finally {
+                shard.lock.unlock();
+            }
+            seatCount = Math.max(seatCount, seat.seat() + 1);
+        }
+        for (Shard shard : shards) {
+            shard.lock.lock();
+            try {
+                shard.groups.values().forEach(group -> group.sort(null));
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        nextSeat.set(seatCount);
+        running = new Running(tournamentId, groupSize, endsAt);
+    }
+
+    /**
+     * @return the tournament accepting entries and scores, if any
+     */
+    public Optional<Running> running() {
+        return Optional.ofNullable(running);
+    }
+
+    /**
+     * Seats the user in the next free place of the running tournament.
+     *
+     * @return the seat, or empty if the tournament is not running or the user has already entered
+     */
+    public Optional<Seat> enter(long userId, String name) {
+        Running tournament = running;
+        if (tournament == null || !tournament.isRunning(Instant.now())) {
+            return Optional.empty();
+        }
+        Seat[] entered = new Seat[1];
+        seats.computeIfAbsent(userId, id -> {
+            int seat = nextSeat.getAndIncrement();
+            entered[0] = new Seat(tournament.tournamentId(), id, seat, seat / tournament.groupSize());
+            return entered[0];
+        });
+        if (entered[0] == null) {
+            return Optional.empty();
+        }
+
+        Seat seat = entered[0];
+        Shard shard = shard(seat.groupIndex());
+        shard.lock.lock();
+        try {
+            // concurrent entries may get here out of seat order, so the new member is moved to their place
+            List<Member> group = shard.groups.computeIfAbsent(seat.groupIndex(), index -> new ArrayList<>());
+            group.add(new Member(userId, name, seat.seat(), 0));
+            moveUp(group, group.size() - 1);
+        } finally {
+            shard.lock.unlock();
+        }
+        return Optional.of(seat);
+    }
+
+    /**
+     * Removes the user from their group, e.g. when their entry could not be saved.
+     */
+    public void leave(long userId) {
+        Seat seat = seats.remove(userId);
+        if (seat == null) {
+            return;
+        }
+        Shard shard = shard(seat.groupIndex());
+        shard.lock.lock();
+        try {
+            List<Member> group = shard.groups.get(seat.groupIndex());
+            if (group != null) {
+                group.removeIf(member -> member.userId == userId);
+            }
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    /**
+     * Scores a completed level for the user, if they are in the running tournament.
+     *
+     * @return false if the user is not in a running tournament
+     */
+    public boolean levelCompleted(Long userId) {
+        Seat seat = userId == null ? null : seats.get(userId);
+        Running tournament = running;
+        if (seat == null || tournament == null || seat.tournamentId() != tournament.tournamentId()
+                || !tournament.isRunning(Instant.now())) {
+            return false;
+        }
+
+        Shard shard = shard(seat.groupIndex());
+        shard.lock.lock();
+        try {
+            List<Member> group = shard.groups.get(seat.groupIndex());
+            if (group == null) {
+                return false;
+            }
+            int index = indexOf(group, userId);
+            if (index < 0) {
+                return false;
+            }
+            Member member = group.get(index);
+            member.score++;
+            moveUp(group, index);
+            shard.dirty.add(member);
+            return true;
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    /**
+     * Raises the user's score, e.g. to the levels they completed since entering as stored in the database, which
+     * includes those completed on other instances.
+     *
+     * @return false if the user is not in the running tournament or their score is not lower
+     */
+    public boolean raiseScore(long userId, int score) {
+        Seat seat = seats.get(userId);
+        Running tournament = running;
+        if (seat == null || tournament == null || seat.tournamentId() != tournament.tournamentId()) {
+            return false;
+        }
+
+        Shard shard = shard(seat.groupIndex());
+        shard.lock.lock();
+        try {
+            List<Member> group = shard.groups.get(seat.groupIndex());
+            int index = group == null ? -1 : indexOf(group, userId);
+            if (index < 0 || group.get(index).score >= score) {
+                return false;
+            }
+            Member member = group.get(index);
+            member.score = score;
+            moveUp(group, index);
+            shard.dirty.add(member);
+            return true;
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    /**
+     * @return the live leaderboard of the user's group, or empty if the user is not in the running tournament
+     */
+    public Optional<TournamentGroupResponse> groupOf(long userId) {
+        Seat seat = seats.get(userId);
+        Running tournament = running;
+        if (seat == null || tournament == null || seat.tournamentId() != tournament.tournamentId()) {
+            return Optional.empty();
+        }
+
+        Shard shard = shard(seat.groupIndex());
+        List<TournamentStanding> standings;
+        shard.lock.lock();
+        try {
+            standings = standings(shard.groups.getOrDefault(seat.groupIndex(), List.of()));
+        } finally {
+            shard.lock.unlock();
+        }
+        return Optional.of(new TournamentGroupResponse(tournament.tournamentId(), seat.groupIndex(),
+                tournament.endsAt(), standings));
+    }
+
+    /**
+     * Returns the scores changed since the previous call and forgets them.
+     */
+    public List<ScoreUpdate> drainChangedScores() {
+        Running tournament = running;
+        List<ScoreUpdate> updates = new ArrayList<>();
+        if (tournament == null) {
+            return updates;
+        }
+        for (Shard shard : shards) {
+            shard.lock.lock();
+            try {
+                for (Member member : shard.dirty) {
+                    updates.add(new ScoreUpdate(tournament.tournamentId(), member.userId, member.score));
+                }
+                shard.dirty.clear();
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        return updates;
+    }
+
+    /**
+     * Stops the tournament and returns the final score of every member.
+     *
+     * @return the scores, or an empty list if the tournament is not the running one
+     */
+    public synchronized List<ScoreUpdate> close(long tournamentId) {
+        Running tournament = running;
+        List<ScoreUpdate> scores = new ArrayList<>();
+        if (tournament == null || tournament.tournamentId() != tournamentId) {
+            return scores;
+        }
+        running = null;
+        for (Shard shard : shards) {
+            shard.lock.lock();
+            try {
+                shard.groups.values().forEach(group -> group.forEach(member ->
+                        scores.add(new ScoreUpdate(tournamentId, member.userId, member.score))));
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        clear();
+        return scores;
+    }
+
+    int shardCount() {
+        return shards.length;
+    }
+
+    private void clear() {
+        seats.clear();
+        for (Shard shard : shards) {
+            shard.lock.lock();
+            try {
+                shard.groups.clear();
+                shard.dirty.clear();
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+    }
+
+    private Shard shard(int groupIndex) {
+        // consecutive groups land in different shards
+        return shards[groupIndex & (shards.length - 1)];
+    }
+
+    private static int indexOf(List<Member> group, long userId) {
+        for (int i = 0; i < group.size(); i++) {
+            if (group.get(i).userId == userId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // the score only grows, so the member only moves up past the members they just overtook
+    private static void moveUp(List<Member> group, int index) {
+        Member member = group.get(index);
+        while (index > 0 && member.compareTo(group.get(index - 1)) < 0) {
+            group.set(index, group.get(index - 1));
+            index--;
+        }
+        group.set(index, member);
+    }
+
+    private static List<TournamentStanding> standings(List<Member> group) {
+        List<TournamentStanding> standings = new ArrayList<>(group.size());
+        for (int i = 0; i < group.size(); i++) {
+            Member member = group.get(i);
+            standings.add(new TournamentStanding(i + 1, member.userId, member.name, member.score));
+        }
+        return standings;
+    }
+
+    /**
+     * The tournament accepting entries and scores.
+     */
+    public record Running(long tournamentId, int groupSize, Instant endsAt) {
+
+        public boolean isRunning(Instant now) {
+            return now.isBefore(endsAt);
+        }
+    }
+
+    /**
+     * Place of a user in the running tournament.
+     */
+    public record Seat(long tournamentId, long userId, int seat, int groupIndex) {
+    }
+
+    /**
+     * Score of a user to be written to their tournament entry.
+     */
+    public record ScoreUpdate(long tournamentId, long userId, int score) {
+    }
+
+    private static final class Shard {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Map<Integer, List<Member>> groups = new HashMap<>();
+        private final Set<Member> dirty = new LinkedHashSet<>();
+    }
+
+    // mutable, only accessed under the lock of its shard
+    private static final class Member implements Comparable<Member> {
+        private final long userId;
+        private final String name;
+        private final int seat;
+        private int score;
+
+        private Member(long userId, String name, int seat, int score) {
+            this.userId = userId;
+            this.name = name;
+            this.seat = seat;
+            this.score = score;
+        }
+
+        @Override
+        public int compareTo(Member other) {
+            return score != other.score ? Integer.compare(other.score, score) : Integer.compare(seat, other.seat);
+        }
+    }
+}
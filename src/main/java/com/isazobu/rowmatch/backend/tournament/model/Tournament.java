@@ -0,0 +1,45 @@
+package com.isazobu.rowmatch.backend.tournament.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+
+@Entity
+@Table(name = "tournaments")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class Tournament {
+
+    // coins paid to the best players of every group, by rank
+    private static final int[] REWARDS = {5000, 3000, 2000, 1000, 1000, 1000, 1000, 1000, 1000, 1000};
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "starts_at", nullable = false)
+    private Instant startsAt;
+
+    @Column(name = "ends_at", nullable = false)
+    private Instant endsAt;
+
+    // number of players per group, every group has its own leaderboard
+    @Column(name = "group_size", nullable = false)
+    private int groupSize;
+
+    // set once every entry has been ranked and rewarded
+    @Column(nullable = false)
+    private boolean settled = false;
+
+    /**
+     * @return the coins won by the player finishing at the given rank of their group, 0 for players without score
+     */
+    public static int rewardFor(int rank, int score) {
+        return score > 0 && rank <= REWARDS.length ? REWARDS[rank - 1] : 0;
+    }
+}
@@ -0,0 +1,57 @@
+package com.isazobu.rowmatch.backend.tournament.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+
+@Entity
+@Table(name = "tournament_entries",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"tournament_id", "user_id"}))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class TournamentEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // plain ids, entries are written in batches and never navigate to the tournament or the user
+    @Column(name = "tournament_id", nullable = false)
+    private Long tournamentId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    // order of entry, the group is seat / group size and equal scores are ranked by seat
+    @Column(nullable = false)
+    private int seat;
+
+    @Column(name = "group_index", nullable = false)
+    private int groupIndex;
+
+    // level of the user when entering, the levels completed since then are their score on any instance
+    @Column(name = "start_level", nullable = false)
+    private int startLevel;
+
+    // levels completed during the tournament, written periodically and when the tournament ends
+    @Column(nullable = false)
+    private int score = 0;
+
+    @Column(name = "final_rank")
+    private Integer finalRank;
+
+    // null until the entry has been settled
+    @Column
+    private Integer reward;
+
+    public TournamentEntry(Long tournamentId, Long userId, int seat, int groupIndex, int startLevel) {
+        this.tournamentId = tournamentId;
+        this.userId = userId;
+        this.seat = seat;
+        this.groupIndex = groupIndex;
+        this.startLevel = startLevel;
+    }
+}
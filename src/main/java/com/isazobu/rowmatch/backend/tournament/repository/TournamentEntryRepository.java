@@ -0,0 +1,23 @@
+package com.isazobu.rowmatch.backend.tournament.repository;
+
+import com.isazobu.rowmatch.backend.tournament.dto.TournamentSeat;
+import com.isazobu.rowmatch.backend.tournament.model.TournamentEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface TournamentEntryRepository extends JpaRepository<TournamentEntry, Long> {
+
+    List<TournamentEntry> findByTournamentId(Long tournamentId);
+
+    /**
+     * Returns the seats of a tournament with the names of the users, to restore the groups after a restart.
+     */
+    @Query("SELECT new com.isazobu.rowmatch.backend.tournament.dto.TournamentSeat(e.userId, u.name, e.seat, e.score) " +
+            "FROM TournamentEntry e, User u WHERE u.id = e.userId AND e.tournamentId = :tournamentId")
+    List<TournamentSeat> findSeats(@Param("tournamentId") Long tournamentId);
+}
@@ -0,0 +1,20 @@
+package com.isazobu.rowmatch.backend.tournament.repository;
+
+import com.isazobu.rowmatch.backend.tournament.model.Tournament;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface TournamentRepository extends JpaRepository<Tournament, Long> {
+
+    List<Tournament> findBySettledFalse();
+
+    @Modifying
+    @Query("UPDATE Tournament t SET t.settled = true WHERE t.id = :tournamentId")
+    int markSettled(@Param("tournamentId") Long tournamentId);
+}
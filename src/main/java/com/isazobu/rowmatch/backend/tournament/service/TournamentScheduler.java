@@ -0,0 +1,111 @@
+package com.isazobu.rowmatch.backend.tournament.service;
+
+import com.isazobu.rowmatch.backend.tournament.index.TournamentGroups;
+import com.isazobu.rowmatch.backend.tournament.model.Tournament;
+import com.isazobu.rowmatch.backend.tournament.repository.TournamentEntryRepository;
+import com.isazobu.rowmatch.backend.tournament.repository.TournamentRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the tournaments in the background: checkpoints the scores every {@code checkpoint-interval} and settles
+ * each tournament when it ends. At startup the groups of a running tournament are restored from the stored
+ * entries, and tournaments that ended while the application was down are settled.
+ * <p>
+ * Only the tournament node runs tournaments. On instances with {@code rowmatch.tournaments.node.enabled=false}
+ * nothing is restored, checkpointed or settled, their completed levels are scored by the node from the database.
+ */
+@Component
+public class TournamentScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(TournamentScheduler.class);
+
+    private static final Duration SETTLEMENT_RETRY_DELAY = Duration.ofMinutes(1);
+
+    private final TournamentRepository tournamentRepository;
+    private final TournamentEntryRepository tournamentEntryRepository;
+    private final TournamentGroups tournamentGroups;
+    private final TournamentSettlement tournamentSettlement;
+    private final Duration checkpointInterval;
+    private final boolean node;
+    private final ScheduledExecutorService scheduler;
+
+    public TournamentScheduler(TournamentRepository tournamentRepository,
+                               TournamentEntryRepository tournamentEntryRepository,
+                               TournamentGroups tournamentGroups, TournamentSettlement tournamentSettlement,
+                               @Value("${rowmatch.tournaments.checkpoint-interval:30s}") Duration checkpointInterval,
+                               @Value("${rowmatch.tournaments.node.enabled:true}") boolean node) {
+        this.tournamentRepository = tournamentRepository;
+        this.tournamentEntryRepository = tournamentEntryRepository;
+        this.tournamentGroups = tournamentGroups;
+        this.tournamentSettlement = tournamentSettlement;
+        this.checkpointInterval = checkpointInterval;
+        this.node = node;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "tournament-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!node) {
+            log.info("Not the tournament node, tournaments are run by another instance");
+            return;
+        }
+        for (Tournament tournament : tournamentRepository.findBySettledFalse()) {
+            if (tournament.getEndsAt().isAfter(Instant.now())) {
+                tournamentGroups.open(tournament.getId(), tournament.getGroupSize(), tournament.getEndsAt(),
+                        tournamentEntryRepository.findSeats(tournament.getId()));
+            }
+            scheduleSettlement(tournament);
+        }
+
+        long intervalMillis = checkpointInterval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::checkpointQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Settles the tournament once it has ended.
+     */
+    public void scheduleSettlement(Tournament tournament) {
+        long delayMillis = Math.max(0, Duration.between(Instant.now(), tournament.getEndsAt()).toMillis());
+        scheduler.schedule(() -> settle(tournament.getId()), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        scheduler.shutdownNow();
+        scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        checkpointQuietly();
+    }
+
+    private void settle(long tournamentId) {
+        try {
+            tournamentSettlement.settle(tournamentId);
+        } catch (RuntimeException e) {
+            log.error("Could not settle tournament {}, will retry", tournamentId, e);
+            scheduler.schedule(() -> settle(tournamentId), SETTLEMENT_RETRY_DELAY.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void checkpointQuietly() {
+        try {
+            tournamentSettlement.checkpoint();
+        } catch (RuntimeException e) {
+            log.error("Could not write tournament scores, will retry", e);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.isazobu.rowmatch.backend.tournament.service;
+
+import com.isazobu.rowmatch.backend.exceptions.EntityAlreadyExistsException;
+import com.isazobu.rowmatch.backend.exceptions.InvalidTournamentException;
+import com.isazobu.rowmatch.backend.exceptions.NotTournamentNodeException;
+import com.isazobu.rowmatch.backend.exceptions.TournamentNotFoundException;
+import com.isazobu.rowmatch.backend.exceptions.UserNotFoundException;
+import com.isazobu.rowmatch.backend.tournament.dto.CreateTournamentRequest;
+import com.isazobu.rowmatch.backend.tournament.dto.TournamentGroupResponse;
+import com.isazobu.rowmatch.backend.tournament.model.Tournament;
+
+public interface TournamentService {
+
+    /**
+     * Starts a tournament that runs for the given duration, settled automatically when it ends.
+     *
+     * @param request the duration in minutes and the number of players per group
+     * @return the new tournament
+     * @throws InvalidTournamentException   if the duration is not between 1 minute and 7 days or the group size is not
+     *                                      between 2 and 100
+     * @throws EntityAlreadyExistsException if another tournament is still running
+     * @throws NotTournamentNodeException   if this instance is not the tournament node
+     */
+    Tournament createTournament(CreateTournamentRequest request)
+            throws InvalidTournamentException, EntityAlreadyExistsException, NotTournamentNodeException;
+
+    /**
+     * Places the user into the next group of the running tournament.
+     *
+     * @return the group the user was placed in
+     * @throws UserNotFoundException        if the token is invalid
+     * @throws TournamentNotFoundException  if no tournament is running
+     * @throws EntityAlreadyExistsException if the user has already entered the tournament
+     * @throws NotTournamentNodeException   if this instance is not the tournament node
+     * @header token the token of the user
+     */
+    TournamentGroupResponse enterTournament(String token)
+            throws UserNotFoundException, TournamentNotFoundException, EntityAlreadyExistsException,
+            NotTournamentNodeException;
+
+    /**
+     * Retrieves the live leaderboard of the user's group in the running tournament.
+     *
+     * @throws UserNotFoundException       if the token is invalid
+     * @throws TournamentNotFoundException if the user is not in the running tournament
+     * @throws NotTournamentNodeException  if this instance is not the tournament node
+     * @header token the token of the user
+     */
+    TournamentGroupResponse getGroup(String token)
+            throws UserNotFoundException, TournamentNotFoundException, NotTournamentNodeException;
+}
@@ -0,0 +1,117 @@
+package com.isazobu.rowmatch.backend.tournament.service;
+
+import com.isazobu.rowmatch.backend.exceptions.EntityAlreadyExistsException;
+import com.isazobu.rowmatch.backend.exceptions.InvalidTournamentException;
+import com.isazobu.rowmatch.backend.exceptions.NotTournamentNodeException;
+import com.isazobu.rowmatch.backend.exceptions.TournamentNotFoundException;
+import com.isazobu.rowmatch.backend.exceptions.UserNotFoundException;
+import com.isazobu.rowmatch.backend.tournament.dto.CreateTournamentRequest;
+import com.isazobu.rowmatch.backend.tournament.dto.TournamentGroupResponse;
+import com.isazobu.rowmatch.backend.tournament.index.TournamentGroups;
+import com.isazobu.rowmatch.backend.tournament.model.Tournament;
+import com.isazobu.rowmatch.backend.tournament.model.TournamentEntry;
+import com.isazobu.rowmatch.backend.tournament.repository.TournamentEntryRepository;
+import com.isazobu.rowmatch.backend.tournament.repository.TournamentRepository;
+import com.isazobu.rowmatch.backend.user.auth.UserTokenResolver;
+import com.isazobu.rowmatch.backend.user.model.User;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+@Service
+public class TournamentServiceImpl implements TournamentService {
+
+    static final int MIN_GROUP_SIZE = 2;
+    static final int MAX_GROUP_SIZE = 100;
+    static final int MAX_DURATION_MINUTES = 7 * 24 * 60;
+
+    private final TournamentRepository tournamentRepository;
+    private final TournamentEntryRepository tournamentEntryRepository;
+    private final TournamentGroups tournamentGroups;
+    private final TournamentScheduler tournamentScheduler;
+    private final UserTokenResolver userTokenResolver;
+    private final boolean node;
+
+    public TournamentServiceImpl(TournamentRepository tournamentRepository,
+                                 TournamentEntryRepository tournamentEntryRepository,
+                                 TournamentGroups tournamentGroups, TournamentScheduler tournamentScheduler,
+                                 UserTokenResolver userTokenResolver,
+                                 @Value("${rowmatch.tournaments.node.enabled:true}") boolean node) {
+        this.tournamentRepository = tournamentRepository;
+        this.tournamentEntryRepository = tournamentEntryRepository;
+        this.tournamentGroups = tournamentGroups;
+        this.tournamentScheduler = tournamentScheduler;
+        this.userTokenResolver = userTokenResolver;
+        this.node = node;
+    }
+
+    @Override
+    public synchronized Tournament createTournament(CreateTournamentRequest request) {
+        requireNode();
+        if (request.getDurationMinutes() <= 0 || request.getDurationMinutes() > MAX_DURATION_MINUTES) {
+            throw new InvalidTournamentException("Duration must be between 1 and " + MAX_DURATION_MINUTES + " minutes");
+        }
+        if (request.getGroupSize() < MIN_GROUP_SIZE || request.getGroupSize() > MAX_GROUP_SIZE) {
+            throw new InvalidTournamentException("Group size must be between " + MIN_GROUP_SIZE + " and " + MAX_GROUP_SIZE);
+        }
+        if (tournamentGroups.running().isPresent()) {
+            throw new EntityAlreadyExistsException("A tournament is already running");
+        }
+
+        Instant now = Instant.now();
+        Tournament tournament = new Tournament();
+        tournament.setStartsAt(now);
+        tournament.setEndsAt(now.plus(Duration.ofMinutes(request.getDurationMinutes())));
+        tournament.setGroupSize(request.getGroupSize());
+        tournamentRepository.save(tournament);
+
+        tournamentGroups.open(tournament.getId(), tournament.getGroupSize(), tournament.getEndsAt(), List.of());
+        tournamentScheduler.scheduleSettlement(tournament);
+        return tournament;
+    }
+
+    @Override
+    public TournamentGroupResponse enterTournament(String token) {
+        requireNode();
+        User user = userTokenResolver.findByToken(token)
+                .orElseThrow(() -> new UserNotFoundException("User not found"));
+        TournamentGroups.Running running = tournamentGroups.running()
+                .filter(tournament -> tournament.isRunning(Instant.now()))
+                .orElseThrow(() -> new TournamentNotFoundException("No tournament is running"));
+
+        TournamentGroups.Seat seat = tournamentGroups.enter(user.getId(), user.getName())
+                .orElseThrow(() -> new EntityAlreadyExistsException("User has already entered the tournament"));
+        try {
+            tournamentEntryRepository.save(new TournamentEntry(running.tournamentId(), user.getId(), seat.seat(),
+                    seat.groupIndex(), user.getLevel()));
+        } catch (RuntimeException e) {
+            tournamentGroups.leave(user.getId());
+            throw e;
+        }
+        return getGroup(user.getId());
+    }
+
+    @Override
+    public TournamentGroupResponse getGroup(String token) {
+        requireNode();
+        // signed and cached tokens resolve without a database lookup
+        Long userId = userTokenResolver.resolveUserId(token)
+                .orElseThrow(() -> new UserNotFoundException("User not found"));
+        return getGroup(userId);
+    }
+
+    // seats and groups exist on the tournament node only, another instance would hand out colliding seats
+    private void requireNode() {
+        if (!node) {
+            throw new NotTournamentNodeException("Tournaments are served by the tournament node");
+        }
+    }
+
+    private TournamentGroupResponse getGroup(long userId) {
+        return tournamentGroups.groupOf(userId)
+                .orElseThrow(() -> new TournamentNotFoundException("User is not in the running tournament"));
+    }
+}
@@ -0,0 +1,176 @@
+package com.isazobu.rowmatch.backend.tournament.service;
+
+import com.isazobu.rowmatch.backend.cache.SecondLevelCache;
+import com.isazobu.rowmatch.backend.tournament.index.TournamentGroups;
+import com.isazobu.rowmatch.backend.tournament.model.Tournament;
+import com.isazobu.rowmatch.backend.tournament.model.TournamentEntry;
+import com.isazobu.rowmatch.backend.tournament.repository.TournamentEntryRepository;
+import com.isazobu.rowmatch.backend.tournament.repository.TournamentRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Writes tournament scores and pays out the rewards, in chunks of {@code batch-size} entries.
+ * <p>
+ * Ending a tournament first writes the final scores, then ranks every group from the stored entries and
+ * settles the entries chunk by chunk: one transaction per chunk locks its entries, records the rank and reward
+ * of those not settled yet and adds the coins to their users, each with a single JDBC batch. Entries settled by an
+ * earlier run are skipped, so a settlement interrupted by a failure or a restart can simply run again.
+ * <p>
+ * Before the scores are written, each member is raised to the levels completed since entering according to the
+ * users table, so levels completed on other instances than the tournament node are scored as well.
+ */
+@Component
+public class TournamentSettlement {
+
+    private static final Logger log = LoggerFactory.getLogger(TournamentSettlement.class);
+
+    static final String LEVEL_SCORES_SQL = "SELECT e.user_id, u.level - e.start_level FROM tournament_entries e " +
+            "JOIN users u ON u.id = e.user_id WHERE e.tournament_id = ?";
+    static final String SCORE_SQL = "UPDATE tournament_entries SET score = ? WHERE tournament_id = ? AND user_id = ?";
+    static final String UNSETTLED_SQL =
+            "SELECT id FROM tournament_entries WHERE reward IS NULL AND id IN (%s) FOR UPDATE";
+    static final String SETTLE_SQL =
+            "UPDATE tournament_entries SET final_rank = ?, reward = ? WHERE id = ? AND reward IS NULL";
+    static final String REWARD_SQL = "UPDATE users SET coins = coins + ?, version = version + 1 WHERE id = ?";
+
+    private static final Comparator<TournamentEntry> GROUP_ORDER = Comparator
+            .comparingInt(TournamentEntry::getScore).reversed()
+            .thenComparingInt(TournamentEntry::getSeat);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final SecondLevelCache secondLevelCache;
+    private final TournamentRepository tournamentRepository;
+    private final TournamentEntryRepository tournamentEntryRepository;
+    private final TournamentGroups tournamentGroups;
+    private final int batchSize;
+
+    public TournamentSettlement(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                SecondLevelCache secondLevelCache,
+                                TournamentRepository tournamentRepository,
+                                TournamentEntryRepository tournamentEntryRepository,
+                                TournamentGroups tournamentGroups,
+                                @Value("${rowmatch.tournaments.settlement.batch-size:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.secondLevelCache = secondLevelCache;
+        this.tournamentRepository = tournamentRepository;
+        this.tournamentEntryRepository = tournamentEntryRepository;
+        this.tournamentGroups = tournamentGroups;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Writes the scores changed since the previous checkpoint. Scores that could not be written stay in
+     * memory and are written with the final scores.
+     */
+    public void checkpoint() {
+        tournamentGroups.running().ifPresent(tournament -> raiseToLevelScores(tournament.tournamentId()));
+        writeScores(tournamentGroups.drainChangedScores());
+    }
+
+    /**
+     * Ends the tournament if it is still running, then ranks and rewards every entry that is not settled yet.
+     *
+     * @return the number of entries settled by this call
+     */
+    public int settle(long tournamentId) {
+        tournamentGroups.running()
+                .filter(tournament -> tournament.tournamentId() == tournamentId)
+                .ifPresent(tournament -> raiseToLevelScores(tournamentId));
+        writeScores(tournamentGroups.close(tournamentId));
+
+        List<TournamentEntry> entries = tournamentEntryRepository.findByTournamentId(tournamentId);
+        Map<Integer, List<TournamentEntry>> groups = entries.stream()
+                .collect(Collectors.groupingBy(TournamentEntry::getGroupIndex));
+        List<Object[]> settlements = new ArrayList<>(entries.size());
+        for (List<TournamentEntry> group : groups.values()) {
+            group.sort(GROUP_ORDER);
+            for (int i = 0; i < group.size(); i++) {
+                TournamentEntry entry = group.get(i);
+                if (entry.getReward() == null) {
+                    settlements.add(new Object[]{i + 1, Tournament.rewardFor(i + 1, entry.getScore()), entry.getId(),
+                            entry.getUserId()});
+                }
+            }
+        }
+
+        int settled = 0;
+        for (int from = 0; from < settlements.size(); from += batchSize) {
+            settled += settleChunk(settlements.subList(from, Math.min(from + batchSize, settlements.size())));
+        }
+        transactionTemplate.executeWithoutResult(status -> tournamentRepository.markSettled(tournamentId));
+        log.info("Settled {} entries of tournament {}", settled, tournamentId);
+        return settled;
+    }
+
+    // rank, reward, entry id, user id
+    private int settleChunk(List<Object[]> chunk) {
+        Integer settled = transactionTemplate.execute(status -> {
+            // lock the entries of the chunk and skip those a previous run has settled, batched update counts
+            // cannot tell as MySQL reports them as unknown when rewriteBatchedStatements is on
+            List<Object> ids = new ArrayList<>(chunk.size());
+            chunk.forEach(settlement -> ids.add(settlement[2]));
+            Set<Long> unsettled = new HashSet<>(jdbcTemplate.queryForList(String.format(UNSETTLED_SQL,
+                    String.join(", ", Collections.nCopies(ids.size(), "?"))), Long.class, ids.toArray()));
+
+            List<Object[]> entryUpdates = new ArrayList<>(unsettled.size());
+            List<Object[]> rewards = new ArrayList<>();
+            for (Object[] settlement : chunk) {
+                if (!unsettled.contains((Long) settlement[2])) {
+                    continue;
+                }
+                entryUpdates.add(new Object[]{settlement[0], settlement[1], settlement[2]});
+                if ((int) settlement[1] > 0) {
+                    rewards.add(new Object[]{settlement[1], settlement[3]});
+                }
+            }
+            if (!entryUpdates.isEmpty()) {
+                jdbcTemplate.batchUpdate(SETTLE_SQL, entryUpdates);
+            }
+            if (!rewards.isEmpty()) {
+                List<Long> rewarded = new ArrayList<>(rewards.size());
+                rewards.forEach(reward -> rewarded.add((Long) reward[1]));
+                // the update bypasses Hibernate, cached copies of the users would keep the old coins and version
+                secondLevelCache.evictUsers(rewarded);
+                jdbcTemplate.batchUpdate(REWARD_SQL, rewards);
+            }
+            return entryUpdates.size();
+        });
+        return settled == null ? 0 : settled;
+    }
+
+    private void raiseToLevelScores(long tournamentId) {
+        jdbcTemplate.query(LEVEL_SCORES_SQL,
+                (RowCallbackHandler) row -> tournamentGroups.raiseScore(row.getLong(1), row.getInt(2)), tournamentId);
+    }
+
+    private void writeScores(List<TournamentGroups.ScoreUpdate> scores) {
+        if (scores.isEmpty()) {
+            return;
+        }
+        List<Object[]> batch = new ArrayList<>(scores.size());
+        scores.forEach(score -> batch.add(new Object[]{score.score(), score.tournamentId(), score.userId()}));
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int from = 0; from < batch.size(); from += batchSize) {
+                jdbcTemplate.batchUpdate(SCORE_SQL, batch.subList(from, Math.min(from + batchSize, batch.size())));
+            }
+        });
+    }
+}
@@ -0,0 +1,110 @@
+package com.isazobu.rowmatch.backend.transaction;
+
+import com.isazobu.rowmatch.backend.exceptions.UpdateConflictException;
+import com.isazobu.rowmatch.backend.metrics.GameMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs an operation in a transaction of its own and runs it again when the transaction lost a race, i.e. failed
+ * with a version conflict on a {@code @Version} row, a deadlock or a lock wait timeout.
+ * <p>
+ * A retry starts from scratch: the rolled back transaction leaves nothing behind, and the entity manager that
+ * open-session-in-view shares between the transactions of a request is cleared on rollback, so every attempt reads
+ * the current rows. Side effects outside the database, such as the in-memory indexes and metrics, therefore belong
+ * after {@link #execute} returns. Attempts are separated by a random pause of up to
+ * {@code rowmatch.transactions.retry-backoff} times the attempt number, so that the losers of a race do not
+ * collide again right away. After {@code rowmatch.transactions.max-attempts} attempts an
+ * {@link UpdateConflictException} is thrown, any other exception is thrown on the first attempt.
+ */
+@Component
+public class OptimisticTransactions {
+
+    private final TransactionTemplate transactionTemplate;
+    private final GameMetrics gameMetrics;
+    private final int maxAttempts;
+    private final long backoffNanos;
+
+    public OptimisticTransactions(PlatformTransactionManager transactionManager, GameMetrics gameMetrics,
+                                  @Value("${rowmatch.transactions.max-attempts:4}") int maxAttempts,
+                                  @Value("${rowmatch.transactions.retry-backoff:5ms}") Duration backoff) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("rowmatch.transactions.max-attempts must be at least 1");
+        }
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.gameMetrics = gameMetrics;
+        this.maxAttempts = maxAttempts;
+        this.backoffNanos = backoff.toNanos();
+    }
+
+    /**
+     * @param operation name of the operation for the error message
+     * @return the result of the last attempt
+     * @throws E the checked exception of the work, after rolling back
+     * @throws UpdateConflictException if every attempt conflicted with a concurrent transaction
+     */
+    @SuppressWarnings("unchecked")
+    public <T, E extends Throwable> T execute(String operation, Work<T, E> work) throws E {
+        // inside an outer transaction a conflict marks that one rollback-only, and there would be nothing to retry
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException(operation + " must not run inside another transaction");
+        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> {
+                    try {
+                        return work.run();
+                    } catch (RuntimeException | Error e) {
+                        throw e;
+                    } catch (Throwable e) {
+                        // unlike @Transactional, checked exceptions roll back as well
+                        throw new CheckedFailure(e);
+                    }
+                });
+            } catch (CheckedFailure e) {
+                throw (E) e.getCause();
+            } catch (ConcurrencyFailureException e) {
+                if (attempt >= maxAttempts) {
+                    gameMetrics.transactionConflicted(false);
+                    throw new UpdateConflictException(operation + " conflicted with concurrent updates, try again");
+                }
+                gameMetrics.transactionConflicted(true);
+                pause(attempt);
+            }
+        }
+    }
+
+    private void pause(int attempt) {
+        if (backoffNanos <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(ThreadLocalRandom.current().nextLong(backoffNanos * attempt));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UpdateConflictException("Interrupted while waiting to retry");
+        }
+    }
+
+    /**
+     * Work of one attempt, run in a transaction.
+     */
+    @FunctionalInterface
+    public interface Work<T, E extends Throwable> {
+        T run() throws E;
+    }
+
+    private static class CheckedFailure extends RuntimeException {
+        CheckedFailure(Throwable cause) {
+            super(cause);
+        }
+    }
+}
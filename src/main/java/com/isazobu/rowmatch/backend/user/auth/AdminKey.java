@@ -0,0 +1,48 @@
+package com.isazobu.rowmatch.backend.user.auth;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Shared credential of the operator endpoints, bulk user creation and tournament creation, sent in the {@value #HEADER} header.
+ * Without {@code rowmatch.admin.api-key} no request is accepted, so the endpoints are off by default.
+ */
+@Component
+public class AdminKey {
+
+    public static final String HEADER = "X-Admin-Key";
+
+    static final int MIN_KEY_BYTES = 32;
+
+    // null when no key is configured
+    private final byte[] key;
+
+    public AdminKey(@Value("${rowmatch.admin.api-key:}") String key) {
+        if (key == null || key.isBlank()) {
+            this.key = null;
+            return;
+        }
+        this.key = key.getBytes(StandardCharsets.UTF_8);
+        if (this.key.length < MIN_KEY_BYTES) {
+            throw new IllegalArgumentException("rowmatch.admin.api-key must be at least " + MIN_KEY_BYTES + " bytes");
+        }
+    }
+
+    public boolean isEnabled() {
+        return key != null;
+    }
+
+    /**
+     * @return true if admin endpoints are enabled and the presented key is the configured one
+     */
+    public boolean matches(String presented) {
+        if (key == null || presented == null) {
+            return false;
+        }
+        // constant time, the comparison must not reveal how much of the key was guessed
+        return MessageDigest.isEqual(key, presented.getBytes(StandardCharsets.UTF_8));
+    }
+}
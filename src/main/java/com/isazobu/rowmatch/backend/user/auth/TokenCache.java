@@ -0,0 +1,69 @@
+package com.isazobu.rowmatch.backend.user.auth;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.isazobu.rowmatch.backend.user.model.User;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Bounded token to user cache for the Authorization header hot path.
+ * <p>
+ * Only the user id is cached, which never changes for a given token, so the user can be loaded by primary
+ * key instead of by token. Entries are evicted by size and by age, and hit, miss and
+ * eviction counts are recorded and published as {@code cache.*} metrics with the tag {@code cache=tokens}.
+ */
+@Component
+public class TokenCache implements MeterBinder {
+
+    private final Cache<String, CachedUser> cache;
+
+    public TokenCache(@Value("${rowmatch.auth.token-cache.maximum-size:100000}") long maximumSize,
+                      @Value("${rowmatch.auth.token-cache.expire-after-write:10m}") Duration expireAfterWrite) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * @return the cached user for the token, or null if the token is not cached
+     */
+    public CachedUser get(String token) {
+        return cache.getIfPresent(token);
+    }
+
+    public void put(String token, User user) {
+        cache.put(token, new CachedUser(user.getId()));
+    }
+
+    public void invalidate(String token) {
+        cache.invalidate(token);
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    /**
+     * @return hit, miss and eviction counters since startup
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "tokens");
+    }
+
+    public record CachedUser(Long id) {
+    }
+}
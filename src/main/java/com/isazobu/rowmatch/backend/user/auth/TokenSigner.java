@@ -0,0 +1,105 @@
+package com.isazobu.rowmatch.backend.user.auth;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.OptionalLong;
+
+/**
+ * Issues and verifies self-contained tokens of the form {@code v1.<userId>.<nonce>.<hmac>}.
+ * <p>
+ * The HMAC-SHA256 signature covers the version, the user id and a random nonce, so the caller's identity
+ * is verified in pure CPU without a database lookup. One {@link Mac} is kept per thread because
+ * {@code Mac} instances are not thread-safe, and the key and random generator are shared.
+ * Tokens without the version prefix are the older opaque tokens and are not handled here.
+ */
+@Component
+public class TokenSigner {
+
+    private static final String PREFIX = "v1.";
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int NONCE_BYTES = 9;
+    // the key length of HMAC-SHA256, shorter secrets are easier to guess
+    static final int MIN_SECRET_BYTES = 32;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final SecretKeySpec key;
+    private final SecureRandom random = new SecureRandom();
+    private final ThreadLocal<Mac> macs = ThreadLocal.withInitial(this::newMac);
+
+    public TokenSigner(@Value("${rowmatch.auth.token-secret}") String secret) {
+        if (secret == null || secret.isBlank() || secret.getBytes(StandardCharsets.UTF_8).length < MIN_SECRET_BYTES) {
+            throw new IllegalArgumentException("rowmatch.auth.token-secret must be at least " + MIN_SECRET_BYTES
+                    + " bytes, set it with the TOKEN_SECRET environment variable");
+        }
+        this.key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        newMac();
+    }
+
+    /**
+     * @return true if the token uses the signed format, false for opaque tokens
+     */
+    public static boolean isSigned(String token) {
+        return token != null && token.startsWith(PREFIX);
+    }
+
+    public String sign(long userId) {
+        byte[] nonce = new byte[NONCE_BYTES];
+        random.nextBytes(nonce);
+        String payload = PREFIX + userId + "." + ENCODER.encodeToString(nonce);
+        return payload + "." + ENCODER.encodeToString(mac(payload));
+    }
+
+    /**
+     * @return the user id carried by the token, or empty if the token is malformed or its signature is invalid
+     */
+    public OptionalLong verify(String token) {
+        if (!isSigned(token)) {
+            return OptionalLong.empty();
+        }
+        int signatureStart = token.lastIndexOf('.');
+        int idEnd = token.indexOf('.', PREFIX.length());
+        if (idEnd < 0 || idEnd >= signatureStart) {
+            return OptionalLong.empty();
+        }
+
+        byte[] signature;
+        long userId;
+        try {
+            signature = DECODER.decode(token.substring(signatureStart + 1));
+            userId = Long.parseLong(token, PREFIX.length(), idEnd, 10);
+        } catch (IllegalArgumentException e) {
+            return OptionalLong.empty();
+        }
+
+        byte[] expected = mac(token.substring(0, signatureStart));
+        if (!MessageDigest.isEqual(expected, signature)) {
+            return OptionalLong.empty();
+        }
+        return OptionalLong.of(userId);
+    }
+
+    private byte[] mac(String payload) {
+        Mac mac = macs.get();
+        return mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot initialize " + ALGORITHM, e);
+        }
+    }
+}
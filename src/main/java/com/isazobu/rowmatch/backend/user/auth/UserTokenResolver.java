@@ -0,0 +1,122 @@
+package com.isazobu.rowmatch.backend.user.auth;
+
+import com.isazobu.rowmatch.backend.user.model.User;
+import com.isazobu.rowmatch.backend.user.repository.UserRepository;
+import com.isazobu.rowmatch.backend.user.service.LevelProgressBuffer;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.OptionalLong;
+
+/**
+ * Resolves the user behind an Authorization token.
+ * <p>
+ * Signed tokens carry the user id, which is verified by {@link TokenSigner} without any lookup.
+ * Opaque tokens issued before the signed format go through the {@link TokenCache}: a cached token is
+ * resolved with a primary key lookup instead of a query on the token column, so every authenticated
+ * request costs at most one database round trip. The loaded user's token is compared with the requested
+ * one, so an entry that outlived a rotation is dropped instead of being trusted.
+ * <p>
+ * Level progress still sitting in the {@link LevelProgressBuffer} is written before the user is loaded,
+ * so callers always see the user's current level and coins.
+ */
+@Component
+public class UserTokenResolver {
+
+    private final UserRepository userRepository;
+    private final TokenCache tokenCache;
+    private final TokenSigner tokenSigner;
+    private final LevelProgressBuffer levelProgressBuffer;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public UserTokenResolver(UserRepository userRepository, TokenCache tokenCache, TokenSigner tokenSigner,
+                             LevelProgressBuffer levelProgressBuffer) {
+        this.userRepository = userRepository;
+        this.tokenCache = tokenCache;
+        this.tokenSigner = tokenSigner;
+        this.levelProgressBuffer = levelProgressBuffer;
+    }
+
+    public Optional<User> findByToken(String token) {
+        if (token == null) {
+            return Optional.empty();
+        }
+
+        if (TokenSigner.isSigned(token)) {
+            OptionalLong userId = tokenSigner.verify(token);
+            if (userId.isEmpty()) {
+                return Optional.empty();
+            }
+            flushPendingProgress(userId.getAsLong());
+            return userRepository.findById(userId.getAsLong());
+        }
+
+        TokenCache.CachedUser cached = tokenCache.get(token);
+        if (cached != null) {
+            flushPendingProgress(cached.id());
+            Optional<User> user = userRepository.findById(cached.id());
+            if (user.isPresent() && token.equals(user.get().getToken())) {
+                return user;
+            }
+            tokenCache.invalidate(token);
+        }
+
+        Optional<User> user = userRepository.findByToken(token);
+        user.ifPresent(found -> tokenCache.put(token, found));
+        if (user.isPresent() && levelProgressBuffer.hasPending(user.get().getId())) {
+            // only happens when the token left the cache while progress was buffered
+            levelProgressBuffer.flush(user.get().getId());
+            if (entityManager.contains(user.get())) {
+                entityManager.refresh(user.get());
+            } else {
+                user = userRepository.findById(user.get().getId());
+            }
+        }
+        return user;
+    }
+
+    /**
+     * Resolves only the id of the user behind the token. Signed and cached tokens need no database access.
+     */
+    public Optional<Long> resolveUserId(String token) {
+        if (token == null) {
+            return Optional.empty();
+        }
+
+        if (TokenSigner.isSigned(token)) {
+            OptionalLong userId = tokenSigner.verify(token);
+            return userId.isPresent() ? Optional.of(userId.getAsLong()) : Optional.empty();
+        }
+
+        TokenCache.CachedUser cached = tokenCache.get(token);
+        if (cached != null) {
+            return Optional.of(cached.id());
+        }
+
+        Optional<User> user = userRepository.findByToken(token);
+        user.ifPresent(found -> tokenCache.put(token, found));
+        return user.map(User::getId);
+    }
+
+    private void flushPendingProgress(long userId) {
+        if (levelProgressBuffer.hasPending(userId)) {
+            levelProgressBuffer.flush(userId);
+        }
+    }
+
+    /**
+     * Records a newly issued token for the user, dropping the token it replaces.
+     */
+    public void tokenIssued(User user, String previousToken) {
+        if (previousToken != null) {
+            tokenCache.invalidate(previousToken);
+        }
+        if (user.getId() != null && user.getToken() != null && !TokenSigner.isSigned(user.getToken())) {
+            tokenCache.put(user.getToken(), user);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.isazobu.rowmatch.backend.user.controller;
 
+import com.isazobu.rowmatch.backend.user.auth.AdminKey;
 import com.isazobu.rowmatch.backend.user.dto.CreateUserRequest;
 import com.isazobu.rowmatch.backend.user.dto.UpdateLevelRequest;
 import com.isazobu.rowmatch.backend.user.model.User;
@@ -8,14 +9,18 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/v1/users")
 
 public class UserController {
     private final UserService userService;
+    private final AdminKey adminKey;
 
-    public UserController(UserService userService) {
+    public UserController(UserService userService, AdminKey adminKey) {
         this.userService = userService;
+        this.adminKey = adminKey;
     }
 
 
@@ -25,6 +30,17 @@ public class UserController {
         return new ResponseEntity<>(user, HttpStatus.CREATED);
     }
 
+    // returns a valid token for every user it creates, so it is an operator endpoint and off without an admin key
+    @PostMapping("/batch")
+    public ResponseEntity<List<User>> createUsers(@RequestHeader(value = AdminKey.HEADER, required = false) String key,
+                                                  @RequestBody List<CreateUserRequest> requests) {
+        if (!adminKey.matches(key)) {
+            return new ResponseEntity<>(HttpStatus.FORBIDDEN);
+        }
+        List<User> users = userService.createUsers(requests);
+        return new ResponseEntity<>(users, HttpStatus.CREATED);
+    }
+
 
     @PutMapping
     public ResponseEntity<UpdateLevelRequest> updateLevel(@RequestHeader("Authorization") String token) {
@@ -4,6 +4,9 @@ public class CreateUserRequest {
     // Just name
     private String name;
 
+    // optional ISO 3166 alpha-2 country code
+    private String country;
+
     public String getName() {
         return name;
     }
@@ -12,5 +15,13 @@ public class CreateUserRequest {
         this.name = name;
     }
 
+    public String getCountry() {
+        return country;
+    }
+
+    public void setCountry(String country) {
+        this.country = country;
+    }
+
 
 }
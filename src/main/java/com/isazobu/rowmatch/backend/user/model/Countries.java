@@ -0,0 +1,32 @@
+package com.isazobu.rowmatch.backend.user.model;
+
+import com.isazobu.rowmatch.backend.exceptions.InvalidCountryException;
+
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Validation of the ISO 3166 alpha-2 country codes stored on {@link User}.
+ */
+public final class Countries {
+
+    private static final Set<String> ISO_CODES = Locale.getISOCountries(Locale.IsoCountryCode.PART1_ALPHA2);
+
+    private Countries() {
+    }
+
+    /**
+     * @return the upper case country code, or null if no country was given
+     * @throws InvalidCountryException if the code is not an ISO country
+     */
+    public static String normalize(String country) {
+        if (country == null || country.isBlank()) {
+            return null;
+        }
+        String code = country.trim().toUpperCase(Locale.ROOT);
+        if (!ISO_CODES.contains(code)) {
+            throw new InvalidCountryException("Unknown country code " + country);
+        }
+        return code;
+    }
+}
@@ -1,18 +1,24 @@
 package com.isazobu.rowmatch.backend.user.model;
 
 import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.isazobu.rowmatch.backend.cache.SecondLevelCacheConfig;
 import com.isazobu.rowmatch.backend.team.model.Team;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.io.Serializable;
 
 
 @Entity
 @Table(name = "users")
+// every authenticated request loads its user by id, writes through JDBC evict it, see SecondLevelCache
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCacheConfig.USERS)
 @AllArgsConstructor
 @NoArgsConstructor
 
@@ -20,13 +26,19 @@ import java.io.Serializable;
 @Setter
 public class User implements Serializable {
 
-    // user uuid
+    // number of ids reserved from the id_blocks table at a time
+    public static final int ID_BLOCK_SIZE = 1000;
+
+    // ids come from a pooled hi/lo table instead of AUTO_INCREMENT, so Hibernate knows them before the
+    // INSERT and can send the inserts of many users as one JDBC batch
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "user_ids")
+    @TableGenerator(name = "user_ids", table = "id_blocks", pkColumnName = "entity", valueColumnName = "next_val",
+            pkColumnValue = "users", allocationSize = ID_BLOCK_SIZE)
     private Long id;
 
 
-    @Column(nullable = false)
+    @Column(nullable = false, unique = true)
     private String name;
 
     @Column
@@ -39,10 +51,20 @@ public class User implements Serializable {
     @Column
     private String token = null;
 
+    // ISO 3166 alpha-2 code, users without a country only appear on the global leaderboard
+    @Column(length = 2)
+    private String country;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JsonBackReference
     private Team team;
 
+    // checked by every update of the user, so concurrent coin and team changes cannot overwrite each other.
+    // Updates that bypass the entity, like the buffered level flush, increment it too
+    @Version
+    @Column(nullable = false)
+    private long version;
+
 
     //
     public User(Long id, String name, Integer level, Integer coins, String token) {
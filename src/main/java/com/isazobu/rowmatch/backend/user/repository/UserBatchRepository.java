@@ -0,0 +1,40 @@
+package com.isazobu.rowmatch.backend.user.repository;
+
+import com.isazobu.rowmatch.backend.user.model.User;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Inserts many new users with JDBC batches of {@code batch-size} rows.
+ * <p>
+ * The users must carry their id and token already, so each user is a single row of one batched INSERT, which the
+ * MySQL driver rewrites into multi-row statements when {@code rewriteBatchedStatements} is on.
+ */
+@Repository
+public class UserBatchRepository {
+
+    static final String INSERT_SQL =
+            "INSERT INTO users (id, name, level, coins, token, country, version) VALUES (?, ?, ?, ?, ?, ?, 0)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int batchSize;
+
+    public UserBatchRepository(JdbcTemplate jdbcTemplate,
+                               @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = batchSize;
+    }
+
+    public void insertAll(List<User> users) {
+        List<Object[]> rows = new ArrayList<>(users.size());
+        users.forEach(user -> rows.add(new Object[]{user.getId(), user.getName(), user.getLevel(), user.getCoins(),
+                user.getToken(), user.getCountry()}));
+        for (int from = 0; from < rows.size(); from += batchSize) {
+            jdbcTemplate.batchUpdate(INSERT_SQL, rows.subList(from, Math.min(from + batchSize, rows.size())));
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.isazobu.rowmatch.backend.user.repository;
+
+import com.isazobu.rowmatch.backend.user.model.User;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Owns the {@code users} row of the {@code id_blocks} table that user ids are allocated from.
+ * <p>
+ * Whoever reads the stored value {@code v} and advances it by {@link User#ID_BLOCK_SIZE} owns the ids
+ * {@code v - ID_BLOCK_SIZE + 1} to {@code v}, this is how Hibernate's pooled optimizer allocates ids for single
+ * inserts and how {@link #reserve(int)} allocates them for batch inserts, so both share one id space.
+ * <p>
+ * User ids used to be assigned by AUTO_INCREMENT, so at startup the value is raised to at least the highest
+ * existing id plus one block, otherwise the first blocks would collide with existing users. The value is only
+ * ever raised, so running this on several nodes is safe.
+ */
+@Component
+public class UserIdBlocks {
+
+    static final String MAX_ID_SQL = "SELECT COALESCE(MAX(id), 0) FROM users";
+    static final String COUNT_SQL = "SELECT COUNT(*) FROM id_blocks WHERE entity = 'users'";
+    static final String INSERT_SQL = "INSERT INTO id_blocks (entity, next_val) VALUES ('users', ?)";
+    static final String ADVANCE_SQL = "UPDATE id_blocks SET next_val = ? WHERE entity = 'users' AND next_val < ?";
+    static final String LOCK_SQL = "SELECT next_val FROM id_blocks WHERE entity = 'users' FOR UPDATE";
+    static final String RESERVE_SQL = "UPDATE id_blocks SET next_val = ? WHERE entity = 'users'";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    // the schema, including id_blocks, is created or updated with the entity manager factory
+    public UserIdBlocks(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                        EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+        // like Hibernate's allocations, a reservation commits on its own and does not hold the row lock
+        // until the caller's transaction ends
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @PostConstruct
+    public void align() {
+        Long maxId = jdbcTemplate.queryForObject(MAX_ID_SQL, Long.class);
+        long floor = (maxId == null ? 0 : maxId) + User.ID_BLOCK_SIZE;
+
+        Long rows = jdbcTemplate.queryForObject(COUNT_SQL, Long.class);
+        if (rows == null || rows == 0) {
+            try {
+                jdbcTemplate.update(INSERT_SQL, floor);
+                return;
+            } catch (DuplicateKeyException e) {
+                // another node inserted the row first, raise it below
+            }
+        }
+        jdbcTemplate.update(ADVANCE_SQL, floor, floor);
+    }
+
+    /**
+     * Reserves whole id blocks for {@code count} users, the unused rest of the last block is skipped.
+     *
+     * @return the first id, the users get the ids {@code first} to {@code first + count - 1}
+     */
+    public long reserve(int count) {
+        int blocks = (count + User.ID_BLOCK_SIZE - 1) / User.ID_BLOCK_SIZE;
+        Long first = transactionTemplate.execute(status -> {
+            Long value = jdbcTemplate.queryForObject(LOCK_SQL, Long.class);
+            if (value == null) {
+                throw new IllegalStateException("id_blocks has no users row");
+            }
+            jdbcTemplate.update(RESERVE_SQL, value + (long) blocks * User.ID_BLOCK_SIZE);
+            return value - User.ID_BLOCK_SIZE + 1;
+        });
+        return first;
+    }
+}
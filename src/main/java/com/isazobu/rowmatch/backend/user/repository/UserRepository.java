@@ -1,14 +1,48 @@
 package com.isazobu.rowmatch.backend.user.repository;
 
+import com.isazobu.rowmatch.backend.leaderboard.dto.LeaderboardEntry;
+import com.isazobu.rowmatch.backend.leaderboard.dto.TeamMemberLevel;
 import com.isazobu.rowmatch.backend.user.model.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
+    // served from the query cache until the users table changes
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<User> findByName(String name);
 
     Optional<User> findByToken(String token);
-}
\ No newline at end of file
+
+    /**
+     * Returns those of the given names that are already taken.
+     */
+    @Query("SELECT u.name FROM User u WHERE u.name IN :names")
+    List<String> findExistingNames(@Param("names") Collection<String> names);
+
+    @Query("SELECT u.name FROM User u")
+    List<String> findAllNames();
+
+    /**
+     * Returns id, name, country and level of every user, without loading the entities.
+     */
+    @Query("SELECT new com.isazobu.rowmatch.backend.leaderboard.dto.LeaderboardEntry(u.id, u.name, u.country, u.level) " +
+            "FROM User u")
+    List<LeaderboardEntry> findLeaderboardEntries();
+
+    /**
+     * Returns team and level of every user that is in a team, without loading the entities.
+     */
+    @Query("SELECT new com.isazobu.rowmatch.backend.leaderboard.dto.TeamMemberLevel(t.id, t.name, u.id, u.level) " +
+            "FROM User u JOIN u.team t")
+    List<TeamMemberLevel> findTeamMemberLevels();
+}
@@ -0,0 +1,250 @@
+package com.isazobu.rowmatch.backend.user.service;
+
+import com.isazobu.rowmatch.backend.cache.SecondLevelCache;
+import com.isazobu.rowmatch.backend.outbox.service.Outbox;
+import com.isazobu.rowmatch.backend.user.model.User;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Optional write-behind buffer for level completions.
+ * <p>
+ * When enabled, level and coin increments are coalesced per user in memory and written with relative
+ * {@code UPDATE}s in JDBC batches, once {@code batch-size} users are pending or every {@code flush-interval}.
+ * Each pending entry remembers the values the user had when buffering started, so the progress returned
+ * to the client includes everything not yet written. Entries being written stay visible until the write
+ * has committed, a failed write puts them back, and whatever is pending is written on shutdown. The outbox
+ * receives one level completion per user and write, with the level the user has reached.
+ * <p>
+ * Writes run in a transaction of their own, also when a user's progress is flushed from inside a service
+ * transaction: that transaction may still roll back, e.g. for a full team, and would take the write with it after
+ * the entries had already left the buffer.
+ */
+@Component
+public class LevelProgressBuffer {
+
+    private static final Logger log = LoggerFactory.getLogger(LevelProgressBuffer.class);
+
+    // the version is incremented like an entity update, so a user loaded before the flush cannot overwrite it
+    static final String FLUSH_SQL =
+            "UPDATE users SET level = level + ?, coins = coins + ?, version = version + 1 WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final SecondLevelCache secondLevelCache;
+    private final Outbox outbox;
+    private final boolean enabled;
+    private final int batchSize;
+    private final Duration flushInterval;
+
+    private final Map<Long, LevelProgress> pending = new ConcurrentHashMap<>();
+    private final Map<Long, LevelProgress> inFlight = new ConcurrentHashMap<>();
+    private final Object flushLock = new Object();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final AtomicLong writes = new AtomicLong();
+    private ScheduledExecutorService scheduler;
+
+    public LevelProgressBuffer(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                               SecondLevelCache secondLevelCache, Outbox outbox,
+                               @Value("${rowmatch.level-updates.write-behind.enabled:false}") boolean enabled,
+                               @Value("${rowmatch.level-updates.write-behind.batch-size:500}") int batchSize,
+                               @Value("${rowmatch.level-updates.write-behind.flush-interval:1s}") Duration flushInterval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.secondLevelCache = secondLevelCache;
+        this.outbox = outbox;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "level-progress-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = flushInterval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Adds level and coin increments for the user.
+     *
+     * @param baseline loads the user's persisted progress, called only when nothing is buffered for the user and
+     *                 outside of the map, so a slow query does not block other users
+     * @return the user's progress including every pending increment
+     */
+    public LevelProgress add(long userId, int levels, int coins, Supplier<LevelProgress> baseline) {
+        LevelProgress progress = pending.computeIfPresent(userId, (id, current) -> current.plus(levels, coins));
+        while (progress == null) {
+            long writesBefore = writes.get();
+            // a batch that is being written is not in the database yet, continue from its totals
+            LevelProgress flushing = inFlight.get(userId);
+            LevelProgress base = flushing != null ? flushing.settled() : baseline.get();
+            progress = pending.compute(userId, (id, current) -> {
+                if (current != null) {
+                    return current.plus(levels, coins);
+                }
+                if (flushing == null && (inFlight.containsKey(id) || writes.get() != writesBefore)) {
+                    // increments of the user were written while loading, the baseline may predate them
+                    return null;
+                }
+                return base.plus(levels, coins);
+            });
+        }
+
+        if (pending.size() >= batchSize && scheduler != null && flushScheduled.compareAndSet(false, true)) {
+            scheduler.execute(() -> {
+                flushScheduled.set(false);
+                flushQuietly();
+            });
+        }
+        return progress;
+    }
+
+    public boolean hasPending(long userId) {
+        return pending.containsKey(userId);
+    }
+
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Writes every pending increment.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            for (Long userId : pending.keySet()) {
+                moveToInFlight(userId);
+            }
+            writeInFlight();
+        }
+    }
+
+    /**
+     * Writes the pending increments of a single user, so that a following read of the user sees them.
+     */
+    public void flush(long userId) {
+        synchronized (flushLock) {
+            moveToInFlight(userId);
+            writeInFlight();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        flush();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Could not write buffered level progress, will retry", e);
+        }
+    }
+
+    private void moveToInFlight(Long userId) {
+        pending.computeIfPresent(userId, (id, progress) -> {
+            inFlight.put(id, progress);
+            return null;
+        });
+    }
+
+    private void writeInFlight() {
+        if (inFlight.isEmpty()) {
+            return;
+        }
+        List<Object[]> batch = new ArrayList<>(inFlight.size());
+        List<Long> userIds = new ArrayList<>(inFlight.size());
+        Map<Long, Integer> levels = new HashMap<>(inFlight.size());
+        inFlight.values().forEach(progress -> {
+            batch.add(new Object[]{progress.pendingLevels(), progress.pendingCoins(), progress.userId()});
+            userIds.add(progress.userId());
+            levels.put(progress.userId(), progress.level());
+        });
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                // the update bypasses Hibernate, cached copies of the users would keep the old level and version
+                secondLevelCache.evictUsers(userIds);
+                for (int from = 0; from < batch.size(); from += batchSize) {
+                    jdbcTemplate.batchUpdate(FLUSH_SQL, batch.subList(from, Math.min(from + batchSize, batch.size())));
+                }
+                // one event per user with the level reached, the levels completed in between are not written
+                outbox.levelsCompleted(levels);
+            });
+        } catch (RuntimeException e) {
+            // nothing was committed, merge the increments back in front of anything buffered since
+            inFlight.forEach((id, failed) -> pending.merge(id, failed,
+                    (newer, old) -> old.plus(newer.pendingLevels(), newer.pendingCoins())));
+            throw e;
+        } finally {
+            // counted after the commit and before the entries disappear, so a baseline loaded meanwhile is noticed
+            writes.incrementAndGet();
+            inFlight.clear();
+        }
+    }
+
+    /**
+     * Progress of one user: the persisted values when buffering started plus the increments not yet written.
+     */
+    public record LevelProgress(long userId, String name, int baseLevel, int baseCoins,
+                                int pendingLevels, int pendingCoins) {
+
+        public static LevelProgress of(User user) {
+            return new LevelProgress(user.getId(), user.getName(), user.getLevel(), user.getCoins(), 0, 0);
+        }
+
+        public int level() {
+            return baseLevel + pendingLevels;
+        }
+
+        public int coins() {
+            return baseCoins + pendingCoins;
+        }
+
+        LevelProgress plus(int levels, int coins) {
+            return new LevelProgress(userId, name, baseLevel, baseCoins, pendingLevels + levels, pendingCoins + coins);
+        }
+
+        LevelProgress settled() {
+            return new LevelProgress(userId, name, level(), coins(), 0, 0);
+        }
+    }
+}
@@ -11,6 +11,8 @@ import java.util.List;
 public interface UserService {
     User createUser(CreateUserRequest request);
 
+    List<User> createUsers(List<CreateUserRequest> requests);
+
     UpdateLevelRequest updateLevel(String token);
 
 
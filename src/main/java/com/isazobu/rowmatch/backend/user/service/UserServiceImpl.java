@@ -1,63 +1,206 @@
 package com.isazobu.rowmatch.backend.user.service;
 
 
+import com.isazobu.rowmatch.backend.cache.SecondLevelCache;
+import com.isazobu.rowmatch.backend.events.DomainEventBus;
 import com.isazobu.rowmatch.backend.exceptions.EntityAlreadyExistsException;
+import com.isazobu.rowmatch.backend.exceptions.InvalidUserBatchException;
+import com.isazobu.rowmatch.backend.filter.NameFilters;
+import com.isazobu.rowmatch.backend.leaderboard.index.LevelLeaderboard;
+import com.isazobu.rowmatch.backend.leaderboard.index.TeamLeaderboard;
+import com.isazobu.rowmatch.backend.metrics.GameMetrics;
+import com.isazobu.rowmatch.backend.outbox.service.Outbox;
+import com.isazobu.rowmatch.backend.tournament.index.TournamentGroups;
+import com.isazobu.rowmatch.backend.transaction.OptimisticTransactions;
+import com.isazobu.rowmatch.backend.user.auth.TokenSigner;
+import com.isazobu.rowmatch.backend.user.auth.UserTokenResolver;
 import com.isazobu.rowmatch.backend.user.dto.CreateUserRequest;
 import com.isazobu.rowmatch.backend.user.dto.UpdateLevelRequest;
+import com.isazobu.rowmatch.backend.user.model.Countries;
 import com.isazobu.rowmatch.backend.user.model.User;
+import com.isazobu.rowmatch.backend.user.repository.UserBatchRepository;
+import com.isazobu.rowmatch.backend.user.repository.UserIdBlocks;
 import com.isazobu.rowmatch.backend.user.repository.UserRepository;
 import jakarta.persistence.EntityNotFoundException;
+import jakarta.transaction.Transactional;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
-import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.security.NoSuchProviderException;
 import java.security.SecureRandom;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 @Service
 public class UserServiceImpl implements UserService {
 
+    static final int MAX_BATCH_SIZE = 10_000;
+    // names checked against the database per query, keeps the IN list within the packet and plan cache limits
+    private static final int NAME_CHECK_CHUNK = 1000;
 
-    private final UserRepository userRepository;
+    // SecureRandom is thread-safe and MessageDigest is not, so the digest is kept per thread
+    private static final SecureRandom SALT_RANDOM = new SecureRandom();
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
 
-    public UserServiceImpl(UserRepository userRepository) {
+    private final UserRepository userRepository;
+    private final UserTokenResolver userTokenResolver;
+    private final TokenSigner tokenSigner;
+    private final LevelProgressBuffer levelProgressBuffer;
+    private final GameMetrics gameMetrics;
+    private final LevelLeaderboard levelLeaderboard;
+    private final TeamLeaderboard teamLeaderboard;
+    private final TournamentGroups tournamentGroups;
+    private final UserIdBlocks userIdBlocks;
+    private final UserBatchRepository userBatchRepository;
+    private final NameFilters nameFilters;
+    private final OptimisticTransactions optimisticTransactions;
+    private final SecondLevelCache secondLevelCache;
+    private final DomainEventBus domainEventBus;
+    private final Outbox outbox;
+
+    public UserServiceImpl(UserRepository userRepository, UserTokenResolver userTokenResolver, TokenSigner tokenSigner,
+                           LevelProgressBuffer levelProgressBuffer, GameMetrics gameMetrics,
+                           LevelLeaderboard levelLeaderboard, TeamLeaderboard teamLeaderboard,
+                           TournamentGroups tournamentGroups, UserIdBlocks userIdBlocks,
+                           UserBatchRepository userBatchRepository, NameFilters nameFilters,
+                           OptimisticTransactions optimisticTransactions, SecondLevelCache secondLevelCache,
+                           DomainEventBus domainEventBus, Outbox outbox) {
         this.userRepository = userRepository;
+        this.userTokenResolver = userTokenResolver;
+        this.tokenSigner = tokenSigner;
+        this.levelProgressBuffer = levelProgressBuffer;
+        this.gameMetrics = gameMetrics;
+        this.levelLeaderboard = levelLeaderboard;
+        this.teamLeaderboard = teamLeaderboard;
+        this.tournamentGroups = tournamentGroups;
+        this.userIdBlocks = userIdBlocks;
+        this.userBatchRepository = userBatchRepository;
+        this.nameFilters = nameFilters;
+        this.optimisticTransactions = optimisticTransactions;
+        this.secondLevelCache = secondLevelCache;
+        this.domainEventBus = domainEventBus;
+        this.outbox = outbox;
     }
 
     @Override
+    @Transactional
     public User createUser(CreateUserRequest request) {
-        Optional<User> userOptional = userRepository.findByName(request.getName());
-        if (userOptional.isPresent()) {
+        // most names are new, the filter lets those skip the lookup
+        if (nameFilters.userNameMightExist(request.getName())
+                && userRepository.findByName(request.getName()).isPresent()) {
             throw new EntityAlreadyExistsException("User name already exists");
         }
 
         User user = new User();
         user.setName(request.getName());
+        user.setCountry(Countries.normalize(request.getCountry()));
+
+        // the insert is flushed here so the unique index reports a taken name the filter did not know,
+        // the signed token embeds the generated id and is written with the transaction commit
         try {
-            user.setToken(this.createHashWithSalt(request.getName()));
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException(e);
+            userRepository.saveAndFlush(user);
+        } catch (DataIntegrityViolationException e) {
+            throw new EntityAlreadyExistsException("User name already exists");
         }
-
-        userRepository.save(user);
+        nameFilters.userNameAdded(user.getName());
+        user.setToken(tokenSigner.sign(user.getId()));
+        userTokenResolver.tokenIssued(user, null);
+        levelLeaderboard.update(user.getId(), user.getName(), user.getCountry(), user.getLevel());
         return user;
     }
 
     @Override
-    public UpdateLevelRequest updateLevel(String token) throws EntityNotFoundException {
-        User user = verifyToken(token);
+    @Transactional
+    public List<User> createUsers(List<CreateUserRequest> requests) {
+        if (requests == null || requests.isEmpty() || requests.size() > MAX_BATCH_SIZE) {
+            throw new InvalidUserBatchException("A batch must contain 1 to " + MAX_BATCH_SIZE + " users");
+        }
+
+        List<String> names = new ArrayList<>(requests.size());
+        Set<String> distinct = new HashSet<>();
+        for (CreateUserRequest request : requests) {
+            String name = request.getName();
+            if (name == null || name.isBlank()) {
+                throw new InvalidUserBatchException("User name must not be empty");
+            }
+            if (!distinct.add(name)) {
+                throw new EntityAlreadyExistsException("User name " + name + " is repeated in the batch");
+            }
+            names.add(name);
+        }
+        // only the names the filter cannot rule out are looked up
+        List<String> candidates = names.stream().filter(nameFilters::userNameMightExist).toList();
+        for (int from = 0; from < candidates.size(); from += NAME_CHECK_CHUNK) {
+            List<String> existing = userRepository.findExistingNames(
+                    candidates.subList(from, Math.min(from + NAME_CHECK_CHUNK, candidates.size())));
+            if (!existing.isEmpty()) {
+                throw new EntityAlreadyExistsException("User name " + existing.get(0) + " already exists");
+            }
+        }
+
+        // the ids are reserved up front, so every user is inserted complete with its signed token
+        long nextId = userIdBlocks.reserve(requests.size());
+        List<User> users = new ArrayList<>(requests.size());
+        for (CreateUserRequest request : requests) {
+            User user = new User();
+            user.setId(nextId++);
+            user.setName(request.getName());
+            user.setCountry(Countries.normalize(request.getCountry()));
+            user.setToken(tokenSigner.sign(user.getId()));
+            users.add(user);
+        }
+        try {
+            userBatchRepository.insertAll(users);
+        } catch (DataIntegrityViolationException e) {
+            throw new EntityAlreadyExistsException("A user name of the batch already exists");
+        }
+        // the inserts bypass Hibernate, so cached name lookups that found none of the names would stay
+        secondLevelCache.evictQueryResults();
+        for (User user : users) {
+            nameFilters.userNameAdded(user.getName());
+            userTokenResolver.tokenIssued(user, null);
+            levelLeaderboard.update(user.getId(), user.getName(), user.getCountry(), user.getLevel());
+        }
+        return users;
+    }
 
-        if (user == null) {
-            throw new EntityNotFoundException("User not found");
+    @Override
+    public UpdateLevelRequest updateLevel(String token) throws EntityNotFoundException {
+        if (levelProgressBuffer.isEnabled()) {
+            return updateLevelBuffered(token);
         }
-        user.setLevel(user.getLevel() + 1);
-        user.setCoins(user.getCoins() + 25);
-        userRepository.save(user);
+
+        // a concurrent coin deduction of a team join would otherwise be overwritten, the version check retries
+        User user = optimisticTransactions.execute("Level update", () -> {
+            User player = verifyToken(token);
+
+            if (player == null) {
+                throw new EntityNotFoundException("User not found");
+            }
+            player.setLevel(player.getLevel() + 1);
+            player.setCoins(player.getCoins() + 25);
+            userRepository.save(player);
+            outbox.levelCompleted(player.getId(), player.getLevel());
+            return player;
+        });
+        gameMetrics.levelCompleted();
+        levelLeaderboard.update(user.getId(), user.getName(), user.getCountry(), user.getLevel());
+        teamLeaderboard.levelChanged(user.getId(), user.getLevel());
+        tournamentGroups.levelCompleted(user.getId());
+        domainEventBus.levelCompleted(user.getId(), user.getLevel());
         // user response without token
         UpdateLevelRequest updateLevelRequest = new UpdateLevelRequest();
         updateLevelRequest.setId(user.getId());
@@ -69,52 +212,55 @@ public class UserServiceImpl implements UserService {
 
     }
 
+    // collects the increments in the write-behind buffer, the user is only read when nothing is buffered yet
+    private UpdateLevelRequest updateLevelBuffered(String token) {
+        Long userId = userTokenResolver.resolveUserId(token)
+                .orElseThrow(() -> new EntityNotFoundException("User not found"));
+
+        LevelProgressBuffer.LevelProgress progress = levelProgressBuffer.add(userId, 1, 25, () ->
+                LevelProgressBuffer.LevelProgress.of(userRepository.findById(userId)
+                        .orElseThrow(() -> new EntityNotFoundException("User not found"))));
+        gameMetrics.levelCompleted();
+        levelLeaderboard.updateLevel(progress.userId(), progress.level());
+        teamLeaderboard.levelChanged(progress.userId(), progress.level());
+        tournamentGroups.levelCompleted(progress.userId());
+        domainEventBus.levelCompleted(progress.userId(), progress.level());
+
+        UpdateLevelRequest updateLevelRequest = new UpdateLevelRequest();
+        updateLevelRequest.setId(progress.userId());
+        updateLevelRequest.setName(progress.name());
+        updateLevelRequest.setLevel(progress.level());
+        updateLevelRequest.setCoins(progress.coins());
+        return updateLevelRequest;
+    }
+
 
     @Override
     public String createHashWithSalt(final String textToHash) throws NoSuchAlgorithmException {
-        try {
-            byte[] salt = createSalt();
+        byte[] salt = createSalt();
 
-            String saltedHash = null;
-            // Create MessageDigest instance for Sha-256
-            MessageDigest md = MessageDigest.getInstance("Sha-256");
+        MessageDigest md = SHA_256.get();
 
-            //Add salted bytes to digest
-            md.update(salt);
+        //Add salted bytes to digest
+        md.update(salt);
 
-            //Get the hash's bytes
-            byte[] bytes = md.digest(textToHash.getBytes());
+        //Get the hash's bytes, digest() also resets the instance for the next call
+        byte[] bytes = md.digest(textToHash.getBytes(StandardCharsets.UTF_8));
 
-            saltedHash = convertToHex(bytes);
-            return saltedHash;
-
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        return null;
+        return convertToHex(bytes);
     }
 
 
     public String convertToHex(final byte[] messageDigest) {
-        BigInteger bigint = new BigInteger(1, messageDigest);
-        String hexText = bigint.toString(16);
-        while (hexText.length() < 32) {
-            hexText = "0".concat(hexText);
-        }
-        return hexText;
+        return HexFormat.of().formatHex(messageDigest);
     }
 
     //Create salt
-    public byte[] createSalt()
-            throws NoSuchAlgorithmException,
-            NoSuchProviderException {
-
-        //Always use a SecureRandom generator for random salt
-        SecureRandom sr = SecureRandom.getInstance("SHA1PRNG", "SUN");
+    public byte[] createSalt() {
         //Create array for salt
         byte[] salt = new byte[16];
-        //Get a random salt
-        sr.nextBytes(salt);
+        //Get a random salt from the shared generator
+        SALT_RANDOM.nextBytes(salt);
         //return salt
         return salt;
     }
@@ -122,7 +268,7 @@ public class UserServiceImpl implements UserService {
 
     @Override
     public User verifyToken(String token) {
-        User user = userRepository.findByToken(token)
+        User user = userTokenResolver.findByToken(token)
                 .orElseThrow(() -> new EntityNotFoundException("User not found"));
         return user;
     }
@@ -142,6 +288,10 @@ public class UserServiceImpl implements UserService {
 
 
         userRepository.saveAll(users);
+        users.forEach(user -> {
+            userTokenResolver.tokenIssued(user, null);
+            nameFilters.userNameAdded(user.getName());
+        });
         return users;
     }
 
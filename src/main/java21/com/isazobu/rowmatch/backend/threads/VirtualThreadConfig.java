@@ -0,0 +1,38 @@
+package com.isazobu.rowmatch.backend.threads;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.scheduling.annotation.AsyncAnnotationBeanPostProcessor;
+
+import java.util.concurrent.Executors;
+
+/**
+ * Runs Tomcat request handling and the application task executor on virtual threads.
+ * Only compiled by the {@code java21} build profile, and can be switched off with
+ * {@code rowmatch.virtual-threads.enabled=false}. Database access stays bounded by
+ * {@link com.isazobu.rowmatch.backend.datasource.PermitLimitedDataSource}, which
+ * {@link com.isazobu.rowmatch.backend.datasource.DatabasePermitConfig} puts in front of the pool while this
+ * configuration is active.
+ */
+@Configuration
+@ConditionalOnProperty(name = "rowmatch.virtual-threads.enabled", havingValue = "true", matchIfMissing = true)
+public class VirtualThreadConfig {
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        return protocolHandler -> protocolHandler.setExecutor(
+                Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("http-virtual-", 0).factory()));
+    }
+
+    @Bean(name = {TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME,
+            AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME})
+    public AsyncTaskExecutor applicationTaskExecutor() {
+        return new TaskExecutorAdapter(
+                Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("task-virtual-", 0).factory()));
+    }
+}
@@ -0,0 +1,167 @@
+package com.isazobu.rowmatch.backend;
+
+import com.isazobu.rowmatch.backend.exceptions.NotEnoughCoinsException;
+import com.isazobu.rowmatch.backend.exceptions.TeamCapacityFullException;
+import com.isazobu.rowmatch.backend.exceptions.UserAlreadyInTeamException;
+import com.isazobu.rowmatch.backend.team.dto.CreateTeamRequest;
+import com.isazobu.rowmatch.backend.team.model.Team;
+import com.isazobu.rowmatch.backend.team.service.TeamService;
+import com.isazobu.rowmatch.backend.user.dto.CreateUserRequest;
+import com.isazobu.rowmatch.backend.user.model.User;
+import com.isazobu.rowmatch.backend.user.service.UserService;
+import jdk.jfr.Description;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Races team joins and level completions of the same users on many threads and checks that no coins are lost or
+ * spent twice and no team goes over its capacity. Runs on its own embedded H2 database and is executed by every
+ * build, see the {@code concurrency} surefire execution in the pom.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:concurrency;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        // enough attempts that no operation gives up, a conflict must only ever delay it
+        "rowmatch.transactions.max-attempts=100"
+})
+@ActiveProfiles("h2")
+@DisplayName("Concurrent coin and team updates")
+@Description("Regression test for lost coin updates and capacity overruns under parallel joins and level updates")
+class ConcurrentUpdateTest {
+
+    private static final int TEAMS = 4;
+    private static final int PLAYERS = 160;
+    private static final int LEVELS = 3;
+    private static final int THREADS = 64;
+    private static final int COINS = 1000;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private TeamService teamService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private List<User> createUsers(String prefix, int count) {
+        List<CreateUserRequest> requests = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            CreateUserRequest request = new CreateUserRequest();
+            request.setName(prefix + i);
+            requests.add(request);
+        }
+        return userService.createUsers(requests);
+    }
+
+    @Test
+    @DisplayName("Racing joins and level updates neither lose coins nor overfill teams")
+    @Description("Every player tries every team while completing levels, each player can afford one join")
+    void racingJoinsAndLevelUpdates() throws Throwable {
+        // arrange
+        List<Long> teamIds = new ArrayList<>();
+        List<User> owners = createUsers("race-owner-", TEAMS);
+        for (int i = 0; i < TEAMS; i++) {
+            CreateTeamRequest request = new CreateTeamRequest();
+            request.setName("race-team-" + i);
+            teamIds.add(teamService.createTeam(request, owners.get(i).getToken()).getId());
+        }
+        List<User> players = createUsers("race-player-", PLAYERS);
+        jdbcTemplate.update("UPDATE users SET coins = ? WHERE name LIKE 'race-player-%'", COINS);
+
+        Map<Long, AtomicInteger> joins = new ConcurrentHashMap<>();
+        Map<Long, AtomicInteger> levels = new ConcurrentHashMap<>();
+        Queue<Throwable> unexpected = new ConcurrentLinkedQueue<>();
+        List<Runnable> tasks = new ArrayList<>();
+        for (User player : players) {
+            joins.put(player.getId(), new AtomicInteger());
+            levels.put(player.getId(), new AtomicInteger());
+            for (Long teamId : teamIds) {
+                tasks.add(() -> {
+                    try {
+                        teamService.joinTeam(teamId, player.getToken());
+                        joins.get(player.getId()).incrementAndGet();
+                    } catch (UserAlreadyInTeamException | TeamCapacityFullException | NotEnoughCoinsException e) {
+                        // lost the race for the player or the seat
+                    } catch (Throwable e) {
+                        unexpected.add(e);
+                    }
+                });
+            }
+            for (int i = 0; i < LEVELS; i++) {
+                tasks.add(() -> {
+                    try {
+                        userService.updateLevel(player.getToken());
+                        levels.get(player.getId()).incrementAndGet();
+                    } catch (Throwable e) {
+                        unexpected.add(e);
+                    }
+                });
+            }
+        }
+        Collections.shuffle(tasks);
+
+        // act
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        for (Runnable task : tasks) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                task.run();
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue("the operations did not finish in time", executor.awaitTermination(2, TimeUnit.MINUTES));
+
+        // assert
+        assertTrue("unexpected failures: " + unexpected, unexpected.isEmpty());
+        int seatsTaken = 0;
+        for (User player : players) {
+            Map<String, Object> row = jdbcTemplate.queryForMap(
+                    "SELECT level, coins, team_id FROM users WHERE id = ?", player.getId());
+            int joined = joins.get(player.getId()).get();
+            int completed = levels.get(player.getId()).get();
+            assertTrue(player.getName() + " joined " + joined + " teams", joined <= 1);
+            assertEquals(player.getName() + " team", joined == 1, row.get("team_id") != null);
+            assertEquals(player.getName() + " level", 1 + completed, ((Number) row.get("level")).intValue());
+            assertEquals(player.getName() + " coins", COINS - joined * 1000 + completed * 25,
+                    ((Number) row.get("coins")).intValue());
+            seatsTaken += joined;
+        }
+        int members = 0;
+        for (Long teamId : teamIds) {
+            int count = jdbcTemplate.queryForObject("SELECT member_count FROM teams WHERE id = ?", Integer.class, teamId);
+            int actual = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users WHERE team_id = ?", Integer.class, teamId);
+            assertEquals("member count of team " + teamId, actual, count);
+            assertTrue("team " + teamId + " has " + count + " members", count <= Team.CAPACITY);
+            members += count;
+        }
+        assertEquals(TEAMS + seatsTaken, members);
+        assertEquals(TEAMS * Team.CAPACITY, members);
+    }
+}
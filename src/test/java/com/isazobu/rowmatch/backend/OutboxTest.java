@@ -0,0 +1,273 @@
+package com.isazobu.rowmatch.backend;
+
+import com.isazobu.rowmatch.backend.events.DomainEventType;
+import com.isazobu.rowmatch.backend.outbox.dto.OutboxMessage;
+import com.isazobu.rowmatch.backend.outbox.service.Outbox;
+import com.isazobu.rowmatch.backend.outbox.service.OutboxPoller;
+import com.isazobu.rowmatch.backend.outbox.sink.InMemoryOutboxSink;
+import com.isazobu.rowmatch.backend.team.dto.CreateTeamRequest;
+import com.isazobu.rowmatch.backend.team.service.TeamService;
+import com.isazobu.rowmatch.backend.user.dto.CreateUserRequest;
+import com.isazobu.rowmatch.backend.user.model.User;
+import com.isazobu.rowmatch.backend.user.service.UserService;
+import jdk.jfr.Description;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the application with the outbox on its own embedded H2 database and checks that committed changes, and only
+ * those, reach the sink exactly once while several pollers compete for the partitions. The pollers are
+ * driven by the tests. Executed by every build, see the {@code outbox} surefire execution in the pom.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:outbox;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "rowmatch.outbox.enabled=true",
+        "rowmatch.outbox.sink=memory",
+        "rowmatch.outbox.partitions=4",
+        "rowmatch.outbox.poller.threads=0"
+})
+@ActiveProfiles("h2")
+@DisplayName("Outbox")
+@Description("Integration tests for the transactional outbox and its pollers")
+class OutboxTest {
+
+    private static final AtomicInteger NAMES = new AtomicInteger();
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private TeamService teamService;
+
+    @Autowired
+    private Outbox outbox;
+
+    @Autowired
+    private OutboxPoller outboxPoller;
+
+    @Autowired
+    private InMemoryOutboxSink sink;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        outboxPoller.poll();
+        sink.clear();
+    }
+
+    private List<User> createUsers(int count) {
+        List<CreateUserRequest> requests = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            CreateUserRequest request = new CreateUserRequest();
+            request.setName("outbox-user-" + NAMES.incrementAndGet());
+            requests.add(request);
+        }
+        return userService.createUsers(requests);
+    }
+
+    private int pending() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM outbox_events", Integer.class);
+    }
+
+    private OutboxPoller poller(List<OutboxMessage> delivered) {
+        return new OutboxPoller(jdbcTemplate, transactionManager, outbox, List.of(messages -> {
+            synchronized (delivered) {
+                delivered.addAll(messages);
+            }
+        }), false, 0, 10, Duration.ofSeconds(1));
+    }
+
+    @Test
+    @DisplayName("Level and team changes are delivered in order once committed")
+    @Description("Every change writes its event in its own transaction, the poller delivers and removes them")
+    void changesAreDelivered() throws Throwable {
+        // arrange
+        List<User> users = createUsers(2);
+        User owner = users.get(0);
+        User member = users.get(1);
+        userService.updateLevel(owner.getToken());
+        userService.updateLevel(owner.getToken());
+        CreateTeamRequest request = new CreateTeamRequest();
+        request.setName("outbox-team-" + NAMES.incrementAndGet());
+        Long teamId = teamService.createTeam(request, owner.getToken()).getId();
+        teamService.joinTeam(teamId, member.getToken());
+        teamService.leaveTeam(member.getToken());
+        teamService.leaveTeam(owner.getToken());
+        assertEquals(6, pending());
+
+        // act
+        int delivered = outboxPoller.poll();
+
+        // assert
+        assertEquals(6, delivered);
+        assertEquals(0, pending());
+        List<OutboxMessage> ofOwner = sink.messages().stream().filter(m -> m.getUserId() == owner.getId()).toList();
+        assertEquals(List.of(DomainEventType.LEVEL_COMPLETED, DomainEventType.LEVEL_COMPLETED,
+                        DomainEventType.TEAM_JOINED, DomainEventType.TEAM_DISBANDED),
+                ofOwner.stream().map(OutboxMessage::getType).toList());
+        assertEquals(2, ofOwner.get(0).getLevel());
+        assertEquals(3, ofOwner.get(1).getLevel());
+        assertEquals(teamId, ofOwner.get(3).getTeamId());
+        List<OutboxMessage> ofMember = sink.messages().stream().filter(m -> m.getUserId() == member.getId()).toList();
+        assertEquals(List.of(DomainEventType.TEAM_JOINED, DomainEventType.TEAM_LEFT),
+                ofMember.stream().map(OutboxMessage::getType).toList());
+        assertEquals(outbox.partition(member.getId()), ofMember.get(0).getPartition());
+    }
+
+    @Test
+    @DisplayName("Rolled back changes leave no event behind")
+    @Description("The event is part of the transaction, writing it outside of one is refused")
+    void rolledBackChangesWriteNothing() {
+        // act
+        transactionTemplate.executeWithoutResult(status -> {
+            outbox.levelCompleted(1L, 2);
+            status.setRollbackOnly();
+        });
+
+        // assert
+        assertEquals(0, pending());
+        assertThrows(IllegalStateException.class, () -> outbox.levelCompleted(1L, 2));
+        assertEquals(0, pending());
+    }
+
+    @Test
+    @DisplayName("A failed delivery is retried on the next poll")
+    @Description("The batch stays in the outbox when the sink throws")
+    void failedDeliveryIsRetried() {
+        // arrange
+        User user = createUsers(1).get(0);
+        userService.updateLevel(user.getToken());
+        List<OutboxMessage> delivered = new ArrayList<>();
+        AtomicInteger attempts = new AtomicInteger();
+        OutboxPoller failingOnce = new OutboxPoller(jdbcTemplate, transactionManager, outbox, List.of(messages -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new IllegalStateException("Broker unavailable");
+            }
+            delivered.addAll(messages);
+        }), false, 0, 10, Duration.ofSeconds(1));
+
+        // act
+        int first = failingOnce.poll();
+        int second = failingOnce.poll();
+
+        // assert
+        assertEquals(0, first);
+        assertEquals(1, second);
+        assertEquals(1, delivered.size());
+        assertEquals(user.getId().longValue(), delivered.get(0).getUserId());
+        assertEquals(0, pending());
+    }
+
+    @Test
+    @DisplayName("A partition claimed by another poller is delivered once the claim is released")
+    @Description("The partition row is locked in an open transaction of another instance, H2 waits instead of skipping")
+    void claimedPartitionIsDeliveredAfterRelease() throws Exception {
+        // arrange
+        List<User> users = createUsers(8);
+        for (User user : users) {
+            userService.updateLevel(user.getToken());
+        }
+        int claimed = outbox.partition(users.get(0).getId());
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<?> otherInstance = executor.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.queryForList("SELECT partition_no FROM outbox_partitions WHERE partition_no = ? FOR UPDATE",
+                    Integer.class, claimed);
+            locked.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        assertTrue(locked.await(10, TimeUnit.SECONDS));
+
+        // act
+        Future<Integer> poll = executor.submit(() -> outboxPoller.poll());
+        Thread.sleep(300);
+        boolean doneWhileClaimed = poll.isDone();
+        release.countDown();
+        otherInstance.get(10, TimeUnit.SECONDS);
+        int delivered = poll.get(10, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        // assert
+        assertFalse(doneWhileClaimed);
+        assertEquals(users.size(), delivered);
+        assertEquals(users.size(), sink.messages().size());
+        assertEquals(0, pending());
+    }
+
+    @Test
+    @DisplayName("Competing pollers deliver every event exactly once")
+    @Description("Two instances poll the same outbox concurrently")
+    void competingPollersDeliverOnce() throws Exception {
+        // arrange
+        List<User> users = createUsers(20);
+        for (int round = 0; round < 5; round++) {
+            for (User user : users) {
+                userService.updateLevel(user.getToken());
+            }
+        }
+        List<OutboxMessage> delivered = Collections.synchronizedList(new ArrayList<>());
+        List<OutboxPoller> instances = List.of(poller(delivered), poller(delivered));
+        ExecutorService executor = Executors.newFixedThreadPool(instances.size());
+
+        // act
+        List<Future<?>> futures = new ArrayList<>();
+        for (OutboxPoller instance : instances) {
+            futures.add(executor.submit(() -> {
+                while (pending() > 0) {
+                    instance.poll();
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // assert
+        assertEquals(100, delivered.size());
+        Set<Long> ids = new HashSet<>();
+        delivered.forEach(message -> ids.add(message.getId()));
+        assertEquals(100, ids.size());
+        for (User user : users) {
+            // a partition is delivered by one poller at a time and these changes commit one after another
+            List<Integer> levels = delivered.stream().filter(m -> m.getUserId() == user.getId())
+                    .map(OutboxMessage::getLevel).toList();
+            assertEquals(List.of(2, 3, 4, 5, 6), levels);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.isazobu.rowmatch.backend;
+
+import com.isazobu.rowmatch.backend.datasource.ReplicaRoutingDataSource;
+import com.isazobu.rowmatch.backend.team.dto.CreateTeamRequest;
+import com.isazobu.rowmatch.backend.team.service.TeamService;
+import com.isazobu.rowmatch.backend.user.dto.CreateUserRequest;
+import com.isazobu.rowmatch.backend.user.model.User;
+import com.isazobu.rowmatch.backend.user.service.UserService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.EntityNotFoundException;
+import jdk.jfr.Description;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the application on two embedded H2 databases, a primary and a replica that the tests fill with a copy of the
+ * primary, and checks which of them serves reads and writes. Executed by every build, see the
+ * {@code replica-routing} surefire execution in the pom.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:primary;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE"
+})
+@ActiveProfiles({"h2", "replicas"})
+@DisplayName("Read replica routing")
+@Description("Regression tests for sending read-only transactions to the replica and everything else to the primary")
+class ReplicaRoutingTest {
+
+    private static final String REPLICA_URL = "jdbc:h2:mem:replica;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+    private static final AtomicInteger NAMES = new AtomicInteger();
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private TeamService teamService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private ReplicaRoutingDataSource routing;
+    private SingleConnectionDataSource replicaConnection;
+    private JdbcTemplate replica;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        routing = dataSource.unwrap(ReplicaRoutingDataSource.class);
+        startReplica();
+    }
+
+    @AfterEach
+    void tearDown() {
+        replicaConnection.destroy();
+    }
+
+    // creates the replica database if it is down, the connection keeps it open until the test shuts it down
+    private void startReplica() {
+        replicaConnection = new SingleConnectionDataSource(REPLICA_URL, "sa", "", true);
+        replica = new JdbcTemplate(replicaConnection);
+    }
+
+    // copies the primary into the replica, like replication catching up, and waits for the replica to be routed to
+    private void replicate() throws Exception {
+        Path script = Files.createTempFile("primary", ".sql");
+        try {
+            jdbcTemplate.execute("SCRIPT TO '" + script + "'");
+            replica.execute("DROP ALL OBJECTS");
+            replica.execute("RUNSCRIPT FROM '" + script + "'");
+        } finally {
+            Files.deleteIfExists(script);
+        }
+        // after an outage the pool backs off before it connects again, later health checks pass. A connection used
+        // within the last 500 ms is handed out without validation, so the checks are spaced further apart
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        routing.checkHealth();
+        while (routing.getHealthyReplicas() == 0 && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(600);
+            routing.checkHealth();
+        }
+    }
+
+    private List<User> createUsers(int count) {
+        List<CreateUserRequest> requests = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            CreateUserRequest request = new CreateUserRequest();
+            request.setName("replica-user-" + NAMES.incrementAndGet());
+            requests.add(request);
+        }
+        return userService.createUsers(requests);
+    }
+
+    private String createTeam(User owner) throws Throwable {
+        CreateTeamRequest request = new CreateTeamRequest();
+        request.setName("replica-team-" + NAMES.incrementAndGet());
+        return teamService.createTeam(request, owner.getToken()).getName();
+    }
+
+    private int memberCount(JdbcTemplate database, String team) {
+        return database.queryForObject("SELECT member_count FROM teams WHERE name = ?", Integer.class, team);
+    }
+
+    @Test
+    @DisplayName("Read-only transactions read the replica, writes in the same request go to the primary")
+    @Description("The request keeps its entity manager like open session in view, the join must not reuse the replica")
+    void readsFromReplicaWritesToPrimary() throws Throwable {
+        // arrange
+        List<User> users = createUsers(2);
+        String team = createTeam(users.get(0));
+        replicate();
+        replica.update("UPDATE teams SET name = ? WHERE name = ?", team + "-replica", team);
+        Long teamId = jdbcTemplate.queryForObject("SELECT id FROM teams WHERE name = ?", Long.class, team);
+
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        TransactionSynchronizationManager.bindResource(entityManagerFactory, new EntityManagerHolder(entityManager));
+        try {
+            // act
+            assertEquals(1, teamService.getTeamByName(team + "-replica").getMemberCount());
+            assertThrows(EntityNotFoundException.class, () -> teamService.getTeamByName(team));
+            teamService.joinTeam(teamId, users.get(1).getToken());
+        } finally {
+            TransactionSynchronizationManager.unbindResource(entityManagerFactory);
+            entityManager.close();
+        }
+
+        // assert
+        assertEquals(2, memberCount(jdbcTemplate, team));
+        assertEquals(1, memberCount(replica, team + "-replica"));
+        assertEquals(1, routing.getHealthyReplicas());
+    }
+
+    @Test
+    @DisplayName("Reads fall back to the primary while the replica is down and return once it recovers")
+    @Description("The health check takes the replica out of the routing and puts it back")
+    void fallsBackWhileReplicaIsDown() throws Throwable {
+        // arrange
+        String team = createTeam(createUsers(1).get(0));
+        replicate();
+        assertEquals(1, routing.getHealthyReplicas());
+
+        // act
+        replica.execute("SHUTDOWN");
+        routing.checkHealth();
+
+        // assert
+        assertEquals(0, routing.getHealthyReplicas());
+        assertEquals(1, teamService.getTeamByName(team).getMemberCount());
+
+        // act
+        replicaConnection.destroy();
+        startReplica();
+        replicate();
+        replica.update("UPDATE teams SET name = ? WHERE name = ?", team + "-replica", team);
+
+        // assert
+        assertEquals(1, routing.getHealthyReplicas());
+        assertEquals(1, teamService.getTeamByName(team + "-replica").getMemberCount());
+    }
+}
@@ -3,7 +3,7 @@ package com.isazobu.rowmatch.backend;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(properties = "rowmatch.auth.token-secret=test-secret-of-at-least-thirty-two-bytes")
 class RowMatchBackendApiApplicationTests {
 
     @Test
@@ -0,0 +1,241 @@
+package com.isazobu.rowmatch.backend;
+
+import com.isazobu.rowmatch.backend.team.dto.CreateTeamRequest;
+import com.isazobu.rowmatch.backend.team.model.Team;
+import com.isazobu.rowmatch.backend.team.repository.TeamRepository;
+import com.isazobu.rowmatch.backend.team.service.TeamService;
+import com.isazobu.rowmatch.backend.user.dto.CreateUserRequest;
+import com.isazobu.rowmatch.backend.user.model.User;
+import com.isazobu.rowmatch.backend.user.repository.UserRepository;
+import com.isazobu.rowmatch.backend.user.service.LevelProgressBuffer;
+import com.isazobu.rowmatch.backend.user.service.UserService;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import jdk.jfr.Description;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the application with the second-level cache on its own embedded H2 database and checks that users and team
+ * members read after joins, leaves and JDBC writes are never the cached copies from before. Executed by every build,
+ * see the {@code second-level-cache} surefire execution in the pom.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:cache;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE"
+})
+@ActiveProfiles("h2")
+@DisplayName("Second-level cache")
+@Description("Regression tests for stale cached users and team members")
+class SecondLevelCacheTest {
+
+    private static final String TEAM_MEMBERS = Team.class.getName() + ".users";
+    private static final AtomicInteger NAMES = new AtomicInteger();
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private TeamService teamService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TeamRepository teamRepository;
+
+    @Autowired
+    private LevelProgressBuffer levelProgressBuffer;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Cache cache;
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    private <T> T inTransaction(Supplier<T> work) {
+        return transactionTemplate.execute(status -> work.get());
+    }
+
+    private List<User> createUsers(int count) {
+        List<CreateUserRequest> requests = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            CreateUserRequest request = new CreateUserRequest();
+            request.setName("cache-user-" + NAMES.incrementAndGet());
+            requests.add(request);
+        }
+        return userService.createUsers(requests);
+    }
+
+    private Long createTeam(User owner) throws Throwable {
+        CreateTeamRequest request = new CreateTeamRequest();
+        request.setName("cache-team-" + NAMES.incrementAndGet());
+        return teamService.createTeam(request, owner.getToken()).getId();
+    }
+
+    private User loadUser(Long userId) {
+        return inTransaction(() -> userRepository.findById(userId).orElseThrow());
+    }
+
+    private Long teamOf(Long userId) {
+        return inTransaction(() -> {
+            Team team = userRepository.findById(userId).orElseThrow().getTeam();
+            return team == null ? null : team.getId();
+        });
+    }
+
+    private List<Long> memberIds(Long teamId) {
+        return inTransaction(() -> teamRepository.findById(teamId).orElseThrow().getUsers().stream()
+                .map(User::getId).sorted().toList());
+    }
+
+    private int memberCount(Long teamId) {
+        return inTransaction(() -> teamRepository.findById(teamId).orElseThrow().getMemberCount());
+    }
+
+    @Test
+    @DisplayName("Members and the user's team are current after a join")
+    @Description("The team's members and the joining user are cached before the join")
+    void joinIsVisible() throws Throwable {
+        // arrange
+        List<User> users = createUsers(2);
+        Long teamId = createTeam(users.get(0));
+        Long joinerId = users.get(1).getId();
+        assertEquals(List.of(users.get(0).getId()), memberIds(teamId));
+        assertNull(teamOf(joinerId));
+        assertTrue(cache.containsCollection(TEAM_MEMBERS, teamId));
+        assertTrue(cache.containsEntity(User.class, joinerId));
+
+        // act
+        teamService.joinTeam(teamId, users.get(1).getToken());
+
+        // assert
+        assertEquals(List.of(users.get(0).getId(), joinerId), memberIds(teamId));
+        assertEquals(2, memberCount(teamId));
+        assertEquals(teamId, teamOf(joinerId));
+        assertEquals(Integer.valueOf(4000), loadUser(joinerId).getCoins());
+    }
+
+    @Test
+    @DisplayName("Members and the user's team are current after a leave")
+    @Description("The team's members and the leaving user are cached before the leave")
+    void leaveIsVisible() throws Throwable {
+        // arrange
+        List<User> users = createUsers(2);
+        Long teamId = createTeam(users.get(0));
+        teamService.joinTeam(teamId, users.get(1).getToken());
+        assertEquals(2, memberIds(teamId).size());
+        assertEquals(teamId, teamOf(users.get(1).getId()));
+        assertTrue(cache.containsCollection(TEAM_MEMBERS, teamId));
+
+        // act
+        teamService.leaveTeam(users.get(1).getToken());
+
+        // assert
+        assertEquals(List.of(users.get(0).getId()), memberIds(teamId));
+        assertEquals(1, memberCount(teamId));
+        assertNull(teamOf(users.get(1).getId()));
+    }
+
+    @Test
+    @DisplayName("A join evicts only the joined team")
+    @Description("The member count is updated with JDBC, other cached teams stay in the cache")
+    void joinKeepsOtherTeamsCached() throws Throwable {
+        // arrange
+        List<User> users = createUsers(3);
+        Long joinedId = createTeam(users.get(0));
+        Long otherId = createTeam(users.get(1));
+        assertEquals(1, memberCount(joinedId));
+        assertEquals(1, memberCount(otherId));
+        assertTrue(cache.containsEntity(Team.class, joinedId));
+        assertTrue(cache.containsEntity(Team.class, otherId));
+
+        // act
+        teamService.joinTeam(joinedId, users.get(2).getToken());
+
+        // assert
+        assertFalse(cache.containsEntity(Team.class, joinedId));
+        assertTrue(cache.containsEntity(Team.class, otherId));
+        assertEquals(2, memberCount(joinedId));
+    }
+
+    @Test
+    @DisplayName("Users are current after buffered level progress is written with JDBC")
+    @Description("The flush bypasses Hibernate and has to evict the users it wrote")
+    void bufferedProgressIsVisible() {
+        // arrange
+        User user = createUsers(1).get(0);
+        assertEquals(Integer.valueOf(1), loadUser(user.getId()).getLevel());
+        assertTrue(cache.containsEntity(User.class, user.getId()));
+
+        // act
+        levelProgressBuffer.add(user.getId(), 1, 25, () -> LevelProgressBuffer.LevelProgress.of(user));
+        levelProgressBuffer.flush(user.getId());
+
+        // assert
+        User loaded = loadUser(user.getId());
+        assertEquals(Integer.valueOf(2), loaded.getLevel());
+        assertEquals(Integer.valueOf(5025), loaded.getCoins());
+        assertEquals(1, loaded.getVersion());
+    }
+
+    @Test
+    @DisplayName("A cached name lookup finds users inserted with JDBC afterwards")
+    @Description("The batch insert bypasses Hibernate and has to drop the cached query results")
+    void nameLookupSeesBatchInserts() {
+        // arrange
+        String name = "cache-user-" + NAMES.incrementAndGet();
+        assertTrue(inTransaction(() -> userRepository.findByName(name)).isEmpty());
+
+        // act
+        CreateUserRequest request = new CreateUserRequest();
+        request.setName(name);
+        userService.createUsers(List.of(request));
+
+        // assert
+        assertTrue(inTransaction(() -> userRepository.findByName(name)).isPresent());
+    }
+
+    @Test
+    @DisplayName("Cached users are served without a query and counted as hits")
+    void recordsHits() {
+        // arrange
+        User user = createUsers(1).get(0);
+        loadUser(user.getId());
+        double hits = meterRegistry.get("cache.gets").tags("cache", "users", "result", "hit").functionCounter().count();
+
+        // act
+        loadUser(user.getId());
+
+        // assert
+        assertEquals(hits + 1, meterRegistry.get("cache.gets").tags("cache", "users", "result", "hit")
+                .functionCounter().count(), 0.0);
+        assertTrue(meterRegistry.get("rowmatch.cache.hit.ratio").tag("cache", "users").gauge().value() > 0);
+    }
+}
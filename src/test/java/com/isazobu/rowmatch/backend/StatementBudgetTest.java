@@ -0,0 +1,387 @@
+package com.isazobu.rowmatch.backend;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.isazobu.rowmatch.backend.team.index.JoinableTeamIndexLoader;
+import com.isazobu.rowmatch.backend.user.auth.AdminKey;
+import jdk.jfr.Description;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Counts the SQL statements one REST call sends to the database, including the lazy loads triggered while the
+ * response is serialized (open session in view), and fails when an operation goes over its budget.
+ * Statements are counted at the data source, so those of Hibernate and of {@code JdbcTemplate} (seats, outbox rows,
+ * id blocks, batched inserts) are counted alike. A JDBC batch is one statement, whatever the number of rows.
+ * Only statements of the request thread are counted, background work such as the outbox poller is not.
+ * Runs on the embedded H2 database and is executed by every build, see the {@code statement-budgets}
+ * surefire execution in the pom.
+ */
+@SpringBootTest(properties = {
+        "rowmatch.admin.api-key=" + StatementBudgetTest.ADMIN_KEY,
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("h2")
+@DisplayName("SQL statement budgets")
+@Description("Regression tests for the number of SQL statements of each API operation")
+class StatementBudgetTest {
+
+    static final String ADMIN_KEY = "statement-budget-admin-key-of-32-bytes";
+    private static final AtomicInteger NAMES = new AtomicInteger();
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private JoinableTeamIndexLoader joinableTeamIndexLoader;
+
+    private long statements(RequestBuilder request, int expectedStatus) throws Exception {
+        StatementCountingDataSource.start();
+        try {
+            mockMvc.perform(request).andExpect(status().is(expectedStatus));
+            return StatementCountingDataSource.count();
+        } finally {
+            StatementCountingDataSource.stop();
+        }
+    }
+
+    private static void assertBudget(String operation, long budget, long actual) {
+        assertTrue(operation + " used " + actual + " SQL statements, the budget is " + budget, actual <= budget);
+    }
+
+    private String createUser() throws Exception {
+        String body = mockMvc.perform(post("/api/v1/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"budget-user-" + NAMES.incrementAndGet() + "\"}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body).path("token").asText();
+    }
+
+    private long createTeam(String token, String name) throws Exception {
+        String body = mockMvc.perform(post("/api/v1/teams")
+                        .header("Authorization", token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"" + name + "\"}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        JsonNode team = objectMapper.readTree(body);
+        return team.path("id").asLong();
+    }
+
+    private String teamWithMembers(int members) throws Exception {
+        String name = "budget-team-" + NAMES.incrementAndGet();
+        long teamId = createTeam(createUser(), name);
+        for (int i = 1; i < members; i++) {
+            mockMvc.perform(post("/api/v1/teams/" + teamId + "/join").header("Authorization", createUser()))
+                    .andExpect(status().isOk());
+        }
+        return name;
+    }
+
+    private void seedTeams(int count) {
+        List<Object[]> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            rows.add(new Object[]{"budget-seed-" + NAMES.incrementAndGet()});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO teams (name, member_count, version) VALUES (?, 0, 0)", rows);
+        joinableTeamIndexLoader.rebuild();
+    }
+
+    @Test
+    @DisplayName("Creating a user")
+    void createUserBudget() throws Exception {
+        long actual = statements(post("/api/v1/users")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\":\"budget-user-" + NAMES.incrementAndGet() + "\"}"), 201);
+
+        // insert, token update, the name filter rules out the name check for new names
+        assertBudget("POST /api/v1/users", 2, actual);
+    }
+
+    @Test
+    @DisplayName("Creating a batch of users")
+    void createUsersBudget() throws Exception {
+        StringBuilder users = new StringBuilder("[");
+        for (int i = 0; i < 1000; i++) {
+            users.append(i == 0 ? "" : ",").append("{\"name\":\"budget-user-").append(NAMES.incrementAndGet())
+                    .append("\",\"country\":\"TR\"}");
+        }
+        long actual = statements(post("/api/v1/users/batch")
+                .header(AdminKey.HEADER, ADMIN_KEY)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(users.append("]").toString()), 201);
+
+        // lock and advance the id block, two batched inserts of 500 users, new names skip the name check
+        assertBudget("POST /api/v1/users/batch with 1000 users", 4, actual);
+        assertEquals(Integer.valueOf(1000), jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM users WHERE name LIKE 'budget-user-%' AND token LIKE 'v1.%' AND country = 'TR'",
+                Integer.class));
+    }
+
+    @Test
+    @DisplayName("Completing a level")
+    void updateLevelBudget() throws Exception {
+        String token = createUser();
+
+        long actual = statements(put("/api/v1/users").header("Authorization", token), 200);
+
+        // update level and coins, the user comes from the second-level cache
+        assertBudget("PUT /api/v1/users", 1, actual);
+    }
+
+    @Test
+    @DisplayName("Creating a team")
+    void createTeamBudget() throws Exception {
+        String token = createUser();
+
+        long actual = statements(post("/api/v1/teams")
+                .header("Authorization", token)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\":\"budget-team-" + NAMES.incrementAndGet() + "\"}"), 201);
+
+        // insert the team, update the user, the user is cached and the name filter rules out the name check
+        assertBudget("POST /api/v1/teams", 2, actual);
+    }
+
+    @Test
+    @DisplayName("Joining a team does not depend on the number of members")
+    void joinTeamBudget() throws Exception {
+        for (int members : new int[]{1, 15}) {
+            String name = teamWithMembers(members);
+            long teamId = jdbcTemplate.queryForObject("SELECT id FROM teams WHERE name = ?", Long.class, name);
+            String token = createUser();
+
+            long actual = statements(post("/api/v1/teams/" + teamId + "/join").header("Authorization", token), 200);
+
+            // take the seat, load the team, update the user, members for the response, the user is cached
+            assertBudget("POST /api/v1/teams/{id}/join with " + members + " members", 4, actual);
+        }
+    }
+
+    @Test
+    @DisplayName("Leaving a team")
+    void leaveTeamBudget() throws Exception {
+        String token = createUser();
+        createTeam(token, "budget-team-" + NAMES.incrementAndGet());
+        mockMvc.perform(post("/api/v1/teams/" + jdbcTemplate.queryForObject(
+                        "SELECT MAX(id) FROM teams", Long.class) + "/join").header("Authorization", createUser()))
+                .andExpect(status().isOk());
+
+        long actual = statements(post("/api/v1/teams/leave").header("Authorization", token), 204);
+
+        // update the user, free the seat, delete if empty, reload the team, the user is cached
+        assertBudget("POST /api/v1/teams/leave", 4, actual);
+    }
+
+    @Test
+    @DisplayName("Reading a team does not depend on the number of members")
+    void getTeamByNameBudget() throws Exception {
+        long small = statements(get("/api/v1/teams/" + teamWithMembers(1)), 200);
+        long large = statements(get("/api/v1/teams/" + teamWithMembers(15)), 200);
+
+        // the team joined with its members in one projection query
+        assertBudget("GET /api/v1/teams/{name}", 1, small);
+        assertEquals("GET /api/v1/teams/{name} must not issue a query per member", small, large);
+    }
+
+    @Test
+    @DisplayName("Revalidating a team with 15 members")
+    @Description("A matching If-None-Match is answered with 304, a completed level of a member changes the ETag")
+    void revalidateTeamBudget() throws Exception {
+        String owner = createUser();
+        String name = "budget-team-" + NAMES.incrementAndGet();
+        long teamId = createTeam(owner, name);
+        for (int i = 1; i < 15; i++) {
+            mockMvc.perform(post("/api/v1/teams/" + teamId + "/join").header("Authorization", createUser()))
+                    .andExpect(status().isOk());
+        }
+        String eTag = mockMvc.perform(get("/api/v1/teams/" + name)).andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        long actual = statements(get("/api/v1/teams/" + name).header("If-None-Match", eTag), 304);
+
+        // the team version and the summed member versions in one aggregate query
+        assertBudget("GET /api/v1/teams/{name} with a current If-None-Match", 1, actual);
+        mockMvc.perform(put("/api/v1/users").header("Authorization", owner)).andExpect(status().isOk());
+        statements(get("/api/v1/teams/" + name).header("If-None-Match", eTag), 200);
+    }
+
+    @Test
+    @DisplayName("Team search is served without SQL")
+    void searchTeamsBudget() throws Exception {
+        seedTeams(50);
+        long prefix = statements(get("/api/v1/teams/search").param("q", "budget-seed"), 200);
+        long similar = statements(get("/api/v1/teams/search").param("q", "bduget-sede"), 200);
+
+        assertBudget("GET /api/v1/teams/search by prefix", 0, prefix);
+        assertBudget("GET /api/v1/teams/search with a typo", 0, similar);
+    }
+
+    @Test
+    @DisplayName("Random joinable teams are served without SQL whatever the number of teams")
+    void randomTeamsBudget() throws Exception {
+        seedTeams(10);
+        long few = statements(get("/api/v1/teams/random"), 200);
+        seedTeams(2000);
+        long many = statements(get("/api/v1/teams/random"), 200);
+
+        assertBudget("GET /api/v1/teams/random", 0, few);
+        assertEquals("GET /api/v1/teams/random must not depend on the number of teams", few, many);
+    }
+
+    @Test
+    @DisplayName("Leaderboards are served without SQL")
+    void leaderboardBudget() throws Exception {
+        String token = createUser();
+        long teamId = createTeam(token, "budget-team-" + NAMES.incrementAndGet());
+
+        long top = statements(get("/api/v1/leaderboard").param("limit", "100"), 200);
+        long ranking = statements(get("/api/v1/leaderboard/me").header("Authorization", token), 200);
+        long topTeams = statements(get("/api/v1/leaderboard/teams").param("limit", "100"), 200);
+        long teamRanking = statements(get("/api/v1/leaderboard/teams/" + teamId), 200);
+
+        assertBudget("GET /api/v1/leaderboard", 0, top);
+        assertBudget("GET /api/v1/leaderboard/me", 0, ranking);
+        assertBudget("GET /api/v1/leaderboard/teams", 0, topTeams);
+        assertBudget("GET /api/v1/leaderboard/teams/{teamId}", 0, teamRanking);
+    }
+
+    @Test
+    @DisplayName("Entering a tournament costs one insert, reading the group none")
+    void tournamentBudget() throws Exception {
+        mockMvc.perform(post("/api/v1/tournaments")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"durationMinutes\":60,\"groupSize\":20}"))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(post("/api/v1/tournaments")
+                        .header(AdminKey.HEADER, ADMIN_KEY)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"durationMinutes\":60,\"groupSize\":20}"))
+                .andExpect(status().isCreated());
+        String token = createUser();
+
+        long enter = statements(post("/api/v1/tournaments/enter").header("Authorization", token), 201);
+        long levelUp = statements(put("/api/v1/users").header("Authorization", token), 200);
+        long group = statements(get("/api/v1/tournaments/group").header("Authorization", token), 200);
+
+        // the entry is inserted, the score is kept in memory and the user comes from the second-level cache
+        assertBudget("POST /api/v1/tournaments/enter", 1, enter);
+        assertBudget("PUT /api/v1/users during a tournament", 1, levelUp);
+        assertBudget("GET /api/v1/tournaments/group", 0, group);
+    }
+
+    @TestConfiguration
+    static class StatementCountingConfig {
+
+        @Bean
+        static BeanPostProcessor statementCountingPostProcessor() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    // a lazy proxy hands out the connections of the data source behind it, which is counted already
+                    if (bean instanceof DataSource dataSource && !(bean instanceof StatementCountingDataSource)
+                            && !(bean instanceof LazyConnectionDataSourceProxy)) {
+                        return new StatementCountingDataSource(dataSource);
+                    }
+                    return bean;
+                }
+            };
+        }
+    }
+
+    /**
+     * Counts the statements created on its connections by the thread that called {@link #start()}.
+     */
+    static class StatementCountingDataSource extends DelegatingDataSource {
+
+        private static final Set<String> STATEMENT_FACTORIES = Set.of("createStatement", "prepareStatement", "prepareCall");
+        private static final AtomicLong COUNT = new AtomicLong();
+        private static volatile Thread counted;
+
+        StatementCountingDataSource(DataSource target) {
+            super(target);
+        }
+
+        static void start() {
+            COUNT.set(0);
+            counted = Thread.currentThread();
+        }
+
+        static long count() {
+            return COUNT.get();
+        }
+
+        static void stop() {
+            counted = null;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return counting(super.getConnection());
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return counting(super.getConnection(username, password));
+        }
+
+        private static Connection counting(Connection connection) {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "equals":
+                                return proxy == args[0];
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+                            default:
+                                if (STATEMENT_FACTORIES.contains(method.getName())
+                                        && Thread.currentThread() == counted) {
+                                    COUNT.incrementAndGet();
+                                }
+                                try {
+                                    return method.invoke(connection, args);
+                                } catch (InvocationTargetException e) {
+                                    throw e.getTargetException();
+                                }
+                        }
+                    });
+        }
+    }
+}
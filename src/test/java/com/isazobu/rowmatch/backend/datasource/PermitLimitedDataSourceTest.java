@@ -0,0 +1,139 @@
+package com.isazobu.rowmatch.backend.datasource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jdk.jfr.Description;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+@DisplayName("PermitLimitedDataSource")
+@Description("Test cases for the database permit semaphore in front of the connection pool")
+class PermitLimitedDataSourceTest {
+
+    @Mock
+    private DataSource target;
+
+    @Mock
+    private Connection connection;
+
+    private PermitLimitedDataSource dataSource;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        MockitoAnnotations.openMocks(this);
+        when(target.getConnection()).thenReturn(connection);
+        dataSource = new PermitLimitedDataSource(target, 1, Duration.ofMillis(50));
+    }
+
+    // a caller on another thread, the current one already holds a permit after its first connection
+    private Connection connectFromOtherThread() throws Throwable {
+        FutureTask<Connection> task = new FutureTask<>(() -> dataSource.getConnection());
+        new Thread(task).start();
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Test
+    @DisplayName("Callers beyond the limit time out without reaching the pool")
+    void limitIsEnforced() throws SQLException {
+        // arrange
+        dataSource.getConnection();
+
+        // act & assert
+        assertThrows(SQLTransientConnectionException.class, this::connectFromOtherThread);
+        verify(target, times(1)).getConnection();
+        assertEquals(0, dataSource.getAvailablePermits());
+    }
+
+    @Test
+    @DisplayName("A thread holding a permit gets nested connections without waiting for another one")
+    @Description("A REQUIRES_NEW transaction inside a running one must not wait for a permit its own thread holds")
+    void nestedConnectionsDoNotWait() throws Throwable {
+        // arrange
+        Connection outer = dataSource.getConnection();
+
+        // act
+        Connection nested = dataSource.getConnection();
+        nested.close();
+        outer.close();
+
+        // assert
+        verify(target, times(2)).getConnection();
+        assertEquals(1, dataSource.getAvailablePermits());
+        assertNotNull(connectFromOtherThread());
+    }
+
+    @Test
+    @DisplayName("Closing a connection gives its permit back exactly once")
+    void closeReleasesOnce() throws SQLException {
+        // arrange
+        Connection first = dataSource.getConnection();
+
+        // act
+        first.close();
+        first.close();
+
+        // assert
+        verify(connection, times(2)).close();
+        assertEquals(1, dataSource.getAvailablePermits());
+        assertNotNull(dataSource.getConnection());
+        assertEquals(0, dataSource.getAvailablePermits());
+    }
+
+    @Test
+    @DisplayName("A failed pool checkout does not leak the permit")
+    void failedCheckoutReleasesPermit() throws SQLException {
+        // arrange
+        when(target.getConnection()).thenThrow(new SQLException("pool exhausted"));
+
+        // act & assert
+        assertThrows(SQLException.class, () -> dataSource.getConnection());
+        assertEquals(1, dataSource.getAvailablePermits());
+    }
+
+    @Test
+    @DisplayName("Other calls are passed to the pooled connection")
+    void delegatesToConnection() throws SQLException {
+        // arrange
+        when(connection.getAutoCommit()).thenReturn(false);
+        Connection limited = dataSource.getConnection();
+
+        // act & assert
+        assertFalse(limited.getAutoCommit());
+        assertEquals(limited, limited);
+        verify(connection).getAutoCommit();
+    }
+
+    @Test
+    @DisplayName("Permit waits and timeouts are recorded once bound to a registry")
+    void recordsMetrics() throws SQLException {
+        // arrange
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        dataSource.bindTo(registry);
+
+        // act
+        dataSource.getConnection();
+        assertThrows(SQLTransientConnectionException.class, this::connectFromOtherThread);
+
+        // assert
+        assertEquals(2, registry.get("rowmatch.db.permits.wait").timer().count());
+        assertEquals(1, registry.get("rowmatch.db.permits.timeouts").counter().count(), 0);
+        assertEquals(0, registry.get("rowmatch.db.permits.available").gauge().value(), 0);
+    }
+}
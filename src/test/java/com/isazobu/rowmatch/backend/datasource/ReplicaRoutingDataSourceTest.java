@@ -0,0 +1,133 @@
+package com.isazobu.rowmatch.backend.datasource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jdk.jfr.Description;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+@DisplayName("ReplicaRoutingDataSource")
+@Description("Test cases for routing read-only transactions to healthy replicas")
+class ReplicaRoutingDataSourceTest {
+
+    @Mock
+    private DataSource primary;
+
+    @Mock
+    private DataSource replica1;
+
+    @Mock
+    private DataSource replica2;
+
+    @Mock
+    private Connection primaryConnection;
+
+    @Mock
+    private Connection replica1Connection;
+
+    @Mock
+    private Connection replica2Connection;
+
+    private ReplicaRoutingDataSource dataSource;
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        MockitoAnnotations.openMocks(this);
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        when(replica1.getConnection()).thenReturn(replica1Connection);
+        when(replica2.getConnection()).thenReturn(replica2Connection);
+        when(replica1Connection.isValid(anyInt())).thenReturn(true);
+        when(replica2Connection.isValid(anyInt())).thenReturn(true);
+        dataSource = new ReplicaRoutingDataSource(primary, List.of(replica1, replica2), Duration.ofHours(1));
+        registry = new SimpleMeterRegistry();
+        dataSource.bindTo(registry);
+        dataSource.checkHealth();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+    }
+
+    @Test
+    @DisplayName("Read-only transactions alternate between the replicas, everything else uses the primary")
+    void routesByReadOnlyFlag() throws SQLException {
+        // act & assert
+        assertSame(primaryConnection, dataSource.getConnection());
+
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        Connection first = dataSource.getConnection();
+        Connection second = dataSource.getConnection();
+        assertNotSame(first, second);
+        assertTrue(List.of(replica1Connection, replica2Connection).containsAll(List.of(first, second)));
+        assertEquals(2, dataSource.getHealthyReplicas());
+    }
+
+    @Test
+    @DisplayName("A replica failing its health check is skipped until it passes again")
+    void skipsUnhealthyReplicas() throws SQLException {
+        // arrange
+        when(replica1Connection.isValid(anyInt())).thenReturn(false);
+        dataSource.checkHealth();
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        // act & assert
+        assertSame(replica2Connection, dataSource.getConnection());
+        assertSame(replica2Connection, dataSource.getConnection());
+        assertEquals(1, (int) registry.get("rowmatch.db.replicas.healthy").gauge().value());
+
+        when(replica1Connection.isValid(anyInt())).thenReturn(true);
+        dataSource.checkHealth();
+        assertNotSame(dataSource.getConnection(), dataSource.getConnection());
+    }
+
+    @Test
+    @DisplayName("Reads fall back to the primary when no replica hands out a connection")
+    void fallsBackToPrimary() throws SQLException {
+        // arrange
+        when(replica1.getConnection()).thenThrow(new SQLTransientConnectionException("down"));
+        when(replica2.getConnection()).thenThrow(new SQLTransientConnectionException("down"));
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        // act
+        Connection first = dataSource.getConnection();
+        Connection second = dataSource.getConnection();
+        Connection third = dataSource.getConnection();
+
+        // assert
+        assertSame(primaryConnection, first);
+        assertSame(primaryConnection, second);
+        assertSame(primaryConnection, third);
+        assertEquals(0, dataSource.getHealthyReplicas());
+        // once for the health check in setUp, once for the read
+        verify(replica1, times(2)).getConnection();
+        verify(replica2, times(2)).getConnection();
+        assertEquals(3.0, registry.get("rowmatch.db.replicas.fallbacks").counter().count(), 0.0);
+    }
+
+    @Test
+    @DisplayName("Without replicas every connection comes from the primary")
+    void noReplicas() throws SQLException {
+        // arrange
+        ReplicaRoutingDataSource primaryOnly = new ReplicaRoutingDataSource(primary, List.of(), Duration.ofHours(1));
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        // act & assert
+        assertSame(primaryConnection, primaryOnly.getConnection());
+    }
+}
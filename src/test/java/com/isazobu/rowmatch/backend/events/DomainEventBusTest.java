@@ -0,0 +1,175 @@
+package com.isazobu.rowmatch.backend.events;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jdk.jfr.Description;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+@DisplayName("DomainEventBus")
+@Description("Test cases for the in-process ring buffer of game events")
+class DomainEventBusTest {
+
+    private DomainEventBus bus;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (bus != null) {
+            bus.shutdown();
+        }
+    }
+
+    private DomainEventBus start(List<DomainEventConsumer> consumers, int bufferSize) {
+        bus = new DomainEventBus(consumers, true, bufferSize, 16);
+        bus.bindTo(new SimpleMeterRegistry());
+        bus.start();
+        return bus;
+    }
+
+    // copies the events, their slots are reused
+    private static class Recorder implements DomainEventConsumer {
+
+        final List<String> events = Collections.synchronizedList(new ArrayList<>());
+        final List<Integer> batches = Collections.synchronizedList(new ArrayList<>());
+        private int batch;
+
+        @Override
+        public void onEvent(DomainEvent event, boolean endOfBatch) {
+            events.add(event.getType() + " " + event.getUserId() + " " + event.getTeamId() + " " + event.getLevel());
+            batch++;
+            if (endOfBatch) {
+                batches.add(batch);
+                batch = 0;
+            }
+        }
+
+        void await(int count) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (events.size() < count && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            assertEquals(count, events.size());
+        }
+    }
+
+    @Test
+    @DisplayName("Every consumer receives every event in publishing order")
+    void deliversInOrder() throws InterruptedException {
+        // arrange
+        Recorder first = new Recorder();
+        Recorder second = new Recorder();
+        start(List.of(first, second), 8);
+
+        // act
+        bus.levelCompleted(1L, 2);
+        bus.teamJoined(1L, 10L);
+        bus.teamLeft(1L, 10L);
+        bus.teamDisbanded(2L, 11L);
+
+        // assert
+        first.await(4);
+        second.await(4);
+        List<String> expected = List.of("LEVEL_COMPLETED 1 0 2", "TEAM_JOINED 1 10 0", "TEAM_LEFT 1 10 0",
+                "TEAM_DISBANDED 2 11 0");
+        assertEquals(expected, first.events);
+        assertEquals(expected, second.events);
+    }
+
+    @Test
+    @DisplayName("Publishers wait for a slow consumer instead of overwriting its events")
+    @Description("Four threads publish 5000 events each through 16 slots, the consumer is behind most of the time")
+    void slowConsumerLosesNothing() throws Exception {
+        // arrange
+        Recorder slow = new Recorder() {
+            @Override
+            public void onEvent(DomainEvent event, boolean endOfBatch) {
+                if (event.getLevel() % 1000 == 0) {
+                    Thread.yield();
+                }
+                super.onEvent(event, endOfBatch);
+            }
+        };
+        start(List.of(slow), 16);
+        ExecutorService publishers = Executors.newFixedThreadPool(4);
+        CountDownLatch done = new CountDownLatch(4);
+
+        // act
+        for (int p = 0; p < 4; p++) {
+            long userId = p;
+            publishers.execute(() -> {
+                for (int level = 1; level <= 5000; level++) {
+                    bus.levelCompleted(userId, level);
+                }
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        publishers.shutdown();
+
+        // assert
+        slow.await(20000);
+        for (long userId = 0; userId < 4; userId++) {
+            // the events of one publisher keep their order
+            String prefix = "LEVEL_COMPLETED " + userId + " 0 ";
+            List<String> own = slow.events.stream().filter(event -> event.startsWith(prefix)).toList();
+            assertEquals(5000, own.size());
+            for (int level = 1; level <= 5000; level++) {
+                assertEquals(prefix + level, own.get(level - 1));
+            }
+        }
+        assertTrue(slow.batches.stream().allMatch(size -> size <= 16));
+        assertEquals(0, bus.lag(slow.name()));
+    }
+
+    @Test
+    @DisplayName("A failing event does not stop the consumer")
+    void failureIsIsolated() throws InterruptedException {
+        // arrange
+        Recorder recorder = new Recorder() {
+            @Override
+            public void onEvent(DomainEvent event, boolean endOfBatch) {
+                super.onEvent(event, endOfBatch);
+                if (event.getUserId() == 1) {
+                    throw new IllegalStateException("rejected");
+                }
+            }
+        };
+        start(List.of(recorder), 8);
+
+        // act
+        bus.levelCompleted(1L, 2);
+        bus.levelCompleted(2L, 3);
+
+        // assert
+        recorder.await(2);
+        assertEquals("LEVEL_COMPLETED 2 0 3", recorder.events.get(1));
+    }
+
+    @Test
+    @DisplayName("Without consumers publishing does nothing")
+    void noConsumers() {
+        // arrange
+        start(List.of(), 8);
+
+        // act & assert
+        for (int i = 0; i < 100; i++) {
+            bus.levelCompleted(1L, i);
+        }
+    }
+
+    @Test
+    @DisplayName("The buffer size must be a power of two")
+    void bufferSizeIsPowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new DomainEventBus(List.of(), true, 1000, 16));
+    }
+}
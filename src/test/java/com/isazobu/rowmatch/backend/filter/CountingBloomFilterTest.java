@@ -0,0 +1,116 @@
+package com.isazobu.rowmatch.backend.filter;
+
+import jdk.jfr.Description;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+@DisplayName("CountingBloomFilter")
+@Description("Test cases for the counting Bloom filter behind the name checks")
+class CountingBloomFilterTest {
+
+    @Test
+    @DisplayName("Added keys are always found and the false positive rate stays near the target")
+    void noFalseNegatives() {
+        // arrange
+        CountingBloomFilter filter = new CountingBloomFilter(10_000, 0.01);
+
+        // act
+        for (int i = 0; i < 10_000; i++) {
+            filter.add("user" + i);
+        }
+
+        // assert
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("user" + i));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("other" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue("false positives: " + falsePositives, falsePositives < 2_000);
+        assertEquals(7, filter.hashes());
+    }
+
+    @Test
+    @DisplayName("Removed keys are gone while keys sharing their counters stay")
+    void remove() {
+        // arrange
+        CountingBloomFilter filter = new CountingBloomFilter(1_000, 0.01);
+        for (int i = 0; i < 1_000; i++) {
+            filter.add("team" + i);
+        }
+
+        // act
+        for (int i = 0; i < 500; i++) {
+            filter.remove("team" + i);
+        }
+
+        // assert
+        for (int i = 500; i < 1_000; i++) {
+            assertTrue(filter.mightContain("team" + i));
+        }
+        int left = 0;
+        for (int i = 0; i < 500; i++) {
+            if (filter.mightContain("team" + i)) {
+                left++;
+            }
+        }
+        assertTrue("removed keys still found: " + left, left < 25);
+    }
+
+    @Test
+    @DisplayName("Saturated counters stay saturated, so removals cannot cause false negatives")
+    void saturation() {
+        // arrange
+        CountingBloomFilter filter = new CountingBloomFilter(100, 0.01);
+
+        // act
+        for (int i = 0; i < 20; i++) {
+            filter.add("same");
+        }
+        for (int i = 0; i < 19; i++) {
+            filter.remove("same");
+        }
+
+        // assert
+        assertTrue(filter.mightContain("same"));
+    }
+
+    @Test
+    @DisplayName("Concurrent additions are not lost")
+    void concurrentAdds() throws Exception {
+        // arrange
+        CountingBloomFilter filter = new CountingBloomFilter(80_000, 0.01);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+
+        // act
+        for (int thread = 0; thread < 8; thread++) {
+            int offset = thread * 10_000;
+            futures.add(executor.submit(() -> {
+                for (int i = offset; i < offset + 10_000; i++) {
+                    filter.add("name" + i);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        // assert
+        for (int i = 0; i < 80_000; i++) {
+            assertTrue(filter.mightContain("name" + i));
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.isazobu.rowmatch.backend.leaderboard.index;
+
+import com.isazobu.rowmatch.backend.leaderboard.dto.LeaderboardEntry;
+import com.isazobu.rowmatch.backend.leaderboard.dto.PlayerRanking;
+import jdk.jfr.Description;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@DisplayName("LevelLeaderboard")
+@Description("Test cases for the in-memory level leaderboard")
+class LevelLeaderboardTest {
+
+    private LevelLeaderboard leaderboard;
+
+    @BeforeEach
+    void setUp() {
+        leaderboard = new LevelLeaderboard();
+        leaderboard.rebuild(List.of(
+                new LeaderboardEntry(1L, "Ali", "TR", 10),
+                new LeaderboardEntry(2L, "Bob", "US", 30),
+                new LeaderboardEntry(3L, "Can", "TR", 20),
+                new LeaderboardEntry(4L, "Dan", null, 20),
+                new LeaderboardEntry(5L, "Eve", "US", 5)));
+    }
+
+    private static List<Long> ids(List<LeaderboardEntry> entries) {
+        return entries.stream().map(LeaderboardEntry::getUserId).toList();
+    }
+
+    @Test
+    @DisplayName("The global board is ordered by level, then by user id")
+    void globalTop() {
+        List<LeaderboardEntry> top = leaderboard.top(null, 3);
+
+        assertEquals(List.of(2L, 3L, 4L), ids(top));
+        assertEquals(1, top.get(0).getRank());
+        assertEquals(3, top.get(2).getRank());
+        assertEquals(20, top.get(2).getLevel());
+    }
+
+    @Test
+    @DisplayName("Country boards only contain the players of the country")
+    void countryTop() {
+        assertEquals(List.of(3L, 1L), ids(leaderboard.top("TR", 10)));
+        assertEquals(List.of(2L, 5L), ids(leaderboard.top("US", 10)));
+        assertTrue(leaderboard.top("DE", 10).isEmpty());
+    }
+
+    @Test
+    @DisplayName("A level change moves the player on the global and the country board")
+    void levelChangeMovesPlayer() {
+        // act
+        assertTrue(leaderboard.updateLevel(1L, 31));
+        assertFalse(leaderboard.updateLevel(99L, 1));
+
+        // assert
+        assertEquals(List.of(1L, 2L), ids(leaderboard.top(null, 2)));
+        assertEquals(List.of(1L, 3L), ids(leaderboard.top("TR", 2)));
+        assertEquals(5, leaderboard.size());
+    }
+
+    @Test
+    @DisplayName("The ranking of a player includes the neighbours above and below")
+    void rankingWithNeighbours() {
+        // act
+        PlayerRanking global = leaderboard.ranking(4L, false, 1).orElseThrow();
+        PlayerRanking top = leaderboard.ranking(2L, false, 2).orElseThrow();
+        PlayerRanking country = leaderboard.ranking(1L, true, 5).orElseThrow();
+
+        // assert
+        assertEquals(3, global.getRank());
+        assertEquals(5, global.getPlayers());
+        assertEquals(List.of(3L, 4L, 1L), ids(global.getNeighbours()));
+        assertEquals(List.of(2L, 3L, 4L), ids(top.getNeighbours()));
+        assertEquals(2, country.getRank());
+        assertEquals(2, country.getPlayers());
+        assertEquals(List.of(3L, 1L), ids(country.getNeighbours()));
+    }
+
+    @Test
+    @DisplayName("Players without a country or not on the board have no country ranking")
+    void missingRanking() {
+        assertTrue(leaderboard.ranking(4L, true, 1).isEmpty());
+        assertTrue(leaderboard.ranking(99L, false, 1).isEmpty());
+    }
+
+    @Test
+    @DisplayName("New players join the boards of their country")
+    void newPlayer() {
+        // act
+        leaderboard.update(6L, "Fay", "TR", 1);
+
+        // assert
+        assertEquals(List.of(3L, 1L, 6L), ids(leaderboard.top("TR", 10)));
+        assertEquals(6, leaderboard.ranking(6L, false, 0).orElseThrow().getRank());
+    }
+}
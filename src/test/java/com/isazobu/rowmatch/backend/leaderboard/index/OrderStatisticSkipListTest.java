@@ -0,0 +1,103 @@
+package com.isazobu.rowmatch.backend.leaderboard.index;
+
+import jdk.jfr.Description;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+@DisplayName("OrderStatisticSkipList")
+@Description("Test cases for the skip list with rank and position lookups")
+class OrderStatisticSkipListTest {
+
+    private final OrderStatisticSkipList<Integer> list = new OrderStatisticSkipList<>(Comparator.naturalOrder());
+
+    @Test
+    @DisplayName("Positions and ranges follow the sort order")
+    void positionsFollowOrder() {
+        // arrange
+        for (int value : new int[]{50, 10, 40, 20, 30}) {
+            list.add(value);
+        }
+
+        // act & assert
+        assertEquals(5, list.size());
+        assertEquals(0, list.indexOf(10));
+        assertEquals(2, list.indexOf(30));
+        assertEquals(4, list.indexOf(50));
+        assertEquals(-1, list.indexOf(35));
+        assertEquals(List.of(20, 30, 40), list.range(1, 3));
+        assertEquals(List.of(40, 50), list.range(3, 10));
+        assertEquals(List.of(), list.range(5, 1));
+    }
+
+    @Test
+    @DisplayName("Removed elements leave the positions of the others consistent")
+    void removeKeepsPositions() {
+        // arrange
+        for (int value = 0; value < 10; value++) {
+            list.add(value);
+        }
+
+        // act
+        assertTrue(list.remove(3));
+        assertFalse(list.remove(3));
+
+        // assert
+        assertEquals(9, list.size());
+        assertEquals(3, list.indexOf(4));
+        assertEquals(List.of(2, 4, 5), list.range(2, 3));
+    }
+
+    @Test
+    @DisplayName("Random insertions and removals match a sorted list")
+    void matchesSortedList() {
+        // arrange
+        Random random = new Random(42);
+        List<Integer> expected = new ArrayList<>();
+
+        // act
+        for (int step = 0; step < 20_000; step++) {
+            int value = random.nextInt(5_000);
+            int position = Collections.binarySearch(expected, value);
+            if (position >= 0) {
+                assertTrue(list.remove(value));
+                expected.remove(position);
+            } else {
+                list.add(value);
+                expected.add(-position - 1, value);
+            }
+        }
+
+        // assert
+        assertEquals(expected.size(), list.size());
+        for (int i = 0; i < expected.size(); i += 97) {
+            assertEquals(i, list.indexOf(expected.get(i)));
+            assertEquals(expected.subList(i, Math.min(i + 5, expected.size())), list.range(i, 5));
+        }
+        assertEquals(expected, list.range(0, expected.size()));
+    }
+
+    @Test
+    @DisplayName("A cleared list can be reused")
+    void clear() {
+        // arrange
+        list.add(1);
+        list.add(2);
+
+        // act
+        list.clear();
+        list.add(3);
+
+        // assert
+        assertEquals(1, list.size());
+        assertEquals(List.of(3), list.range(0, 10));
+        assertEquals(-1, list.indexOf(1));
+    }
+}
@@ -0,0 +1,124 @@
+package com.isazobu.rowmatch.backend.leaderboard.index;
+
+import com.isazobu.rowmatch.backend.leaderboard.dto.TeamLeaderboardEntry;
+import com.isazobu.rowmatch.backend.leaderboard.dto.TeamMemberLevel;
+import jdk.jfr.Description;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@DisplayName("TeamLeaderboard")
+@Description("Test cases for the incrementally maintained team leaderboard")
+class TeamLeaderboardTest {
+
+    private TeamLeaderboard leaderboard;
+
+    @BeforeEach
+    void setUp() {
+        leaderboard = new TeamLeaderboard();
+        leaderboard.rebuild(List.of(
+                new TeamMemberLevel(1L, "Alpha", 10L, 5),
+                new TeamMemberLevel(1L, "Alpha", 11L, 3),
+                new TeamMemberLevel(2L, "Beta", 20L, 7)));
+    }
+
+    @Test
+    @DisplayName("Teams are ranked by the sum of their members' levels")
+    void ranksTeamsByScore() {
+        // act
+        List<TeamLeaderboardEntry> top = leaderboard.top(10);
+
+        // assert
+        assertEquals(2, top.size());
+        assertEquals(Long.valueOf(1L), top.get(0).getTeamId());
+        assertEquals(8, top.get(0).getScore());
+        assertEquals(2, top.get(0).getMemberCount());
+        assertEquals(Long.valueOf(2L), top.get(1).getTeamId());
+        assertEquals(2, top.get(1).getRank());
+    }
+
+    @Test
+    @DisplayName("Level-ups, joins and leaves update the team scores")
+    void updatesScores() {
+        // act
+        leaderboard.levelChanged(20L, 9);
+        leaderboard.memberJoined(2L, "Beta", 30L, 4);
+        leaderboard.memberLeft(11L);
+
+        // assert
+        assertEquals(13, leaderboard.ranking(2L).orElseThrow().getScore());
+        assertEquals(1, leaderboard.ranking(2L).orElseThrow().getRank());
+        assertEquals(5, leaderboard.ranking(1L).orElseThrow().getScore());
+        assertFalse(leaderboard.levelChanged(11L, 4));
+    }
+
+    @Test
+    @DisplayName("A team leaves the leaderboard with its last member")
+    void lastMemberRemovesTeam() {
+        // act
+        leaderboard.memberLeft(20L);
+
+        // assert
+        assertEquals(1, leaderboard.size());
+        assertTrue(leaderboard.ranking(2L).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Joining a team moves the member out of their previous team")
+    void joinMovesMember() {
+        // act
+        leaderboard.memberJoined(2L, "Beta", 10L, 5);
+
+        // assert
+        assertEquals(3, leaderboard.ranking(1L).orElseThrow().getScore());
+        assertEquals(12, leaderboard.ranking(2L).orElseThrow().getScore());
+    }
+
+    @Test
+    @DisplayName("Reconciliation corrects members that drifted from the database")
+    void reconcileCorrectsDrift() {
+        // arrange, e.g. a join whose transaction rolled back and a level written by another node
+        leaderboard.memberJoined(2L, "Beta", 30L, 4);
+        long snapshotVersion = leaderboard.version();
+        List<TeamMemberLevel> database = List.of(
+                new TeamMemberLevel(1L, "Alpha", 10L, 6),
+                new TeamMemberLevel(1L, "Alpha", 11L, 3),
+                new TeamMemberLevel(2L, "Beta", 20L, 7));
+
+        // act
+        int corrections = leaderboard.reconcile(database, snapshotVersion);
+
+        // assert
+        assertEquals(2, corrections);
+        assertEquals(9, leaderboard.ranking(1L).orElseThrow().getScore());
+        assertEquals(7, leaderboard.ranking(2L).orElseThrow().getScore());
+        assertEquals(0, leaderboard.reconcile(database, leaderboard.version()));
+    }
+
+    @Test
+    @DisplayName("Members changed after the snapshot was started are not reverted")
+    void reconcileKeepsNewerChanges() {
+        // arrange
+        long snapshotVersion = leaderboard.version();
+        leaderboard.levelChanged(10L, 6);
+        leaderboard.memberLeft(20L);
+        leaderboard.memberJoined(3L, "Gamma", 40L, 2);
+        List<TeamMemberLevel> database = List.of(
+                new TeamMemberLevel(1L, "Alpha", 10L, 5),
+                new TeamMemberLevel(1L, "Alpha", 11L, 3),
+                new TeamMemberLevel(2L, "Beta", 20L, 7));
+
+        // act
+        int corrections = leaderboard.reconcile(database, snapshotVersion);
+
+        // assert
+        assertEquals(0, corrections);
+        assertEquals(9, leaderboard.ranking(1L).orElseThrow().getScore());
+        assertTrue(leaderboard.ranking(2L).isEmpty());
+        assertEquals(2, leaderboard.ranking(3L).orElseThrow().getScore());
+    }
+}
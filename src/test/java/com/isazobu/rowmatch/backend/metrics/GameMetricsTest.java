@@ -0,0 +1,45 @@
+package com.isazobu.rowmatch.backend.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jdk.jfr.Description;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.Assert.assertEquals;
+
+@DisplayName("GameMetrics")
+@Description("Test cases for the business counters")
+class GameMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private final GameMetrics gameMetrics = new GameMetrics(registry);
+
+    @Test
+    @DisplayName("Coins spent are counted per purpose")
+    void coinsSpentPerPurpose() {
+        // act
+        gameMetrics.teamCreated(1000);
+        gameMetrics.teamJoined(1000);
+        gameMetrics.teamJoined(1000);
+
+        // assert
+        assertEquals(1000, registry.get("rowmatch.coins.spent").tag("on", "team_creation").counter().count(), 0);
+        assertEquals(2000, registry.get("rowmatch.coins.spent").tag("on", "team_join").counter().count(), 0);
+    }
+
+    @Test
+    @DisplayName("Level-ups, full team rejections and leaderboard corrections are counted")
+    void levelsAndRejections() {
+        // act
+        gameMetrics.levelCompleted();
+        gameMetrics.levelCompleted();
+        gameMetrics.teamFull();
+        gameMetrics.teamLeaderboardCorrected(3);
+
+        // assert
+        assertEquals(2, registry.get("rowmatch.levels.completed").counter().count(), 0);
+        assertEquals(1, registry.get("rowmatch.team.join.rejected").tag("reason", "team_full").counter().count(), 0);
+        assertEquals(3, registry.get("rowmatch.leaderboard.team.corrections").counter().count(), 0);
+    }
+}
@@ -0,0 +1,75 @@
+package com.isazobu.rowmatch.backend.outbox.sink;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.isazobu.rowmatch.backend.events.DomainEventType;
+import com.isazobu.rowmatch.backend.outbox.dto.OutboxMessage;
+import jdk.jfr.Description;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@DisplayName("FileOutboxSink")
+@Description("Test cases for the JSON lines outbox sink")
+class FileOutboxSinkTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    private Path directory;
+    private Path file;
+    private FileOutboxSink sink;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("outbox");
+        file = directory.resolve("outbox-events.jsonl");
+        sink = new FileOutboxSink(objectMapper, file);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        sink.close();
+        Files.deleteIfExists(file);
+        Files.delete(directory);
+    }
+
+    @Test
+    @DisplayName("Batches are appended as one JSON object per line")
+    void appendsJsonLines() throws IOException {
+        // arrange
+        Instant now = Instant.now();
+
+        // act
+        sink.deliver(List.of(new OutboxMessage(1L, 3, DomainEventType.LEVEL_COMPLETED, 7L, null, 2, now)));
+        sink.deliver(List.of(new OutboxMessage(2L, 3, DomainEventType.TEAM_JOINED, 7L, 11L, 0, now),
+                new OutboxMessage(3L, 3, DomainEventType.TEAM_LEFT, 7L, 11L, 0, now)));
+
+        // assert
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(3, lines.size());
+        JsonNode first = objectMapper.readTree(lines.get(0));
+        assertEquals(1L, first.get("id").asLong());
+        assertEquals("LEVEL_COMPLETED", first.get("type").asText());
+        assertEquals(2, first.get("level").asInt());
+        assertTrue(first.get("teamId").isNull());
+        JsonNode last = objectMapper.readTree(lines.get(2));
+        assertEquals("TEAM_LEFT", last.get("type").asText());
+        assertEquals(11L, last.get("teamId").asLong());
+    }
+
+    @Test
+    @DisplayName("The file is only created by the first delivery")
+    void createsFileOnFirstDelivery() {
+        // assert
+        assertFalse(Files.exists(file));
+    }
+}
@@ -3,6 +3,9 @@ package com.isazobu.rowmatch.backend.team.controller;
 import com.isazobu.rowmatch.backend.exceptions.EntityAlreadyExistsException;
 import com.isazobu.rowmatch.backend.exceptions.TeamCapacityFullException;
 import com.isazobu.rowmatch.backend.team.dto.CreateTeamRequest;
+import com.isazobu.rowmatch.backend.team.dto.GetTeams;
+import com.isazobu.rowmatch.backend.team.dto.RandomTeams;
+import com.isazobu.rowmatch.backend.team.dto.TeamResponse;
 import com.isazobu.rowmatch.backend.team.model.Team;
 import com.isazobu.rowmatch.backend.exceptions.NotEnoughCoinsException;
 import com.isazobu.rowmatch.backend.team.service.TeamService;
@@ -19,10 +22,16 @@ import org.mockito.junit.MockitoJUnitRunner;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -117,5 +126,77 @@ public class TeamControllerTest {
         // act & assert
         assertThrows(TeamCapacityFullException.class, () -> teamController.joinTeam(teamId, token));
     }
-}
 
+    @Test
+    @DisplayName("Should return the team with its ETag")
+    @Description("Test case for getTeamByName without If-None-Match")
+    public void testGetTeamByNameWithETag() {
+        // arrange
+        TeamResponse team = new TeamResponse(1L, "Team A", 0, List.of(), "\"1-3-0\"");
+        when(teamService.getTeamByName("Team A")).thenReturn(team);
+
+        // act
+        ResponseEntity<TeamResponse> response = teamController.getTeamByName("Team A", null);
+
+        // assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("\"1-3-0\"", response.getHeaders().getETag());
+        assertEquals(team, response.getBody());
+        verify(teamService, never()).getTeamETag(any());
+    }
+
+    @Test
+    @DisplayName("Should return 304 without reading the team when the ETag matches")
+    @Description("Test case for getTeamByName with a current If-None-Match")
+    public void testGetTeamByNameNotModified() {
+        // arrange
+        when(teamService.getTeamETag("Team A")).thenReturn("\"1-3-0\"");
+
+        // act
+        ResponseEntity<TeamResponse> response = teamController.getTeamByName("Team A", "\"0-1-0\", W/\"1-3-0\"");
+
+        // assert
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        assertEquals("\"1-3-0\"", response.getHeaders().getETag());
+        assertNull(response.getBody());
+        verify(teamService, never()).getTeamByName(any());
+    }
+
+    @Test
+    @DisplayName("Should return the team when the ETag is outdated")
+    @Description("Test case for getTeamByName with a stale If-None-Match")
+    public void testGetTeamByNameModified() {
+        // arrange
+        TeamResponse team = new TeamResponse(1L, "Team A", 0, List.of(), "\"1-4-0\"");
+        when(teamService.getTeamETag("Team A")).thenReturn("\"1-4-0\"");
+        when(teamService.getTeamByName("Team A")).thenReturn(team);
+
+        // act
+        ResponseEntity<TeamResponse> response = teamController.getTeamByName("Team A", "\"1-3-0\"");
+
+        // assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(team, response.getBody());
+    }
+
+    @Test
+    @DisplayName("Should return 304 for random teams while the sample is unchanged")
+    @Description("Test case for getRandomTeams with a current If-None-Match")
+    public void testGetRandomTeamsNotModified() {
+        // arrange
+        RandomTeams teams = new RandomTeams(List.of(new GetTeams(1L, "Team A", 3)), "\"random-1\"",
+                Duration.ofSeconds(2));
+        when(teamService.getRecentRandomJoinableTeams()).thenReturn(teams);
+
+        // act
+        ResponseEntity<List<GetTeams>> modified = teamController.getRandomTeams("\"random-0\"");
+        ResponseEntity<List<GetTeams>> notModified = teamController.getRandomTeams("\"random-1\"");
+
+        // assert
+        assertEquals(HttpStatus.OK, modified.getStatusCode());
+        assertEquals(teams.getTeams(), modified.getBody());
+        assertEquals("max-age=2", modified.getHeaders().getCacheControl());
+        assertEquals(HttpStatus.NOT_MODIFIED, notModified.getStatusCode());
+        assertNull(notModified.getBody());
+    }
+}
@@ -0,0 +1,121 @@
+package com.isazobu.rowmatch.backend.team.index;
+
+import com.isazobu.rowmatch.backend.team.dto.GetTeams;
+import com.isazobu.rowmatch.backend.team.model.Team;
+import jdk.jfr.Description;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+@DisplayName("JoinableTeamIndex")
+@Description("Test cases for the in-memory index of joinable teams")
+class JoinableTeamIndexTest {
+
+    private JoinableTeamIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new JoinableTeamIndex();
+    }
+
+    @Test
+    @DisplayName("Sample returns at most ten distinct teams with free seats")
+    @Description("Same filter as before: only teams with less than 20 users, limited to 10")
+    void sampleReturnsTenDistinctJoinableTeams() {
+        // arrange
+        List<GetTeams> teams = new ArrayList<>();
+        for (long i = 0; i < 100; i++) {
+            teams.add(new GetTeams(i, "Team " + i, (int) (i % (Team.CAPACITY + 1))));
+        }
+        index.rebuild(teams);
+
+        // act
+        List<GetTeams> sample = index.sample(10);
+
+        // assert
+        assertEquals(10, sample.size());
+        Set<Long> ids = new HashSet<>();
+        for (GetTeams team : sample) {
+            assertTrue(team.getNum_members() < Team.CAPACITY);
+            assertEquals("Team " + team.getId(), team.getName());
+            assertTrue(ids.add(team.getId()));
+        }
+    }
+
+    @Test
+    @DisplayName("Sample returns every joinable team when there are less than ten")
+    void sampleReturnsAllWhenLessThanRequested() {
+        // arrange
+        index.rebuild(List.of(
+                new GetTeams(1L, "Team 1", 5),
+                new GetTeams(2L, "Team 2", Team.CAPACITY),
+                new GetTeams(3L, "Team 3", 19)));
+
+        // act
+        List<GetTeams> sample = index.sample(10);
+
+        // assert
+        assertEquals(2, sample.size());
+        assertFalse(index.contains(2L));
+    }
+
+    @Test
+    @DisplayName("Teams leave the index when full and come back when a seat frees up")
+    void updateTracksCapacity() {
+        // arrange
+        index.update(1L, "Team 1", 1);
+        assertTrue(index.contains(1L));
+
+        // act & assert
+        index.update(1L, "Team 1", Team.CAPACITY);
+        assertFalse(index.contains(1L));
+        assertTrue(index.sample(10).isEmpty());
+
+        index.update(1L, "Team 1", Team.CAPACITY - 1);
+        assertEquals(Team.CAPACITY - 1, index.sample(10).get(0).getNum_members());
+    }
+
+    @Test
+    @DisplayName("Removing a team keeps the remaining entries reachable")
+    void removeKeepsOtherEntries() {
+        // arrange
+        index.update(1L, "Team 1", 1);
+        index.update(2L, "Team 2", 2);
+        index.update(3L, "Team 3", 3);
+
+        // act
+        index.remove(1L);
+        index.remove(42L);
+
+        // assert
+        assertEquals(2, index.size());
+        Set<Long> ids = new HashSet<>();
+        index.sample(10).forEach(team -> ids.add(team.getId()));
+        assertEquals(Set.of(2L, 3L), ids);
+    }
+
+    @Test
+    @DisplayName("Every joinable team can be sampled")
+    void sampleCoversWholeIndex() {
+        // arrange
+        for (long i = 0; i < 30; i++) {
+            index.update(i, "Team " + i, 1);
+        }
+
+        // act
+        Set<Long> seen = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            index.sample(10).forEach(team -> seen.add(team.getId()));
+        }
+
+        // assert
+        assertEquals(30, seen.size());
+    }
+}
@@ -0,0 +1,137 @@
+package com.isazobu.rowmatch.backend.team.index;
+
+import com.isazobu.rowmatch.backend.team.dto.GetTeams;
+import jdk.jfr.Description;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+@DisplayName("JoinableTeamSnapshot")
+@Description("Test cases for the lock-free snapshot of joinable teams")
+class JoinableTeamSnapshotTest {
+
+    private JoinableTeamIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new JoinableTeamIndex();
+        List<GetTeams> teams = new ArrayList<>();
+        for (long i = 0; i < 100; i++) {
+            teams.add(new GetTeams(i, "Team " + i, 1));
+        }
+        index.rebuild(teams);
+    }
+
+    private static Set<Long> ids(List<GetTeams> teams) {
+        Set<Long> ids = new HashSet<>();
+        teams.forEach(team -> ids.add(team.getId()));
+        return ids;
+    }
+
+    @Test
+    @DisplayName("Samples are distinct teams of the snapshot, not of the index")
+    @Description("Teams created after the copy are only offered once the snapshot is refreshed")
+    void samplesComeFromTheCopy() {
+        // arrange
+        JoinableTeamSnapshot snapshot = new JoinableTeamSnapshot(index, true, Duration.ofSeconds(1),
+                Duration.ofMinutes(1));
+        snapshot.refresh();
+        index.remove(5L);
+        index.update(1000L, "Team 1000", 1);
+
+        // act
+        Set<Long> sampled = new HashSet<>();
+        for (int i = 0; i < 200; i++) {
+            List<GetTeams> sample = snapshot.sample(10);
+            assertEquals(10, sample.size());
+            assertEquals(10, ids(sample).size());
+            sampled.addAll(ids(sample));
+        }
+
+        // assert
+        assertFalse(sampled.contains(1000L));
+        assertTrue(sampled.contains(5L));
+        assertEquals(100, snapshot.size());
+    }
+
+    @Test
+    @DisplayName("Teams marked full are no longer sampled")
+    void fullTeamsAreSkipped() {
+        // arrange
+        JoinableTeamSnapshot snapshot = new JoinableTeamSnapshot(index, true, Duration.ofSeconds(1),
+                Duration.ofMinutes(1));
+        snapshot.refresh();
+        for (long i = 0; i < 90; i++) {
+            snapshot.markFull(i);
+        }
+
+        // act
+        Set<Long> sampled = new HashSet<>();
+        for (int i = 0; i < 50; i++) {
+            sampled.addAll(ids(snapshot.sample(10)));
+        }
+
+        // assert
+        assertEquals(90, snapshot.markedFull());
+        assertTrue(sampled.stream().allMatch(id -> id >= 90));
+        assertEquals(10, snapshot.sample(10).size());
+    }
+
+    @Test
+    @DisplayName("A small snapshot returns every team that is not full")
+    void smallSnapshotReturnsAllOpenTeams() {
+        // arrange
+        index.rebuild(List.of(new GetTeams(1L, "Team 1", 1), new GetTeams(2L, "Team 2", 19),
+                new GetTeams(3L, "Team 3", 5)));
+        JoinableTeamSnapshot snapshot = new JoinableTeamSnapshot(index, true, Duration.ofSeconds(1),
+                Duration.ofMinutes(1));
+        snapshot.refresh();
+
+        // act
+        snapshot.markFull(2L);
+
+        // assert
+        assertEquals(Set.of(1L, 3L), ids(snapshot.sample(10)));
+    }
+
+    @Test
+    @DisplayName("A stale snapshot is bypassed for the index")
+    @Description("Teams are sampled from the index when refreshing stopped for longer than the maximum staleness")
+    void staleSnapshotFallsBackToIndex() {
+        // arrange
+        JoinableTeamSnapshot snapshot = new JoinableTeamSnapshot(index, true, Duration.ofSeconds(1), Duration.ZERO);
+        snapshot.refresh();
+        index.rebuild(List.of(new GetTeams(1000L, "Team 1000", 1)));
+
+        // act
+        List<GetTeams> sample = snapshot.sample(10);
+
+        // assert
+        assertEquals(Set.of(1000L), ids(sample));
+    }
+
+    @Test
+    @DisplayName("A disabled snapshot samples the index")
+    void disabledSnapshotSamplesIndex() {
+        // arrange
+        JoinableTeamSnapshot snapshot = new JoinableTeamSnapshot(index, false, Duration.ofSeconds(1),
+                Duration.ofMinutes(1));
+        snapshot.refresh();
+        index.rebuild(List.of(new GetTeams(1000L, "Team 1000", 1)));
+
+        // act
+        List<GetTeams> sample = snapshot.sample(10);
+
+        // assert
+        assertEquals(Set.of(1000L), ids(sample));
+        assertEquals(0, snapshot.size());
+    }
+}
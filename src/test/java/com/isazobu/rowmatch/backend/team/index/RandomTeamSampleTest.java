@@ -0,0 +1,84 @@
+package com.isazobu.rowmatch.backend.team.index;
+
+import com.isazobu.rowmatch.backend.team.dto.GetTeams;
+import com.isazobu.rowmatch.backend.team.dto.RandomTeams;
+import jdk.jfr.Description;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@DisplayName("RandomTeamSample")
+@Description("Test cases for the random team sample shared during its freshness window")
+class RandomTeamSampleTest {
+
+    private static JoinableTeamIndex indexOf(int teams) {
+        JoinableTeamIndex index = new JoinableTeamIndex();
+        List<GetTeams> all = new ArrayList<>();
+        for (long i = 0; i < teams; i++) {
+            all.add(new GetTeams(i, "Team " + i, 1));
+        }
+        index.rebuild(all);
+        return index;
+    }
+
+    // disabled, so the teams are sampled from the index itself
+    private static JoinableTeamSnapshot snapshotOf(JoinableTeamIndex index) {
+        return new JoinableTeamSnapshot(index, false, Duration.ofSeconds(1), Duration.ofSeconds(10));
+    }
+
+    @Test
+    @DisplayName("The same sample is served while it is fresh")
+    void sampleIsSharedWhileFresh() {
+        // arrange
+        RandomTeamSample sample = new RandomTeamSample(snapshotOf(indexOf(100)), Duration.ofMinutes(1));
+
+        // act
+        RandomTeams first = sample.current(10);
+        RandomTeams second = sample.current(10);
+
+        // assert
+        assertSame(first, second);
+        assertEquals(10, first.getTeams().size());
+        assertEquals(Duration.ofMinutes(1), first.getFreshFor());
+    }
+
+    @Test
+    @DisplayName("A new sample is drawn once the sample is stale")
+    @Description("Two samples of 10 out of 100 teams are practically never the same, and neither are their ETags")
+    void staleSampleIsRedrawn() {
+        // arrange
+        RandomTeamSample sample = new RandomTeamSample(snapshotOf(indexOf(100)), Duration.ZERO);
+
+        // act
+        RandomTeams first = sample.current(10);
+        RandomTeams second = sample.current(10);
+
+        // assert
+        assertNotSame(first, second);
+        assertNotEquals(first.getETag(), second.getETag());
+    }
+
+    @Test
+    @DisplayName("A redrawn sample with the same teams keeps its ETag")
+    @Description("With fewer joinable teams than the sample size every sample holds all of them")
+    void sameTeamsKeepTheETag() {
+        // arrange
+        JoinableTeamIndex index = indexOf(3);
+        RandomTeamSample sample = new RandomTeamSample(snapshotOf(index), Duration.ZERO);
+        String eTag = sample.current(10).getETag();
+
+        // act
+        String unchanged = sample.current(10).getETag();
+        index.update(1L, "Team 1", 2);
+        String changed = sample.current(10).getETag();
+
+        // assert
+        assertEquals(eTag, unchanged);
+        assertNotEquals(eTag, changed);
+    }
+}
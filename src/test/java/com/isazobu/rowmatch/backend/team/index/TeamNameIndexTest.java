@@ -0,0 +1,140 @@
+package com.isazobu.rowmatch.backend.team.index;
+
+import com.isazobu.rowmatch.backend.exceptions.InvalidSearchCursorException;
+import com.isazobu.rowmatch.backend.team.dto.GetTeams;
+import com.isazobu.rowmatch.backend.team.dto.TeamSearchResponse;
+import com.isazobu.rowmatch.backend.team.dto.TeamSearchResult;
+import jdk.jfr.Description;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+@DisplayName("TeamNameIndex")
+@Description("Test cases for the in-memory prefix and trigram index of team names")
+class TeamNameIndexTest {
+
+    private TeamNameIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new TeamNameIndex(0.3, 20000);
+        index.rebuild(List.of(
+                new GetTeams(1L, "Dragons", 5),
+                new GetTeams(2L, "dragon slayers", 3),
+                new GetTeams(3L, "Red Dragons", 20),
+                new GetTeams(4L, "Wolves", 1),
+                new GetTeams(5L, "Drag Racers", 2)));
+    }
+
+    private static List<Long> ids(TeamSearchResponse response) {
+        List<Long> ids = new ArrayList<>();
+        response.getTeams().forEach(team -> ids.add(team.getId()));
+        return ids;
+    }
+
+    @Test
+    @DisplayName("Names starting with the query come first, in name order and case-insensitively")
+    void prefixMatchesFirst() {
+        // act
+        TeamSearchResponse response = index.search("DRAG", 10, null);
+
+        // assert
+        assertEquals(List.of(5L, 2L, 1L), ids(response).subList(0, 3));
+        assertEquals(1.0, response.getTeams().get(0).getSimilarity(), 0.0);
+        assertNull(response.getNextCursor());
+    }
+
+    @Test
+    @DisplayName("Names with a typo are found by their trigrams")
+    void typoTolerant() {
+        // act
+        List<Long> found = ids(index.search("dargons", 10, null));
+        List<Long> wolves = ids(index.search("wolfes", 10, null));
+
+        // assert
+        assertTrue(found.contains(1L));
+        assertFalse(found.contains(4L));
+        assertEquals(List.of(4L), wolves);
+        assertTrue(ids(index.search("xyz", 10, null)).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Following the cursor returns every match exactly once")
+    void cursorPagination() {
+        // arrange
+        List<GetTeams> teams = new ArrayList<>();
+        for (long i = 0; i < 95; i++) {
+            teams.add(new GetTeams(i, "team " + i, 1));
+        }
+        teams.add(new GetTeams(100L, "teem 7", 1));
+        index.rebuild(teams);
+
+        // act
+        Set<Long> seen = new HashSet<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            TeamSearchResponse page = index.search("team 7", 4, cursor);
+            for (TeamSearchResult team : page.getTeams()) {
+                assertTrue("returned twice: " + team.getId(), seen.add(team.getId()));
+            }
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        // assert: team 7 and team 70 to 79 by prefix, then similar names such as team 1 or teem 7
+        assertTrue(seen.containsAll(List.of(7L, 70L, 79L, 100L)));
+        assertEquals((seen.size() + 3) / 4, pages);
+    }
+
+    @Test
+    @DisplayName("Created and deleted teams are reflected immediately")
+    void addAndRemove() {
+        // act
+        index.add(6L, "Dragonflies");
+        index.remove(1L);
+
+        // assert
+        List<Long> found = ids(index.search("dragon", 10, null));
+        assertTrue(found.contains(6L));
+        assertFalse(found.contains(1L));
+        assertEquals(5, index.size());
+    }
+
+    @Test
+    @DisplayName("A similarity search stops after the posting budget, visiting the rarest trigrams first")
+    void postingBudget() {
+        // arrange
+        List<GetTeams> teams = new ArrayList<>();
+        for (long i = 0; i < 200; i++) {
+            teams.add(new GetTeams(i, "team " + i, 1));
+        }
+        teams.add(new GetTeams(1000L, "Dragons", 1));
+        TeamNameIndex capped = new TeamNameIndex(0.3, 50);
+        capped.rebuild(teams);
+        index.rebuild(teams);
+
+        // act
+        List<Long> common = ids(capped.search("teamm 5", 10, null));
+        List<Long> rare = ids(capped.search("dargons", 10, null));
+
+        // assert: the trigrams every team shares are skipped, names with rare trigrams are still found
+        assertTrue(ids(index.search("teamm 5", 10, null)).contains(5L));
+        assertFalse(common.contains(5L));
+        assertEquals(List.of(1000L), rare);
+    }
+
+    @Test
+    @DisplayName("Malformed cursors are rejected")
+    void invalidCursor() {
+        assertThrows(InvalidSearchCursorException.class, () -> index.search("drag", 10, "not a cursor"));
+        assertTrue(index.search("  ", 10, null).getTeams().isEmpty());
+    }
+}
@@ -0,0 +1,93 @@
+package com.isazobu.rowmatch.backend.team.service;
+
+import com.isazobu.rowmatch.backend.exceptions.UpdateConflictException;
+import jdk.jfr.Description;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+@DisplayName("TeamAdmission")
+@Description("Test cases for the per-team admission of joins")
+class TeamAdmissionTest {
+
+    private static long otherStripe(TeamAdmission admission, long teamId) {
+        long other = teamId + 1;
+        while (admission.stripe(other) == admission.stripe(teamId)) {
+            other++;
+        }
+        return other;
+    }
+
+    @Test
+    @DisplayName("Joins of the same team take turns, joins of other teams do not wait")
+    void sameTeamTakesTurns() throws Exception {
+        // arrange
+        TeamAdmission admission = new TeamAdmission(true, 16, Duration.ofMillis(200), Duration.ofSeconds(2));
+        long otherTeam = otherStripe(admission, 1L);
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> holder = CompletableFuture.runAsync(() -> {
+            try (TeamAdmission.Turn turn = admission.enter(1L)) {
+                entered.countDown();
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        // act and assert
+        CompletableFuture<Void> other = CompletableFuture.runAsync(() -> admission.enter(otherTeam).close());
+        other.get(5, TimeUnit.SECONDS);
+        CompletableFuture<Void> same = CompletableFuture.runAsync(() -> admission.enter(1L).close());
+        Exception failure = assertThrows(Exception.class, () -> same.get(5, TimeUnit.SECONDS));
+        assertTrue(failure.getCause() instanceof UpdateConflictException);
+
+        release.countDown();
+        holder.get(5, TimeUnit.SECONDS);
+        admission.enter(1L).close();
+    }
+
+    @Test
+    @DisplayName("A team stays known full until a seat is freed or the mark expires")
+    void fullMarks() throws Exception {
+        // arrange
+        TeamAdmission admission = new TeamAdmission(true, 16, Duration.ofSeconds(1), Duration.ofMillis(50));
+
+        // act and assert
+        assertFalse(admission.isKnownFull(1L));
+        admission.markFull(1L);
+        assertTrue(admission.isKnownFull(1L));
+        admission.seatFreed(1L);
+        assertFalse(admission.isKnownFull(1L));
+
+        admission.markFull(2L);
+        Thread.sleep(100);
+        assertFalse(admission.isKnownFull(2L));
+    }
+
+    @Test
+    @DisplayName("Stripes are rounded up to a power of two and disabled admission never blocks")
+    void stripesAndDisabled() {
+        // arrange
+        TeamAdmission admission = new TeamAdmission(true, 100, Duration.ofSeconds(1), Duration.ofSeconds(1));
+        TeamAdmission disabled = new TeamAdmission(false, 1, Duration.ZERO, Duration.ofSeconds(1));
+
+        // act
+        TeamAdmission.Turn first = disabled.enter(1L);
+        TeamAdmission.Turn second = disabled.enter(1L);
+        disabled.markFull(1L);
+
+        // assert
+        assertEquals(128, admission.stripes());
+        assertFalse(disabled.isKnownFull(1L));
+        first.close();
+        second.close();
+    }
+}
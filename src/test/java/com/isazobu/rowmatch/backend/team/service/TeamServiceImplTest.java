@@ -1,10 +1,27 @@
 package com.isazobu.rowmatch.backend.team.service;
 
 
+import com.isazobu.rowmatch.backend.cache.SecondLevelCache;
+import com.isazobu.rowmatch.backend.events.DomainEventBus;
 import com.isazobu.rowmatch.backend.exceptions.*;
+import com.isazobu.rowmatch.backend.filter.NameFilters;
+import com.isazobu.rowmatch.backend.leaderboard.index.TeamLeaderboard;
+import com.isazobu.rowmatch.backend.metrics.GameMetrics;
+import com.isazobu.rowmatch.backend.outbox.service.Outbox;
 import com.isazobu.rowmatch.backend.team.dto.CreateTeamRequest;
+import com.isazobu.rowmatch.backend.team.dto.GetTeams;
+import com.isazobu.rowmatch.backend.team.dto.RandomTeams;
+import com.isazobu.rowmatch.backend.team.dto.TeamMemberRow;
+import com.isazobu.rowmatch.backend.team.dto.TeamResponse;
+import com.isazobu.rowmatch.backend.team.dto.TeamVersion;
+import com.isazobu.rowmatch.backend.team.index.JoinableTeamIndex;
+import com.isazobu.rowmatch.backend.team.index.JoinableTeamSnapshot;
+import com.isazobu.rowmatch.backend.team.index.RandomTeamSample;
+import com.isazobu.rowmatch.backend.team.index.TeamNameIndex;
 import com.isazobu.rowmatch.backend.team.model.Team;
 import com.isazobu.rowmatch.backend.team.repository.TeamRepository;
+import com.isazobu.rowmatch.backend.transaction.OptimisticTransactions;
+import com.isazobu.rowmatch.backend.user.auth.UserTokenResolver;
 import com.isazobu.rowmatch.backend.user.model.User;
 import com.isazobu.rowmatch.backend.user.repository.UserRepository;
 import jakarta.persistence.EntityNotFoundException;
@@ -16,7 +33,9 @@ import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -34,12 +53,55 @@ class TeamServiceTest {
     @Mock
     private TeamRepository teamRepository;
 
+    @Mock
+    private UserTokenResolver userTokenResolver;
+
+    @Mock
+    private JoinableTeamIndex joinableTeamIndex;
+
+    @Mock
+    private GameMetrics gameMetrics;
+
+    @Mock
+    private TeamLeaderboard teamLeaderboard;
+
+    @Mock
+    private TeamNameIndex teamNameIndex;
+
+    @Mock
+    private NameFilters nameFilters;
+
+    @Mock
+    private OptimisticTransactions optimisticTransactions;
+
+    @Mock
+    private TeamAdmission teamAdmission;
+
+    @Mock
+    private SecondLevelCache secondLevelCache;
+
+    @Mock
+    private RandomTeamSample randomTeamSample;
+
+    @Mock
+    private JoinableTeamSnapshot joinableTeamSnapshot;
+
+    @Mock
+    private DomainEventBus domainEventBus;
+
+    @Mock
+    private Outbox outbox;
+
     @InjectMocks
     private TeamServiceImpl teamService;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        when(nameFilters.teamNameMightExist(any())).thenReturn(true);
+        // runs the work once, as a transaction without conflicts would
+        when(optimisticTransactions.execute(any(), any()))
+                .thenAnswer(invocation -> invocation.<OptimisticTransactions.Work<?, ?>>getArgument(1).run());
     }
 
     @Test
@@ -56,9 +118,9 @@ class TeamServiceTest {
         CreateTeamRequest request = new CreateTeamRequest();
         request.setName(team.getName());
 
-        when(userRepository.findByToken(token)).thenReturn(Optional.of(user));
+        when(userTokenResolver.findByToken(token)).thenReturn(Optional.of(user));
         when(teamRepository.findByName(team.getName())).thenReturn(Optional.empty());
-        when(teamRepository.save(any(Team.class))).thenReturn(team);
+        when(teamRepository.save(any(Team.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
         // act
         Team result = teamService.createTeam(request, token);
@@ -67,9 +129,13 @@ class TeamServiceTest {
         assertNotNull(result);
         assertEquals(team.getName(), result.getName());
 
-        verify(userRepository).findByToken(token);
+        verify(userTokenResolver).findByToken(token);
         verify(teamRepository).findByName(team.getName());
         verify(teamRepository).save(any(Team.class));
+        verify(joinableTeamIndex).update(team.getId(), team.getName(), 1);
+        verify(teamNameIndex).add(team.getId(), team.getName());
+        verify(teamLeaderboard).memberJoined(team.getId(), team.getName(), user.getId(), user.getLevel());
+        verify(outbox).teamJoined(user.getId(), team.getId());
     }
 
     @Test
@@ -86,7 +152,7 @@ class TeamServiceTest {
         CreateTeamRequest request = new CreateTeamRequest();
         request.setName(team.getName());
 
-        when(userRepository.findByToken(token)).thenReturn(Optional.of(user));
+        when(userTokenResolver.findByToken(token)).thenReturn(Optional.of(user));
         when(teamRepository.findByName(team.getName())).thenReturn(Optional.of(team));
 
         // act and assert
@@ -94,11 +160,49 @@ class TeamServiceTest {
             teamService.createTeam(request, token);
         });
 
-        verify(userRepository).findByToken(token);
+        verify(userTokenResolver).findByToken(token);
         verify(teamRepository).findByName(team.getName());
         verify(teamRepository, never()).save(any(Team.class));
     }
 
+    @Test
+    @DisplayName("Should not look the name up when the name filter rules it out")
+    @Description("Team names that were never added to the filter are certainly new")
+    void testCreateTeamNewNameSkipsLookup() throws NotEnoughCoinsException {
+        // arrange
+        User user = new User();
+        CreateTeamRequest request = new CreateTeamRequest();
+        request.setName("new_team_name");
+        when(nameFilters.teamNameMightExist("new_team_name")).thenReturn(false);
+        when(userTokenResolver.findByToken("token")).thenReturn(Optional.of(user));
+        when(teamRepository.save(any(Team.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // act
+        teamService.createTeam(request, "token");
+
+        // assert
+        verify(teamRepository, never()).findByName(any());
+        verify(nameFilters).teamNameAdded("new_team_name");
+    }
+
+    @Test
+    @DisplayName("Should throw EntityAlreadyExistsException when the unique index rejects the name")
+    @Description("Names the filter cannot know, e.g. created by another instance, are caught by the database")
+    void testCreateTeamDuplicateKey() {
+        // arrange
+        User user = new User();
+        CreateTeamRequest request = new CreateTeamRequest();
+        request.setName("taken_name");
+        when(nameFilters.teamNameMightExist("taken_name")).thenReturn(false);
+        when(userTokenResolver.findByToken("token")).thenReturn(Optional.of(user));
+        when(teamRepository.save(any(Team.class))).thenThrow(new DataIntegrityViolationException("duplicate"));
+
+        // act and assert
+        assertThrows(EntityAlreadyExistsException.class, () -> teamService.createTeam(request, "token"));
+        verify(nameFilters, never()).teamNameAdded(any());
+        verifyNoInteractions(joinableTeamIndex, teamLeaderboard);
+    }
+
     @Test
     @DisplayName("Should throw EntityAlreadyExistsException when user already has a team")
     @Description("Test case to verify that EntityAlreadyExistsException is thrown when user already has a team")
@@ -114,14 +218,14 @@ class TeamServiceTest {
         CreateTeamRequest request = new CreateTeamRequest();
         request.setName(team.getName());
 
-        when(userRepository.findByToken(token)).thenReturn(Optional.of(user));
+        when(userTokenResolver.findByToken(token)).thenReturn(Optional.of(user));
 
         // act and assert
         assertThrows(EntityAlreadyExistsException.class, () -> {
             teamService.createTeam(request, token);
         });
 
-        verify(userRepository).findByToken(token);
+        verify(userTokenResolver).findByToken(token);
         verify(teamRepository, never()).findByName(team.getName());
         verify(teamRepository, never()).save(any(Team.class));
     }
@@ -135,7 +239,7 @@ class TeamServiceTest {
         CreateTeamRequest request = new CreateTeamRequest();
         request.setName("Test Team");
         // Mocking userRepository behavior
-        when(userRepository.findByToken(token)).thenReturn(Optional.empty());
+        when(userTokenResolver.findByToken(token)).thenReturn(Optional.empty());
 
         // Ensure that the method throws an EntityNotFoundException
         assertThrows(EntityNotFoundException.class, () -> {
@@ -143,7 +247,7 @@ class TeamServiceTest {
         });
 
         // Verify that userRepository.findByToken() was called exactly once with the token argument
-        verify(userRepository, times(1)).findByToken(token);
+        verify(userTokenResolver, times(1)).findByToken(token);
 
     }
 
@@ -173,9 +277,10 @@ class TeamServiceTest {
         @Description("Join a team successfully when user is not part of any team and team is not full")
         void joinTeamSuccessfully() throws NotEnoughCoinsException {
             // Arrange
-            when(userRepository.findByToken(anyString())).thenReturn(Optional.of(user));
+            team.setMemberCount(2);
+            when(userTokenResolver.findByToken(anyString())).thenReturn(Optional.of(user));
+            when(teamRepository.addMember(1L, Team.CAPACITY)).thenReturn(1);
             when(teamRepository.findById(anyLong())).thenReturn(Optional.of(team));
-            when(teamRepository.save(any(Team.class))).thenReturn(team);
 
             // Act
             Team joinedTeam = teamService.joinTeam(1L, "token");
@@ -183,15 +288,21 @@ class TeamServiceTest {
 
             // Assert
             assertEquals(joinedTeam, team);
+            assertEquals(team, user.getTeam());
+            assertEquals(Integer.valueOf(4000), user.getCoins());
 
 
-            assertTrue(joinedTeam.getUsers().contains(user));
-
-
-            verify(userRepository).findByToken(anyString());
+            verify(userTokenResolver).findByToken(anyString());
+            verify(teamRepository).addMember(1L, Team.CAPACITY);
             verify(teamRepository).findById(anyLong());
-            verify(teamRepository).save(any(Team.class));
-
+            verify(userRepository).save(user);
+            verify(teamRepository, never()).save(any(Team.class));
+            verify(secondLevelCache).evictTeamMembers(1L);
+            verify(joinableTeamIndex).update(team.getId(), team.getName(), 2);
+            verify(teamLeaderboard).memberJoined(team.getId(), team.getName(), user.getId(), user.getLevel());
+            verify(domainEventBus).teamJoined(user.getId(), team.getId());
+            verify(outbox).teamJoined(user.getId(), team.getId());
+            verify(gameMetrics).teamJoined(1000);
         }
 
         @Test
@@ -203,8 +314,7 @@ class TeamServiceTest {
             newTeam.setName("Team B");
             newTeam.addUsers(user);
 
-            when(userRepository.findByToken(anyString())).thenReturn(Optional.of(user));
-            when(teamRepository.findById(anyLong())).thenReturn(Optional.of(team));
+            when(userTokenResolver.findByToken(anyString())).thenReturn(Optional.of(user));
 
             // Act
             assertThrows(UserAlreadyInTeamException.class, () -> {
@@ -212,9 +322,8 @@ class TeamServiceTest {
             });
 
             // Assert
-            verify(userRepository).findByToken(anyString());
-            verify(teamRepository).findById(anyLong());
-            verifyNoMoreInteractions(userRepository, teamRepository);
+            verify(userTokenResolver).findByToken(anyString());
+            verifyNoMoreInteractions(userTokenResolver, userRepository, teamRepository);
         }
 
         @Test
@@ -222,23 +331,57 @@ class TeamServiceTest {
         @Description("Joining a team fails when the team is already at full capacity (20 users)")
         void joinTeamFailsWhenTeamIsFull() {
             // Arrange
-            User tempUser;
-            List<User> users = new ArrayList<>();
-            for (int i = 0; i < 20; i++) {
-                tempUser = new User();
-                tempUser.setName("User " + i);
-                tempUser.setToken("token" + i);
-                team.addUsers(tempUser);
-            }
-
-            when(userRepository.findByToken(anyString())).thenReturn(Optional.of(user));
-            when(teamRepository.findById(anyLong())).thenReturn(Optional.of(team));
+            when(userTokenResolver.findByToken(anyString())).thenReturn(Optional.of(user));
+            when(teamRepository.addMember(1L, Team.CAPACITY)).thenReturn(0);
+            when(teamRepository.existsById(1L)).thenReturn(true);
             // Act and Assert
             assertThrows(TeamCapacityFullException.class, () -> {
                 teamService.joinTeam(team.getId(), user.getToken());
             });
-            verify(teamRepository).findById(1L);
+            verify(teamRepository).addMember(1L, Team.CAPACITY);
+            verify(teamRepository).existsById(1L);
             verifyNoMoreInteractions(teamRepository);
+            verify(userRepository, never()).save(any(User.class));
+            verifyNoInteractions(joinableTeamIndex);
+            verify(teamAdmission).markFull(1L);
+            verify(joinableTeamSnapshot).markFull(1L);
+            verify(gameMetrics).teamFull();
+            verify(gameMetrics, never()).teamJoined(anyInt());
+        }
+
+        @Test
+        @DisplayName("Join team is rejected without queries when the team is known to be full")
+        @Description("A team that a previous join found full is rejected before the user or the team is read")
+        void joinTeamRejectsKnownFullTeam() {
+            // Arrange
+            when(teamAdmission.isKnownFull(1L)).thenReturn(true);
+            // Act and Assert
+            assertThrows(TeamCapacityFullException.class, () -> {
+                teamService.joinTeam(team.getId(), user.getToken());
+            });
+            verify(teamAdmission, never()).enter(anyLong());
+            verifyNoInteractions(userTokenResolver, userRepository, teamRepository, optimisticTransactions);
+            verify(gameMetrics).teamFull();
+        }
+
+        @Test
+        @DisplayName("Join team marks the team full when it took the last seat")
+        @Description("The joins queued behind the one taking the last seat are rejected without queries")
+        void joinTeamMarksLastSeat() throws NotEnoughCoinsException {
+            // Arrange
+            team.setMemberCount(Team.CAPACITY);
+            when(userTokenResolver.findByToken(anyString())).thenReturn(Optional.of(user));
+            when(teamRepository.addMember(1L, Team.CAPACITY)).thenReturn(1);
+            when(teamRepository.findById(1L)).thenReturn(Optional.of(team));
+
+            // Act
+            teamService.joinTeam(1L, "token");
+
+            // Assert
+            verify(teamAdmission).enter(1L);
+            verify(teamAdmission).markFull(1L);
+            verify(joinableTeamSnapshot).markFull(1L);
+            verify(joinableTeamIndex).update(1L, "Team A", Team.CAPACITY);
         }
 
         @Test
@@ -246,13 +389,15 @@ class TeamServiceTest {
         @Description("Joining a team fails when the team is not found")
         void joinTeamFailsWhenTeamIsNotFound() {
             // Arrange
-            when(userRepository.findByToken(anyString())).thenReturn(Optional.of(user));
-            when(teamRepository.findById(anyLong())).thenReturn(Optional.empty());
+            when(userTokenResolver.findByToken(anyString())).thenReturn(Optional.of(user));
+            when(teamRepository.addMember(1L, Team.CAPACITY)).thenReturn(0);
+            when(teamRepository.existsById(1L)).thenReturn(false);
             // Act and Assert
             assertThrows(TeamNotFoundException.class, () -> {
                 teamService.joinTeam(team.getId(), user.getToken());
             });
-            verify(teamRepository).findById(1L);
+            verify(teamRepository).addMember(1L, Team.CAPACITY);
+            verify(teamRepository).existsById(1L);
             verifyNoMoreInteractions(teamRepository);
         }
 
@@ -261,14 +406,12 @@ class TeamServiceTest {
         @Description("Joining a team fails when the user is not found")
         void joinTeamFailsWhenUserIsNotFound() {
             // Arrange
-            when(userRepository.findByToken(anyString())).thenReturn(Optional.empty());
-            when(teamRepository.findById(anyLong())).thenReturn(Optional.of(team));
+            when(userTokenResolver.findByToken(anyString())).thenReturn(Optional.empty());
             // Act and Assert
             assertThrows(UserNotFoundException.class, () -> {
                 teamService.joinTeam(team.getId(), user.getToken());
             });
-            verify(teamRepository).findById(1L);
-            verifyNoMoreInteractions(teamRepository);
+            verifyNoInteractions(teamRepository);
         }
     }
 
@@ -296,16 +439,28 @@ class TeamServiceTest {
         void leaveTeamSuccessfully() {
             // Arrange
             team.addUsers(user);
-            when(userRepository.findByToken(anyString())).thenReturn(Optional.of(user));
-            when(teamRepository.findById(anyLong())).thenReturn(Optional.of(team));
-            when(teamRepository.save(any(Team.class))).thenReturn(team);
+            when(userTokenResolver.findByToken(anyString())).thenReturn(Optional.of(user));
+            when(teamRepository.removeMember(1L)).thenReturn(1);
+            when(teamRepository.deleteIfEmpty(1L)).thenReturn(1);
+            when(teamNameIndex.remove(1L)).thenReturn("Team A");
 
 
             // Act
             teamService.leaveTeam("token");
 
             // Assert
-            assertFalse(team.getUsers().contains(user));
+            assertNull(user.getTeam());
+            verify(userRepository).save(user);
+            verify(teamRepository).removeMember(team.getId());
+            verify(teamRepository).deleteIfEmpty(team.getId());
+            verify(joinableTeamIndex).remove(team.getId());
+            verify(teamNameIndex).remove(team.getId());
+            verify(nameFilters).teamNameRemoved("Team A");
+            verify(teamLeaderboard).memberLeft(user.getId());
+            verify(domainEventBus).teamDisbanded(user.getId(), team.getId());
+            verify(outbox).teamDisbanded(user.getId(), team.getId());
+            verify(teamAdmission).seatFreed(1L);
+            verify(secondLevelCache).evictTeamMembers(team.getId());
 
         }
 
@@ -314,13 +469,13 @@ class TeamServiceTest {
         @Description("Leaving a team fails when the user is not part of a team")
         void leaveTeamFailsWhenUserIsNotPartOfTeam() {
             // Arrange
-            when(userRepository.findByToken(anyString())).thenReturn(Optional.of(user));
-            when(teamRepository.findById(anyLong())).thenReturn(Optional.of(team));
+            when(userTokenResolver.findByToken(anyString())).thenReturn(Optional.of(user));
 
             // Act and Assert
             assertThrows(UserNotInTeamException.class, () -> {
                 teamService.leaveTeam(user.getToken());
             });
+            verifyNoInteractions(teamRepository);
 
         }
 
@@ -329,8 +484,7 @@ class TeamServiceTest {
         @Description("Leaving a team fails when the user is not found")
         void leaveTeamFailsWhenUserIsNotFound() {
             // Arrange
-            when(userRepository.findByToken(anyString())).thenReturn(Optional.empty());
-            when(teamRepository.findById(anyLong())).thenReturn(Optional.of(team));
+            when(userTokenResolver.findByToken(anyString())).thenReturn(Optional.empty());
             // Act and Assert
             assertThrows(UserNotFoundException.class, () -> {
                 teamService.leaveTeam(user.getToken());
@@ -345,18 +499,121 @@ class TeamServiceTest {
         void leaveTeamReturnsUpdatedUserProfile() {
             // Arrange
             team.addUsers(user);
-            when(userRepository.findByToken(anyString())).thenReturn(Optional.of(user));
+            team.setMemberCount(1);
+            when(userTokenResolver.findByToken(anyString())).thenReturn(Optional.of(user));
+            when(teamRepository.removeMember(1L)).thenReturn(1);
+            when(teamRepository.deleteIfEmpty(1L)).thenReturn(0);
             when(teamRepository.findById(anyLong())).thenReturn(Optional.of(team));
-            when(teamRepository.save(any(Team.class))).thenReturn(team);
             // Act
             teamService.leaveTeam("token");
 
             // Assert
-            assertFalse(team.getUsers().contains(user));
+            assertNull(user.getTeam());
+            verify(teamRepository, never()).save(any(Team.class));
+            verify(joinableTeamIndex).update(team.getId(), team.getName(), 1);
+            verify(teamLeaderboard).memberLeft(user.getId());
+            verify(domainEventBus).teamLeft(user.getId(), team.getId());
+            verify(outbox).teamLeft(user.getId(), team.getId());
+
+
+        }
+
+    }
+
+    @Nested
+    @DisplayName("Get Team By Name")
+    class GetTeamByName {
+
+        @Test
+        @DisplayName("The team and its members are read from one projection")
+        @Description("Getting a team does not load entities, so no token is read or changed")
+        void teamFromProjection() {
+            // Arrange
+            when(teamRepository.findTeamWithMembers("Team A")).thenReturn(List.of(
+                    new TeamMemberRow(1L, "Team A", 2, 3L, 10L, "John", 5, 4000, "TR", 4L),
+                    new TeamMemberRow(1L, "Team A", 2, 3L, 11L, "Jane", 7, 3000, null, 6L)));
+
+            // Act
+            TeamResponse result = teamService.getTeamByName("Team A");
+
+            // Assert
+            assertEquals(Long.valueOf(1L), result.getId());
+            assertEquals(2, result.getMemberCount());
+            assertEquals(2, result.getUsers().size());
+            assertEquals("Jane", result.getUsers().get(1).getName());
+            assertEquals("TR", result.getUsers().get(0).getCountry());
+            assertEquals("\"1-3-10\"", result.getETag());
+            verify(teamRepository, never()).findByName(any());
+            verifyNoInteractions(userRepository);
+        }
+
+        @Test
+        @DisplayName("A team without members has an empty member list")
+        void emptyTeam() {
+            // Arrange
+            when(teamRepository.findTeamWithMembers("Team A")).thenReturn(List.of(
+                    new TeamMemberRow(1L, "Team A", 0, 3L, null, null, null, null, null, null)));
+
+            // Act
+            TeamResponse result = teamService.getTeamByName("Team A");
+
+            // Assert
+            assertTrue(result.getUsers().isEmpty());
+        }
 
+        @Test
+        @DisplayName("An unknown team name is not found")
+        void unknownTeam() {
+            when(teamRepository.findTeamWithMembers("missing")).thenReturn(List.of());
 
+            assertThrows(EntityNotFoundException.class, () -> teamService.getTeamByName("missing"));
+        }
+
+        @Test
+        @DisplayName("The ETag of a team is the one its response carries")
+        @Description("Revalidating a team reads the summed versions instead of the members")
+        void eTagFromVersions() {
+            // Arrange
+            when(teamRepository.findTeamVersion("Team A")).thenReturn(Optional.of(new TeamVersion(1L, 3L, 10L)));
+            when(teamRepository.findTeamWithMembers("Team A")).thenReturn(List.of(
+                    new TeamMemberRow(1L, "Team A", 2, 3L, 10L, "John", 5, 4000, "TR", 4L),
+                    new TeamMemberRow(1L, "Team A", 2, 3L, 11L, "Jane", 7, 3000, null, 6L)));
+
+            // Act
+            String eTag = teamService.getTeamETag("Team A");
+
+            // Assert
+            assertEquals(teamService.getTeamByName("Team A").getETag(), eTag);
         }
 
+        @Test
+        @DisplayName("The ETag of an unknown team name is not found")
+        void unknownTeamETag() {
+            when(teamRepository.findTeamVersion("missing")).thenReturn(Optional.empty());
+
+            assertThrows(EntityNotFoundException.class, () -> teamService.getTeamETag("missing"));
+        }
+    }
+
+    @Nested
+    @DisplayName("Random Joinable Teams")
+    class RandomJoinableTeams {
+
+        @Test
+        @DisplayName("Recent random teams come from the shared sample")
+        void recentRandomTeamsComeFromSample() {
+            // Arrange
+            RandomTeams sample = new RandomTeams(List.of(new GetTeams(1L, "Team A", 3)), "\"random-1\"",
+                    Duration.ofSeconds(2));
+            when(randomTeamSample.current(10)).thenReturn(sample);
+
+            // Act
+            RandomTeams result = teamService.getRecentRandomJoinableTeams();
+
+            // Assert
+            assertSame(sample, result);
+            verifyNoInteractions(teamRepository, userRepository, userTokenResolver);
+        }
     }
 
-}
\ No newline at end of file
+}
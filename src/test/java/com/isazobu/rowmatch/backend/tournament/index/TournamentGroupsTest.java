@@ -0,0 +1,188 @@
+package com.isazobu.rowmatch.backend.tournament.index;
+
+import com.isazobu.rowmatch.backend.tournament.dto.TournamentGroupResponse;
+import com.isazobu.rowmatch.backend.tournament.dto.TournamentSeat;
+import jdk.jfr.Description;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+@DisplayName("TournamentGroups")
+@Description("Test cases for the sharded live groups of the running tournament")
+class TournamentGroupsTest {
+
+    private TournamentGroups groups;
+
+    @BeforeEach
+    void setUp() {
+        groups = new TournamentGroups(6);
+        groups.open(1L, 3, Instant.now().plus(Duration.ofHours(1)), List.of());
+    }
+
+    @Test
+    @DisplayName("The number of lock stripes is rounded up to a power of two")
+    void stripesArePowerOfTwo() {
+        assertEquals(8, groups.shardCount());
+        assertEquals(1, new TournamentGroups(1).shardCount());
+        assertTrue(Integer.bitCount(new TournamentGroups(0).shardCount()) == 1);
+    }
+
+    @Test
+    @DisplayName("Entrants fill one group after the other and cannot enter twice")
+    void entrantsFillGroups() {
+        // act
+        for (long userId = 1; userId <= 7; userId++) {
+            groups.enter(userId, "user" + userId).orElseThrow();
+        }
+
+        // assert
+        assertEquals(0, groups.groupOf(3L).orElseThrow().getGroupIndex());
+        assertEquals(1, groups.groupOf(4L).orElseThrow().getGroupIndex());
+        assertEquals(2, groups.groupOf(7L).orElseThrow().getGroupIndex());
+        assertEquals(3, groups.groupOf(1L).orElseThrow().getStandings().size());
+        assertTrue(groups.enter(1L, "user1").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Completed levels reorder the group, equal scores are ranked by seat")
+    void levelsReorderGroup() {
+        // arrange
+        groups.enter(1L, "first");
+        groups.enter(2L, "second");
+        groups.enter(3L, "third");
+
+        // act
+        groups.levelCompleted(3L);
+        groups.levelCompleted(3L);
+        groups.levelCompleted(2L);
+
+        // assert
+        TournamentGroupResponse group = groups.groupOf(1L).orElseThrow();
+        assertEquals(Long.valueOf(3L), group.getStandings().get(0).getUserId());
+        assertEquals(2, group.getStandings().get(0).getScore());
+        assertEquals(Long.valueOf(2L), group.getStandings().get(1).getUserId());
+        assertEquals(Long.valueOf(1L), group.getStandings().get(2).getUserId());
+        assertEquals(3, group.getStandings().get(2).getRank());
+        assertFalse(groups.levelCompleted(99L));
+    }
+
+    @Test
+    @DisplayName("Concurrent entries and level completions keep every score")
+    void concurrentUpdates() throws Exception {
+        // arrange
+        int users = 60;
+        int levels = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+
+        // act
+        for (long userId = 1; userId <= users; userId++) {
+            long id = userId;
+            futures.add(executor.submit(() -> {
+                start.await();
+                groups.enter(id, "user" + id).orElseThrow();
+                for (int i = 0; i < levels; i++) {
+                    groups.levelCompleted(id);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        // assert
+        List<TournamentGroups.ScoreUpdate> scores = groups.close(1L);
+        assertEquals(users, scores.size());
+        scores.forEach(score -> assertEquals(levels, score.score()));
+    }
+
+    @Test
+    @DisplayName("Scores counted elsewhere only ever raise a member")
+    @Description("Levels completed on other instances are scored from the database, lower scores are ignored")
+    void raiseScore() {
+        // arrange
+        groups.enter(1L, "first");
+        groups.enter(2L, "second");
+        groups.levelCompleted(1L);
+        groups.levelCompleted(1L);
+        groups.drainChangedScores();
+
+        // act
+        boolean raised = groups.raiseScore(2L, 3);
+        boolean lowered = groups.raiseScore(1L, 1);
+
+        // assert
+        assertTrue(raised);
+        assertFalse(lowered);
+        assertFalse(groups.raiseScore(99L, 5));
+        TournamentGroupResponse group = groups.groupOf(1L).orElseThrow();
+        assertEquals(Long.valueOf(2L), group.getStandings().get(0).getUserId());
+        assertEquals(3, group.getStandings().get(0).getScore());
+        assertEquals(2, group.getStandings().get(1).getScore());
+        assertEquals(List.of(new TournamentGroups.ScoreUpdate(1L, 2L, 3)), groups.drainChangedScores());
+    }
+
+    @Test
+    @DisplayName("Changed scores are drained once, closing stops the tournament")
+    void drainAndClose() {
+        // arrange
+        groups.enter(1L, "first");
+        groups.enter(2L, "second");
+        groups.levelCompleted(2L);
+
+        // act
+        List<TournamentGroups.ScoreUpdate> changed = groups.drainChangedScores();
+        List<TournamentGroups.ScoreUpdate> finals = groups.close(1L);
+
+        // assert
+        assertEquals(List.of(new TournamentGroups.ScoreUpdate(1L, 2L, 1)), changed);
+        assertEquals(2, finals.size());
+        assertTrue(groups.running().isEmpty());
+        assertFalse(groups.levelCompleted(2L));
+        assertTrue(groups.close(1L).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Groups are restored from stored entries and new entrants take the next seat")
+    void restoreFromEntries() {
+        // act
+        groups.open(2L, 2, Instant.now().plus(Duration.ofHours(1)), List.of(
+                new TournamentSeat(10L, "ten", 0, 1),
+                new TournamentSeat(11L, "eleven", 1, 4),
+                new TournamentSeat(12L, "twelve", 2, 0)));
+        TournamentGroups.Seat seat = groups.enter(13L, "thirteen").orElseThrow();
+
+        // assert
+        assertEquals(3, seat.seat());
+        assertEquals(1, seat.groupIndex());
+        TournamentGroupResponse group = groups.groupOf(10L).orElseThrow();
+        assertEquals(Long.valueOf(11L), group.getStandings().get(0).getUserId());
+        assertEquals(Long.valueOf(2L), group.getTournamentId());
+    }
+
+    @Test
+    @DisplayName("No entries or scores are accepted after the end time")
+    void endedTournament() {
+        // arrange
+        groups.open(3L, 2, Instant.now().minusSeconds(1), List.of());
+
+        // act & assert
+        assertTrue(groups.enter(1L, "late").isEmpty());
+        assertFalse(groups.levelCompleted(1L));
+    }
+}
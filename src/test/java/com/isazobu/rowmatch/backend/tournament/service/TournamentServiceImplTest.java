@@ -0,0 +1,145 @@
+package com.isazobu.rowmatch.backend.tournament.service;
+
+import com.isazobu.rowmatch.backend.exceptions.EntityAlreadyExistsException;
+import com.isazobu.rowmatch.backend.exceptions.InvalidTournamentException;
+import com.isazobu.rowmatch.backend.exceptions.NotTournamentNodeException;
+import com.isazobu.rowmatch.backend.exceptions.TournamentNotFoundException;
+import com.isazobu.rowmatch.backend.tournament.dto.CreateTournamentRequest;
+import com.isazobu.rowmatch.backend.tournament.dto.TournamentGroupResponse;
+import com.isazobu.rowmatch.backend.tournament.index.TournamentGroups;
+import com.isazobu.rowmatch.backend.tournament.model.Tournament;
+import com.isazobu.rowmatch.backend.tournament.model.TournamentEntry;
+import com.isazobu.rowmatch.backend.tournament.repository.TournamentEntryRepository;
+import com.isazobu.rowmatch.backend.tournament.repository.TournamentRepository;
+import com.isazobu.rowmatch.backend.user.auth.UserTokenResolver;
+import com.isazobu.rowmatch.backend.user.model.User;
+import jdk.jfr.Description;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+@DisplayName("TournamentService")
+@Description("Test cases for creating and entering tournaments")
+class TournamentServiceImplTest {
+
+    @Mock
+    private TournamentRepository tournamentRepository;
+
+    @Mock
+    private TournamentEntryRepository tournamentEntryRepository;
+
+    @Mock
+    private TournamentScheduler tournamentScheduler;
+
+    @Mock
+    private UserTokenResolver userTokenResolver;
+
+    private TournamentGroups tournamentGroups;
+
+    private TournamentServiceImpl tournamentService;
+
+    private final User user = new User(1L, "John", 1, 5000, "token");
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        tournamentGroups = new TournamentGroups(4);
+        tournamentService = new TournamentServiceImpl(tournamentRepository, tournamentEntryRepository,
+                tournamentGroups, tournamentScheduler, userTokenResolver, true);
+        when(tournamentRepository.save(any(Tournament.class))).thenAnswer(invocation -> {
+            Tournament tournament = invocation.getArgument(0);
+            tournament.setId(7L);
+            return tournament;
+        });
+        when(userTokenResolver.findByToken("token")).thenReturn(Optional.of(user));
+    }
+
+    @Test
+    @DisplayName("Creating a tournament opens its groups and schedules the settlement")
+    void createTournament() {
+        // act
+        Tournament tournament = tournamentService.createTournament(new CreateTournamentRequest(30, 10));
+
+        // assert
+        assertEquals(Long.valueOf(7L), tournament.getId());
+        assertEquals(10, tournament.getGroupSize());
+        assertEquals(7L, tournamentGroups.running().orElseThrow().tournamentId());
+        verify(tournamentScheduler).scheduleSettlement(tournament);
+        assertThrows(EntityAlreadyExistsException.class,
+                () -> tournamentService.createTournament(new CreateTournamentRequest(30, 10)));
+    }
+
+    @Test
+    @DisplayName("Tournaments with an invalid duration or group size are rejected")
+    void invalidTournament() {
+        assertThrows(InvalidTournamentException.class,
+                () -> tournamentService.createTournament(new CreateTournamentRequest(0, 10)));
+        assertThrows(InvalidTournamentException.class, () -> tournamentService.createTournament(
+                new CreateTournamentRequest(TournamentServiceImpl.MAX_DURATION_MINUTES + 1, 10)));
+        assertThrows(InvalidTournamentException.class,
+                () -> tournamentService.createTournament(new CreateTournamentRequest(30, 1)));
+        verify(tournamentRepository, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("Entering stores the entry and returns the user's group, a second entry is rejected")
+    void enterTournament() {
+        // arrange
+        tournamentService.createTournament(new CreateTournamentRequest(30, 10));
+
+        // act
+        TournamentGroupResponse group = tournamentService.enterTournament("token");
+
+        // assert
+        assertEquals(0, group.getGroupIndex());
+        assertEquals(Long.valueOf(1L), group.getStandings().get(0).getUserId());
+        verify(tournamentEntryRepository).save(argThat(entry -> entry.getStartLevel() == 1));
+        assertThrows(EntityAlreadyExistsException.class, () -> tournamentService.enterTournament("token"));
+    }
+
+    @Test
+    @DisplayName("Instances other than the tournament node neither start tournaments nor hand out seats")
+    void notTournamentNode() {
+        // arrange
+        TournamentServiceImpl otherInstance = new TournamentServiceImpl(tournamentRepository,
+                tournamentEntryRepository, tournamentGroups, tournamentScheduler, userTokenResolver, false);
+
+        // act & assert
+        assertThrows(NotTournamentNodeException.class,
+                () -> otherInstance.createTournament(new CreateTournamentRequest(30, 10)));
+        tournamentService.createTournament(new CreateTournamentRequest(30, 10));
+        assertThrows(NotTournamentNodeException.class, () -> otherInstance.enterTournament("token"));
+        assertThrows(NotTournamentNodeException.class, () -> otherInstance.getGroup("token"));
+        verify(tournamentEntryRepository, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("Entering without a running tournament fails")
+    void enterWithoutTournament() {
+        assertThrows(TournamentNotFoundException.class, () -> tournamentService.enterTournament("token"));
+    }
+
+    @Test
+    @DisplayName("A user whose entry could not be stored is removed from the group")
+    void failedEntryIsRolledBack() {
+        // arrange
+        tournamentService.createTournament(new CreateTournamentRequest(30, 10));
+        when(tournamentEntryRepository.save(any(TournamentEntry.class)))
+                .thenThrow(new DataIntegrityViolationException("duplicate"));
+        when(userTokenResolver.resolveUserId("token")).thenReturn(Optional.of(1L));
+
+        // act
+        assertThrows(DataIntegrityViolationException.class, () -> tournamentService.enterTournament("token"));
+
+        // assert
+        assertThrows(TournamentNotFoundException.class, () -> tournamentService.getGroup("token"));
+    }
+}
@@ -0,0 +1,178 @@
+package com.isazobu.rowmatch.backend.tournament.service;
+
+import com.isazobu.rowmatch.backend.cache.SecondLevelCache;
+import com.isazobu.rowmatch.backend.tournament.index.TournamentGroups;
+import com.isazobu.rowmatch.backend.tournament.model.TournamentEntry;
+import com.isazobu.rowmatch.backend.tournament.repository.TournamentEntryRepository;
+import com.isazobu.rowmatch.backend.tournament.repository.TournamentRepository;
+import jdk.jfr.Description;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+@DisplayName("TournamentSettlement")
+@Description("Test cases for the chunked settlement of tournament rewards")
+class TournamentSettlementTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private SecondLevelCache secondLevelCache;
+
+    @Mock
+    private TournamentRepository tournamentRepository;
+
+    @Mock
+    private TournamentEntryRepository tournamentEntryRepository;
+
+    @Mock
+    private TournamentGroups tournamentGroups;
+
+    private TournamentSettlement settlement;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        settlement = new TournamentSettlement(jdbcTemplate, transactionManager, secondLevelCache, tournamentRepository,
+                tournamentEntryRepository, tournamentGroups, 2);
+        when(tournamentGroups.close(1L)).thenReturn(List.of());
+        // every entry is still unsettled
+        when(jdbcTemplate.queryForList(startsWith("SELECT id FROM tournament_entries"), eq(Long.class), any()))
+                .thenAnswer(invocation -> {
+                    List<Long> ids = new ArrayList<>();
+                    for (int i = 2; i < invocation.getArguments().length; i++) {
+                        ids.add((Long) invocation.getArgument(i));
+                    }
+                    return ids;
+                });
+    }
+
+    private static TournamentEntry entry(long id, int seat, int group, int score) {
+        TournamentEntry entry = new TournamentEntry(1L, 100 + id, seat, group, 1);
+        entry.setId(id);
+        entry.setScore(score);
+        return entry;
+    }
+
+    @Test
+    @DisplayName("Final scores are written before the entries are ranked")
+    @SuppressWarnings("unchecked")
+    void writesFinalScores() {
+        // arrange
+        when(tournamentGroups.close(1L)).thenReturn(List.of(new TournamentGroups.ScoreUpdate(1L, 101L, 7)));
+        when(tournamentEntryRepository.findByTournamentId(1L)).thenReturn(List.of());
+
+        // act
+        settlement.settle(1L);
+
+        // assert
+        ArgumentCaptor<List<Object[]>> batch = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(eq(TournamentSettlement.SCORE_SQL), batch.capture());
+        assertArrayEquals(new Object[]{7, 1L, 101L}, batch.getValue().get(0));
+        verify(tournamentRepository).markSettled(1L);
+    }
+
+    @Test
+    @DisplayName("Levels completed on other instances raise the scores before they are written")
+    void raisesScoresFromLevels() throws SQLException {
+        // arrange
+        ResultSet row = mock(ResultSet.class);
+        when(row.getLong(1)).thenReturn(101L);
+        when(row.getInt(2)).thenReturn(4);
+        when(tournamentGroups.running()).thenReturn(Optional.of(
+                new TournamentGroups.Running(1L, 10, Instant.now().plusSeconds(60))));
+        doAnswer(invocation -> {
+            invocation.<RowCallbackHandler>getArgument(1).processRow(row);
+            return null;
+        }).when(jdbcTemplate).query(eq(TournamentSettlement.LEVEL_SCORES_SQL), any(RowCallbackHandler.class), eq(1L));
+
+        // act
+        settlement.checkpoint();
+
+        // assert
+        InOrder order = inOrder(tournamentGroups);
+        order.verify(tournamentGroups).raiseScore(101L, 4);
+        order.verify(tournamentGroups).drainChangedScores();
+    }
+
+    @Test
+    @DisplayName("Every group is ranked on its own and rewards are paid in chunks")
+    @SuppressWarnings("unchecked")
+    void ranksGroupsAndPaysInChunks() {
+        // arrange
+        when(tournamentEntryRepository.findByTournamentId(1L)).thenReturn(new ArrayList<>(List.of(
+                entry(1, 0, 0, 3), entry(2, 1, 0, 5), entry(3, 2, 0, 0),
+                entry(4, 3, 1, 2), entry(5, 4, 1, 2))));
+
+        // act
+        int settled = settlement.settle(1L);
+
+        // assert
+        assertEquals(5, settled);
+        ArgumentCaptor<List<Object[]>> entries = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(3)).batchUpdate(eq(TournamentSettlement.SETTLE_SQL), entries.capture());
+        List<Object[]> ranks = new ArrayList<>();
+        entries.getAllValues().forEach(ranks::addAll);
+        assertTrue(ranks.stream().anyMatch(rank -> Arrays.equals(rank, new Object[]{1, 5000, 2L})));
+        assertTrue(ranks.stream().anyMatch(rank -> Arrays.equals(rank, new Object[]{2, 3000, 1L})));
+        assertTrue(ranks.stream().anyMatch(rank -> Arrays.equals(rank, new Object[]{3, 0, 3L})));
+        // equal scores are ranked by seat
+        assertTrue(ranks.stream().anyMatch(rank -> Arrays.equals(rank, new Object[]{1, 5000, 4L})));
+        assertTrue(ranks.stream().anyMatch(rank -> Arrays.equals(rank, new Object[]{2, 3000, 5L})));
+
+        ArgumentCaptor<List<Object[]>> rewards = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, atLeastOnce()).batchUpdate(eq(TournamentSettlement.REWARD_SQL), rewards.capture());
+        assertEquals(4, rewards.getAllValues().stream().mapToInt(List::size).sum());
+        verify(transactionManager, times(4)).commit(any());
+    }
+
+    @Test
+    @DisplayName("Entries settled by an earlier run are not paid again")
+    @SuppressWarnings("unchecked")
+    void alreadySettledEntriesAreNotPaid() {
+        // arrange
+        TournamentEntry paid = entry(1, 0, 0, 5);
+        paid.setReward(5000);
+        when(tournamentEntryRepository.findByTournamentId(1L)).thenReturn(new ArrayList<>(List.of(
+                paid, entry(2, 1, 0, 4), entry(3, 2, 0, 3))));
+        // the second entry was settled concurrently after it was loaded
+        when(jdbcTemplate.queryForList(startsWith("SELECT id FROM tournament_entries"), eq(Long.class), any()))
+                .thenReturn(List.of(3L));
+
+        // act
+        int settled = settlement.settle(1L);
+
+        // assert
+        assertEquals(1, settled);
+        ArgumentCaptor<List<Object[]>> entries = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(eq(TournamentSettlement.SETTLE_SQL), entries.capture());
+        assertEquals(1, entries.getValue().size());
+        ArgumentCaptor<List<Object[]>> rewards = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(eq(TournamentSettlement.REWARD_SQL), rewards.capture());
+        assertEquals(1, rewards.getValue().size());
+        verify(secondLevelCache).evictUsers(List.of(103L));
+        assertArrayEquals(new Object[]{2000, 103L}, rewards.getValue().get(0));
+    }
+}
@@ -0,0 +1,98 @@
+package com.isazobu.rowmatch.backend.transaction;
+
+import com.isazobu.rowmatch.backend.exceptions.NotEnoughCoinsException;
+import com.isazobu.rowmatch.backend.exceptions.UpdateConflictException;
+import com.isazobu.rowmatch.backend.metrics.GameMetrics;
+import jdk.jfr.Description;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+@DisplayName("OptimisticTransactions")
+@Description("Test cases for retrying transactions that lost a race with a concurrent update")
+class OptimisticTransactionsTest {
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private GameMetrics gameMetrics;
+
+    private OptimisticTransactions optimisticTransactions;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        optimisticTransactions = new OptimisticTransactions(transactionManager, gameMetrics, 3, Duration.ZERO);
+    }
+
+    @Test
+    @DisplayName("A version conflict rolls back and runs the work again")
+    void retriesVersionConflicts() {
+        // arrange
+        AtomicInteger attempts = new AtomicInteger();
+
+        // act
+        String result = optimisticTransactions.execute("Test", () -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new ObjectOptimisticLockingFailureException("User", 1L);
+            }
+            return "done";
+        });
+
+        // assert
+        assertEquals("done", result);
+        assertEquals(3, attempts.get());
+        verify(transactionManager, times(2)).rollback(any());
+        verify(transactionManager).commit(any());
+        verify(gameMetrics, times(2)).transactionConflicted(true);
+    }
+
+    @Test
+    @DisplayName("Gives up with UpdateConflictException after the last attempt")
+    void givesUpAfterMaxAttempts() {
+        // arrange
+        AtomicInteger attempts = new AtomicInteger();
+
+        // act
+        assertThrows(UpdateConflictException.class, () -> optimisticTransactions.execute("Test", () -> {
+            attempts.incrementAndGet();
+            throw new ObjectOptimisticLockingFailureException("User", 1L);
+        }));
+
+        // assert
+        assertEquals(3, attempts.get());
+        verify(transactionManager, never()).commit(any());
+        verify(gameMetrics).transactionConflicted(false);
+    }
+
+    @Test
+    @DisplayName("Other exceptions, checked ones included, roll back without a retry")
+    void doesNotRetryOtherExceptions() {
+        // arrange
+        AtomicInteger attempts = new AtomicInteger();
+
+        // act
+        NotEnoughCoinsException thrown = assertThrows(NotEnoughCoinsException.class, () ->
+                optimisticTransactions.execute("Test", () -> {
+                    attempts.incrementAndGet();
+                    throw new NotEnoughCoinsException("Not enough coins");
+                }));
+
+        // assert
+        assertEquals("Not enough coins", thrown.getMessage());
+        assertEquals(1, attempts.get());
+        verify(transactionManager).rollback(any());
+        verifyNoInteractions(gameMetrics);
+    }
+}
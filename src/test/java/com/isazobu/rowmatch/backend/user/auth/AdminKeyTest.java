@@ -0,0 +1,41 @@
+package com.isazobu.rowmatch.backend.user.auth;
+
+import jdk.jfr.Description;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.Assert.*;
+
+@DisplayName("AdminKey")
+@Description("Test cases for the credential of the operator endpoints")
+class AdminKeyTest {
+
+    private static final String KEY = "admin-key-of-at-least-thirty-two-bytes";
+
+    @Test
+    @DisplayName("Without a configured key every request is refused")
+    void disabledWithoutKey() {
+        AdminKey adminKey = new AdminKey("");
+
+        assertFalse(adminKey.isEnabled());
+        assertFalse(adminKey.matches(null));
+        assertFalse(adminKey.matches(""));
+    }
+
+    @Test
+    @DisplayName("Only the configured key is accepted")
+    void matchesConfiguredKey() {
+        AdminKey adminKey = new AdminKey(KEY);
+
+        assertTrue(adminKey.isEnabled());
+        assertTrue(adminKey.matches(KEY));
+        assertFalse(adminKey.matches(KEY + "x"));
+        assertFalse(adminKey.matches(null));
+    }
+
+    @Test
+    @DisplayName("Short keys are refused at startup")
+    void shortKeyIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new AdminKey("admin"));
+    }
+}
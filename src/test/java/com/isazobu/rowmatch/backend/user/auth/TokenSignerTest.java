@@ -0,0 +1,91 @@
+package com.isazobu.rowmatch.backend.user.auth;
+
+import jdk.jfr.Description;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+@DisplayName("TokenSigner")
+@Description("Test cases for issuing and verifying signed tokens")
+class TokenSignerTest {
+
+    private final TokenSigner tokenSigner = new TokenSigner("test-secret-of-at-least-thirty-two-bytes");
+
+    @Test
+    @DisplayName("A signed token carries the user id")
+    void signAndVerify() {
+        String token = tokenSigner.sign(42L);
+
+        assertTrue(TokenSigner.isSigned(token));
+        assertEquals(OptionalLong.of(42L), tokenSigner.verify(token));
+    }
+
+    @Test
+    @DisplayName("Tokens issued for the same user are different")
+    void tokensAreUnique() {
+        assertNotEquals(tokenSigner.sign(42L), tokenSigner.sign(42L));
+    }
+
+    @Test
+    @DisplayName("Changing the user id invalidates the signature")
+    void tamperedIdIsRejected() {
+        String token = tokenSigner.sign(42L);
+        String tampered = token.replaceFirst("v1\\.42\\.", "v1.43.");
+
+        assertEquals(OptionalLong.empty(), tokenSigner.verify(tampered));
+    }
+
+    @Test
+    @DisplayName("Tokens signed with another secret are rejected")
+    void otherSecretIsRejected() {
+        String token = new TokenSigner("other-secret-of-at-least-thirty-two-bytes").sign(42L);
+
+        assertEquals(OptionalLong.empty(), tokenSigner.verify(token));
+    }
+
+    @Test
+    @DisplayName("Missing and short secrets are refused at startup")
+    void shortSecretIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenSigner(null));
+        assertThrows(IllegalArgumentException.class, () -> new TokenSigner(" "));
+        assertThrows(IllegalArgumentException.class, () -> new TokenSigner("local-development-token-secret"));
+    }
+
+    @Test
+    @DisplayName("Opaque and malformed tokens are rejected")
+    void malformedTokensAreRejected() {
+        assertFalse(TokenSigner.isSigned("0a46b01722c63520fd88d7972a147ae9"));
+        assertEquals(OptionalLong.empty(), tokenSigner.verify("0a46b01722c63520fd88d7972a147ae9"));
+        assertEquals(OptionalLong.empty(), tokenSigner.verify("v1."));
+        assertEquals(OptionalLong.empty(), tokenSigner.verify("v1.abc.nonce.signature"));
+        assertEquals(OptionalLong.empty(), tokenSigner.verify("v1.42.nonce.%%%"));
+        assertEquals(OptionalLong.empty(), tokenSigner.verify(null));
+    }
+
+    @Test
+    @DisplayName("The signer can be shared between threads")
+    void threadSafe() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (long id = 0; id < 1000; id++) {
+                long userId = id;
+                results.add(executor.submit(() ->
+                        tokenSigner.verify(tokenSigner.sign(userId)).equals(OptionalLong.of(userId))));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
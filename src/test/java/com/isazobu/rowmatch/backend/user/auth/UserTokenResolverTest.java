@@ -0,0 +1,172 @@
+package com.isazobu.rowmatch.backend.user.auth;
+
+import com.isazobu.rowmatch.backend.user.model.User;
+import com.isazobu.rowmatch.backend.user.repository.UserRepository;
+import com.isazobu.rowmatch.backend.user.service.LevelProgressBuffer;
+import jdk.jfr.Description;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+@DisplayName("UserTokenResolver")
+@Description("Test cases for resolving Authorization tokens through the token cache")
+class UserTokenResolverTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private LevelProgressBuffer levelProgressBuffer;
+
+    private TokenCache tokenCache;
+
+    private TokenSigner tokenSigner;
+
+    private UserTokenResolver resolver;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        tokenCache = new TokenCache(100, Duration.ofMinutes(10));
+        tokenSigner = new TokenSigner("test-secret-of-at-least-thirty-two-bytes");
+        resolver = new UserTokenResolver(userRepository, tokenCache, tokenSigner, levelProgressBuffer);
+
+        user = new User(1L, "John", 1, 5000, "token");
+    }
+
+    @Test
+    @DisplayName("First lookup queries the token column, the next one uses the primary key")
+    void cachesTokenAfterFirstLookup() {
+        // arrange
+        when(userRepository.findByToken("token")).thenReturn(Optional.of(user));
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+
+        // act
+        Optional<User> first = resolver.findByToken("token");
+        Optional<User> second = resolver.findByToken("token");
+
+        // assert
+        assertEquals(user, first.orElseThrow());
+        assertEquals(user, second.orElseThrow());
+        verify(userRepository, times(1)).findByToken("token");
+        verify(userRepository, times(1)).findById(1L);
+        assertEquals(1, tokenCache.stats().hitCount());
+        assertEquals(1, tokenCache.stats().missCount());
+    }
+
+    @Test
+    @DisplayName("Unknown tokens are not cached")
+    void unknownTokenIsNotCached() {
+        // arrange
+        when(userRepository.findByToken("unknown")).thenReturn(Optional.empty());
+
+        // act & assert
+        assertTrue(resolver.findByToken("unknown").isEmpty());
+        assertTrue(resolver.findByToken("unknown").isEmpty());
+        assertEquals(0, tokenCache.size());
+        verify(userRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    @DisplayName("Issued tokens are served from the cache and replaced tokens are dropped")
+    void tokenIssuedPrimesAndInvalidates() {
+        // arrange
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        resolver.tokenIssued(user, null);
+        assertEquals(user, resolver.findByToken("token").orElseThrow());
+
+        // act
+        user.setToken("rotated");
+        resolver.tokenIssued(user, "token");
+        when(userRepository.findByToken("token")).thenReturn(Optional.empty());
+
+        // assert
+        assertTrue(resolver.findByToken("token").isEmpty());
+        assertEquals(user, resolver.findByToken("rotated").orElseThrow());
+        verify(userRepository, never()).findByToken("rotated");
+    }
+
+    @Test
+    @DisplayName("A cached token that no longer matches the user falls back to the database")
+    void staleEntryIsDropped() {
+        // arrange
+        User rotated = new User(1L, "John", 1, 5000, "other");
+        tokenCache.put("token", user);
+        when(userRepository.findById(1L)).thenReturn(Optional.of(rotated));
+        when(userRepository.findByToken("token")).thenReturn(Optional.empty());
+
+        // act
+        Optional<User> result = resolver.findByToken("token");
+
+        // assert
+        assertTrue(result.isEmpty());
+        assertNull(tokenCache.get("token"));
+    }
+
+    @Test
+    @DisplayName("Signed tokens are resolved by id without touching the token column or the cache")
+    void signedTokenSkipsTokenLookup() {
+        // arrange
+        String token = tokenSigner.sign(1L);
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+
+        // act
+        Optional<User> result = resolver.findByToken(token);
+
+        // assert
+        assertEquals(user, result.orElseThrow());
+        verify(userRepository, never()).findByToken(anyString());
+        assertEquals(0, tokenCache.stats().requestCount());
+    }
+
+    @Test
+    @DisplayName("Signed tokens with a bad signature are rejected without a database lookup")
+    void forgedSignedTokenIsRejected() {
+        // arrange
+        String forged = new TokenSigner("other-secret-of-at-least-thirty-two-bytes").sign(1L);
+
+        // act & assert
+        assertTrue(resolver.findByToken(forged).isEmpty());
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    @DisplayName("Buffered level progress is written before the user is loaded")
+    void pendingProgressIsFlushedBeforeLoad() {
+        // arrange
+        String token = tokenSigner.sign(1L);
+        when(levelProgressBuffer.hasPending(1L)).thenReturn(true);
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+
+        // act
+        resolver.findByToken(token);
+
+        // assert
+        InOrder inOrder = inOrder(levelProgressBuffer, userRepository);
+        inOrder.verify(levelProgressBuffer).flush(1L);
+        inOrder.verify(userRepository).findById(1L);
+    }
+
+    @Test
+    @DisplayName("Resolving only the id of a signed or cached token needs no database access")
+    void resolveUserIdWithoutLookup() {
+        // arrange
+        tokenCache.put("token", user);
+
+        // act & assert
+        assertEquals(Optional.of(7L), resolver.resolveUserId(tokenSigner.sign(7L)));
+        assertEquals(Optional.of(1L), resolver.resolveUserId("token"));
+        verifyNoInteractions(userRepository);
+    }
+}
@@ -1,5 +1,6 @@
 package com.isazobu.rowmatch.backend.user.controller;
 
+import com.isazobu.rowmatch.backend.user.auth.AdminKey;
 import com.isazobu.rowmatch.backend.user.dto.CreateUserRequest;
 import com.isazobu.rowmatch.backend.user.dto.UpdateLevelRequest;
 import com.isazobu.rowmatch.backend.user.model.User;
@@ -13,7 +14,12 @@ import org.mockito.junit.MockitoJUnitRunner;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
+import java.util.List;
+
 import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 
@@ -23,6 +29,9 @@ public class UserControllerTest {
     @Mock
     private UserService userService;
 
+    @Mock
+    private AdminKey adminKey;
+
     @InjectMocks
     private UserController userController;
 
@@ -96,4 +105,33 @@ public class UserControllerTest {
         // Assert
         assertEquals(HttpStatus.UNAUTHORIZED, response.getStatusCode());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void createUsers_withoutAdminKey_returnsForbidden() {
+        // Arrange
+        when(adminKey.matches(null)).thenReturn(false);
+
+        // Act
+        ResponseEntity<List<User>> response = userController.createUsers(null, List.of(new CreateUserRequest()));
+
+        // Assert
+        assertEquals(HttpStatus.FORBIDDEN, response.getStatusCode());
+        verify(userService, never()).createUsers(anyList());
+    }
+
+    @Test
+    public void createUsers_withAdminKey_returnsCreatedUsers() {
+        // Arrange
+        List<CreateUserRequest> requests = List.of(new CreateUserRequest());
+        List<User> users = List.of(new User());
+        when(adminKey.matches("admin-key")).thenReturn(true);
+        when(userService.createUsers(requests)).thenReturn(users);
+
+        // Act
+        ResponseEntity<List<User>> response = userController.createUsers("admin-key", requests);
+
+        // Assert
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        assertEquals(users, response.getBody());
+    }
+}
@@ -0,0 +1,205 @@
+package com.isazobu.rowmatch.backend.user.service;
+
+import com.isazobu.rowmatch.backend.cache.SecondLevelCache;
+import com.isazobu.rowmatch.backend.outbox.service.Outbox;
+import com.isazobu.rowmatch.backend.user.model.User;
+import jdk.jfr.Description;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+@DisplayName("LevelProgressBuffer")
+@Description("Test cases for the write-behind buffer of level completions")
+class LevelProgressBufferTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private SecondLevelCache secondLevelCache;
+
+    @Mock
+    private Outbox outbox;
+
+    private LevelProgressBuffer buffer;
+
+    private final AtomicInteger baselineLoads = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        buffer = new LevelProgressBuffer(jdbcTemplate, transactionManager, secondLevelCache, outbox, true, 100, Duration.ofHours(1));
+    }
+
+    private LevelProgressBuffer.LevelProgress baseline() {
+        baselineLoads.incrementAndGet();
+        return LevelProgressBuffer.LevelProgress.of(new User(1L, "John", 1, 5000, "token"));
+    }
+
+    @Test
+    @DisplayName("Increments of the same user are coalesced and returned with the pending totals")
+    void coalescesIncrements() {
+        // act
+        buffer.add(1L, 1, 25, this::baseline);
+        buffer.add(1L, 1, 25, this::baseline);
+        LevelProgressBuffer.LevelProgress progress = buffer.add(1L, 1, 25, this::baseline);
+
+        // assert
+        assertEquals(4, progress.level());
+        assertEquals(5075, progress.coins());
+        assertEquals(1, baselineLoads.get());
+        assertEquals(1, buffer.pendingCount());
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    @DisplayName("Flush writes one relative update per user in a single batch")
+    @SuppressWarnings("unchecked")
+    void flushWritesBatch() {
+        // arrange
+        buffer.add(1L, 1, 25, this::baseline);
+        buffer.add(1L, 1, 25, this::baseline);
+        buffer.add(2L, 1, 25, () -> LevelProgressBuffer.LevelProgress.of(new User(2L, "Jane", 7, 100, "other")));
+
+        // act
+        buffer.flush();
+
+        // assert
+        ArgumentCaptor<List<Object[]>> batch = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(eq(LevelProgressBuffer.FLUSH_SQL), batch.capture());
+        assertEquals(2, batch.getValue().size());
+        for (Object[] args : batch.getValue()) {
+            if (args[2].equals(1L)) {
+                assertArrayEquals(new Object[]{2, 50, 1L}, args);
+            } else {
+                assertArrayEquals(new Object[]{1, 25, 2L}, args);
+            }
+        }
+        assertEquals(0, buffer.pendingCount());
+        assertFalse(buffer.hasPending(1L));
+        verify(secondLevelCache).evictUsers(argThat(userIds -> userIds.size() == 2 && userIds.containsAll(List.of(1L, 2L))));
+        verify(outbox).levelsCompleted(Map.of(1L, 3, 2L, 8));
+    }
+
+    @Test
+    @DisplayName("Flushing a single user leaves the other users buffered")
+    @SuppressWarnings("unchecked")
+    void flushSingleUser() {
+        // arrange
+        buffer.add(1L, 1, 25, this::baseline);
+        buffer.add(2L, 1, 25, () -> LevelProgressBuffer.LevelProgress.of(new User(2L, "Jane", 7, 100, "other")));
+
+        // act
+        buffer.flush(1L);
+
+        // assert
+        ArgumentCaptor<List<Object[]>> batch = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(eq(LevelProgressBuffer.FLUSH_SQL), batch.capture());
+        assertEquals(1, batch.getValue().size());
+        assertFalse(buffer.hasPending(1L));
+        assertTrue(buffer.hasPending(2L));
+    }
+
+    @Test
+    @DisplayName("A failed flush keeps the increments buffered")
+    void failedFlushKeepsIncrements() {
+        // arrange
+        buffer.add(1L, 1, 25, this::baseline);
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenThrow(new DataAccessResourceFailureException("down"));
+
+        // act
+        assertThrows(DataAccessResourceFailureException.class, () -> buffer.flush());
+        LevelProgressBuffer.LevelProgress progress = buffer.add(1L, 1, 25, this::baseline);
+
+        // assert
+        assertEquals(3, progress.level());
+        assertEquals(5050, progress.coins());
+        assertEquals(1, baselineLoads.get());
+    }
+
+    @Test
+    @DisplayName("A flush from inside a transaction that rolls back keeps the written increments")
+    @Description("The token lookup of a team join flushes the user, the join may fail afterwards")
+    void flushSurvivesRollbackOfCaller() {
+        // arrange
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:level-progress-buffer;DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate database = new JdbcTemplate(dataSource);
+        database.execute("CREATE TABLE IF NOT EXISTS users (id BIGINT PRIMARY KEY, level INT, coins INT, version INT)");
+        database.update("MERGE INTO users KEY (id) VALUES (1, 1, 5000, 0)");
+        DataSourceTransactionManager transactions = new DataSourceTransactionManager(dataSource);
+        LevelProgressBuffer transactional = new LevelProgressBuffer(database, transactions, secondLevelCache, outbox,
+                true, 100, Duration.ofHours(1));
+        transactional.add(1L, 2, 50, this::baseline);
+
+        // act
+        new TransactionTemplate(transactions).executeWithoutResult(status -> {
+            transactional.flush(1L);
+            status.setRollbackOnly();
+        });
+
+        // assert
+        assertFalse(transactional.hasPending(1L));
+        assertEquals(Integer.valueOf(3), database.queryForObject("SELECT level FROM users WHERE id = 1", Integer.class));
+        assertEquals(Integer.valueOf(5050), database.queryForObject("SELECT coins FROM users WHERE id = 1", Integer.class));
+    }
+
+    @Test
+    @DisplayName("A baseline loaded while increments of the user are written is loaded again")
+    @Description("The baseline is loaded outside of the map, other increments may be added and written meanwhile")
+    void baselineLoadedDuringWriteIsReloaded() {
+        // arrange
+        AtomicInteger loads = new AtomicInteger();
+
+        // act
+        LevelProgressBuffer.LevelProgress progress = buffer.add(1L, 1, 25, () -> {
+            if (loads.incrementAndGet() == 1) {
+                buffer.add(1L, 1, 25, this::baseline);
+                buffer.flush();
+                return LevelProgressBuffer.LevelProgress.of(new User(1L, "John", 1, 5000, "token"));
+            }
+            return LevelProgressBuffer.LevelProgress.of(new User(1L, "John", 2, 5025, "token"));
+        });
+
+        // assert
+        assertEquals(2, loads.get());
+        assertEquals(3, progress.level());
+        assertEquals(5050, progress.coins());
+        assertEquals(1, progress.pendingLevels());
+    }
+
+    @Test
+    @DisplayName("Pending increments are written on shutdown")
+    void shutdownFlushes() throws InterruptedException {
+        // arrange
+        buffer.start();
+        buffer.add(1L, 1, 25, this::baseline);
+
+        // act
+        buffer.shutdown();
+
+        // assert
+        verify(jdbcTemplate).batchUpdate(eq(LevelProgressBuffer.FLUSH_SQL), anyList());
+        assertEquals(0, buffer.pendingCount());
+    }
+}
@@ -1,9 +1,24 @@
 package com.isazobu.rowmatch.backend.user.service;
 
+import com.isazobu.rowmatch.backend.cache.SecondLevelCache;
+import com.isazobu.rowmatch.backend.events.DomainEventBus;
 import com.isazobu.rowmatch.backend.exceptions.EntityAlreadyExistsException;
+import com.isazobu.rowmatch.backend.exceptions.InvalidCountryException;
+import com.isazobu.rowmatch.backend.exceptions.InvalidUserBatchException;
+import com.isazobu.rowmatch.backend.filter.NameFilters;
+import com.isazobu.rowmatch.backend.leaderboard.index.LevelLeaderboard;
+import com.isazobu.rowmatch.backend.leaderboard.index.TeamLeaderboard;
+import com.isazobu.rowmatch.backend.metrics.GameMetrics;
+import com.isazobu.rowmatch.backend.outbox.service.Outbox;
+import com.isazobu.rowmatch.backend.tournament.index.TournamentGroups;
+import com.isazobu.rowmatch.backend.transaction.OptimisticTransactions;
+import com.isazobu.rowmatch.backend.user.auth.TokenSigner;
+import com.isazobu.rowmatch.backend.user.auth.UserTokenResolver;
 import com.isazobu.rowmatch.backend.user.dto.CreateUserRequest;
 import com.isazobu.rowmatch.backend.user.dto.UpdateLevelRequest;
 import com.isazobu.rowmatch.backend.user.model.User;
+import com.isazobu.rowmatch.backend.user.repository.UserBatchRepository;
+import com.isazobu.rowmatch.backend.user.repository.UserIdBlocks;
 import com.isazobu.rowmatch.backend.user.repository.UserRepository;
 import jakarta.persistence.EntityNotFoundException;
 import jdk.jfr.Description;
@@ -14,9 +29,12 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.dao.DataIntegrityViolationException;
 
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.Assert.*;
@@ -28,6 +46,48 @@ public class UserServiceImplTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private UserTokenResolver userTokenResolver;
+
+    @Mock
+    private TokenSigner tokenSigner;
+
+    @Mock
+    private LevelProgressBuffer levelProgressBuffer;
+
+    @Mock
+    private GameMetrics gameMetrics;
+
+    @Mock
+    private LevelLeaderboard levelLeaderboard;
+
+    @Mock
+    private TeamLeaderboard teamLeaderboard;
+
+    @Mock
+    private TournamentGroups tournamentGroups;
+
+    @Mock
+    private UserIdBlocks userIdBlocks;
+
+    @Mock
+    private UserBatchRepository userBatchRepository;
+
+    @Mock
+    private NameFilters nameFilters;
+
+    @Mock
+    private OptimisticTransactions optimisticTransactions;
+
+    @Mock
+    private SecondLevelCache secondLevelCache;
+
+    @Mock
+    private DomainEventBus domainEventBus;
+
+    @Mock
+    private Outbox outbox;
+
     @InjectMocks
     private UserServiceImpl userService;
 
@@ -43,13 +103,57 @@ public class UserServiceImplTest {
         // arrange
         CreateUserRequest createUserRequest = new CreateUserRequest();
         createUserRequest.setName("user1");
+        createUserRequest.setCountry("tr");
+        when(nameFilters.userNameMightExist("user1")).thenReturn(true);
         when(userRepository.findByName(createUserRequest.getName())).thenReturn(Optional.empty());
+        when(userRepository.saveAndFlush(any(User.class))).thenAnswer(invocation -> {
+            User saved = invocation.getArgument(0);
+            saved.setId(1L);
+            return saved;
+        });
+        when(tokenSigner.sign(1L)).thenReturn("v1.1.nonce.signature");
         // act
         User user = userService.createUser(createUserRequest);
 
         // assert
         assertEquals(createUserRequest.getName(), user.getName());
-        verify(userRepository, times(1)).save(user);
+        assertEquals("v1.1.nonce.signature", user.getToken());
+        assertEquals("TR", user.getCountry());
+        verify(userRepository, times(1)).saveAndFlush(user);
+        verify(userTokenResolver).tokenIssued(user, null);
+        verify(levelLeaderboard).update(1L, "user1", "TR", 1);
+        verify(nameFilters).userNameAdded("user1");
+    }
+
+    @Test
+    @Description("Test create user skips the name lookup when the filter rules the name out")
+    public void testCreateUser_NewNameSkipsLookup() {
+        // arrange
+        when(nameFilters.userNameMightExist("user1")).thenReturn(false);
+        when(userRepository.saveAndFlush(any(User.class))).thenAnswer(invocation -> {
+            User saved = invocation.getArgument(0);
+            saved.setId(1L);
+            return saved;
+        });
+        when(tokenSigner.sign(1L)).thenReturn("v1.1.nonce.signature");
+
+        // act
+        userService.createUser(request("user1", null));
+
+        // assert
+        verify(userRepository, never()).findByName(any());
+    }
+
+    @Test
+    @Description("Test create user reports a name taken behind the filter's back as existing")
+    public void testCreateUser_DuplicateKey() {
+        // arrange
+        when(userRepository.saveAndFlush(any(User.class))).thenThrow(new DataIntegrityViolationException("duplicate"));
+
+        // act & assert
+        assertThrows(EntityAlreadyExistsException.class, () -> userService.createUser(request("user1", null)));
+        verify(nameFilters, never()).userNameAdded(any());
+        verifyNoInteractions(levelLeaderboard);
     }
 
     @Test(expected = EntityAlreadyExistsException.class)
@@ -58,7 +162,8 @@ public class UserServiceImplTest {
         CreateUserRequest createUserRequest = new CreateUserRequest();
         createUserRequest.setName("user1");
         // Arrange
-        User existingUser = new User(1L, "user1", 1, 5000, null, null);
+        User existingUser = new User(1L, "user1", 1, 5000, null, null, null, 0L);
+        when(nameFilters.userNameMightExist("user1")).thenReturn(true);
         when(userRepository.findByName(createUserRequest.getName())).thenReturn(Optional.of(existingUser));
 
         // Act
@@ -68,6 +173,68 @@ public class UserServiceImplTest {
         verify(userRepository, never()).save(any());
     }
 
+    private static CreateUserRequest request(String name, String country) {
+        CreateUserRequest request = new CreateUserRequest();
+        request.setName(name);
+        request.setCountry(country);
+        return request;
+    }
+
+    @Test
+    @Description("Test create users in a batch")
+    public void testCreateUsers_Success() {
+        // arrange
+        when(nameFilters.userNameMightExist("user1")).thenReturn(true);
+        when(userRepository.findExistingNames(List.of("user1"))).thenReturn(List.of());
+        when(userIdBlocks.reserve(2)).thenReturn(100L);
+        when(tokenSigner.sign(anyLong())).thenAnswer(invocation -> "v1." + invocation.getArgument(0));
+
+        // act
+        List<User> users = userService.createUsers(List.of(request("user1", "tr"), request("user2", null)));
+
+        // assert
+        assertEquals(2, users.size());
+        assertEquals("v1.100", users.get(0).getToken());
+        assertEquals("TR", users.get(0).getCountry());
+        assertEquals(Long.valueOf(101L), users.get(1).getId());
+        verify(userBatchRepository).insertAll(users);
+        verify(secondLevelCache).evictQueryResults();
+        verify(userRepository, never()).save(any());
+        verify(userTokenResolver).tokenIssued(users.get(1), null);
+        verify(levelLeaderboard).update(100L, "user1", "TR", 1);
+    }
+
+    @Test
+    @Description("Test create users rejects names repeated in the batch or already taken")
+    public void testCreateUsers_DuplicateNames() {
+        // repeated within the batch
+        assertThrows(EntityAlreadyExistsException.class,
+                () -> userService.createUsers(List.of(request("user1", null), request("user1", null))));
+
+        // already taken
+        when(nameFilters.userNameMightExist(anyString())).thenReturn(true);
+        when(userRepository.findExistingNames(anyCollection())).thenReturn(List.of("user2"));
+        assertThrows(EntityAlreadyExistsException.class,
+                () -> userService.createUsers(List.of(request("user1", null), request("user2", null))));
+        verify(userIdBlocks, never()).reserve(anyInt());
+        verify(userBatchRepository, never()).insertAll(any());
+    }
+
+    @Test
+    @Description("Test create users rejects empty and oversized batches")
+    public void testCreateUsers_InvalidBatch() {
+        List<CreateUserRequest> tooMany = new ArrayList<>();
+        for (int i = 0; i <= UserServiceImpl.MAX_BATCH_SIZE; i++) {
+            tooMany.add(request("user" + i, null));
+        }
+
+        assertThrows(InvalidUserBatchException.class, () -> userService.createUsers(List.of()));
+        assertThrows(InvalidUserBatchException.class, () -> userService.createUsers(tooMany));
+        assertThrows(InvalidUserBatchException.class,
+                () -> userService.createUsers(List.of(request(" ", null))));
+        verify(userRepository, never()).findExistingNames(any());
+    }
+
 
 //        @Test
 //        @Description("Test create user with token creation error")
@@ -99,6 +266,9 @@ public class UserServiceImplTest {
         user.setLevel(1);
         user.setToken("0a46b01722c63520fd88d7972a147ae9");
         user.setCoins(5000);
+        when(userTokenResolver.findByToken(user.getToken())).thenReturn(Optional.of(user));
+        when(optimisticTransactions.execute(any(), any()))
+                .thenAnswer(invocation -> invocation.<OptimisticTransactions.Work<?, ?>>getArgument(1).run());
 
 
         UpdateLevelRequest updatedUser = userService.updateLevel(user.getToken());
@@ -106,8 +276,54 @@ public class UserServiceImplTest {
         assertNotNull(updatedUser);
         assertEquals(user.getId(), updatedUser.getId());
         assertEquals(user.getName(), updatedUser.getName());
-        assertEquals(Integer.valueOf(2), Optional.of(updatedUser.getLevel()));
-        assertEquals(Integer.valueOf(5025), Optional.of(updatedUser.getCoins()));
+        assertEquals(2, updatedUser.getLevel());
+        assertEquals(5025, updatedUser.getCoins());
+        verify(optimisticTransactions).execute(eq("Level update"), any());
+        verify(userRepository).save(user);
+        verify(outbox).levelCompleted(1L, 2);
+    }
+
+    @Test
+    @Description("Test update level through the write-behind buffer")
+    public void updateLevel_Buffered() {
+        // arrange
+        String token = "v1.1.nonce.signature";
+        LevelProgressBuffer.LevelProgress progress = new LevelProgressBuffer.LevelProgress(1L, "John", 1, 5000, 2, 50);
+        when(levelProgressBuffer.isEnabled()).thenReturn(true);
+        when(userTokenResolver.resolveUserId(token)).thenReturn(Optional.of(1L));
+        when(levelProgressBuffer.add(eq(1L), eq(1), eq(25), any())).thenReturn(progress);
+
+        // act
+        UpdateLevelRequest updatedUser = userService.updateLevel(token);
+
+        // assert
+        assertEquals(Long.valueOf(1L), updatedUser.getId());
+        assertEquals("John", updatedUser.getName());
+        assertEquals(3, updatedUser.getLevel());
+        assertEquals(5050, updatedUser.getCoins());
+        verify(userRepository, never()).save(any());
+        verify(userTokenResolver, never()).findByToken(anyString());
+        verify(gameMetrics).levelCompleted();
+        verify(levelLeaderboard).updateLevel(1L, 3);
+        verify(teamLeaderboard).levelChanged(1L, 3);
+        verify(tournamentGroups).levelCompleted(1L);
+        verify(domainEventBus).levelCompleted(1L, 3);
+        // written with the buffered update when it is flushed
+        verify(outbox, never()).levelCompleted(anyLong(), anyInt());
+    }
+
+    @Test
+    @Description("Test create user with an unknown country code")
+    public void testCreateUser_InvalidCountry() {
+        // arrange
+        CreateUserRequest createUserRequest = new CreateUserRequest();
+        createUserRequest.setName("user1");
+        createUserRequest.setCountry("XX");
+
+        // act & assert
+        assertThrows(InvalidCountryException.class, () -> userService.createUser(createUserRequest));
+        verify(userRepository, never()).save(any());
+        verifyNoInteractions(levelLeaderboard);
     }
 
     @Test
@@ -121,7 +337,7 @@ public class UserServiceImplTest {
         user.setCoins(5000);
         user.setToken(token);
 
-        Mockito.when(userRepository.findByToken(token)).thenReturn(Optional.of(user));
+        Mockito.when(userTokenResolver.findByToken(token)).thenReturn(Optional.of(user));
 
         User result = userService.verifyToken(token);
 
@@ -137,7 +353,7 @@ public class UserServiceImplTest {
     public void verifyToken_userNotFound() {
         String token = "0a46b01722c63520fd88d7972a147ae9";
 
-        when(userRepository.findByToken(token)).thenReturn(Optional.empty());
+        when(userTokenResolver.findByToken(token)).thenReturn(Optional.empty());
 
         assertThrows(EntityNotFoundException.class, () -> {
             userService.verifyToken(token);
@@ -194,24 +410,24 @@ public class UserServiceImplTest {
     public void testVerifyToken_Success() {
         String token = "token";
         User mockUser = new User(1L, "John", 1, 5000, "hash");
-        when(userRepository.findByToken(token)).thenReturn(Optional.of(mockUser));
+        when(userTokenResolver.findByToken(token)).thenReturn(Optional.of(mockUser));
 
         User result = userService.verifyToken(token);
 
         assertEquals(mockUser, result);
-        verify(userRepository, times(1)).findByToken(token);
+        verify(userTokenResolver, times(1)).findByToken(token);
     }
 
     @Test
     public void testVerifyToken_EntityNotFoundException() {
         String token = "token";
-        when(userRepository.findByToken(token)).thenReturn(Optional.empty());
+        when(userTokenResolver.findByToken(token)).thenReturn(Optional.empty());
 
         assertThrows(EntityNotFoundException.class, () -> {
             userService.verifyToken(token);
         });
 
-        verify(userRepository, times(1)).findByToken(token);
+        verify(userTokenResolver, times(1)).findByToken(token);
     }
 
 }